@@ -0,0 +1,79 @@
+package by.financialstatements.benchmark;
+
+import by.financialstatements.model.statistics.AmountParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+/**
+ * The AmountParsingBenchmark class compares the scanning AmountParser with the regular expression based
+ * parsing that StatisticsCalculator used before, on the total lines of real documents.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AmountParsingBenchmark {
+
+    @Param({"Total amount 1673", "Bill total amount EURO 102,78", "Total Amount 744.00", "Order Total 1,228.01"})
+    public String line;
+
+    @Benchmark
+    public long scannerAmount() {
+        return AmountParser.parseAmount(line);
+    }
+
+    @Benchmark
+    public double legacyAmount() {
+        return legacyParseAmount(line);
+    }
+
+    @Benchmark
+    public long scannerOrderAmount() {
+        return AmountParser.parseOrderAmount(line);
+    }
+
+    @Benchmark
+    public double legacyOrderAmount() {
+        return legacyParseOrderAmount(line);
+    }
+    /**
+     * Copy of the StatisticsCalculator.parseAmount implementation before AmountParser.
+     */
+    private static double legacyParseAmount(String line) {
+        try {
+            String number = line.replaceAll("[^0-9,\\.]", "");
+            return Double.parseDouble(number.replace(',', '.'));
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+    /**
+     * Copy of the StatisticsCalculator.parseOrderAmount implementation before AmountParser.
+     */
+    private static double legacyParseOrderAmount(String line) {
+        try {
+            String pattern = "(?<=Order Total\\s)(\\d{1,3}(?:,\\d{3})*\\.\\d+)";
+            Pattern regex = Pattern.compile(pattern);
+            Matcher matcher = regex.matcher(line);
+            if (matcher.find()) {
+                return Double.parseDouble(matcher.group(1).replace(",", ""));
+            }
+            return 0.0;
+        } catch (NumberFormatException e) {
+            return 0.0;
+        }
+    }
+}
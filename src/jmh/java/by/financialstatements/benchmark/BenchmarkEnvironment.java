@@ -0,0 +1,89 @@
+package by.financialstatements.benchmark;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+/**
+ * The BenchmarkEnvironment class creates a temporary workspace (data, valid and invalid folders, log and
+ * statistics files) and points the application configuration at it through the config.file system property.
+ * It must be created before any application class that reads PropsHandler is loaded.
+ */
+public class BenchmarkEnvironment {
+    private final Path root;
+    /**
+     * BenchmarkEnvironment constructor. Creates the workspace and the configuration file.
+     * Uploading to S3 is disabled in the generated configuration.
+     *
+     * @throws IOException If the workspace cannot be created.
+     */
+    public BenchmarkEnvironment() throws IOException {
+        this.root = Files.createTempDirectory("financial-statements-benchmark");
+        Files.createDirectories(getDataPath());
+        Files.createDirectories(getValidPath());
+        Files.createDirectories(getInvalidPath());
+        Path config = root.resolve("config.properties");
+        Files.writeString(config, String.join(System.lineSeparator(),
+                "VALID_PATH=" + getValidPath(),
+                "INVALID_PATH=" + getInvalidPath(),
+                "INFO_LOG_FILE=" + root.resolve("info.log"),
+                "ERROR_LOG_FILE=" + root.resolve("error.log"),
+                "STATISTICS_FILE=" + root.resolve("statistics.txt"),
+                "S3_UPLOAD_ENABLED=false"));
+        System.setProperty("config.file", config.toString());
+    }
+    /**
+     * @return Folder with the documents to process.
+     */
+    public Path getDataPath() {
+        return root.resolve("data");
+    }
+    /**
+     * @return Folder for valid documents.
+     */
+    public Path getValidPath() {
+        return root.resolve("valid");
+    }
+    /**
+     * @return Folder for invalid documents.
+     */
+    public Path getInvalidPath() {
+        return root.resolve("invalid");
+    }
+    /**
+     * The clean method empties a directory of the workspace.
+     *
+     * @param directory Directory to empty.
+     */
+    public void clean(Path directory) {
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(BenchmarkEnvironment::delete);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    /**
+     * The delete method removes the whole workspace.
+     */
+    public void delete() {
+        try (Stream<Path> files = Files.walk(root)) {
+            files.sorted(Comparator.reverseOrder()).forEach(BenchmarkEnvironment::delete);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    /**
+     * The delete method removes a single file or empty directory.
+     *
+     * @param path Path to remove.
+     */
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
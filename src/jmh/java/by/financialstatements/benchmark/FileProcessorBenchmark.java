@@ -0,0 +1,69 @@
+package by.financialstatements.benchmark;
+
+import by.financialstatements.model.fileprocessing.service.FileProcessor;
+import by.financialstatements.model.login_service.session.ApplicationSession;
+import by.financialstatements.model.login_service.session.SessionManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+/**
+ * The FileProcessorBenchmark class measures a full FileProcessor.process run: walking, validating and moving
+ * the files, calculating and writing statistics (the S3 upload is disabled). A fresh corpus is generated
+ * before every run, because the run moves all files out of the data folder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class FileProcessorBenchmark {
+
+    @Param({"1000", "10000"})
+    public int fileCount;
+
+    @Param({"4096"})
+    public int fileSize;
+
+    @Param({"1", "4"})
+    public int workerThreads;
+
+    private BenchmarkEnvironment environment;
+    private ApplicationSession session;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        environment = new BenchmarkEnvironment();
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareCorpus() throws IOException {
+        environment.clean(environment.getValidPath());
+        environment.clean(environment.getInvalidPath());
+        new SyntheticCorpus(fileCount, fileSize, 0.1, 42).generate(environment.getDataPath());
+        session = SessionManager.getInstance().createSession();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.delete();
+    }
+
+    @Benchmark
+    public void process() {
+        new FileProcessor(environment.getDataPath().toString(), workerThreads).process(session);
+    }
+}
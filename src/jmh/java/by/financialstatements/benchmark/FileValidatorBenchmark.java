@@ -0,0 +1,54 @@
+package by.financialstatements.benchmark;
+
+import by.financialstatements.model.fileprocessing.service.FileValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+/**
+ * The FileValidatorBenchmark class measures FileValidator.isValid on the names of a generated corpus.
+ * Only valid names are used, because an invalid file is moved away by the validator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileValidatorBenchmark {
+    private BenchmarkEnvironment environment;
+    private FileValidator fileValidator;
+    private List<Path> files;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        environment = new BenchmarkEnvironment();
+        files = new SyntheticCorpus(3_000, 256, 0.0, 42).generate(environment.getDataPath());
+        fileValidator = new FileValidator();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.delete();
+    }
+
+    @Benchmark
+    public boolean isValid() {
+        Path file = files.get(next++ % files.size());
+        return fileValidator.isValid(file);
+    }
+}
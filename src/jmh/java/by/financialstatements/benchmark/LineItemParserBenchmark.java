@@ -0,0 +1,118 @@
+package by.financialstatements.benchmark;
+
+import by.financialstatements.model.statistics.LastLineReader;
+import by.financialstatements.model.statistics.lineitem.LineItemParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+/**
+ * The LineItemParserBenchmark class compares reading only the last line of a document (PARSE_MODE=LAST_LINE)
+ * with reading the whole document and its line items (PARSE_MODE=FULL_DOCUMENT) over a generated corpus
+ * with a line item on every line. Scores are per file; fullDocument always reads the whole document.
+ * Reading the last line costs about the same at any size, while reading the whole document costs time in
+ * proportion to its size, so the ratio of the two grows with the size of the documents: it stays within
+ * MAX_RATIO up to MAX_RATIO_FILE_SIZE (about 4 KB) and cannot stay within it for larger documents.
+ * Run the class itself (main) to check the ratio up to MAX_RATIO_FILE_SIZE and print it for the larger sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineItemParserBenchmark {
+    private static final int FILE_COUNT = 1_000;
+    private static final double MAX_RATIO = 2.0;
+    private static final int MAX_RATIO_FILE_SIZE = 4096;
+
+    @Param({"1024", "4096", "16384", "65536"})
+    public int fileSize;
+
+    private BenchmarkEnvironment environment;
+    private List<Path> files;
+    private final LineItemParser lineItemParser = new LineItemParser();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        environment = new BenchmarkEnvironment();
+        files = new SyntheticCorpus(FILE_COUNT, fileSize, 0.0, 42).generate(environment.getValidPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void lastLine(Blackhole blackhole) throws IOException {
+        for (Path file : files) {
+            blackhole.consume(LastLineReader.readLastLine(file));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public void fullDocument(Blackhole blackhole) throws IOException {
+        for (Path file : files) {
+            blackhole.consume(lineItemParser.parse(file, false, Long.MAX_VALUE));
+        }
+    }
+
+    /**
+     * The main method runs the lastLine and fullDocument benchmarks, prints how many times as long fullDocument
+     * takes at every file size, and fails if that is more than MAX_RATIO at a size up to MAX_RATIO_FILE_SIZE.
+     *
+     * @param args Not used.
+     * @throws RunnerException If the benchmarks cannot be run.
+     * @throws IllegalStateException If the ratio is exceeded up to MAX_RATIO_FILE_SIZE.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Map<String, Double> lastLineScores = new TreeMap<>(Comparator.comparingInt(Integer::parseInt));
+        Map<String, Double> fullDocumentScores = new HashMap<>();
+        for (RunResult result : new Runner(new OptionsBuilder()
+                .include(LineItemParserBenchmark.class.getName() + "\\.(lastLine|fullDocument)$").build()).run()) {
+            String fileSize = result.getParams().getParam("fileSize");
+            double score = result.getPrimaryResult().getScore();
+            if (result.getParams().getBenchmark().endsWith(".lastLine")) {
+                lastLineScores.put(fileSize, score);
+            } else {
+                fullDocumentScores.put(fileSize, score);
+            }
+        }
+        for (Map.Entry<String, Double> lastLine : lastLineScores.entrySet()) {
+            // Throughput scores: the ratio of times is the inverse ratio of scores
+            double ratio = lastLine.getValue() / fullDocumentScores.get(lastLine.getKey());
+            System.out.printf("fileSize %s: fullDocument takes %.2f times as long as lastLine%n", lastLine.getKey(), ratio);
+            if (ratio > MAX_RATIO && Integer.parseInt(lastLine.getKey()) <= MAX_RATIO_FILE_SIZE) {
+                throw new IllegalStateException("fullDocument is " + String.format("%.2f", ratio)
+                        + " times slower than lastLine at fileSize " + lastLine.getKey() + ", more than " + MAX_RATIO);
+            }
+        }
+    }
+}
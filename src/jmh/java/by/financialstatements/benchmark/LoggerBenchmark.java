@@ -0,0 +1,125 @@
+package by.financialstatements.benchmark;
+
+import by.financialstatements.model.log.AsyncLogWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+/**
+ * The LoggerBenchmark class compares one million log calls written through the asynchronous batched writer
+ * with the previous implementation, which opened, wrote and closed the log file on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class LoggerBenchmark {
+    private static final int LOG_CALLS = 1_000_000;
+
+    private Path directory;
+    private String infoLogFile;
+    private String errorLogFile;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("logger-benchmark");
+        infoLogFile = directory.resolve("info.log").toString();
+        errorLogFile = directory.resolve("error.log").toString();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(Path.of(infoLogFile));
+        Files.deleteIfExists(Path.of(errorLogFile));
+        Files.deleteIfExists(directory);
+    }
+    /**
+     * Background writer, created for every iteration with the overflow policy under test.
+     */
+    @State(Scope.Benchmark)
+    public static class AsyncWriterState {
+        @Param({"BLOCK", "DROP"})
+        public AsyncLogWriter.OverflowPolicy overflowPolicy;
+
+        private AsyncLogWriter writer;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            writer = new AsyncLogWriter(8192, overflowPolicy, 512);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() {
+            writer.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOG_CALLS)
+    public long asyncLogger(AsyncWriterState state) {
+        AsyncLogWriter writer = state.writer;
+        for (int i = 0; i < LOG_CALLS; i++) {
+            if (i % 100 == 0) {
+                writer.append("ERROR", "Error reading file: INVOICE_" + i + "_2024.txt", null, errorLogFile);
+            } else {
+                writer.append("INFO", "File processing: INVOICE_" + i + "_2024.txt", null, infoLogFile);
+            }
+        }
+        // Count the time until everything is on disk
+        writer.flush();
+        return writer.getDroppedCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOG_CALLS)
+    public void legacyLogger() {
+        for (int i = 0; i < LOG_CALLS; i++) {
+            if (i % 100 == 0) {
+                legacyLog("ERROR", "Error reading file: INVOICE_" + i + "_2024.txt", null, errorLogFile);
+            } else {
+                legacyLog("INFO", "File processing: INVOICE_" + i + "_2024.txt", null, infoLogFile);
+            }
+        }
+    }
+    /**
+     * Copy of the CustomLogger.log implementation that opened the file for every call.
+     */
+    private static void legacyLog(String level, String message, Throwable throwable, String logFile) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+        String logMessage = String.format("%s [%s] %s", timestamp, level.toUpperCase(), message);
+        if (throwable != null) {
+            StringWriter sw = new StringWriter();
+            PrintWriter pw = new PrintWriter(sw);
+            throwable.printStackTrace(pw);
+            logMessage += "\n" + sw.toString();
+        }
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(logFile, true))) {
+            writer.write(logMessage + System.lineSeparator());
+        } catch (IOException e) {
+            System.err.println("Error writing to file " + logFile + ": " + e.getMessage());
+        }
+    }
+}
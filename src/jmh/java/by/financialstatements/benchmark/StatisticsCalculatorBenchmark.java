@@ -0,0 +1,61 @@
+package by.financialstatements.benchmark;
+
+import by.financialstatements.model.statistics.StatisticsCalculator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+/**
+ * The StatisticsCalculatorBenchmark class measures StatisticsCalculator.calculateStatistics over a generated
+ * corpus of valid documents of different sizes. Scores are per file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatisticsCalculatorBenchmark {
+    private static final int FILE_COUNT = 1_000;
+
+    @Param({"1024", "1048576"})
+    public int fileSize;
+
+    private BenchmarkEnvironment environment;
+    private List<Path> files;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        environment = new BenchmarkEnvironment();
+        files = new SyntheticCorpus(FILE_COUNT, fileSize, 0.0, 42).generate(environment.getValidPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FILE_COUNT)
+    public Map<String, Long> calculateStatistics() {
+        StatisticsCalculator statisticsCalculator = new StatisticsCalculator();
+        statisticsCalculator.calculateStatistics(files);
+        return statisticsCalculator.getStatistics();
+    }
+}
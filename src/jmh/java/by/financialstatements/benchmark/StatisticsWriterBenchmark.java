@@ -0,0 +1,54 @@
+package by.financialstatements.benchmark;
+
+import by.financialstatements.model.statistics.StatisticsWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+/**
+ * The StatisticsWriterBenchmark class measures StatisticsWriter.writeStatisticsToFile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatisticsWriterBenchmark {
+    private BenchmarkEnvironment environment;
+    private StatisticsWriter statisticsWriter;
+    private Map<String, Long> statistics;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        environment = new BenchmarkEnvironment();
+        statisticsWriter = new StatisticsWriter();
+        statistics = new HashMap<>();
+        statistics.put("invoices", 891_213L);
+        statistics.put("orders", 1_383_738L);
+        statistics.put("checks", 1_963_894L);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        environment.delete();
+    }
+
+    @Benchmark
+    public void writeStatisticsToFile() {
+        statisticsWriter.writeStatisticsToFile(statistics);
+    }
+}
@@ -0,0 +1,92 @@
+package by.financialstatements.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+/**
+ * The SyntheticCorpus class generates financial documents that look like the real ones in validDocx:
+ * invoices ending with "Total amount", orders ending with "Order Total" and electric bills ending with
+ * "Bill total amount EURO". The body is padded with line items up to the requested file size.
+ * Generation is deterministic for a given seed.
+ */
+public class SyntheticCorpus {
+    private final int fileCount;
+    private final int fileSize;
+    private final double invalidShare;
+    private final long seed;
+    /**
+     * SyntheticCorpus constructor.
+     *
+     * @param fileCount Number of files to generate.
+     * @param fileSize Approximate size of each file in bytes.
+     * @param invalidShare Share of files (0..1) with names that fail validation (wrong year or extension).
+     * @param seed Seed of the random generator.
+     */
+    public SyntheticCorpus(int fileCount, int fileSize, double invalidShare, long seed) {
+        this.fileCount = fileCount;
+        this.fileSize = fileSize;
+        this.invalidShare = invalidShare;
+        this.seed = seed;
+    }
+    /**
+     * The generate method writes the corpus into a directory, rotating through invoices, orders and bills.
+     *
+     * @param directory Directory to write the files to (created if missing).
+     * @return Paths of the generated files.
+     * @throws IOException If a file cannot be written.
+     */
+    public List<Path> generate(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Random random = new Random(seed);
+        List<Path> files = new ArrayList<>(fileCount);
+        for (int i = 0; i < fileCount; i++) {
+            boolean valid = random.nextDouble() >= invalidShare;
+            String year = valid ? "2024" : "2023";
+            Path file;
+            String content;
+            switch (i % 3) {
+                case 0:
+                    file = directory.resolve(String.format("INVOICE_%02d_%s_%d.txt", i % 12 + 1, year, i));
+                    content = body(random, "Invoice #" + i) + "Total amount " + random.nextInt(10_000);
+                    break;
+                case 1:
+                    file = directory.resolve(String.format("%s_ORDER_%02d_%d.txt", year, i % 12 + 1, i));
+                    content = body(random, "Order #P" + i) + String.format(Locale.ROOT, "Order Total %,d.%02d",
+                            random.nextInt(100_000), random.nextInt(100));
+                    break;
+                default:
+                    file = directory.resolve(String.format("%s_Electric_Bill_%02d_%d.txt", year, i % 12 + 1, i));
+                    content = body(random, "Bill #" + i) + String.format(Locale.ROOT, "Bill total amount EURO %d,%02d",
+                            random.nextInt(1_000), random.nextInt(100));
+            }
+            if (!valid && random.nextBoolean()) {
+                file = directory.resolve(file.getFileName().toString().replace(".txt", ".pdf"));
+            }
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            files.add(file);
+        }
+        return files;
+    }
+    /**
+     * The body method builds the header and line items of a document.
+     *
+     * @param random Random generator.
+     * @param header First line of the document.
+     * @return The document text without the total line.
+     */
+    private String body(Random random, String header) {
+        StringBuilder body = new StringBuilder(fileSize + 64);
+        body.append(header).append("\n\n");
+        int item = 1;
+        while (body.length() < fileSize - 40) {
+            body.append(item++).append(". Brake model ").append(random.nextInt(100)).append(' ')
+                    .append(random.nextInt(2_000)).append("$\n");
+        }
+        return body.append('\n').toString();
+    }
+}
@@ -1,9 +1,18 @@
 package by.financialstatements;
 
 import by.financialstatements.model.fileprocessing.service.FileProcessor;
+import by.financialstatements.model.fileprocessing.service.FolderWatcher;
+import by.financialstatements.model.exception.ShardMergeException;
+import by.financialstatements.model.login_service.service.AWS;
 import by.financialstatements.model.login_service.service.AuthService;
+import by.financialstatements.model.login_service.service.PropsHandler;
 import by.financialstatements.model.login_service.session.ApplicationSession;
+import by.financialstatements.model.server.IngestionServer;
+import by.financialstatements.model.shard.ShardAssignment;
+import by.financialstatements.model.shard.StatisticsMerger;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Scanner;
 /**
  * The Main class is the entry point to the application.
@@ -13,9 +22,36 @@ import java.util.Scanner;
  * - Authorization is checked via the authorization service.
  * - If authorization is successful, the option to specify the path to the data folder is provided.
  * - Data processing is started via `FileProcessor`.
+ * - With the `--watch` argument the folder is watched instead (see `FolderWatcher`): documents are processed
+ *   as they arrive until the user presses Enter.
+ * - With the `--serve` argument an HTTP server is started instead (see `IngestionServer`): other systems can
+ *   upload documents and read the totals until the user presses Enter.
+ * - With the `--shard i/n [run id]` argument the process is worker i of a sharded run with n workers sharing
+ *   the data folder (see `ShardAssignment`): it processes only its own files and writes partial statistics.
+ * - With the `--merge [run id]` argument the process is the coordinator of a sharded run: no data folder is
+ *   asked for, the partial statistics of all workers of the run are merged into the statistics file
+ *   (see `StatisticsMerger`), which is then transferred to AWS.
+ * - The run id is the same for the coordinator and all workers of a run; if it is not given, SHARD_RUN_ID is used.
  */
 public class Main {
+    private static final String USAGE = "Usage: [--watch | --serve | --shard index/count [run id] | --merge [run id]]";
+
     public static void main(String[] args) {
+        boolean merge = args.length > 0 && args[0].equals("--merge");
+        ShardAssignment shard = null;
+        String runId = null;
+        try {
+            if (merge) {
+                runId = mergeRunId(args);
+            } else {
+                shard = shardOf(args);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println((merge ? "Cannot merge the partial statistics: " : "Cannot start the processing: ")
+                    + e.getMessage());
+            System.out.println(USAGE);
+            return;
+        }
         Scanner scanner = new Scanner(System.in);
         // Debug code for encrypting credentials
         /* String resultLogin = LoginEncryptor.encrypt("kate");
@@ -29,12 +65,84 @@ public class Main {
         // User authentication via AuthService
         ApplicationSession session = AuthService.auth(login, password);
         // Check if the session is valid
-        if (session.isSessionValid()) {
+        if (session.isSessionValid() && merge) {
+            try {
+                new StatisticsMerger().merge(Paths.get(PropsHandler.getPropertyFromConfig("PARTIAL_STATISTICS_DIR")),
+                        runId);
+                AWS.throwToAmazon();
+            } catch (IOException | ShardMergeException e) {
+                System.out.println("Cannot merge the partial statistics: " + e.getMessage());
+            }
+        } else if (session.isSessionValid()) {
             System.out.print("Enter the path to the data folder: ");
             String dataPath = scanner.nextLine();
-            FileProcessor processor = new FileProcessor(dataPath);
-            processor.process(session);
+            FileProcessor processor = new FileProcessor(dataPath, 0, shard);
+            if (args.length > 0 && args[0].equals("--watch")) {
+                FolderWatcher watcher = new FolderWatcher(processor, Paths.get(dataPath));
+                Thread watcherThread = new Thread(() -> watcher.watch(session), "folder-watcher");
+                watcherThread.start();
+                System.out.println("Watching " + dataPath + ", press Enter to stop");
+                scanner.nextLine();
+                watcher.stop();
+                try {
+                    watcherThread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (args.length > 0 && args[0].equals("--serve")) {
+                try {
+                    IngestionServer server = new IngestionServer(processor);
+                    server.start();
+                    System.out.println("Serving on " + server.getAddress() + ", press Enter to stop");
+                    scanner.nextLine();
+                    server.stop(5);
+                } catch (IOException e) {
+                    System.out.println("Cannot start the server: " + e.getMessage());
+                }
+            } else {
+                processor.process(session);
+            }
         }
         scanner.close();
     }
+    /**
+     * The shardOf method returns the shard given by the `--shard` argument or, without it, by the config.
+     *
+     * @param args Command line arguments.
+     * @return The shard, or null if the run is not sharded.
+     * @throws IllegalArgumentException If the shard is missing or invalid, or the run id is not given.
+     */
+    private static ShardAssignment shardOf(String[] args) {
+        if (args.length == 0 || !args[0].equals("--shard")) {
+            return ShardAssignment.fromConfig();
+        }
+        if (args.length < 2) {
+            throw new IllegalArgumentException("--shard needs the shard as index/count");
+        }
+        return ShardAssignment.parse(args[1], runId(args, 2));
+    }
+    /**
+     * The mergeRunId method returns the run id of the `--merge` argument.
+     *
+     * @param args Command line arguments.
+     * @return The run id.
+     * @throws IllegalArgumentException If the run id is given neither on the command line nor in the config.
+     */
+    private static String mergeRunId(String[] args) {
+        String runId = runId(args, 1);
+        if (runId == null || runId.isBlank()) {
+            throw new IllegalArgumentException("--merge needs the run id of the workers (SHARD_RUN_ID)");
+        }
+        return runId;
+    }
+    /**
+     * The runId method returns the run id given on the command line or, if there is none, SHARD_RUN_ID.
+     *
+     * @param args Command line arguments.
+     * @param position Position of the run id among the arguments.
+     * @return The run id, or null if it is given neither on the command line nor in the config.
+     */
+    private static String runId(String[] args, int position) {
+        return args.length > position ? args[position] : PropsHandler.getConfig().getString("SHARD_RUN_ID", null);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,67 @@
+package by.financialstatements.model.checkpoint;
+/**
+ * The CheckpointEntry class describes one processed file in the checkpoint index: its size, modification time and
+ * content hash (used to detect changes) and the amount and category it contributed to the statistics.
+ */
+public class CheckpointEntry {
+    private final String fileName;
+    private final long size;
+    private final long lastModified;
+    private final long contentHash;
+    private final String category;
+    private final long amount;
+    /**
+     * CheckpointEntry constructor.
+     *
+     * @param fileName Name of the file in the valid folder.
+     * @param size Size of the file in bytes.
+     * @param lastModified Modification time of the file in milliseconds since the epoch.
+     * @param contentHash Hash of the file content.
+     * @param category Statistics category the amount was added to, or null if the file has no amount.
+     * @param amount Amount in minor units (0 if the file has no amount).
+     */
+    public CheckpointEntry(String fileName, long size, long lastModified, long contentHash, String category, long amount) {
+        this.fileName = fileName;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.contentHash = contentHash;
+        this.category = category;
+        this.amount = amount;
+    }
+    /**
+     * @return Name of the file in the valid folder.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+    /**
+     * @return Size of the file in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+    /**
+     * @return Modification time of the file in milliseconds since the epoch.
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+    /**
+     * @return Hash of the file content.
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+    /**
+     * @return Statistics category the amount was added to, or null if the file has no amount.
+     */
+    public String getCategory() {
+        return category;
+    }
+    /**
+     * @return Amount in minor units.
+     */
+    public long getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,346 @@
+package by.financialstatements.model.checkpoint;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.statistics.CategoryTotals;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+/**
+ * The CheckpointIndex class is the on-disk index of files already processed in incremental mode.
+ * Besides the entries it keeps the totals (number of documents, sum, smallest and largest amount) of every
+ * statistics category, so the statistics of the whole corpus are available without visiting the entries.
+ *
+ * File format (big-endian): magic, version, the category table (name, count, sum, min and max for each category),
+ * the entries (file name, size, modification time, content hash, category number, amount), then the change
+ * records appended by later runs (a put with a whole entry, or a remove with a file name).
+ * A run only appends the records of the files that changed; the index is compacted (rewritten without records
+ * through a temporary file that then replaces the old index) once there are more records than entries.
+ * A record cut short by a crash is ignored when the index is loaded and overwritten by the next append.
+ */
+public class CheckpointIndex {
+    private static final int MAGIC = 0x46534349;
+    private static final int VERSION = 2;
+    private static final int TOTALS_ONLY_VERSION = 1;
+    private static final int NO_CATEGORY = -1;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int MIN_COMPACTION_RECORDS = 1024;
+
+    private final Map<String, CheckpointEntry> entries;
+    private final Map<String, CategoryTotals> totals;
+    private final Set<String> staleCategories;
+    private final ByteArrayOutputStream pendingBytes;
+    private final DataOutputStream pending;
+    private int pendingRecords;
+    private int storedRecords;
+    private long storedLength;
+    private boolean compactionNeeded;
+    /**
+     * CheckpointIndex constructor. Creates an empty index.
+     */
+    public CheckpointIndex() {
+        this.entries = new HashMap<>();
+        this.totals = new LinkedHashMap<>();
+        this.staleCategories = new HashSet<>();
+        this.pendingBytes = new ByteArrayOutputStream();
+        this.pending = new DataOutputStream(pendingBytes);
+        this.compactionNeeded = true;
+    }
+    /**
+     * The load method reads an index from a file, applying the change records after the entries.
+     * An index written by the previous version (with the sum of each category only) is read as well;
+     * its totals are recalculated from the entries and it is rewritten on the next save.
+     *
+     * @param indexFile Path to the index file.
+     * @return The index, or an empty index if the file does not exist.
+     * @throws IOException If the file cannot be read or is not a checkpoint index.
+     */
+    public static CheckpointIndex load(Path indexFile) throws IOException {
+        CheckpointIndex index = new CheckpointIndex();
+        byte[] content;
+        try {
+            content = Files.readAllBytes(indexFile);
+        } catch (NoSuchFileException e) {
+            return index;
+        }
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(content))) {
+            int version = input.readInt() == MAGIC ? input.readInt() : -1;
+            if (version != VERSION && version != TOTALS_ONLY_VERSION) {
+                throw new IOException("Not a checkpoint index: " + indexFile);
+            }
+            int categoryCount = input.readInt();
+            List<String> categories = new ArrayList<>(categoryCount);
+            for (int i = 0; i < categoryCount; i++) {
+                String category = input.readUTF();
+                categories.add(category);
+                if (version == VERSION) {
+                    index.totals.put(category, new CategoryTotals(input.readLong(), input.readLong(),
+                            input.readLong(), input.readLong()));
+                } else {
+                    input.readLong();
+                    index.totals.put(category, new CategoryTotals(0, 0, 0, 0));
+                }
+            }
+            int entryCount = input.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                String fileName = input.readUTF();
+                long size = input.readLong();
+                long lastModified = input.readLong();
+                long contentHash = input.readLong();
+                int category = input.readInt();
+                long amount = input.readLong();
+                CheckpointEntry entry = new CheckpointEntry(fileName, size, lastModified, contentHash,
+                        category == NO_CATEGORY ? null : categories.get(category), amount);
+                index.entries.put(fileName, entry);
+                if (version == TOTALS_ONLY_VERSION) {
+                    index.add(entry);
+                }
+            }
+            if (version == TOTALS_ONLY_VERSION) {
+                return index;
+            }
+            index.storedLength = content.length - input.available();
+            while (input.available() > 0) {
+                if (!index.readRecord(input)) {
+                    CustomLogger.warning("Checkpoint index " + indexFile + " ends with an incomplete record, ignored");
+                    break;
+                }
+                index.storedLength = content.length - input.available();
+                index.storedRecords++;
+            }
+        }
+        index.compactionNeeded = false;
+        return index;
+    }
+    /**
+     * The save method writes the changes made since the index was loaded. They are appended as records,
+     * or, if the records would outnumber the entries, the whole index is compacted and replaced atomically.
+     *
+     * @param indexFile Path to the index file the index was loaded from.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path indexFile) throws IOException {
+        if (compactionNeeded || storedRecords + pendingRecords > Math.max(MIN_COMPACTION_RECORDS, entries.size())) {
+            compact(indexFile);
+        } else if (pendingRecords > 0) {
+            try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.WRITE)) {
+                // Drops an incomplete record left by a crash
+                channel.truncate(storedLength);
+                ByteBuffer buffer = ByteBuffer.wrap(pendingBytes.toByteArray());
+                long position = storedLength;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                storedLength = position;
+            }
+            storedRecords += pendingRecords;
+        }
+        pendingBytes.reset();
+        pendingRecords = 0;
+    }
+    /**
+     * The get method returns the entry of a file.
+     *
+     * @param fileName Name of the file.
+     * @return The entry, or null if the file is not in the index.
+     */
+    public CheckpointEntry get(String fileName) {
+        return entries.get(fileName);
+    }
+    /**
+     * The put method adds or replaces the entry of a file and moves its contribution in the category totals.
+     *
+     * @param entry The new entry.
+     * @throws IOException If the change record cannot be written.
+     */
+    public void put(CheckpointEntry entry) throws IOException {
+        subtract(entries.put(entry.getFileName(), entry));
+        add(entry);
+        pending.writeByte(PUT);
+        pending.writeUTF(entry.getFileName());
+        pending.writeLong(entry.getSize());
+        pending.writeLong(entry.getLastModified());
+        pending.writeLong(entry.getContentHash());
+        pending.writeBoolean(entry.getCategory() != null);
+        if (entry.getCategory() != null) {
+            pending.writeUTF(entry.getCategory());
+        }
+        pending.writeLong(entry.getAmount());
+        pendingRecords++;
+    }
+    /**
+     * The remove method removes the entry of a file and subtracts its contribution from the category totals.
+     *
+     * @param fileName Name of the file.
+     * @return The removed entry, or null if the file was not in the index.
+     * @throws IOException If the change record cannot be written.
+     */
+    public CheckpointEntry remove(String fileName) throws IOException {
+        CheckpointEntry previous = entries.remove(fileName);
+        if (previous != null) {
+            subtract(previous);
+            pending.writeByte(REMOVE);
+            pending.writeUTF(fileName);
+            pendingRecords++;
+        }
+        return previous;
+    }
+    /**
+     * The getFileNames method returns the names of all files in the index.
+     *
+     * @return A copy of the file names.
+     */
+    public List<String> getFileNames() {
+        return new ArrayList<>(entries.keySet());
+    }
+    /**
+     * The getTotals method returns the totals of every category over all indexed files.
+     * The smallest and largest amounts of a category that lost its smallest or largest document
+     * are recalculated from the entries first.
+     *
+     * @return Map of category totals in minor units.
+     */
+    public Map<String, CategoryTotals> getTotals() {
+        if (!staleCategories.isEmpty()) {
+            Map<String, long[]> limits = new HashMap<>();
+            for (CheckpointEntry entry : entries.values()) {
+                if (entry.getCategory() != null && staleCategories.contains(entry.getCategory())) {
+                    long[] limit = limits.computeIfAbsent(entry.getCategory(), category -> new long[]{Long.MAX_VALUE, Long.MIN_VALUE});
+                    limit[0] = Math.min(limit[0], entry.getAmount());
+                    limit[1] = Math.max(limit[1], entry.getAmount());
+                }
+            }
+            limits.forEach((category, limit) -> {
+                CategoryTotals stale = totals.get(category);
+                totals.put(category, new CategoryTotals(stale.getCount(), stale.getSum(), limit[0], limit[1]));
+            });
+            staleCategories.clear();
+        }
+        return Collections.unmodifiableMap(totals);
+    }
+    /**
+     * The readRecord method reads one change record and applies it to the index.
+     *
+     * @param input Stream positioned at the start of the record.
+     * @return False if the record is incomplete or unknown.
+     * @throws IOException If the record cannot be read.
+     */
+    private boolean readRecord(DataInputStream input) throws IOException {
+        try {
+            byte type = input.readByte();
+            if (type == REMOVE) {
+                subtract(entries.remove(input.readUTF()));
+                return true;
+            }
+            if (type != PUT) {
+                return false;
+            }
+            String fileName = input.readUTF();
+            long size = input.readLong();
+            long lastModified = input.readLong();
+            long contentHash = input.readLong();
+            String category = input.readBoolean() ? input.readUTF() : null;
+            CheckpointEntry entry = new CheckpointEntry(fileName, size, lastModified, contentHash, category, input.readLong());
+            subtract(entries.put(fileName, entry));
+            add(entry);
+            return true;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+    /**
+     * The compact method writes the whole index without change records and replaces the previous version atomically.
+     *
+     * @param indexFile Path to the index file.
+     * @throws IOException If the file cannot be written.
+     */
+    private void compact(Path indexFile) throws IOException {
+        Path parent = indexFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporaryFile = Files.createTempFile(parent, indexFile.getFileName().toString(), ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            Map<String, CategoryTotals> categoryTotals = getTotals();
+            List<String> categories = new ArrayList<>(categoryTotals.keySet());
+            output.writeInt(categories.size());
+            for (String category : categories) {
+                CategoryTotals total = categoryTotals.get(category);
+                output.writeUTF(category);
+                output.writeLong(total.getCount());
+                output.writeLong(total.getSum());
+                output.writeLong(total.getMin());
+                output.writeLong(total.getMax());
+            }
+            output.writeInt(entries.size());
+            for (CheckpointEntry entry : entries.values()) {
+                output.writeUTF(entry.getFileName());
+                output.writeLong(entry.getSize());
+                output.writeLong(entry.getLastModified());
+                output.writeLong(entry.getContentHash());
+                output.writeInt(entry.getCategory() == null ? NO_CATEGORY : categories.indexOf(entry.getCategory()));
+                output.writeLong(entry.getAmount());
+            }
+        }
+        Files.move(temporaryFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        storedLength = Files.size(indexFile);
+        storedRecords = 0;
+        compactionNeeded = false;
+        CustomLogger.info("Checkpoint index " + indexFile + " compacted: " + entries.size() + " entries");
+    }
+    /**
+     * The add method adds the contribution of an entry to the category totals.
+     *
+     * @param entry The entry.
+     */
+    private void add(CheckpointEntry entry) {
+        if (entry.getCategory() != null) {
+            long amount = entry.getAmount();
+            totals.merge(entry.getCategory(), new CategoryTotals(1, amount, amount, amount), CategoryTotals::merge);
+        }
+    }
+    /**
+     * The subtract method removes the contribution of an entry from the category totals.
+     * If the entry held the smallest or largest amount of its category, the category is marked
+     * so that getTotals recalculates them.
+     *
+     * @param entry The entry (may be null).
+     */
+    private void subtract(CheckpointEntry entry) {
+        if (entry == null || entry.getCategory() == null) {
+            return;
+        }
+        String category = entry.getCategory();
+        CategoryTotals total = totals.get(category);
+        long amount = entry.getAmount();
+        if (total.getCount() <= 1) {
+            totals.put(category, new CategoryTotals(0, 0, 0, 0));
+            staleCategories.remove(category);
+            return;
+        }
+        if (amount == total.getMin() || amount == total.getMax()) {
+            staleCategories.add(category);
+        }
+        totals.put(category, new CategoryTotals(total.getCount() - 1, total.getSum() - amount, total.getMin(), total.getMax()));
+    }
+}
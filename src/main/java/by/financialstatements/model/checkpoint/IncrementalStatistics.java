@@ -0,0 +1,135 @@
+package by.financialstatements.model.checkpoint;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.statistics.DocumentAmount;
+import by.financialstatements.model.statistics.StatisticsCalculator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+/**
+ * The IncrementalStatistics class keeps the statistics of all files in the valid folder up to date between runs.
+ * Instead of parsing every file again, it compares the folder with the checkpoint index:
+ * - files with the same size and modification time as in the index are skipped;
+ * - new files are parsed and their amounts added;
+ * - changed files are parsed again and their old amounts replaced (a file that was only touched,
+ *   with the same content hash, keeps its amount);
+ * - files that disappeared have their amounts subtracted.
+ * Only new and changed files are read and only their changes are appended to the index. The statistics calculator
+ * receives the totals kept in the index, one step per category, so the cost of a run beyond listing the folder
+ * grows with the size of the change, not of the corpus.
+ */
+public class IncrementalStatistics {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Path indexFile;
+    private final StatisticsCalculator statisticsCalculator;
+    private final Predicate<String> fileFilter;
+    /**
+     * IncrementalStatistics constructor.
+     *
+     * @param indexFile Path to the checkpoint index file.
+     * @param statisticsCalculator Calculator used to parse files and to receive the totals.
+     */
+    public IncrementalStatistics(Path indexFile, StatisticsCalculator statisticsCalculator) {
+        this(indexFile, statisticsCalculator, fileName -> true);
+    }
+    /**
+     * IncrementalStatistics constructor for a part of the valid folder, for example the files of one shard.
+     *
+     * @param indexFile Path to the checkpoint index file.
+     * @param statisticsCalculator Calculator used to parse files and to receive the totals.
+     * @param fileFilter Test of the file names to take into account; other files are ignored.
+     */
+    public IncrementalStatistics(Path indexFile, StatisticsCalculator statisticsCalculator, Predicate<String> fileFilter) {
+        this.indexFile = indexFile;
+        this.statisticsCalculator = statisticsCalculator;
+        this.fileFilter = fileFilter;
+    }
+    /**
+     * The update method brings the checkpoint index in line with the valid folder, saves the changes,
+     * and adds the category totals of the whole folder to the statistics calculator.
+     *
+     * @param validDirectory Folder with the valid files.
+     * @throws IOException If the folder cannot be listed or the index cannot be read or written.
+     */
+    public void update(Path validDirectory) throws IOException {
+        CheckpointIndex index = CheckpointIndex.load(indexFile);
+        Set<String> seenFiles = new HashSet<>();
+        int changedFiles = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(validDirectory)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                if (!fileFilter.test(fileName)) {
+                    continue;
+                }
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                if (!attributes.isRegularFile()) {
+                    continue;
+                }
+                seenFiles.add(fileName);
+                CheckpointEntry entry = index.get(fileName);
+                long size = attributes.size();
+                long lastModified = attributes.lastModifiedTime().toMillis();
+                if (entry != null && entry.getSize() == size && entry.getLastModified() == lastModified) {
+                    continue;
+                }
+                long contentHash = hash(file);
+                if (entry != null && entry.getContentHash() == contentHash) {
+                    // Touched but not changed: keep the amount
+                    index.put(new CheckpointEntry(fileName, size, lastModified, contentHash,
+                            entry.getCategory(), entry.getAmount()));
+                    continue;
+                }
+                DocumentAmount documentAmount = statisticsCalculator.extractAmount(file);
+                index.put(new CheckpointEntry(fileName, size, lastModified, contentHash,
+                        documentAmount == null ? null : documentAmount.getCategory(),
+                        documentAmount == null ? 0 : documentAmount.getAmount()));
+                CustomLogger.info((entry == null ? "Checkpoint: new file " : "Checkpoint: changed file ") + fileName);
+                changedFiles++;
+            }
+        }
+        for (String fileName : index.getFileNames()) {
+            if (!seenFiles.contains(fileName)) {
+                index.remove(fileName);
+                CustomLogger.info("Checkpoint: removed file " + fileName);
+                changedFiles++;
+            }
+        }
+        index.save(indexFile);
+        CustomLogger.info("Checkpoint index updated: " + changedFiles + " files changed, "
+                + seenFiles.size() + " files in total");
+        index.getTotals().forEach(statisticsCalculator::addTotals);
+    }
+    /**
+     * The hash method calculates the 64-bit FNV-1a hash of the file content.
+     *
+     * @param file File to hash.
+     * @return The hash of the content.
+     * @throws IOException If the file cannot be read.
+     */
+    private static long hash(Path file) throws IOException {
+        long hash = FNV_OFFSET_BASIS;
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    hash ^= buffer.get() & 0xff;
+                    hash *= FNV_PRIME;
+                }
+                buffer.clear();
+            }
+        }
+        return hash;
+    }
+}
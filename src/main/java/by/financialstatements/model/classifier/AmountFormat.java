@@ -0,0 +1,34 @@
+package by.financialstatements.model.classifier;
+
+import by.financialstatements.model.statistics.AmountParser;
+/**
+ * The AmountFormat enum lists the formats of the total line a document type can have,
+ * i.e. which parser extracts its amount.
+ */
+public enum AmountFormat {
+    /**
+     * Any digits with an optional ',' or '.' decimal separator, e.g. "Bill total amount EURO 102,78".
+     */
+    AMOUNT {
+        @Override
+        public long parse(CharSequence line) {
+            return AmountParser.parseAmount(line);
+        }
+    },
+    /**
+     * The "Order Total" field with thousands separators, e.g. "Order Total 1,228.01".
+     */
+    ORDER_TOTAL {
+        @Override
+        public long parse(CharSequence line) {
+            return AmountParser.parseOrderAmount(line);
+        }
+    };
+    /**
+     * The parse method extracts the amount from a total line.
+     *
+     * @param line The last line from the file.
+     * @return The amount in minor units, or AmountParser.INVALID_AMOUNT if the format is invalid.
+     */
+    public abstract long parse(CharSequence line);
+}
@@ -0,0 +1,31 @@
+package by.financialstatements.model.classifier;
+/**
+ * The Classification class is the result of classifying a file name: the document type it was recognized as
+ * and whether it passes validation (right extension and year).
+ */
+public class Classification {
+    private final DocumentType type;
+    private final boolean valid;
+    /**
+     * Classification constructor.
+     *
+     * @param type Recognized document type, or null if no keyword matched.
+     * @param valid true if the file name passes validation.
+     */
+    public Classification(DocumentType type, boolean valid) {
+        this.type = type;
+        this.valid = valid;
+    }
+    /**
+     * @return Recognized document type, or null if no keyword matched.
+     */
+    public DocumentType getType() {
+        return type;
+    }
+    /**
+     * @return true if the file name has the right extension and year and contains a keyword of a known type.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+}
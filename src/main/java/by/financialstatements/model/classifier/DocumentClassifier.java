@@ -0,0 +1,266 @@
+package by.financialstatements.model.classifier;
+
+import by.financialstatements.model.login_service.service.PropsHandler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+/**
+ * The DocumentClassifier class recognizes the document type of a file by its name and checks whether the name
+ * is valid. Validation (FileValidator) and categorization (StatisticsCalculator) share it, so the rules
+ * are defined once.
+ *
+ * The rules are loaded from the configuration:
+ * - DOCUMENT_TYPES: type names in priority order (the first type whose keyword matches wins).
+ * - DOCUMENT_TYPE_&lt;NAME&gt;_KEYWORDS: comma-separated keywords of the type.
+ * - DOCUMENT_TYPE_&lt;NAME&gt;_CATEGORY: statistics category (defaults to the type name).
+ * - DOCUMENT_TYPE_&lt;NAME&gt;_PARSER: AMOUNT or ORDER_TOTAL (defaults to AMOUNT).
+ * - DOCUMENT_TYPE_&lt;NAME&gt;_YEAR and DOCUMENT_YEAR: year a valid name must contain (defaults to 2024).
+ * - DOCUMENT_EXTENSION: extension of valid files (defaults to .txt).
+ * Without DOCUMENT_TYPES the built-in invoice, order and electric bill rules are used.
+ *
+ * All keywords and years are compiled once into an Aho-Corasick automaton, so a file name is classified
+ * in a single case-insensitive pass over its characters, without creating strings.
+ */
+public class DocumentClassifier {
+    private static final int ALPHABET_SIZE = 128;
+    private static final DocumentClassifier INSTANCE = fromConfig();
+
+    private final List<DocumentType> types;
+    private final String extension;
+    private final long[] keywordMasks;
+    private final long[] yearMasks;
+    private final int[][] transitions;
+    private final long[] outputs;
+    private final Classification[] validClassifications;
+    private final Classification[] invalidClassifications;
+    private final Classification unknownClassification = new Classification(null, false);
+    /**
+     * DocumentClassifier constructor. Compiles the rules into the automaton.
+     *
+     * @param types Document types in priority order.
+     * @param extension Extension of valid files (compared case-insensitively).
+     * @throws IllegalArgumentException If a keyword or year is empty or not ASCII, or there are more than 64 of them.
+     */
+    public DocumentClassifier(List<DocumentType> types, String extension) {
+        this.types = List.copyOf(types);
+        this.extension = extension;
+        // Number every distinct pattern; a match is recorded as a bit in a 64-bit mask
+        Map<String, Integer> patterns = new LinkedHashMap<>();
+        this.keywordMasks = new long[types.size()];
+        this.yearMasks = new long[types.size()];
+        this.validClassifications = new Classification[types.size()];
+        this.invalidClassifications = new Classification[types.size()];
+        for (int i = 0; i < types.size(); i++) {
+            DocumentType type = types.get(i);
+            validClassifications[i] = new Classification(type, true);
+            invalidClassifications[i] = new Classification(type, false);
+            for (String keyword : type.getKeywords()) {
+                keywordMasks[i] |= 1L << patternId(patterns, keyword);
+            }
+            yearMasks[i] = 1L << patternId(patterns, type.getYear());
+        }
+        // Build the trie
+        List<int[]> trie = new ArrayList<>();
+        List<Long> trieOutputs = new ArrayList<>();
+        trie.add(newNode());
+        trieOutputs.add(0L);
+        for (Map.Entry<String, Integer> pattern : patterns.entrySet()) {
+            int state = 0;
+            for (char c : pattern.getKey().toCharArray()) {
+                int lower = toLowerAscii(c);
+                if (trie.get(state)[lower] < 0) {
+                    trie.get(state)[lower] = trie.size();
+                    trie.add(newNode());
+                    trieOutputs.add(0L);
+                }
+                state = trie.get(state)[lower];
+            }
+            trieOutputs.set(state, trieOutputs.get(state) | 1L << pattern.getValue());
+        }
+        this.transitions = trie.toArray(new int[0][]);
+        this.outputs = new long[transitions.length];
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = trieOutputs.get(i);
+        }
+        // Add failure transitions breadth-first, turning the trie into a deterministic automaton
+        int[] failure = new int[transitions.length];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET_SIZE; c++) {
+            int next = transitions[0][c];
+            if (next < 0) {
+                transitions[0][c] = 0;
+            } else {
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state] |= outputs[failure[state]];
+            for (int c = 0; c < ALPHABET_SIZE; c++) {
+                int next = transitions[state][c];
+                if (next < 0) {
+                    transitions[state][c] = transitions[failure[state]][c];
+                } else {
+                    failure[next] = transitions[failure[state]][c];
+                    queue.add(next);
+                }
+            }
+        }
+    }
+    /**
+     * The getInstance method returns the classifier built from the application configuration.
+     *
+     * @return The shared classifier.
+     */
+    public static DocumentClassifier getInstance() {
+        return INSTANCE;
+    }
+    /**
+     * The fromConfig method builds a classifier from the configuration properties described in the class comment.
+     *
+     * @return A new classifier.
+     */
+    public static DocumentClassifier fromConfig() {
+        String defaultYear = getProperty("DOCUMENT_YEAR", "2024");
+        String extension = getProperty("DOCUMENT_EXTENSION", ".txt");
+        String typeNames = PropsHandler.getPropertyFromConfig("DOCUMENT_TYPES");
+        List<DocumentType> types = new ArrayList<>();
+        if (typeNames == null || typeNames.isBlank()) {
+            types.add(new DocumentType("invoice", List.of("invoice"), defaultYear, "invoices", AmountFormat.AMOUNT));
+            types.add(new DocumentType("order", List.of("order"), defaultYear, "orders", AmountFormat.ORDER_TOTAL));
+            types.add(new DocumentType("check", List.of("electric_bill"), defaultYear, "checks", AmountFormat.AMOUNT));
+        } else {
+            for (String typeName : splitList(typeNames)) {
+                String prefix = "DOCUMENT_TYPE_" + typeName.toUpperCase() + "_";
+                types.add(new DocumentType(typeName,
+                        splitList(getProperty(prefix + "KEYWORDS", typeName).toLowerCase()),
+                        getProperty(prefix + "YEAR", defaultYear),
+                        getProperty(prefix + "CATEGORY", typeName),
+                        AmountFormat.valueOf(getProperty(prefix + "PARSER", "AMOUNT").toUpperCase())));
+            }
+        }
+        return new DocumentClassifier(types, extension);
+    }
+    /**
+     * The classify method recognizes the type of a file by its name and checks whether the name is valid.
+     * A name is valid if it ends with the extension, contains a keyword of a type, and contains the year of that type.
+     *
+     * @param fileName The file name (without folders).
+     * @return The classification of the file name.
+     */
+    public Classification classify(CharSequence fileName) {
+        int state = 0;
+        long matches = 0;
+        for (int i = 0, length = fileName.length(); i < length; i++) {
+            char c = fileName.charAt(i);
+            state = c < ALPHABET_SIZE ? transitions[state][toLowerAscii(c)] : 0;
+            matches |= outputs[state];
+        }
+        for (int i = 0; i < keywordMasks.length; i++) {
+            if ((matches & keywordMasks[i]) != 0) {
+                boolean valid = (matches & yearMasks[i]) != 0 && endsWithExtension(fileName);
+                return valid ? validClassifications[i] : invalidClassifications[i];
+            }
+        }
+        return unknownClassification;
+    }
+    /**
+     * The getTypes method returns the document types in priority order.
+     *
+     * @return The document types.
+     */
+    public List<DocumentType> getTypes() {
+        return types;
+    }
+    /**
+     * The endsWithExtension method checks case-insensitively whether the file name ends with the extension.
+     *
+     * @param fileName The file name.
+     * @return true if the name ends with the extension.
+     */
+    private boolean endsWithExtension(CharSequence fileName) {
+        int offset = fileName.length() - extension.length();
+        if (offset < 0) {
+            return false;
+        }
+        for (int i = 0; i < extension.length(); i++) {
+            char c = fileName.charAt(offset + i);
+            if (Character.toLowerCase(c) != Character.toLowerCase(extension.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * The patternId method returns the number of a pattern, assigning the next free number to a new pattern.
+     *
+     * @param patterns Patterns numbered so far.
+     * @param pattern Keyword or year.
+     * @return The number of the pattern.
+     */
+    private static int patternId(Map<String, Integer> patterns, String pattern) {
+        if (pattern.isEmpty() || !pattern.chars().allMatch(c -> c < ALPHABET_SIZE)) {
+            throw new IllegalArgumentException("Classifier patterns must be non-empty ASCII: '" + pattern + "'");
+        }
+        Integer id = patterns.get(pattern);
+        if (id == null) {
+            if (patterns.size() == Long.SIZE) {
+                throw new IllegalArgumentException("Too many classifier patterns, at most " + Long.SIZE + " are supported");
+            }
+            id = patterns.size();
+            patterns.put(pattern, id);
+        }
+        return id;
+    }
+    /**
+     * The newNode method creates a trie node without transitions.
+     *
+     * @return Transition table filled with -1.
+     */
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET_SIZE];
+        Arrays.fill(node, -1);
+        return node;
+    }
+    /**
+     * The toLowerAscii method converts an ASCII letter to lowercase.
+     *
+     * @param c ASCII character.
+     * @return The lowercase character.
+     */
+    private static int toLowerAscii(char c) {
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+    /**
+     * The splitList method splits a comma-separated list and trims its elements.
+     *
+     * @param value Comma-separated list.
+     * @return The non-empty elements.
+     */
+    private static List<String> splitList(String value) {
+        List<String> elements = new ArrayList<>();
+        for (String element : value.split(",")) {
+            if (!element.isBlank()) {
+                elements.add(element.trim());
+            }
+        }
+        return elements;
+    }
+    /**
+     * The getProperty method returns a configuration property or a default value if it is not set.
+     *
+     * @param propName The name of the property.
+     * @param defaultValue Value used when the property is missing or blank.
+     * @return The value of the property or the default value.
+     */
+    private static String getProperty(String propName, String defaultValue) {
+        String value = PropsHandler.getPropertyFromConfig(propName);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+}
@@ -0,0 +1,61 @@
+package by.financialstatements.model.classifier;
+
+import java.util.List;
+/**
+ * The DocumentType class is one classification rule: the keywords that identify the document type
+ * in a file name, the year a valid file name must contain, the statistics category its amounts are added to,
+ * and the format of its total line.
+ */
+public class DocumentType {
+    private final String name;
+    private final List<String> keywords;
+    private final String year;
+    private final String category;
+    private final AmountFormat amountFormat;
+    /**
+     * DocumentType constructor.
+     *
+     * @param name Name of the type (e.g. "invoice").
+     * @param keywords Lowercase keywords, any of which identifies the type in a file name.
+     * @param year Year that a valid file name must contain.
+     * @param category Statistics category ("invoices", "orders", "checks").
+     * @param amountFormat Format of the total line.
+     */
+    public DocumentType(String name, List<String> keywords, String year, String category, AmountFormat amountFormat) {
+        this.name = name;
+        this.keywords = List.copyOf(keywords);
+        this.year = year;
+        this.category = category;
+        this.amountFormat = amountFormat;
+    }
+    /**
+     * @return Name of the type.
+     */
+    public String getName() {
+        return name;
+    }
+    /**
+     * @return Lowercase keywords that identify the type.
+     */
+    public List<String> getKeywords() {
+        return keywords;
+    }
+    /**
+     * @return Year that a valid file name must contain.
+     */
+    public String getYear() {
+        return year;
+    }
+    /**
+     * @return Statistics category of the type.
+     */
+    public String getCategory() {
+        return category;
+    }
+    /**
+     * @return Format of the total line.
+     */
+    public AmountFormat getAmountFormat() {
+        return amountFormat;
+    }
+}
@@ -0,0 +1,163 @@
+package by.financialstatements.model.dedup;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+/**
+ * The BloomFilter class is a fixed-size set of 64-bit content hashes that may report a hash it has not seen
+ * (with the configured false positive rate) but never misses one it has. Its size depends only on the expected
+ * number of entries, about 9.6 bits per entry for a 1% false positive rate.
+ * The bit positions are derived from the hash itself by double hashing, so no further hashing is needed.
+ * Bits are set atomically, so the filter can be used from several threads.
+ *
+ * File format (big-endian): magic, version, number of bits, number of hash functions, then the bits as longs.
+ */
+public class BloomFilter {
+    private static final int MAGIC = 0x46534246;
+    private static final int VERSION = 1;
+
+    private final long bitCount;
+    private final int hashCount;
+    private final AtomicLongArray words;
+    /**
+     * BloomFilter constructor. Creates an empty filter sized for the expected number of entries.
+     *
+     * @param expectedEntries Number of entries the filter should hold at the given false positive rate.
+     * @param falsePositiveRate Probability (0..1) that a hash not in the filter is reported as present.
+     */
+    public BloomFilter(long expectedEntries, double falsePositiveRate) {
+        this(optimalBitCount(expectedEntries, falsePositiveRate),
+                optimalHashCount(expectedEntries, optimalBitCount(expectedEntries, falsePositiveRate)));
+    }
+    /**
+     * BloomFilter constructor. Creates an empty filter with the given size.
+     *
+     * @param bitCount Number of bits; a multiple of 64.
+     * @param hashCount Number of bit positions per entry.
+     */
+    private BloomFilter(long bitCount, int hashCount) {
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+        this.words = new AtomicLongArray((int) (bitCount / Long.SIZE));
+    }
+    /**
+     * The add method adds a hash to the filter.
+     *
+     * @param hash Content hash.
+     */
+    public void add(long hash) {
+        long step = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((hash + i * step) >>> 1) % bitCount;
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            if ((words.get(word) & mask) == 0) {
+                words.getAndAccumulate(word, mask, (current, added) -> current | added);
+            }
+        }
+    }
+    /**
+     * The mightContain method checks whether a hash may have been added.
+     *
+     * @param hash Content hash.
+     * @return false if the hash has certainly not been added; true if it probably has.
+     */
+    public boolean mightContain(long hash) {
+        long step = Long.rotateLeft(hash, 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = ((hash + i * step) >>> 1) % bitCount;
+            if ((words.get((int) (bit >>> 6)) & 1L << bit) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * The hasSameSize method checks whether a filter was sized with the same parameters as this one.
+     *
+     * @param other The other filter.
+     * @return true if both have the same number of bits and hash functions.
+     */
+    public boolean hasSameSize(BloomFilter other) {
+        return bitCount == other.bitCount && hashCount == other.hashCount;
+    }
+    /**
+     * The load method reads a filter from a file.
+     *
+     * @param file Path to the filter file.
+     * @return The filter, or null if the file does not exist.
+     * @throws IOException If the file cannot be read or is not a Bloom filter.
+     */
+    public static BloomFilter load(Path file) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a Bloom filter: " + file);
+            }
+            BloomFilter filter = new BloomFilter(input.readLong(), input.readInt());
+            for (int i = 0; i < filter.words.length(); i++) {
+                filter.words.set(i, input.readLong());
+            }
+            return filter;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+    /**
+     * The save method writes the filter to a file, replacing the previous version atomically.
+     * Bits set while the filter is being written may or may not be included.
+     *
+     * @param file Path to the filter file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void save(Path file) throws IOException {
+        Path temporaryFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeLong(bitCount);
+            output.writeInt(hashCount);
+            for (int i = 0; i < words.length(); i++) {
+                output.writeLong(words.get(i));
+            }
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    /**
+     * The optimalBitCount method calculates the number of bits for the expected entries and false positive rate,
+     * m = -n ln p / (ln 2)^2, rounded up to whole longs.
+     *
+     * @param expectedEntries Expected number of entries.
+     * @param falsePositiveRate Wanted false positive rate.
+     * @return The number of bits.
+     * @throws IllegalArgumentException If the parameters are out of range.
+     */
+    private static long optimalBitCount(long expectedEntries, double falsePositiveRate) {
+        if (expectedEntries <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter size: " + expectedEntries
+                    + " entries, false positive rate " + falsePositiveRate);
+        }
+        double bits = -expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        long words = Math.max(1, (long) Math.ceil(bits / Long.SIZE));
+        if (words > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bloom filter too large for " + expectedEntries + " entries");
+        }
+        return words * Long.SIZE;
+    }
+    /**
+     * The optimalHashCount method calculates the number of bit positions per entry, k = m / n ln 2.
+     *
+     * @param expectedEntries Expected number of entries.
+     * @param bitCount Number of bits.
+     * @return The number of bit positions, at least 1.
+     */
+    private static int optimalHashCount(long expectedEntries, long bitCount) {
+        return Math.max(1, (int) Math.round((double) bitCount / expectedEntries * Math.log(2)));
+    }
+}
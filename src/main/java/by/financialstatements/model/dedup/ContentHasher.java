@@ -0,0 +1,146 @@
+package by.financialstatements.model.dedup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+/**
+ * The ContentHasher class fingerprints the content of a file with XXH64, a fast non-cryptographic 64-bit hash
+ * that consumes 32 bytes per step in four independent lanes. The result is the same as that of the reference
+ * XXH64 implementation with seed 0.
+ * Files of MAP_THRESHOLD bytes or more are mapped into memory region by region and hashed in place;
+ * smaller files, for which mapping costs more than it saves, are read into a reused direct buffer.
+ */
+public class ContentHasher {
+    private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME_3 = 0x165667B19E3779F9L;
+    private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE_SIZE = 32;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MAP_THRESHOLD = 1024 * 1024;
+    private static final long MAP_REGION_SIZE = 64L * 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(
+            () -> ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN));
+    /**
+     * The hash method hashes the whole content of a file, from its current size.
+     *
+     * @param channel Channel of the file, open for reading.
+     * @return The XXH64 hash of the content.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long hash(FileChannel channel) throws IOException {
+        long size = channel.size();
+        long[] lanes = {PRIME_1 + PRIME_2, PRIME_2, 0, -PRIME_1};
+        long length = 0;
+        ByteBuffer tail;
+        if (size >= MAP_THRESHOLD) {
+            while (true) {
+                long regionSize = Math.min(MAP_REGION_SIZE, size - length);
+                ByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, length, regionSize)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                length += regionSize;
+                if (length == size) {
+                    tail = region;
+                    break;
+                }
+                // Regions other than the last are a whole number of stripes
+                stripes(lanes, region, region.limit());
+            }
+        } else {
+            ByteBuffer buffer = BUFFERS.get();
+            while (true) {
+                // Reading stops at the size, so a small file takes a single read without a second one to see its end
+                buffer.clear().limit((int) Math.min(BUFFER_SIZE, Math.max(size - length, 1)));
+                boolean endOfFile = false;
+                while (buffer.hasRemaining() && !endOfFile) {
+                    endOfFile = channel.read(buffer) < 0;
+                }
+                buffer.flip();
+                length += buffer.limit();
+                if (endOfFile || length >= size) {
+                    tail = buffer;
+                    break;
+                }
+                stripes(lanes, buffer, buffer.limit());
+            }
+        }
+        return finish(lanes, tail, length);
+    }
+    /**
+     * The stripes method adds whole 32-byte stripes to the four lanes.
+     *
+     * @param lanes The lane accumulators.
+     * @param buffer Little-endian buffer with the bytes.
+     * @param end Position after the last stripe; a multiple of 32.
+     */
+    private static void stripes(long[] lanes, ByteBuffer buffer, int end) {
+        long lane1 = lanes[0];
+        long lane2 = lanes[1];
+        long lane3 = lanes[2];
+        long lane4 = lanes[3];
+        for (int i = 0; i < end; i += STRIPE_SIZE) {
+            lane1 = round(lane1, buffer.getLong(i));
+            lane2 = round(lane2, buffer.getLong(i + 8));
+            lane3 = round(lane3, buffer.getLong(i + 16));
+            lane4 = round(lane4, buffer.getLong(i + 24));
+        }
+        lanes[0] = lane1;
+        lanes[1] = lane2;
+        lanes[2] = lane3;
+        lanes[3] = lane4;
+    }
+    /**
+     * The finish method adds the last bytes, which may not fill a stripe, and mixes the result.
+     *
+     * @param lanes The lane accumulators.
+     * @param tail Little-endian buffer with the last bytes, from position 0 to its limit.
+     * @param length Total number of bytes hashed, including the tail.
+     * @return The hash.
+     */
+    private static long finish(long[] lanes, ByteBuffer tail, long length) {
+        int limit = tail.limit();
+        int position = limit & -STRIPE_SIZE;
+        stripes(lanes, tail, position);
+        long hash;
+        if (length >= STRIPE_SIZE) {
+            hash = Long.rotateLeft(lanes[0], 1) + Long.rotateLeft(lanes[1], 7)
+                    + Long.rotateLeft(lanes[2], 12) + Long.rotateLeft(lanes[3], 18);
+            for (long lane : lanes) {
+                hash = (hash ^ round(0, lane)) * PRIME_1 + PRIME_4;
+            }
+        } else {
+            hash = PRIME_5;
+        }
+        hash += length;
+        for (; position + Long.BYTES <= limit; position += Long.BYTES) {
+            hash ^= round(0, tail.getLong(position));
+            hash = Long.rotateLeft(hash, 27) * PRIME_1 + PRIME_4;
+        }
+        if (position + Integer.BYTES <= limit) {
+            hash ^= (tail.getInt(position) & 0xFFFFFFFFL) * PRIME_1;
+            hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+            position += Integer.BYTES;
+        }
+        for (; position < limit; position++) {
+            hash ^= (tail.get(position) & 0xFF) * PRIME_5;
+            hash = Long.rotateLeft(hash, 11) * PRIME_1;
+        }
+        hash ^= hash >>> 33;
+        hash *= PRIME_2;
+        hash ^= hash >>> 29;
+        hash *= PRIME_3;
+        return hash ^ hash >>> 32;
+    }
+    /**
+     * The round method mixes eight input bytes into a lane.
+     *
+     * @param lane The lane accumulator.
+     * @param input Eight bytes as a little-endian long.
+     * @return The new value of the lane.
+     */
+    private static long round(long lane, long input) {
+        return Long.rotateLeft(lane + input * PRIME_2, 31) * PRIME_1;
+    }
+}
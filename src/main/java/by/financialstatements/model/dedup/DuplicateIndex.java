@@ -0,0 +1,340 @@
+package by.financialstatements.model.dedup;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.ConfigSnapshot;
+import by.financialstatements.model.login_service.service.PropsHandler;
+import by.financialstatements.model.shard.ShardAssignment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+/**
+ * The DuplicateIndex class remembers the content of every document accepted so far, across runs, so that a document
+ * delivered again under another name (or again under the same name) can be told apart from a new one.
+ * A document is identified by the XXH64 hash of its content (see ContentHasher) and its size:
+ * - a BloomFilter held in memory answers "certainly new" for almost every new document, without reading the disk;
+ * - the exact index on disk is split by the top bits of the hash into BUCKET_COUNT append-only bucket files,
+ *   so a possible duplicate reads only one small bucket, and memory does not grow with the number of documents;
+ * - a hash match is confirmed by comparing the content with the original document, if it still exists.
+ * A document is looked up (see lookup) before it is accepted and recorded (see record) only once it has reached
+ * its final path, so a document whose move fails never enters the index.
+ * Documents accepted since the last commit are kept in memory and appended to their buckets by commit.
+ * The filter file is removed before the buckets are appended to and saved after, so after a crash it is either
+ * consistent with the buckets or missing, in which case it is rebuilt from them.
+ *
+ * Bucket file format (big-endian): magic, version, then records (content hash, size, path of the original).
+ * All methods are thread-safe.
+ */
+public class DuplicateIndex {
+    private static final int MAGIC = 0x46534458;
+    private static final int VERSION = 1;
+    private static final int BUCKET_BITS = 12;
+    private static final int BUCKET_COUNT = 1 << BUCKET_BITS;
+    private static final String FILTER_FILE = "bloom.bin";
+
+    private final Path directory;
+    private final long expectedDocuments;
+    private final double falsePositiveRate;
+    private final Object[] bucketLocks;
+    private final List<List<Entry>> pending;
+    private volatile BloomFilter filter;
+    /**
+     * DuplicateIndex constructor. The index is read from the directory before the first check.
+     *
+     * @param directory Directory of the index; it is created if it does not exist.
+     * @param expectedDocuments Number of documents the filter is sized for.
+     * @param falsePositiveRate Share (0..1) of new documents for which a bucket has to be read.
+     */
+    public DuplicateIndex(Path directory, long expectedDocuments, double falsePositiveRate) {
+        this.directory = directory;
+        this.expectedDocuments = expectedDocuments;
+        this.falsePositiveRate = falsePositiveRate;
+        this.bucketLocks = new Object[BUCKET_COUNT];
+        this.pending = new ArrayList<>(BUCKET_COUNT);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            bucketLocks[i] = new Object();
+            pending.add(new ArrayList<>());
+        }
+    }
+    /**
+     * The fromConfig method creates the index set in the configuration: DEDUP_INDEX_DIR, with the filter sized by
+     * DEDUP_EXPECTED_DOCUMENTS (1000000 by default) and DEDUP_FALSE_POSITIVE_RATE (0.01 by default).
+     * A worker of a sharded run keeps an index of its own, so duplicates are only found within a shard.
+     *
+     * @param shard Shard of a sharded run, or null.
+     * @return The index, or null if DEDUP_INDEX_DIR is not set.
+     */
+    public static DuplicateIndex fromConfig(ShardAssignment shard) {
+        ConfigSnapshot config = PropsHandler.getConfig();
+        Path directory = config.getPath("DEDUP_INDEX_DIR");
+        if (directory == null) {
+            return null;
+        }
+        if (shard != null) {
+            directory = shard.forShard(directory);
+        }
+        return new DuplicateIndex(directory, config.getLong("DEDUP_EXPECTED_DOCUMENTS", 1_000_000),
+                config.getDouble("DEDUP_FALSE_POSITIVE_RATE", 0.01));
+    }
+    /**
+     * The lookup method looks a document up in the index. The document is not added to the index: once it has
+     * reached the path where later copies will find it, it is added with record.
+     *
+     * @param file Path to the document.
+     * @return The fingerprint of the document, with the path of the original if it is a duplicate.
+     * @throws IOException If the document or the index cannot be read.
+     */
+    public Fingerprint lookup(Path file) throws IOException {
+        BloomFilter bloomFilter = filter == null ? load() : filter;
+        long hash;
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            hash = ContentHasher.hash(channel);
+        }
+        int bucket = bucketOf(hash);
+        synchronized (bucketLocks[bucket]) {
+            Path original = bloomFilter.mightContain(hash) ? findOriginal(bucket, file, hash, size) : null;
+            return new Fingerprint(hash, size, original);
+        }
+    }
+    /**
+     * The record method adds an accepted document to the index, unless a copy of it was recorded by another
+     * thread since it was looked up.
+     *
+     * @param fingerprint Fingerprint of the document, returned by lookup.
+     * @param target Path of the accepted document; later copies are compared with it.
+     * @return The path of the copy recorded in the meantime, or null if the document was added.
+     * @throws IOException If the document or the index cannot be read.
+     */
+    public Path record(Fingerprint fingerprint, Path target) throws IOException {
+        BloomFilter bloomFilter = filter == null ? load() : filter;
+        Path accepted = target.toAbsolutePath();
+        int bucket = bucketOf(fingerprint.hash);
+        synchronized (bucketLocks[bucket]) {
+            if (bloomFilter.mightContain(fingerprint.hash)) {
+                Path original = findOriginal(bucket, accepted, fingerprint.hash, fingerprint.size);
+                if (original != null && !original.equals(accepted)) {
+                    return original;
+                }
+            }
+            bloomFilter.add(fingerprint.hash);
+            pending.get(bucket).add(new Entry(fingerprint.hash, fingerprint.size, accepted));
+        }
+        return null;
+    }
+    /**
+     * The commit method appends the documents accepted since the last commit to their buckets and saves the filter.
+     *
+     * @throws IOException If the index cannot be written.
+     */
+    public void commit() throws IOException {
+        BloomFilter bloomFilter = filter;
+        if (bloomFilter == null || pending.stream().allMatch(List::isEmpty)) {
+            return;
+        }
+        Path filterFile = directory.resolve(FILTER_FILE);
+        Files.deleteIfExists(filterFile);
+        for (int bucket = 0; bucket < BUCKET_COUNT; bucket++) {
+            synchronized (bucketLocks[bucket]) {
+                List<Entry> entries = pending.get(bucket);
+                if (!entries.isEmpty()) {
+                    append(bucketFile(bucket), entries);
+                    entries.clear();
+                }
+            }
+        }
+        bloomFilter.save(filterFile);
+    }
+    /**
+     * The load method reads the filter from the index directory before the first check, or rebuilds it from
+     * the buckets if it is missing or was sized with other settings.
+     *
+     * @return The filter.
+     * @throws IOException If the index cannot be read.
+     */
+    private synchronized BloomFilter load() throws IOException {
+        if (filter != null) {
+            return filter;
+        }
+        Files.createDirectories(directory);
+        BloomFilter bloomFilter = new BloomFilter(expectedDocuments, falsePositiveRate);
+        BloomFilter saved = BloomFilter.load(directory.resolve(FILTER_FILE));
+        if (saved != null && saved.hasSameSize(bloomFilter)) {
+            bloomFilter = saved;
+        } else {
+            long start = System.nanoTime();
+            long documents = 0;
+            try (DirectoryStream<Path> bucketFiles = Files.newDirectoryStream(directory, "bucket-*.idx")) {
+                for (Path bucketFile : bucketFiles) {
+                    for (Entry entry : readBucket(bucketFile)) {
+                        bloomFilter.add(entry.hash);
+                        documents++;
+                    }
+                }
+            }
+            CustomLogger.info(String.format("Duplicate index filter rebuilt from %d documents in %d ms",
+                    documents, (System.nanoTime() - start) / 1_000_000));
+        }
+        filter = bloomFilter;
+        return bloomFilter;
+    }
+    /**
+     * The findOriginal method looks for an earlier document with the same content among the documents accepted
+     * since the last commit and in the bucket file. The caller holds the lock of the bucket.
+     *
+     * @param bucket Number of the bucket.
+     * @param file Path to the document.
+     * @param hash Content hash of the document.
+     * @param size Size of the document.
+     * @return The path of the original, or null if there is none.
+     * @throws IOException If the bucket or a document cannot be read.
+     */
+    private Path findOriginal(int bucket, Path file, long hash, long size) throws IOException {
+        for (Entry entry : pending.get(bucket)) {
+            if (entry.hash == hash && entry.size == size && isSameContent(file, entry.original)) {
+                return entry.original;
+            }
+        }
+        for (Entry entry : readBucket(bucketFile(bucket))) {
+            if (entry.hash == hash && entry.size == size && isSameContent(file, entry.original)) {
+                return entry.original;
+            }
+        }
+        return null;
+    }
+    /**
+     * The readBucket method reads the records of a bucket file. A record cut short by a crash is ignored.
+     *
+     * @param bucketFile Path to the bucket file.
+     * @return The records, or an empty list if the bucket file does not exist.
+     * @throws IOException If the file cannot be read or is not a bucket file.
+     */
+    private static List<Entry> readBucket(Path bucketFile) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(bucketFile)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a duplicate index bucket: " + bucketFile);
+            }
+            while (true) {
+                entries.add(new Entry(input.readLong(), input.readLong(), Paths.get(input.readUTF())));
+            }
+        } catch (NoSuchFileException | EOFException e) {
+            return entries;
+        }
+    }
+    /**
+     * The append method appends records to a bucket file, creating it if it does not exist.
+     *
+     * @param bucketFile Path to the bucket file.
+     * @param entries The records.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void append(Path bucketFile, List<Entry> entries) throws IOException {
+        boolean created = Files.notExists(bucketFile);
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(bucketFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)))) {
+            if (created) {
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+            }
+            for (Entry entry : entries) {
+                output.writeLong(entry.hash);
+                output.writeLong(entry.size);
+                output.writeUTF(entry.original.toString());
+            }
+        }
+    }
+    /**
+     * The isSameContent method confirms a hash match by comparing the document with the original.
+     * An original that no longer exists cannot be compared, and the hash and size match is taken as final.
+     *
+     * @param file Path to the document.
+     * @param original Path to the original document.
+     * @return true if the document is a copy of the original.
+     * @throws IOException If the files cannot be read.
+     */
+    private static boolean isSameContent(Path file, Path original) throws IOException {
+        try {
+            return Files.mismatch(file, original) == -1;
+        } catch (NoSuchFileException e) {
+            return Files.exists(file);
+        }
+    }
+    /**
+     * The bucketOf method returns the bucket of a content hash, taken from its top bits.
+     *
+     * @param hash Content hash of a document.
+     * @return Number of the bucket.
+     */
+    private static int bucketOf(long hash) {
+        return (int) (hash >>> (Long.SIZE - BUCKET_BITS));
+    }
+    /**
+     * The bucketFile method returns the path of a bucket file.
+     *
+     * @param bucket Number of the bucket.
+     * @return Path of the bucket file in the index directory.
+     */
+    private Path bucketFile(int bucket) {
+        return directory.resolve(String.format("bucket-%03x.idx", bucket));
+    }
+    /**
+     * The content hash and size of a document looked up in the index, and the original it is a copy of, if any.
+     */
+    public static class Fingerprint {
+        private final long hash;
+        private final long size;
+        private final Path original;
+        /**
+         * Fingerprint constructor.
+         *
+         * @param hash Content hash of the document.
+         * @param size Size of the document.
+         * @param original Path of the original, or null if the document is new.
+         */
+        private Fingerprint(long hash, long size, Path original) {
+            this.hash = hash;
+            this.size = size;
+            this.original = original;
+        }
+        /**
+         * @return Path of the earlier document with the same content, or null if the document is new.
+         */
+        public Path getOriginal() {
+            return original;
+        }
+    }
+    /**
+     * A document in the index.
+     */
+    private static class Entry {
+        private final long hash;
+        private final long size;
+        private final Path original;
+        /**
+         * Entry constructor.
+         *
+         * @param hash Content hash of the document.
+         * @param size Size of the document.
+         * @param original Path of the document when it was accepted.
+         */
+        private Entry(long hash, long size, Path original) {
+            this.hash = hash;
+            this.size = size;
+            this.original = original;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package by.financialstatements.model.exception;
+//custom exception for handling partial statistics that do not make up a whole sharded run
+public class ShardMergeException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public ShardMergeException(String message) {
+        super(message);
+    }
+}
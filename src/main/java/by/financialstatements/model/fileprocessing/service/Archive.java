@@ -0,0 +1,202 @@
+package by.financialstatements.model.fileprocessing.service;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+/**
+ * The Archive class gives access to the documents packed in a zip or gzip file without extracting it:
+ * every entry is opened as a stream decompressed on the fly.
+ * - A zip file is read through its central directory, so its entries can be opened and decompressed
+ *   by several threads at the same time. Folder entries are left out.
+ * - A gzip file holds a single document, named like the archive without ".gz".
+ * The archive stays open until every entry has been released (see release), so the entries can be handed
+ * to other threads.
+ */
+public class Archive implements Closeable {
+    /**
+     * What kind of archive a file is, decided by its extension.
+     */
+    public enum Format {
+        /**
+         * A zip file with any number of documents.
+         */
+        ZIP(".zip"),
+        /**
+         * A gzip file with one document.
+         */
+        GZIP(".gz");
+
+        private final String extension;
+        /**
+         * Format constructor.
+         *
+         * @param extension Extension of the archive files, in lower case.
+         */
+        Format(String extension) {
+            this.extension = extension;
+        }
+        /**
+         * The of method finds the format of a file from its name.
+         *
+         * @param fileName Name of the file.
+         * @return The format, or null if the file is not an archive.
+         */
+        public static Format of(String fileName) {
+            String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+            for (Format format : values()) {
+                if (lowerCaseName.endsWith(format.extension) && lowerCaseName.length() > format.extension.length()) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path path;
+    private final Format format;
+    private final ZipFile zipFile;
+    private final List<Entry> entries;
+    private final AtomicInteger unreleased;
+    private final AtomicInteger validEntries = new AtomicInteger();
+    private final AtomicInteger invalidEntries = new AtomicInteger();
+    /**
+     * Archive constructor. Opens the archive and reads its list of entries.
+     *
+     * @param path Path to the archive.
+     * @param format Format of the archive.
+     * @throws IOException If the archive cannot be opened or is damaged.
+     */
+    public Archive(Path path, Format format) throws IOException {
+        this.path = path;
+        this.format = format;
+        if (format == Format.ZIP) {
+            this.zipFile = new ZipFile(path.toFile());
+            this.entries = zipFile.stream().filter(entry -> !entry.isDirectory()).map(Entry::new).toList();
+        } else {
+            this.zipFile = null;
+            String fileName = path.getFileName().toString();
+            this.entries = List.of(new Entry(fileName.substring(0, fileName.length() - format.extension.length())));
+        }
+        // One more for the thread that hands the entries out
+        this.unreleased = new AtomicInteger(entries.size() + 1);
+    }
+    /**
+     * @return Path to the archive.
+     */
+    public Path getPath() {
+        return path;
+    }
+    /**
+     * @return The documents in the archive, in the order in which they are stored.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+    /**
+     * The release method tells the archive that an entry, or the thread that hands the entries out, is done with it.
+     *
+     * @return true for the last release, after which the archive can be closed.
+     */
+    public boolean release() {
+        return unreleased.decrementAndGet() == 0;
+    }
+    /**
+     * The recordEntry method counts an entry routed to the valid or invalid folder.
+     *
+     * @param valid true if the entry was valid.
+     */
+    public void recordEntry(boolean valid) {
+        (valid ? validEntries : invalidEntries).incrementAndGet();
+    }
+    /**
+     * @return Number of entries routed to the valid folder.
+     */
+    public int getValidEntries() {
+        return validEntries.get();
+    }
+    /**
+     * @return Number of entries routed to the invalid folder.
+     */
+    public int getInvalidEntries() {
+        return invalidEntries.get();
+    }
+    /**
+     * The close method closes the archive. Entry streams still open can no longer be read.
+     *
+     * @throws IOException If the archive cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (zipFile != null) {
+            zipFile.close();
+        }
+    }
+    /**
+     * A document in an archive.
+     */
+    public class Entry {
+        private final ZipEntry zipEntry;
+        private final String name;
+        /**
+         * Entry constructor for a zip entry.
+         *
+         * @param zipEntry The zip entry.
+         */
+        private Entry(ZipEntry zipEntry) {
+            this.zipEntry = zipEntry;
+            this.name = zipEntry.getName();
+        }
+        /**
+         * Entry constructor for the document of a gzip file.
+         *
+         * @param name Name of the document.
+         */
+        private Entry(String name) {
+            this.zipEntry = null;
+            this.name = name;
+        }
+        /**
+         * @return The archive the entry belongs to.
+         */
+        public Archive getArchive() {
+            return Archive.this;
+        }
+        /**
+         * @return Name of the entry in the archive, which may include folders.
+         */
+        public String getName() {
+            return name;
+        }
+        /**
+         * The getFileName method returns the name of the document without the folders it is stored in.
+         *
+         * @return The part of the name after the last '/' or '\'.
+         */
+        public String getFileName() {
+            return name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        }
+        /**
+         * The open method opens the document as a stream decompressed while it is read.
+         *
+         * @return The content of the document.
+         * @throws IOException If the archive cannot be read.
+         */
+        public InputStream open() throws IOException {
+            if (format == Format.ZIP) {
+                return zipFile.getInputStream(zipEntry);
+            }
+            return new GZIPInputStream(new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE), BUFFER_SIZE);
+        }
+    }
+}
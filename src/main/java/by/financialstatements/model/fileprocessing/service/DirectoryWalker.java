@@ -0,0 +1,352 @@
+package by.financialstatements.model.fileprocessing.service;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.ConfigSnapshot;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SecureDirectoryStream;
+import java.nio.file.attribute.BasicFileAttributeView;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+/**
+ * The DirectoryWalker class lists the files of a folder tree with several threads, for data folders that are
+ * too deep or too wide to be walked quickly by one thread (network mounts, millions of entries):
+ * - every folder is listed by a task of its own in a ForkJoinPool, so subfolders are listed in parallel
+ *   and idle threads take over the folders found by busy ones;
+ * - a folder is read with a DirectoryStream, and entries excluded by name are dropped before their attributes
+ *   are read; the attributes of the other entries are read relative to the open folder where the file system
+ *   allows it (SecureDirectoryStream), so the full path is not resolved again for every entry;
+ * - files are handed to the visitor as soon as they are found, while the rest of the tree is still being listed.
+ * The walk can be limited in depth and in number of files, and restricted by include and exclude globs.
+ * Symbolic links are not followed, and entries removed while the tree is walked are skipped.
+ * Files are found in no particular order.
+ */
+public class DirectoryWalker {
+    private final int threads;
+    private final int maxDepth;
+    private final long maxFiles;
+    private final List<PathMatcher> includes;
+    private final List<PathMatcher> excludes;
+    /**
+     * DirectoryWalker constructor.
+     * A glob without '/' is matched against the name of an entry, otherwise against its path relative to the root,
+     * with '/' between folders (for example "*.txt" or "2024/**").
+     *
+     * @param threads Number of threads that list folders.
+     * @param maxDepth Number of folder levels to walk; 1 for the files of the root folder only.
+     * @param maxFiles Maximum number of files handed to the visitor in one walk; 0 or less for no limit.
+     * @param includes Globs of the files to walk; if empty, every file is walked.
+     * @param excludes Globs of the files and folders to leave out; a folder left out is not listed.
+     */
+    public DirectoryWalker(int threads, int maxDepth, long maxFiles, List<String> includes, List<String> excludes) {
+        this.threads = Math.max(1, threads);
+        this.maxDepth = Math.max(1, maxDepth);
+        this.maxFiles = maxFiles;
+        this.includes = includes.stream().map(DirectoryWalker::matcher).toList();
+        this.excludes = excludes.stream().map(DirectoryWalker::matcher).toList();
+    }
+    /**
+     * The fromConfig method creates the walker set in the configuration: WALK_THREADS (the number of processors
+     * by default), WALK_MAX_DEPTH (no limit by default), WALK_MAX_FILES (no limit by default), and the
+     * comma-separated globs WALK_INCLUDE and WALK_EXCLUDE (none by default).
+     *
+     * @param config Configuration of the run.
+     * @return The walker.
+     */
+    public static DirectoryWalker fromConfig(ConfigSnapshot config) {
+        return new DirectoryWalker(config.getInt("WALK_THREADS", Runtime.getRuntime().availableProcessors()),
+                config.getInt("WALK_MAX_DEPTH", Integer.MAX_VALUE), config.getLong("WALK_MAX_FILES", 0),
+                splitList(config.getString("WALK_INCLUDE", "")), splitList(config.getString("WALK_EXCLUDE", "")));
+    }
+    /**
+     * The walk method walks a folder tree and hands every file found to the visitor.
+     * The visitor is called by several threads at the same time and may wait, for example for space in the queue
+     * of a pipeline stage, which holds back the listing of further folders.
+     *
+     * @param root Path to the root folder. If it is a file, it is handed to the visitor on its own, provided
+     * it passes the same globs (matched against its name) and file name test as the files of a folder.
+     * @param fileNameFilter Test of the file names to walk, checked after the globs; other files are left out.
+     * @param visitor Action performed on every file.
+     * @return Number of files handed to the visitor.
+     * @throws IOException If the root or a folder cannot be read.
+     * @throws InterruptedException If the thread is interrupted, or the visitor was interrupted while waiting.
+     */
+    public long walk(Path root, Predicate<String> fileNameFilter, Visitor visitor) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        BasicFileAttributes rootAttributes = Files.readAttributes(root, BasicFileAttributes.class);
+        if (!rootAttributes.isDirectory()) {
+            Path name = root.getFileName();
+            if (name == null || matches(excludes, name) || !isIncluded(name, fileNameFilter)) {
+                CustomLogger.info("Walked " + root + ": the file is left out by the walk filters");
+                return 0;
+            }
+            return visitor.visitFile(root, rootAttributes) ? 1 : 0;
+        }
+        Walk walk = new Walk(root, fileNameFilter, visitor);
+        ForkJoinPool pool = new ForkJoinPool(threads, forkJoinPool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("walk-" + (thread.getPoolIndex() + 1));
+            return thread;
+        }, null, false);
+        try {
+            ForkJoinTask<Void> task = pool.submit(new ListFolder(walk, root, 1));
+            task.get();
+        } catch (InterruptedException e) {
+            walk.stopped = true;
+            throw e;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException
+                    : new IllegalStateException(e.getCause());
+        } finally {
+            // Also wakes up the threads still waiting in the visitor
+            pool.shutdownNow();
+        }
+        if (walk.failure.get() != null) {
+            throw walk.failure.get();
+        }
+        if (walk.interrupted) {
+            throw new InterruptedException("Interrupted while walking " + root);
+        }
+        CustomLogger.info(String.format("Walked %s: %d folders, %d files, %d entries left out, %d removed while walking, in %d ms%s",
+                root, walk.folders.get(), walk.files.get(), walk.leftOut.get(), walk.removed.get(),
+                (System.nanoTime() - start) / 1_000_000,
+                walk.limitReached ? ", stopped at the limit of " + maxFiles + " files" : ""));
+        return walk.files.get();
+    }
+    /**
+     * The readAttributes method reads the attributes of a folder entry without following symbolic links,
+     * relative to the open folder if the stream allows it.
+     *
+     * @param entries Stream of the folder.
+     * @param entry Path to the entry.
+     * @return The attributes.
+     * @throws IOException If the attributes cannot be read.
+     */
+    private static BasicFileAttributes readAttributes(DirectoryStream<Path> entries, Path entry) throws IOException {
+        if (entries instanceof SecureDirectoryStream<Path> folder) {
+            return folder.getFileAttributeView(entry.getFileName(), BasicFileAttributeView.class,
+                    LinkOption.NOFOLLOW_LINKS).readAttributes();
+        }
+        return Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    }
+    /**
+     * The isIncluded method checks whether a file that is not excluded is walked: it must match an include glob,
+     * if there are any, and pass the file name test.
+     *
+     * @param relativePath Path of the file relative to the root.
+     * @param fileNameFilter Test of the file names to walk.
+     * @return true if the file is handed to the visitor.
+     */
+    private boolean isIncluded(Path relativePath, Predicate<String> fileNameFilter) {
+        return (includes.isEmpty() || matches(includes, relativePath))
+                && fileNameFilter.test(relativePath.getFileName().toString());
+    }
+    /**
+     * The matches method checks an entry against a list of globs.
+     *
+     * @param matchers The globs.
+     * @param relativePath Path of the entry relative to the root.
+     * @return true if any glob matches.
+     */
+    private static boolean matches(List<PathMatcher> matchers, Path relativePath) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relativePath)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * The matcher method compiles a glob. A glob without '/' is matched against the last part of a path only.
+     *
+     * @param glob The glob.
+     * @return The matcher.
+     * @throws IllegalArgumentException If the glob is not valid.
+     */
+    private static PathMatcher matcher(String glob) {
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + glob);
+        if (glob.indexOf('/') >= 0) {
+            return matcher;
+        }
+        return path -> path.getFileName() != null && matcher.matches(path.getFileName());
+    }
+    /**
+     * The splitList method splits a comma-separated list and trims its elements.
+     *
+     * @param value Comma-separated list.
+     * @return The non-empty elements.
+     */
+    private static List<String> splitList(String value) {
+        List<String> elements = new ArrayList<>();
+        for (String element : value.split(",")) {
+            if (!element.isBlank()) {
+                elements.add(element.trim());
+            }
+        }
+        return elements;
+    }
+    /**
+     * The state of one walk, shared by its tasks.
+     */
+    private class Walk {
+        private final Path root;
+        private final Predicate<String> fileNameFilter;
+        private final Visitor visitor;
+        private final AtomicLong folders = new AtomicLong();
+        private final AtomicLong files = new AtomicLong();
+        private final AtomicLong leftOut = new AtomicLong();
+        private final AtomicLong removed = new AtomicLong();
+        private final AtomicReference<IOException> failure = new AtomicReference<>();
+        private volatile boolean stopped;
+        private volatile boolean limitReached;
+        private volatile boolean interrupted;
+        /**
+         * Walk constructor.
+         *
+         * @param root Path to the root folder.
+         * @param fileNameFilter Test of the file names to walk.
+         * @param visitor Action performed on every file.
+         */
+        private Walk(Path root, Predicate<String> fileNameFilter, Visitor visitor) {
+            this.root = root;
+            this.fileNameFilter = fileNameFilter;
+            this.visitor = visitor;
+        }
+        /**
+         * The visit method hands a file to the visitor unless the limit of files has been reached.
+         *
+         * @param file Path to the file.
+         * @param attributes Attributes of the file.
+         * @throws InterruptedException If the visitor was interrupted while waiting.
+         */
+        private void visit(Path file, BasicFileAttributes attributes) throws InterruptedException {
+            if (maxFiles > 0 && files.incrementAndGet() > maxFiles) {
+                files.decrementAndGet();
+                limitReached = true;
+                stopped = true;
+                return;
+            }
+            if (maxFiles <= 0) {
+                files.incrementAndGet();
+            }
+            if (!visitor.visitFile(file, attributes)) {
+                stopped = true;
+            }
+        }
+        /**
+         * The fail method stops the walk after an error; the first error is rethrown by walk.
+         *
+         * @param e The error.
+         */
+        private void fail(IOException e) {
+            failure.compareAndSet(null, e);
+            stopped = true;
+        }
+    }
+    /**
+     * The task that lists one folder. It forks a task for every subfolder and waits for them after
+     * closing its own folder, so each thread keeps at most one folder open at a time.
+     * RecursiveAction is Serializable, but a task of a walk is never serialized.
+     */
+    @SuppressWarnings("serial")
+    private class ListFolder extends RecursiveAction {
+        private final Walk walk;
+        private final Path folder;
+        private final int depth;
+        /**
+         * ListFolder constructor.
+         *
+         * @param walk The walk the folder belongs to.
+         * @param folder Path to the folder.
+         * @param depth Level of the entries of the folder, 1 for the entries of the root.
+         */
+        private ListFolder(Walk walk, Path folder, int depth) {
+            this.walk = walk;
+            this.folder = folder;
+            this.depth = depth;
+        }
+        /**
+         * The compute method lists the folder, hands its files to the visitor and forks its subfolders.
+         */
+        @Override
+        protected void compute() {
+            if (walk.stopped) {
+                return;
+            }
+            walk.folders.incrementAndGet();
+            List<ListFolder> subfolders = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+                for (Path entry : entries) {
+                    if (walk.stopped) {
+                        break;
+                    }
+                    Path relativePath = walk.root.relativize(entry);
+                    if (matches(excludes, relativePath)) {
+                        walk.leftOut.incrementAndGet();
+                        continue;
+                    }
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = readAttributes(entries, entry);
+                    } catch (NoSuchFileException e) {
+                        walk.removed.incrementAndGet();
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        if (depth < maxDepth) {
+                            ListFolder subfolder = new ListFolder(walk, entry, depth + 1);
+                            subfolder.fork();
+                            subfolders.add(subfolder);
+                        }
+                    } else if (isIncluded(relativePath, walk.fileNameFilter)) {
+                        walk.visit(entry, attributes);
+                    } else {
+                        walk.leftOut.incrementAndGet();
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                walk.removed.incrementAndGet();
+            } catch (IOException e) {
+                walk.fail(e);
+            } catch (InterruptedException e) {
+                walk.interrupted = true;
+                walk.stopped = true;
+                Thread.currentThread().interrupt();
+            }
+            for (ListFolder subfolder : subfolders) {
+                subfolder.join();
+            }
+        }
+    }
+    /**
+     * Action performed by a walk on every file.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * The visitFile method handles one file.
+         *
+         * @param file Path to the file.
+         * @param attributes Attributes of the file, read without following symbolic links.
+         * @return true to go on walking, false to stop the walk.
+         * @throws InterruptedException If the thread is interrupted while waiting.
+         */
+        boolean visitFile(Path file, BasicFileAttributes attributes) throws InterruptedException;
+    }
+}
@@ -0,0 +1,246 @@
+package by.financialstatements.model.fileprocessing.service;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.PropsHandler;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+/**
+ * The FileMover class moves documents between the data, valid and invalid folders so that a crash never leaves
+ * a file half-moved or unaccounted for:
+ * - A move is an atomic rename. If the target is on another file system, the file is copied next to the target,
+ *   forced to disk, renamed into place, and only then deleted from the source.
+ * - If MOVE_JOURNAL_FILE is set, every move is recorded in a MoveJournal before it happens.
+ *   Journal writes are grouped (see MoveJournal), so the journal adds one write call per move
+ *   and one forced write per MOVE_JOURNAL_SYNC_BATCH moves (256 by default).
+ * - commit makes the moves done so far final. If a run stops before committing, the next run calls recover, which
+ *   either finishes the interrupted moves (RESUME) or moves every file of the interrupted run back to where
+ *   it was (ROLLBACK, the default), depending on MOVE_JOURNAL_RECOVERY.
+ * - A file that a journaled move replaces at the target is first moved, as a journaled move of its own, to a backup
+ *   folder next to the journal (the journal file name with ".replaced"). A rollback moves it back, commit deletes it.
+ * All methods are thread-safe.
+ */
+public class FileMover {
+    /**
+     * What recover does with the moves of a run that stopped before committing.
+     */
+    public enum RecoveryMode {
+        /**
+         * Finish the interrupted moves and keep the finished ones.
+         */
+        RESUME,
+        /**
+         * Move every file of the run back to its source, so the run can be repeated from the start.
+         */
+        ROLLBACK
+    }
+
+    private static final String COPY_SUFFIX = ".moving";
+    private static final String BACKUP_SUFFIX = ".replaced";
+
+    private final Path journalFile;
+    private final RecoveryMode recoveryMode;
+    private final MoveJournal journal;
+    private final Path backupDirectory;
+    private final List<Path> backups = new ArrayList<>();
+    private final AtomicLong nextBackup = new AtomicLong();
+    private boolean recovered;
+    /**
+     * FileMover constructor. The journal settings are taken from the configuration
+     * (MOVE_JOURNAL_FILE, MOVE_JOURNAL_RECOVERY and MOVE_JOURNAL_SYNC_BATCH); without MOVE_JOURNAL_FILE
+     * moves are not journaled. The sync batch is read from the current configuration on every move,
+     * so it can be tuned while the application is running.
+     */
+    public FileMover() {
+        this(PropsHandler.getConfig().getPath("MOVE_JOURNAL_FILE"),
+                PropsHandler.getConfig().getEnum("MOVE_JOURNAL_RECOVERY", RecoveryMode.ROLLBACK),
+                () -> PropsHandler.getConfig().getInt("MOVE_JOURNAL_SYNC_BATCH", 256));
+    }
+    /**
+     * FileMover constructor with explicit journal settings.
+     *
+     * @param journalFile Path to the journal file, or null to move files without a journal.
+     * @param recoveryMode What recover does with the moves of an interrupted run.
+     * @param syncBatch Number of moves after which the journal is forced to disk.
+     */
+    public FileMover(Path journalFile, RecoveryMode recoveryMode, int syncBatch) {
+        this(journalFile, recoveryMode, () -> syncBatch);
+    }
+    /**
+     * FileMover constructor with a sync batch that may change while the mover is used.
+     *
+     * @param journalFile Path to the journal file, or null to move files without a journal.
+     * @param recoveryMode What recover does with the moves of an interrupted run.
+     * @param syncBatch Supplier of the number of moves after which the journal is forced to disk.
+     */
+    public FileMover(Path journalFile, RecoveryMode recoveryMode, IntSupplier syncBatch) {
+        this.journalFile = journalFile;
+        this.recoveryMode = recoveryMode;
+        this.journal = journalFile == null ? null : new MoveJournal(journalFile, syncBatch);
+        this.backupDirectory = journalFile == null ? null : journalFile.resolveSibling(journalFile.getFileName() + BACKUP_SUFFIX);
+    }
+    /**
+     * The recover method deals with the journal left by a run that stopped before committing, as set by
+     * the recovery mode, and removes it together with the backups that are no longer needed. It is called automatically before the first move,
+     * but should be called before the data folder is read, because a rollback moves files back into it.
+     *
+     * @throws IOException If the journal cannot be read or a file cannot be moved.
+     */
+    public synchronized void recover() throws IOException {
+        if (recovered) {
+            return;
+        }
+        if (journal != null && Files.exists(journalFile)) {
+            List<MoveJournal.Entry> entries = MoveJournal.read(journalFile);
+            CustomLogger.warning("Found the move journal of an interrupted run with " + entries.size()
+                    + " moves, recovering with " + recoveryMode);
+            if (recoveryMode == RecoveryMode.ROLLBACK) {
+                for (int i = entries.size() - 1; i >= 0; i--) {
+                    rollBack(entries.get(i));
+                }
+            } else {
+                for (MoveJournal.Entry entry : entries) {
+                    resume(entry);
+                }
+            }
+            Files.delete(journalFile);
+            CustomLogger.info("Move journal recovery finished");
+        }
+        if (backupDirectory != null && Files.isDirectory(backupDirectory)) {
+            // Backups left here were restored by the rollback or belong to committed moves
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(backupDirectory)) {
+                for (Path file : files) {
+                    Files.delete(file);
+                }
+            }
+        }
+        recovered = true;
+    }
+    /**
+     * The move method moves a file, replacing an existing file at the target.
+     * With a journal, the existing file is moved to the backup folder first, so a rollback can restore it.
+     *
+     * @param source Current path of the file.
+     * @param target Path to move the file to.
+     * @throws IOException If the file cannot be moved or the journal cannot be written.
+     */
+    public void move(Path source, Path target) throws IOException {
+        if (journal == null) {
+            transfer(source, target);
+            return;
+        }
+        if (!recovered) {
+            recover();
+        }
+        Path backup = null;
+        if (Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+            Files.createDirectories(backupDirectory);
+            backup = backupDirectory.resolve(nextBackup.getAndIncrement() + "-" + target.getFileName());
+            long backupId = journal.begin(target, backup);
+            transfer(target, backup);
+            journal.complete(backupId);
+        }
+        long id = journal.begin(source, target);
+        transfer(source, target);
+        journal.complete(id);
+        if (backup != null) {
+            synchronized (backups) {
+                backups.add(backup);
+            }
+        }
+    }
+    /**
+     * The commit method makes the moves done so far final, so they are not touched by a later recovery,
+     * and deletes the backups of the files they replaced.
+     *
+     * @throws IOException If the journal cannot be written or a backup cannot be deleted.
+     */
+    public void commit() throws IOException {
+        if (journal != null) {
+            journal.commit();
+            List<Path> replaced;
+            synchronized (backups) {
+                replaced = new ArrayList<>(backups);
+                backups.clear();
+            }
+            for (Path backup : replaced) {
+                Files.deleteIfExists(backup);
+            }
+        }
+    }
+    /**
+     * The transfer method moves a file with an atomic rename, or with a copy when the rename is not possible
+     * because the target is on another file system.
+     *
+     * @param source Current path of the file.
+     * @param target Path to move the file to.
+     * @throws IOException If the file cannot be moved.
+     */
+    private static void transfer(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // The copy is renamed into place only once it is complete, so the target is never partial
+            Path copy = copyPath(target);
+            Files.copy(source, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            try (FileChannel channel = FileChannel.open(copy, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(copy, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(source);
+        }
+    }
+    /**
+     * The rollBack method moves a file of an interrupted run back to its source.
+     *
+     * @param entry The journaled move.
+     * @throws IOException If the file cannot be moved.
+     */
+    private static void rollBack(MoveJournal.Entry entry) throws IOException {
+        Files.deleteIfExists(copyPath(entry.getTarget()));
+        if (Files.exists(entry.getSource())) {
+            // Either the move did not happen, or a cross-device copy was not finished: the source is authoritative.
+            // The target is left alone, since it may be a document committed earlier under the same name;
+            // a copy renamed into place before the crash is the same document and is replaced when it is moved again
+            return;
+        }
+        if (Files.exists(entry.getTarget())) {
+            transfer(entry.getTarget(), entry.getSource());
+            CustomLogger.info("Rolled back the move of " + entry.getSource().getFileName());
+        }
+    }
+    /**
+     * The resume method finishes a move of an interrupted run.
+     *
+     * @param entry The journaled move.
+     * @throws IOException If the file cannot be moved.
+     */
+    private static void resume(MoveJournal.Entry entry) throws IOException {
+        Files.deleteIfExists(copyPath(entry.getTarget()));
+        if (Files.exists(entry.getSource())) {
+            transfer(entry.getSource(), entry.getTarget());
+            CustomLogger.info("Finished the move of " + entry.getSource().getFileName());
+        }
+    }
+    /**
+     * The copyPath method returns the path of the temporary copy used when moving across file systems.
+     *
+     * @param target Path the file is moved to.
+     * @return Path of the copy next to the target.
+     */
+    private static Path copyPath(Path target) {
+        return target.resolveSibling(target.getFileName() + COPY_SUFFIX);
+    }
+}
@@ -1,18 +1,40 @@
 package by.financialstatements.model.fileprocessing.service;
 
+import by.financialstatements.model.checkpoint.IncrementalStatistics;
+import by.financialstatements.model.classifier.Classification;
+import by.financialstatements.model.classifier.DocumentClassifier;
+import by.financialstatements.model.classifier.DocumentType;
+import by.financialstatements.model.dedup.DuplicateIndex;
 import by.financialstatements.model.exception.FileMovementException;
 import by.financialstatements.model.log.CustomLogger;
 import by.financialstatements.model.login_service.service.AWS;
+import by.financialstatements.model.login_service.service.ConfigSnapshot;
 import by.financialstatements.model.login_service.service.PropsHandler;
 import by.financialstatements.model.login_service.session.ApplicationSession;
+import by.financialstatements.model.metrics.PipelineMetrics;
+import by.financialstatements.model.metrics.Stage;
+import by.financialstatements.model.shard.PartialStatistics;
+import by.financialstatements.model.shard.ShardAssignment;
+import by.financialstatements.model.statistics.CategoryTotals;
+import by.financialstatements.model.statistics.DocumentStreamReader;
+import by.financialstatements.model.statistics.ParsedDocument;
 import by.financialstatements.model.statistics.StatisticsCalculator;
 import by.financialstatements.model.statistics.StatisticsWriter;
+import by.financialstatements.model.statistics.breakdown.BreakdownWriter;
+import by.financialstatements.model.statistics.columnar.ColumnarStatisticsWriter;
+import by.financialstatements.model.statistics.lineitem.LineItemReport;
+import by.financialstatements.model.statistics.lineitem.LineItemReportWriter;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.CharacterCodingException;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 /**
  * The FileProcessor class is responsible for processing files from the specified path, validating them, moving them,
  * statistical processing and transferring data to cloud services.
@@ -20,72 +42,124 @@ import java.util.List;
  * file validation system, and data transfer to the cloud system (AWS).
  */
 public class FileProcessor {
-    private static final String VALID_PATH = PropsHandler.getPropertyFromConfig("VALID_PATH");
-    private static final String INVALID_PATH = PropsHandler.getPropertyFromConfig("INVALID_PATH");
+    private static final PipelineMetrics METRICS = PipelineMetrics.getInstance();
 
     private final String dataPath;
     private final StatisticsCalculator statisticsCalculator;
     private final StatisticsWriter statisticsWriter;
+    private final BreakdownWriter breakdownWriter;
+    private final ColumnarStatisticsWriter columnarStatisticsWriter;
+    private final LineItemReportWriter lineItemReportWriter;
     private final FileValidator fileValidator;
+    private final FileMover fileMover;
+    private final DuplicateIndex duplicateIndex;
+    private final int workerThreads;
+    private final ShardAssignment shard;
+    private final IncrementalStatistics incrementalStatistics;
     /**
      * Class constructor. Initializes the path to the data, objects for working with statistics and validation.
+     * The number of workers is taken from the WORKER_THREADS configuration property (1 if it is not set).
+     * The pipeline can be tuned per stage with PIPELINE_VALIDATE_THREADS and PIPELINE_PARSE_THREADS
+     * (the number of workers by default), PIPELINE_AGGREGATE_THREADS (1 by default) and
+     * PIPELINE_QUEUE_CAPACITY, the number of files a stage may hold waiting (256 by default).
+     * These settings and the directories (VALID_PATH, INVALID_PATH, DUPLICATE_PATH, ARCHIVE_PATH) are read
+     * from the current configuration once at the start of every run and used for all its files, so they can be
+     * changed while the application is running (see PropsHandler).
+     * If CHECKPOINT_INDEX_FILE is set, statistics are kept incrementally for the whole valid folder
+     * (see IncrementalStatistics) instead of being calculated for the files of the current run only.
+     * If DEDUP_INDEX_DIR is set, a valid file whose content was already accepted, under any name, is moved to
+     * DUPLICATE_PATH instead of the valid directory and is not counted again (see DuplicateIndex).
+     * Unless ARCHIVE_INPUT_ENABLED is false, zip and gzip files are read without being extracted first:
+     * every entry is routed to the valid or invalid directory like a file would be (see expandArchive).
+     * If SHARD_COUNT is greater than 1, the processor is the worker SHARD_INDEX of a sharded run
+     * (see the constructor with a shard).
      *
      * @param dataPath Path to the directory with the data to be processed.
      */
     public FileProcessor(String dataPath) {
+        this(dataPath, 0);
+    }
+    /**
+     * Class constructor with an explicit number of workers.
+     *
+     * @param dataPath Path to the directory with the data to be processed.
+     * @param workerThreads Number of workers of the validate and parse stages, unless configured per stage;
+     * 0 or less to use WORKER_THREADS.
+     */
+    public FileProcessor(String dataPath, int workerThreads) {
+        this(dataPath, workerThreads, ShardAssignment.fromConfig());
+    }
+    /**
+     * Class constructor for a worker of a sharded run, in which several processes share the data folder.
+     * The worker handles only the files of its shard (see ShardAssignment) and, instead of the statistics
+     * reports, writes its partial statistics to PARTIAL_STATISTICS_DIR, from which the coordinator merges
+     * the reports of the whole run (see StatisticsMerger). The move journal, the checkpoint index and the
+     * duplicate index of a worker are kept apart from those of the other workers (see ShardAssignment.forShard).
+     *
+     * @param dataPath Path to the directory with the data to be processed.
+     * @param workerThreads Number of workers of the validate and parse stages, unless configured per stage;
+     * 0 or less to use WORKER_THREADS.
+     * @param shard Shard handled by this processor, or null to handle every file.
+     */
+    public FileProcessor(String dataPath, int workerThreads, ShardAssignment shard) {
+        ConfigSnapshot config = PropsHandler.getConfig();
         this.dataPath = dataPath;
+        this.shard = shard;
         this.statisticsCalculator = new StatisticsCalculator();
         this.statisticsWriter = new StatisticsWriter();
-        this.fileValidator = new FileValidator();
+        this.breakdownWriter = new BreakdownWriter();
+        this.columnarStatisticsWriter = new ColumnarStatisticsWriter();
+        this.lineItemReportWriter = new LineItemReportWriter();
+        this.fileMover = shard == null ? new FileMover()
+                : new FileMover(shard.forShard(config.getPath("MOVE_JOURNAL_FILE")),
+                        config.getEnum("MOVE_JOURNAL_RECOVERY", FileMover.RecoveryMode.ROLLBACK),
+                        () -> PropsHandler.getConfig().getInt("MOVE_JOURNAL_SYNC_BATCH", 256));
+        this.fileValidator = new FileValidator(fileMover);
+        this.duplicateIndex = DuplicateIndex.fromConfig(shard);
+        this.workerThreads = workerThreads;
+        Path checkpointIndexFile = config.getPath("CHECKPOINT_INDEX_FILE");
+        this.incrementalStatistics = checkpointIndexFile == null ? null : shard == null
+                ? new IncrementalStatistics(checkpointIndexFile, statisticsCalculator)
+                : new IncrementalStatistics(shard.forShard(checkpointIndexFile), statisticsCalculator, shard::owns);
    }
     /**
      * The process method performs the main logic of file processing:
      * - Checks if the application session exists and is valid.
-     * - Walks the file tree, validating and moving files to the appropriate directories (valid/invalid).
-     * - Calculates statistics for valid files.
+     * - Walks the file tree, validating and moving files to the appropriate directories (valid/invalid)
+     *   and calculating statistics for valid files, in a pipeline of stages (see processInPipeline).
      * - Writes statistics to a file.
      * - Transfers data to the cloud structure (AWS).
+     * A worker of a sharded run writes its partial statistics instead and leaves the upload to the coordinator.
      *
      * @param session Current application session.
      */
     public void process(ApplicationSession session) {
         if (session != null) {
             if (session.isSessionValid()) {
-                List<Path> validFiles = new ArrayList<>();
-
+                // All settings of a run come from one snapshot, so a reload during the run does not mix them
+                ConfigSnapshot config = PropsHandler.getConfig();
+                Directories directories = new Directories(config);
                 try {
-                    Files.walkFileTree(Paths.get(dataPath), new SimpleFileVisitor<Path>() {
-                        @Override
-                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                            // Recursively traverse the file tree
-                            try {
-                                String fileName = file.getFileName().toString();
-                                CustomLogger.info("File processing: " + fileName);
-                                // File validation and moving
-                                if (fileValidator.isValid(file)) {
-                                    Files.move(file, Paths.get(VALID_PATH, fileName), StandardCopyOption.REPLACE_EXISTING);
-                                    CustomLogger.info("VALID: File " + fileName + " successfully moved");
-                                    validFiles.add(Paths.get(VALID_PATH, fileName));
-                                } else {
-                                    Files.move(file, Paths.get(INVALID_PATH, fileName), StandardCopyOption.REPLACE_EXISTING);
-                                    CustomLogger.warning("INVALID: File " + fileName + " moved");
-                                }
-                            } catch (IOException e) {
-                                CustomLogger.error("Error processing file: " + file.getFileName(), e);
-                            } catch (FileMovementException e) {
-                                CustomLogger.error(e.getMessage(), e);
-                                throw e;
-                            }
-                            return FileVisitResult.CONTINUE;
-                        }
-                    });
-                    // Calculate and record statistics
-                    statisticsCalculator.calculateStatistics(validFiles);
-                    statisticsWriter.writeStatisticsToFile(statisticsCalculator.getStatistics());
-                    // Transferring data to AWS
-                    AWS.throwToAmazon();
+                    // Finish or undo the moves of a run that was interrupted before its statistics were written
+                    recoverMoves();
+                    processInPipeline(session, config, directories);
+                    if (incrementalStatistics != null) {
+                        // Only new, changed and removed files of the valid folder are taken into account
+                        incrementalStatistics.update(directories.valid);
+                    }
+                    writeStatistics();
+                    if (shard == null) {
+                        // Transferring data to AWS
+                        AWS.throwToAmazon();
+                        METRICS.writeSummary();
+                    } else {
+                        METRICS.writeSummary(shard.forShard(config.getPath("METRICS_SUMMARY_FILE")));
+                    }
                 } catch (IOException e) {
                     CustomLogger.error("File system traversal error:" + e.getMessage(), e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    CustomLogger.error("File processing was interrupted", e);
                 }
             } else {
                 CustomLogger.error("Session is not valid", new Throwable("invalid session"));
@@ -94,4 +168,664 @@ public class FileProcessor {
             CustomLogger.error("Session does not exist", new Throwable("session does not exist"));
         }
     }
+    /**
+     * The processInPipeline method runs the files through a pipeline of stages connected by bounded queues:
+     * - the file tree is walked by several threads (see DirectoryWalker), which pass every file on
+     *   as soon as it is discovered;
+     * - the validate stage validates each file and moves it to the valid or invalid directory,
+     *   or opens it and hands its entries to the extract stage if it is an archive;
+     * - the extract stage decompresses each archive entry, writes it to the valid or invalid directory
+     *   and parses a valid one while it is being written, so the entries of a large archive are handled in parallel;
+     * - the parse stage reads the amount (and the fields needed by the breakdowns) of each valid file;
+     * - the aggregate stage adds the parsed documents to the statistics.
+     * Every stage has its own number of workers, and a stage whose queue is full makes the stage before it wait,
+     * so the walk never runs far ahead of parsing and memory stays the same whatever the size of the folder.
+     * With incremental statistics only the walk and validate stages are used.
+     * The extract stage has PIPELINE_EXTRACT_THREADS workers (the number of workers by default).
+     * A worker of a sharded run skips the files of the other shards during the walk. The walk is limited by
+     * WALK_MAX_DEPTH, WALK_MAX_FILES, WALK_INCLUDE and WALK_EXCLUDE; files left by the limit of files
+     * stay in the data folder for the next run.
+     * The session is renewed for every file walked, so a long run does not outlive it; if it has been closed
+     * or has reached its maximum lifetime, the walk stops and the files found so far are finished.
+     *
+     * @param session Current application session.
+     * @param config The configuration of the run.
+     * @param directories The directories of the run.
+     * @throws IOException If the file tree cannot be traversed.
+     * @throws InterruptedException If the thread is interrupted while waiting for the pipeline.
+     * @throws FileMovementException Thrown if an error occurs while moving an invalid file.
+     */
+    private void processInPipeline(ApplicationSession session, ConfigSnapshot config, Directories directories)
+            throws IOException, InterruptedException {
+        int workers = workerThreads > 0 ? workerThreads : config.getInt("WORKER_THREADS", 1);
+        int validateThreads = Math.max(1, config.getInt("PIPELINE_VALIDATE_THREADS", workers));
+        int parseThreads = Math.max(1, config.getInt("PIPELINE_PARSE_THREADS", workers));
+        int extractThreads = Math.max(1, config.getInt("PIPELINE_EXTRACT_THREADS", workers));
+        int aggregateThreads = Math.max(1, config.getInt("PIPELINE_AGGREGATE_THREADS", 1));
+        int queueCapacity = Math.max(1, config.getInt("PIPELINE_QUEUE_CAPACITY", 256));
+        PipelineStage<ParsedDocument> aggregateStage = new PipelineStage<>("aggregate", aggregateThreads,
+                queueCapacity, statisticsCalculator::addDocument, null);
+        PipelineStage<ValidFile> parseStage = new PipelineStage<>("parse", parseThreads, queueCapacity,
+                validFile -> {
+                    ParsedDocument document = statisticsCalculator.parseDocument(validFile.path, validFile.type);
+                    if (document != null) {
+                        aggregateStage.put(document);
+                    }
+                }, aggregateStage);
+        // Finished after the validate stage, which feeds both, and before the parse stage, whose next stage it feeds
+        PipelineStage<Archive.Entry> extractStage = new PipelineStage<>("extract", extractThreads, queueCapacity,
+                entry -> handleEntry(entry, directories, config, aggregateStage::put), parseStage);
+        PipelineStage<Path> validateStage = new PipelineStage<>("validate", validateThreads, queueCapacity,
+                file -> {
+                    Archive.Format format = archiveFormat(file, config);
+                    if (format != null) {
+                        expandArchive(file, format, directories, extractStage::put);
+                        return;
+                    }
+                    DocumentType type = sortFile(file, directories);
+                    if (type != null && incrementalStatistics == null) {
+                        parseStage.put(new ValidFile(directories.valid.resolve(file.getFileName().toString()), type));
+                    }
+                }, extractStage);
+        List<PipelineStage<?>> stages = List.of(validateStage, extractStage, parseStage, aggregateStage);
+        try {
+            long start = System.nanoTime();
+            DirectoryWalker.fromConfig(config).walk(Paths.get(dataPath),
+                    fileName -> shard == null || shard.owns(fileName), (file, attributes) -> {
+                        if (!session.renew()) {
+                            CustomLogger.error("Session expired, stopping the walk of " + dataPath);
+                            return false;
+                        }
+                        METRICS.stage(Stage.WALK).addBytes(attributes.size());
+                        // Waits while the validate stage is full
+                        validateStage.put(file);
+                        return true;
+                    });
+            METRICS.stage(Stage.WALK).record(start);
+            validateStage.finish();
+            // Wait for every file to pass through the pipeline; the first failure of any stage is rethrown
+            RuntimeException failure = null;
+            for (PipelineStage<?> stage : stages) {
+                try {
+                    stage.await();
+                } catch (RuntimeException e) {
+                    failure = failure == null ? e : failure;
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } catch (IOException | InterruptedException e) {
+            stages.forEach(PipelineStage::cancel);
+            throw e;
+        }
+    }
+    /**
+     * The processFile method runs a single file through all stages: validation, moving to the valid or invalid
+     * directory and, for a valid file, parsing and adding its amount to the statistics.
+     * The entries of an archive are handled one after the other by the calling thread.
+     * It is safe to call concurrently from several threads.
+     *
+     * @param file Path to the file to process.
+     * @throws FileMovementException Thrown if an error occurs while moving an invalid file.
+     */
+    public void processFile(Path file) {
+        if (shard != null && !shard.owns(file.getFileName().toString())) {
+            return;
+        }
+        ConfigSnapshot config = PropsHandler.getConfig();
+        Directories directories = new Directories(config);
+        Archive.Format format = archiveFormat(file, config);
+        if (format != null) {
+            try {
+                expandArchive(file, format, directories,
+                        entry -> handleEntry(entry, directories, config, statisticsCalculator::addDocument));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        DocumentType type = sortFile(file, directories);
+        if (type != null) {
+            statisticsCalculator.calculateStatistics(directories.valid.resolve(file.getFileName().toString()), type);
+        }
+    }
+    /**
+     * The ingest method runs a document received as a stream (for example an HTTP upload) through validation
+     * and statistics without a temporary copy: the name is validated first, then the stream is written to
+     * the valid folder while its beginning and last line are kept for parsing (see DocumentStreamReader).
+     * The document is published under its name only if it has an amount and, with a duplicate index,
+     * its content has not been accepted before; it is then added to the statistics.
+     * It is safe to call concurrently from several threads.
+     *
+     * @param fileName Name of the document; it must be a plain file name.
+     * @param body Content of the document.
+     * @param maxSize Largest accepted size of the document in bytes.
+     * @return The outcome; nothing is stored unless the document is accepted.
+     * @throws IOException If the stream cannot be read or the document cannot be stored.
+     */
+    public IngestionResult ingest(String fileName, InputStream body, long maxSize) throws IOException {
+        long start = System.nanoTime();
+        Classification classification = isPlainFileName(fileName)
+                ? DocumentClassifier.getInstance().classify(fileName) : null;
+        METRICS.stage(Stage.VALIDATE).record(start);
+        if (classification == null || !classification.isValid()) {
+            CustomLogger.warning("INVALID: Uploaded file " + fileName + " rejected");
+            return new IngestionResult(IngestionResult.Status.INVALID_NAME, null);
+        }
+        Directories directories = new Directories(PropsHandler.getConfig());
+        Path validDirectory = directories.valid;
+        Path target = validDirectory.resolve(fileName);
+        if (Files.exists(target)) {
+            return new IngestionResult(IngestionResult.Status.DUPLICATE, null);
+        }
+        // Written under a hidden name and published only once it is complete and has an amount
+        Path part = validDirectory.resolve("." + fileName + "." + Thread.currentThread().threadId() + ".uploading");
+        boolean published = false;
+        try {
+            DocumentStreamReader reader = new DocumentStreamReader();
+            try (OutputStream out = Files.newOutputStream(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                reader.read(body, out, maxSize);
+            } catch (DocumentStreamReader.DocumentTooLargeException e) {
+                CustomLogger.warning("Uploaded file " + fileName + " rejected: " + e.getMessage());
+                return new IngestionResult(IngestionResult.Status.TOO_LARGE, null);
+            }
+            METRICS.stage(Stage.WALK).addBytes(reader.getSize());
+            String lastLine;
+            try {
+                lastLine = reader.getLastLine();
+            } catch (CharacterCodingException e) {
+                lastLine = null;
+            }
+            ParsedDocument document = statisticsCalculator.parseDocument(fileName, classification.getType(),
+                    lastLine, reader.getHead());
+            if (document == null) {
+                return new IngestionResult(IngestionResult.Status.NO_AMOUNT, null);
+            }
+            DuplicateIndex.Fingerprint fingerprint = duplicateIndex == null ? null : lookUp(part);
+            if (fingerprint != null && fingerprint.getOriginal() != null) {
+                CustomLogger.warning("DUPLICATE: Uploaded file " + fileName + " is a copy of " + fingerprint.getOriginal());
+                return new IngestionResult(IngestionResult.Status.DUPLICATE, null);
+            }
+            long moveStart = System.nanoTime();
+            try {
+                publish(part, target);
+            } catch (FileAlreadyExistsException e) {
+                return new IngestionResult(IngestionResult.Status.DUPLICATE, null);
+            }
+            published = true;
+            METRICS.record(Stage.MOVE, moveStart, target);
+            if (fingerprint != null && !recordAccepted(fingerprint, target, fileName, directories)) {
+                return new IngestionResult(IngestionResult.Status.DUPLICATE, null);
+            }
+            statisticsCalculator.addDocument(document);
+            CustomLogger.info("VALID: Uploaded file " + fileName + " stored");
+            return new IngestionResult(IngestionResult.Status.ACCEPTED, document);
+        } finally {
+            if (!published) {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+    /**
+     * The getStatistics method returns a consistent snapshot of the totals accumulated so far.
+     *
+     * @return Map from category to its totals, in category order.
+     */
+    public Map<String, CategoryTotals> getStatistics() {
+        return statisticsCalculator.getCategoryStatistics();
+    }
+    /**
+     * The recoverMoves method deals with the file moves of an interrupted run (see FileMover.recover).
+     * It must be called before the data folder is read.
+     *
+     * @throws IOException If the move journal cannot be read or a file cannot be moved.
+     */
+    public void recoverMoves() throws IOException {
+        fileMover.recover();
+    }
+    /**
+     * The writeStatistics method writes the statistics accumulated so far to the statistics file and,
+     * if they are configured, to the columnar statistics file, the breakdown file and, if files were read whole,
+     * the line item report file. The file moves done so far and the duplicate index are then committed.
+     * A worker of a sharded run writes its partial statistics (see writePartialStatistics) instead of the reports.
+     */
+    public void writeStatistics() {
+        Map<String, CategoryTotals> statistics = statisticsCalculator.getCategoryStatistics();
+        if (shard != null) {
+            writePartialStatistics(statistics);
+        } else {
+            writeReports(statistics);
+        }
+        try {
+            // The written statistics include the files moved so far, so their moves no longer need recovery
+            fileMover.commit();
+        } catch (IOException e) {
+            CustomLogger.error("Error committing the move journal: " + e.getMessage(), e);
+        }
+        if (duplicateIndex != null) {
+            try {
+                duplicateIndex.commit();
+            } catch (IOException e) {
+                CustomLogger.error("Error committing the duplicate index: " + e.getMessage(), e);
+            }
+        }
+    }
+    /**
+     * The writeReports method writes the statistics file and the other configured reports.
+     *
+     * @param statistics Map from category to its totals, in category order.
+     */
+    private void writeReports(Map<String, CategoryTotals> statistics) {
+        statisticsWriter.writeCategoryStatisticsToFile(statistics);
+        if (statisticsCalculator.getDocumentRows() != null) {
+            columnarStatisticsWriter.writeStatisticsToFile(statisticsCalculator.getDocumentRows(), statistics);
+        }
+        if (statisticsCalculator.getBreakdown() != null) {
+            breakdownWriter.writeBreakdownToFile(statisticsCalculator.getBreakdown());
+        }
+        LineItemReport lineItemReport = statisticsCalculator.getLineItemReport();
+        if (lineItemReport.getCheckedDocuments() + lineItemReport.getUncheckedDocuments() > 0) {
+            lineItemReportWriter.writeReportToFile(lineItemReport);
+        }
+    }
+    /**
+     * The writePartialStatistics method writes the totals and breakdowns of this shard to its file in
+     * PARTIAL_STATISTICS_DIR (see PartialStatistics). Document rows and line item reports are not part
+     * of the partial statistics.
+     *
+     * @param statistics Map from category to its totals, in category order.
+     */
+    private void writePartialStatistics(Map<String, CategoryTotals> statistics) {
+        long start = System.nanoTime();
+        Path directory = Paths.get(PropsHandler.getPropertyFromConfig("PARTIAL_STATISTICS_DIR"));
+        Path file = PartialStatistics.fileFor(directory, shard);
+        try {
+            new PartialStatistics(shard.getRunId(), shard.getIndex(), shard.getCount(), System.currentTimeMillis(),
+                    statistics, statisticsCalculator.getBreakdown()).save(file);
+            CustomLogger.info("Partial statistics of shard " + shard + " successfully written to file " + file);
+        } catch (IOException e) {
+            METRICS.stage(Stage.WRITE).recordError();
+            CustomLogger.error("Error writing partial statistics file: " + e.getMessage(), e);
+        } finally {
+            METRICS.stage(Stage.WRITE).record(start);
+        }
+    }
+    /**
+     * The sortFile method validates a single file and moves it to the valid or invalid directory,
+     * or to the duplicate directory if it is valid but its content has already been accepted.
+     *
+     * @param file Path to the file to sort.
+     * @param directories The directories of the run.
+     * @return The document type of a file moved to the valid directory, or null if the file is invalid, a duplicate
+     * or could not be moved.
+     * @throws FileMovementException Thrown if an error occurs while moving an invalid file.
+     */
+    private DocumentType sortFile(Path file, Directories directories) {
+        try {
+            String fileName = file.getFileName().toString();
+            CustomLogger.info("File processing: " + fileName);
+            // File validation and moving
+            Classification classification = fileValidator.validate(file, directories.invalid);
+            if (classification.isValid()) {
+                Path validFile = directories.valid.resolve(fileName);
+                DuplicateIndex.Fingerprint fingerprint = duplicateIndex == null ? null : lookUp(file);
+                if (fingerprint != null && fingerprint.getOriginal() != null) {
+                    moveDuplicate(file, fileName, fingerprint.getOriginal(), directories);
+                    return null;
+                }
+                long start = System.nanoTime();
+                fileMover.move(file, validFile);
+                METRICS.record(Stage.MOVE, start, file);
+                if (fingerprint != null && !recordAccepted(fingerprint, validFile, fileName, directories)) {
+                    return null;
+                }
+                CustomLogger.info("VALID: File " + fileName + " successfully moved");
+                return classification.getType();
+            } else {
+                // FileValidator has already moved the invalid file
+                CustomLogger.warning("INVALID: File " + fileName + " moved");
+            }
+        } catch (IOException e) {
+            METRICS.stage(Stage.MOVE).recordError();
+            CustomLogger.error("Error processing file: " + file.getFileName(), e);
+        } catch (FileMovementException e) {
+            CustomLogger.error(e.getMessage(), e);
+            throw e;
+        }
+        return null;
+    }
+    /**
+     * The archiveFormat method checks whether a file is an archive to be read entry by entry.
+     *
+     * @param file Path to the file.
+     * @param config The configuration of the run.
+     * @return The format of the archive, or null if the file is not an archive or archive input is disabled.
+     */
+    private static Archive.Format archiveFormat(Path file, ConfigSnapshot config) {
+        if (!config.getBoolean("ARCHIVE_INPUT_ENABLED", true)) {
+            return null;
+        }
+        return Archive.Format.of(file.getFileName().toString());
+    }
+    /**
+     * The expandArchive method opens an archive and hands each of its entries to a handler, which must release
+     * the entry when it is done with it (see handleEntry). Once every entry has been released, the archive is moved
+     * to ARCHIVE_PATH (the invalid directory if it is not set). An archive that cannot be opened is moved to
+     * the invalid directory.
+     *
+     * @param file Path to the archive.
+     * @param format Format of the archive.
+     * @param directories The directories of the run.
+     * @param handler Handler of the entries.
+     * @throws InterruptedException If the thread is interrupted while handing out the entries.
+     * @throws FileMovementException Thrown if an error occurs while moving an archive that cannot be opened.
+     */
+    private void expandArchive(Path file, Archive.Format format, Directories directories,
+                               PipelineStage.Handler<Archive.Entry> handler) throws InterruptedException {
+        String fileName = file.getFileName().toString();
+        Archive archive;
+        try {
+            archive = new Archive(file, format);
+        } catch (IOException e) {
+            CustomLogger.error("Error opening archive " + fileName + ": " + e.getMessage(), e);
+            try {
+                fileMover.move(file, directories.invalid.resolve(fileName));
+            } catch (IOException moveException) {
+                METRICS.stage(Stage.MOVE).recordError();
+                throw new FileMovementException("Error moving invalid archive: " + fileName, moveException);
+            }
+            CustomLogger.warning("INVALID: Archive " + fileName + " moved");
+            return;
+        }
+        CustomLogger.info("Archive processing: " + fileName + ", " + archive.getEntries().size() + " entries");
+        try {
+            for (Archive.Entry entry : archive.getEntries()) {
+                handler.handle(entry);
+            }
+        } finally {
+            if (archive.release()) {
+                finishArchive(archive, directories);
+            }
+        }
+    }
+    /**
+     * The handleEntry method routes an archive entry (see extractEntry), passes its parsed document on
+     * and releases the entry.
+     *
+     * @param entry The entry.
+     * @param directories The directories of the run.
+     * @param config The configuration of the run.
+     * @param documents Receiver of the parsed document of a valid entry.
+     * @throws InterruptedException If the thread is interrupted while passing the document on.
+     */
+    private void handleEntry(Archive.Entry entry, Directories directories, ConfigSnapshot config,
+                             PipelineStage.Handler<ParsedDocument> documents) throws InterruptedException {
+        try {
+            ParsedDocument document = extractEntry(entry, directories, config);
+            if (document != null) {
+                documents.handle(document);
+            }
+        } finally {
+            if (entry.getArchive().release()) {
+                finishArchive(entry.getArchive(), directories);
+            }
+        }
+    }
+    /**
+     * The extractEntry method routes an archive entry like sortFile routes a file: the entry is validated by
+     * its name and decompressed straight into the valid or invalid directory, under a hidden name until it is
+     * complete. A valid entry is parsed from the beginning and last line kept while it is written
+     * (see DocumentStreamReader), so it is never read back. Entries larger than ARCHIVE_MAX_ENTRY_BYTES
+     * (1 GiB by default) and entries with hidden names are skipped. An entry whose name is already taken in
+     * its directory, by an entry of another folder of the archive or by a document of an earlier run,
+     * replaces nothing and is set aside (see setAside). If the document of an earlier run has the same content,
+     * the entry is the one an interrupted run published before its archive was rolled back (publishing
+     * is not journaled), so the document is kept and the entry is counted as stored, like a loose file
+     * delivered again.
+     *
+     * @param entry The entry.
+     * @param directories The directories of the run.
+     * @param config The configuration of the run.
+     * @return The parsed document of a valid entry with an amount, or null if there is none
+     * or the statistics are incremental.
+     */
+    private ParsedDocument extractEntry(Archive.Entry entry, Directories directories, ConfigSnapshot config) {
+        String fileName = entry.getFileName();
+        String archiveName = entry.getArchive().getPath().getFileName().toString();
+        if (!isPlainFileName(fileName)) {
+            CustomLogger.warning("Entry " + entry.getName() + " of archive " + archiveName + " skipped");
+            return null;
+        }
+        long start = System.nanoTime();
+        Classification classification = DocumentClassifier.getInstance().classify(fileName);
+        METRICS.stage(Stage.VALIDATE).record(start);
+        boolean valid = classification.isValid();
+        Path directory = valid ? directories.valid : directories.invalid;
+        Path target = directory.resolve(fileName);
+        Path part = directory.resolve("." + fileName + "." + Thread.currentThread().threadId() + ".extracting");
+        try {
+            try {
+                long extractStart = System.nanoTime();
+                DocumentStreamReader reader = new DocumentStreamReader();
+                try (InputStream in = entry.open(); OutputStream out = Files.newOutputStream(part)) {
+                    reader.read(in, out, config.getLong("ARCHIVE_MAX_ENTRY_BYTES", 1L << 30));
+                }
+                METRICS.stage(Stage.EXTRACT).addBytes(reader.getSize());
+                METRICS.record(Stage.EXTRACT, extractStart, target);
+                DuplicateIndex.Fingerprint fingerprint = valid && duplicateIndex != null ? lookUp(part) : null;
+                if (fingerprint != null && fingerprint.getOriginal() != null
+                        && !fingerprint.getOriginal().equals(target.toAbsolutePath())) {
+                    moveDuplicate(part, fileName, fingerprint.getOriginal(), directories);
+                    return null;
+                }
+                long moveStart = System.nanoTime();
+                boolean firstOfRun = directories.extracted.add(target);
+                try {
+                    publish(part, target);
+                } catch (FileAlreadyExistsException e) {
+                    if (!firstOfRun || Files.mismatch(part, target) != -1) {
+                        setAside(part, entry, archiveName, directories);
+                        entry.getArchive().recordEntry(false);
+                        return null;
+                    }
+                    // Published before the archive was rolled back to the data folder: the same document
+                    CustomLogger.info("Entry " + entry.getName() + " of archive " + archiveName + " already stored as "
+                            + target);
+                }
+                METRICS.record(Stage.MOVE, moveStart, target);
+                if (fingerprint != null && !recordAccepted(fingerprint, target, fileName, directories)) {
+                    return null;
+                }
+                entry.getArchive().recordEntry(valid);
+                if (!valid) {
+                    CustomLogger.warning("INVALID: Entry " + entry.getName() + " of archive " + archiveName + " stored");
+                    return null;
+                }
+                CustomLogger.info("VALID: Entry " + entry.getName() + " of archive " + archiveName + " stored");
+                if (incrementalStatistics != null) {
+                    return null;
+                }
+                String lastLine;
+                try {
+                    lastLine = reader.getLastLine();
+                } catch (CharacterCodingException e) {
+                    lastLine = null;
+                }
+                return statisticsCalculator.parseDocument(fileName, classification.getType(), lastLine, reader.getHead());
+            } finally {
+                Files.deleteIfExists(part);
+            }
+        } catch (IOException e) {
+            METRICS.stage(Stage.EXTRACT).recordError();
+            CustomLogger.error("Error extracting entry " + entry.getName() + " of archive " + archiveName + ": "
+                    + e.getMessage(), e);
+            return null;
+        }
+    }
+    /**
+     * The setAside method moves an extracted entry whose name is already taken to DUPLICATE_PATH (the invalid
+     * directory if it is not set), named after the archive and the full name of the entry, so entries of the same
+     * name in different folders of an archive are all kept. The same entry of an archive delivered again
+     * replaces its earlier copy there.
+     *
+     * @param part The extracted entry.
+     * @param entry The entry.
+     * @param archiveName Name of the archive.
+     * @param directories The directories of the run.
+     * @throws IOException If the entry cannot be moved.
+     */
+    private static void setAside(Path part, Archive.Entry entry, String archiveName, Directories directories)
+            throws IOException {
+        Path directory = directories.duplicate;
+        Files.createDirectories(directory);
+        Path target = directory.resolve(archiveName + "." + entry.getName().replace('/', '_').replace('\\', '_'));
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING);
+        CustomLogger.warning("NAME TAKEN: Entry " + entry.getName() + " of archive " + archiveName + " moved to " + target);
+    }
+    /**
+     * The finishArchive method closes an archive whose entries have all been handled and moves it to ARCHIVE_PATH
+     * (the invalid directory if it is not set), so it is not read again.
+     *
+     * @param archive The archive.
+     * @param directories The directories of the run.
+     */
+    private void finishArchive(Archive archive, Directories directories) {
+        String fileName = archive.getPath().getFileName().toString();
+        try {
+            archive.close();
+            Path archivePath = directories.archive;
+            Files.createDirectories(archivePath);
+            long start = System.nanoTime();
+            fileMover.move(archive.getPath(), archivePath.resolve(fileName));
+            METRICS.record(Stage.MOVE, start, archive.getPath());
+            CustomLogger.info("ARCHIVE: " + fileName + " moved, " + archive.getValidEntries() + " valid and "
+                    + archive.getInvalidEntries() + " invalid entries");
+        } catch (IOException e) {
+            METRICS.stage(Stage.MOVE).recordError();
+            CustomLogger.error("Error finishing archive " + fileName + ": " + e.getMessage(), e);
+        }
+    }
+    /**
+     * The lookUp method looks a valid file up in the duplicate index before it is accepted.
+     *
+     * @param file Path to the file.
+     * @return The fingerprint of the file, with the original if the file is a duplicate.
+     * @throws IOException If the file or the index cannot be read.
+     */
+    private DuplicateIndex.Fingerprint lookUp(Path file) throws IOException {
+        long start = System.nanoTime();
+        DuplicateIndex.Fingerprint fingerprint = duplicateIndex.lookup(file);
+        METRICS.record(Stage.DEDUP, start, file);
+        return fingerprint;
+    }
+    /**
+     * The recordAccepted method records a file that has reached the valid directory in the duplicate index.
+     * If another thread accepted a copy of it in the meantime, the file is moved on as a duplicate instead.
+     *
+     * @param fingerprint Fingerprint of the file, from lookUp.
+     * @param validFile Path of the file in the valid directory.
+     * @param fileName Name of the document.
+     * @param directories The directories of the run.
+     * @return true if the file was recorded; false if it was a duplicate and has been moved.
+     * @throws IOException If the index cannot be read, or the file cannot be moved.
+     */
+    private boolean recordAccepted(DuplicateIndex.Fingerprint fingerprint, Path validFile, String fileName,
+                                   Directories directories) throws IOException {
+        Path original = duplicateIndex.record(fingerprint, validFile);
+        if (original == null) {
+            return true;
+        }
+        moveDuplicate(validFile, fileName, original, directories);
+        return false;
+    }
+    /**
+     * The moveDuplicate method moves a file whose content has already been accepted to the DUPLICATE_PATH
+     * directory (the invalid directory if it is not set).
+     *
+     * @param file Path to the file.
+     * @param fileName Name of the document, given to it in the duplicate directory.
+     * @param original Path of the document it is a copy of.
+     * @param directories The directories of the run.
+     * @throws IOException If the file cannot be moved.
+     */
+    private void moveDuplicate(Path file, String fileName, Path original, Directories directories)
+            throws IOException {
+        Path duplicatePath = directories.duplicate;
+        Files.createDirectories(duplicatePath);
+        long moveStart = System.nanoTime();
+        fileMover.move(file, duplicatePath.resolve(fileName));
+        METRICS.record(Stage.MOVE, moveStart, file);
+        CustomLogger.warning("DUPLICATE: File " + fileName + " is a copy of " + original + ", moved");
+    }
+    /**
+     * The publish method gives a completely written file its final name, failing if that name is taken.
+     * A hard link is used where possible, because moving over an existing file may silently replace it.
+     *
+     * @param part The written file.
+     * @param target The final path.
+     * @throws FileAlreadyExistsException If the target already exists.
+     * @throws IOException If the file cannot be renamed.
+     */
+    private static void publish(Path part, Path target) throws IOException {
+        try {
+            Files.createLink(target, part);
+            Files.delete(part);
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.move(part, target);
+        }
+    }
+    /**
+     * The isPlainFileName method checks that a name received from outside names a file directly in a folder.
+     *
+     * @param fileName The name.
+     * @return true if the name is not empty, is not hidden and has no folder separators.
+     */
+    private static boolean isPlainFileName(String fileName) {
+        return fileName != null && !fileName.isEmpty() && !fileName.startsWith(".")
+                && fileName.indexOf('/') < 0 && fileName.indexOf('\\') < 0 && fileName.indexOf('\0') < 0;
+    }
+    /**
+     * A file moved to the valid directory, with the document type found during validation.
+     */
+    private static class ValidFile {
+        private final Path path;
+        private final DocumentType type;
+        /**
+         * ValidFile constructor.
+         *
+         * @param path Path of the file in the valid directory.
+         * @param type Document type of the file.
+         */
+        private ValidFile(Path path, DocumentType type) {
+            this.path = path;
+            this.type = type;
+        }
+    }
+    /**
+     * The directories a run moves files to, read once from the configuration of the run, so a reload during
+     * the run does not send its files to different places.
+     */
+    private static class Directories {
+        private final Path valid;
+        private final Path invalid;
+        private final Path duplicate;
+        private final Path archive;
+        private final Set<Path> extracted = ConcurrentHashMap.newKeySet();
+        /**
+         * Directories constructor. DUPLICATE_PATH and ARCHIVE_PATH default to the invalid directory.
+         *
+         * @param config The configuration of the run.
+         */
+        private Directories(ConfigSnapshot config) {
+            this.valid = config.getPath("VALID_PATH");
+            this.invalid = config.getPath("INVALID_PATH");
+            Path duplicatePath = config.getPath("DUPLICATE_PATH");
+            this.duplicate = duplicatePath != null ? duplicatePath : invalid;
+            Path archivePath = config.getPath("ARCHIVE_PATH");
+            this.archive = archivePath != null ? archivePath : invalid;
+        }
+    }
 }
\ No newline at end of file
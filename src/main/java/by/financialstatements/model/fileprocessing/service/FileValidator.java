@@ -1,26 +1,44 @@
 package by.financialstatements.model.fileprocessing.service;
 
 import java.nio.file.Path;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
 import java.io.IOException;
 
+import by.financialstatements.model.classifier.Classification;
+import by.financialstatements.model.classifier.DocumentClassifier;
 import by.financialstatements.model.exception.FileMovementException;
 import by.financialstatements.model.log.CustomLogger;
 import by.financialstatements.model.login_service.service.PropsHandler;
+import by.financialstatements.model.metrics.PipelineMetrics;
+import by.financialstatements.model.metrics.Stage;
 /**
  * The FileValidator class is designed to check files for validity.
  * It determines whether a file is valid based on its name, extension, and the content of certain keywords.
  * If the file is invalid, it is moved to the invalid folder.
  */
 public class FileValidator {
+    private static final PipelineMetrics METRICS = PipelineMetrics.getInstance();
 
-    private static final String INVALID_PATH = PropsHandler.getPropertyFromConfig("INVALID_PATH");
+    private final FileMover fileMover;
+    /**
+     * FileValidator constructor. Invalid files are moved without a journal.
+     */
+    public FileValidator() {
+        this(new FileMover(null, FileMover.RecoveryMode.ROLLBACK, 1));
+    }
+    /**
+     * FileValidator constructor.
+     *
+     * @param fileMover Mover used to move invalid files, shared with the rest of the run.
+     */
+    public FileValidator(FileMover fileMover) {
+        this.fileMover = fileMover;
+    }
     /**
      * The isValid method checks if a file is valid based on the following criteria:
      * - The file must have the `.txt` extension.
      * - The file name must contain `2024` in the title.
      * - The file name must contain one of the keywords: `invoice`, `order`, `electric_bill`.
+     * The criteria come from the document type rules of DocumentClassifier.
      * If the file does not meet these conditions, it is moved to the directory for invalid files.
      *
      * @param file Path to the file to check.
@@ -28,21 +46,47 @@ public class FileValidator {
      * @throws FileMovementException Thrown if an error occurs while moving an invalid file.
      */
     public boolean isValid(Path file) {
-        // Get file name in lowercase
-        String fileName = file.getFileName().toString().toLowerCase();
+        return validate(file).isValid();
+    }
+    /**
+     * The validate method classifies a file by its name and, if it is invalid, moves it to the invalid folder.
+     * The returned classification also carries the document type, so the file does not need to be
+     * classified again for the statistics.
+     *
+     * @param file Path to the file to check.
+     * @return The classification of the file.
+     * @throws FileMovementException Thrown if an error occurs while moving an invalid file.
+     */
+    public Classification validate(Path file) {
+        return validate(file, Path.of(PropsHandler.getPropertyFromConfig("INVALID_PATH")));
+    }
+    /**
+     * The validate method classifies a file by its name and, if it is invalid, moves it to the given folder.
+     *
+     * @param file Path to the file to check.
+     * @param invalidDirectory Folder for invalid files, taken from the configuration of the run.
+     * @return The classification of the file.
+     * @throws FileMovementException Thrown if an error occurs while moving an invalid file.
+     */
+    public Classification validate(Path file, Path invalidDirectory) {
+        String fileName = file.getFileName().toString();
         CustomLogger.info("Checking the file" + fileName + " for compliance with validity criteria");
         // Check if the file name is valid
-        boolean isValid = (fileName.endsWith(".txt") && fileName.contains("2024"))
-                && (fileName.contains("invoice") || fileName.contains("order") || fileName.contains("electric_bill"));
-        if (!isValid) {
+        long start = System.nanoTime();
+        Classification classification = DocumentClassifier.getInstance().classify(fileName);
+        METRICS.record(Stage.VALIDATE, start, file);
+        if (!classification.isValid()) {
+            start = System.nanoTime();
             try {
                 // Move file to invalid files folder
-                Files.move(file, Path.of(INVALID_PATH, file.getFileName().toString()), StandardCopyOption.REPLACE_EXISTING);
+                fileMover.move(file, invalidDirectory.resolve(fileName));
             } catch (IOException e) {
+                METRICS.stage(Stage.MOVE).recordError();
                 throw new FileMovementException("Error moving invalid file: " + file.getFileName(), e);
             }
+            METRICS.record(Stage.MOVE, start, file);
             CustomLogger.warning("Unknown or invalid file type for " + fileName);
         }
-        return isValid;
+        return classification;
     }
 }
\ No newline at end of file
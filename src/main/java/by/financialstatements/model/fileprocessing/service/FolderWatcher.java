@@ -0,0 +1,258 @@
+package by.financialstatements.model.fileprocessing.service;
+
+import by.financialstatements.model.exception.FileMovementException;
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.PropsHandler;
+import by.financialstatements.model.login_service.session.ApplicationSession;
+import by.financialstatements.model.metrics.PipelineMetrics;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+/**
+ * The FolderWatcher class runs the application as a daemon that ingests documents as they arrive in the data folder.
+ * It listens to file system events through a WatchService instead of rescanning the folder:
+ * - A new or modified file is processed only after its size and modification time have not changed
+ *   for the debounce period, so partially written files are not picked up.
+ * - Ready files go through the same stages as in FileProcessor (validate, move, parse, add to the statistics),
+ *   each on its own virtual thread. At most WATCH_MAX_ACTIVE_FILES files (64 by default) are processed at once;
+ *   further ready files stay pending until a worker finishes.
+ * - The running totals are written to the statistics file at a fixed interval if they have changed,
+ *   and the metrics summary (see PipelineMetrics) is written when watching stops.
+ * Subfolders created while watching are watched too.
+ */
+public class FolderWatcher {
+    private final FileProcessor fileProcessor;
+    private final Path dataPath;
+    private final long writeIntervalSeconds;
+    private final Map<WatchKey, Path> watchedFolders = new HashMap<>();
+    private final Map<Path, PendingFile> pendingFiles = new HashMap<>();
+    private final AtomicBoolean statisticsChanged = new AtomicBoolean();
+    private final AtomicInteger activeFiles = new AtomicInteger();
+    private volatile boolean running = true;
+    /**
+     * Class constructor. The debounce period and the write interval are taken from the configuration
+     * (WATCH_DEBOUNCE_MILLIS, 1000 by default, and STATISTICS_WRITE_INTERVAL_SECONDS, 10 by default).
+     * The debounce period and the limit of files processed at once are read again on every poll,
+     * so they can be changed while watching.
+     *
+     * @param fileProcessor Processor that runs the stages for every file and holds the running totals.
+     * @param dataPath Path to the folder to watch.
+     */
+    public FolderWatcher(FileProcessor fileProcessor, Path dataPath) {
+        this.fileProcessor = fileProcessor;
+        this.dataPath = dataPath;
+        this.writeIntervalSeconds = PropsHandler.getConfig().getLong("STATISTICS_WRITE_INTERVAL_SECONDS", 10);
+    }
+    /**
+     * The watch method watches the data folder until stop is called or the thread is interrupted.
+     * Files already in the folder when watching starts are processed as well.
+     *
+     * @param session Current application session.
+     */
+    public void watch(ApplicationSession session) {
+        if (session == null || !session.isSessionValid()) {
+            CustomLogger.error("Session is not valid", new Throwable("invalid session"));
+            return;
+        }
+        ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+        ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor();
+        writer.scheduleAtFixedRate(this::writeStatisticsIfChanged, writeIntervalSeconds, writeIntervalSeconds, TimeUnit.SECONDS);
+        try (WatchService watchService = dataPath.getFileSystem().newWatchService()) {
+            fileProcessor.recoverMoves();
+            register(watchService, dataPath);
+            CustomLogger.info("Watching folder " + dataPath);
+            while (running) {
+                // Watching keeps the session alive; it stops when the session is closed or reaches its maximum lifetime
+                if (!session.renew()) {
+                    CustomLogger.error("Session expired, stopping watching " + dataPath);
+                    break;
+                }
+                WatchKey key = watchService.poll(Math.max(10, debounceMillis() / 4), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    handleEvents(watchService, key);
+                }
+                submitReadyFiles(workers);
+            }
+        } catch (IOException e) {
+            CustomLogger.error("Error watching folder " + dataPath + ": " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.close();
+            writer.shutdown();
+            writeStatisticsIfChanged();
+            PipelineMetrics.getInstance().writeSummary();
+            CustomLogger.info("Stopped watching folder " + dataPath);
+        }
+    }
+    /**
+     * The stop method asks the watch loop to finish. Files already being processed are completed
+     * and the statistics are written one last time.
+     */
+    public void stop() {
+        running = false;
+    }
+    /**
+     * The register method starts watching a folder and its subfolders, and marks the files already
+     * in them as pending. Only this folder is listed, not the whole data tree.
+     *
+     * @param watchService Watch service.
+     * @param folder Folder to register.
+     * @throws IOException If the folder cannot be registered or listed.
+     */
+    private void register(WatchService watchService, Path folder) throws IOException {
+        WatchKey key = folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedFolders.put(key, folder);
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+            for (Path entry : entries) {
+                if (Files.isDirectory(entry)) {
+                    register(watchService, entry);
+                } else {
+                    touch(entry);
+                }
+            }
+        }
+    }
+    /**
+     * The handleEvents method records the files named in the events of a watch key.
+     * On an overflow, the folder of the key is listed again because events may have been lost.
+     *
+     * @param watchService Watch service.
+     * @param key Signalled watch key.
+     * @throws IOException If a new subfolder cannot be registered.
+     */
+    private void handleEvents(WatchService watchService, WatchKey key) throws IOException {
+        Path folder = watchedFolders.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (folder == null) {
+                continue;
+            }
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                CustomLogger.warning("Watch events lost for " + folder + ", listing the folder again");
+                try (DirectoryStream<Path> entries = Files.newDirectoryStream(folder)) {
+                    for (Path entry : entries) {
+                        if (!Files.isDirectory(entry)) {
+                            touch(entry);
+                        }
+                    }
+                }
+                continue;
+            }
+            Path path = folder.resolve((Path) event.context());
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                register(watchService, path);
+            } else {
+                touch(path);
+            }
+        }
+        if (!key.reset()) {
+            watchedFolders.remove(key);
+        }
+    }
+    /**
+     * The touch method marks a file as changed just now, restarting its debounce period.
+     *
+     * @param file Changed file.
+     */
+    private void touch(Path file) {
+        pendingFiles.computeIfAbsent(file, path -> new PendingFile()).lastEventTime = System.currentTimeMillis();
+    }
+    /**
+     * The submitReadyFiles method hands files whose size and modification time have not changed during the
+     * debounce period to the workers, as long as fewer than WATCH_MAX_ACTIVE_FILES files are being processed.
+     * Files that have disappeared (for example moved by the processor) are forgotten.
+     *
+     * @param workers Executor that runs the processing stages.
+     */
+    private void submitReadyFiles(ExecutorService workers) {
+        long now = System.currentTimeMillis();
+        long debounceMillis = debounceMillis();
+        int maxActiveFiles = Math.max(1, PropsHandler.getConfig().getInt("WATCH_MAX_ACTIVE_FILES", 64));
+        Iterator<Map.Entry<Path, PendingFile>> iterator = pendingFiles.entrySet().iterator();
+        while (iterator.hasNext() && activeFiles.get() < maxActiveFiles) {
+            Map.Entry<Path, PendingFile> entry = iterator.next();
+            PendingFile pendingFile = entry.getValue();
+            if (now - pendingFile.lastEventTime < debounceMillis) {
+                continue;
+            }
+            Path file = entry.getKey();
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            } catch (IOException e) {
+                iterator.remove();
+                continue;
+            }
+            long size = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            if (size != pendingFile.size || lastModified != pendingFile.lastModified) {
+                // Still being written: wait for another quiet period
+                pendingFile.size = size;
+                pendingFile.lastModified = lastModified;
+                pendingFile.lastEventTime = now;
+                continue;
+            }
+            iterator.remove();
+            // Only the watch loop increments the count, so it never exceeds the limit
+            activeFiles.incrementAndGet();
+            workers.submit(() -> {
+                try {
+                    fileProcessor.processFile(file);
+                    statisticsChanged.set(true);
+                } catch (FileMovementException e) {
+                    CustomLogger.error(e.getMessage(), e);
+                } finally {
+                    activeFiles.decrementAndGet();
+                }
+            });
+        }
+    }
+    /**
+     * The writeStatisticsIfChanged method writes the running totals if files were processed since the last write.
+     * A failed write is logged and tried again at the next interval; an exception must not escape,
+     * because it would cancel the periodic task.
+     */
+    private void writeStatisticsIfChanged() {
+        if (statisticsChanged.getAndSet(false)) {
+            try {
+                fileProcessor.writeStatistics();
+            } catch (RuntimeException e) {
+                statisticsChanged.set(true);
+                CustomLogger.error("Error writing statistics: " + e.getMessage(), e);
+            }
+        }
+    }
+    /**
+     * The debounceMillis method returns the debounce period from the current configuration.
+     *
+     * @return The debounce period in milliseconds.
+     */
+    private static long debounceMillis() {
+        return PropsHandler.getConfig().getLong("WATCH_DEBOUNCE_MILLIS", 1000);
+    }
+    /**
+     * State of a file waiting for its debounce period to end.
+     */
+    private static class PendingFile {
+        private long lastEventTime;
+        private long size = -1;
+        private long lastModified = -1;
+    }
+}
@@ -0,0 +1,66 @@
+package by.financialstatements.model.fileprocessing.service;
+
+import by.financialstatements.model.statistics.ParsedDocument;
+/**
+ * The IngestionResult class is the outcome of FileProcessor.ingest for one document received as a stream.
+ *
+ * An upload is refused unless it is counted, which differs from the batch path for a document with a valid
+ * name but no amount: a file of the data folder is still moved to the valid folder (only its name is checked
+ * before the move) and is left out of the statistics, while an upload is answered with NO_AMOUNT and not stored.
+ * The sender learns of the problem at once and can send a corrected document under the same name, which a
+ * stored copy would refuse as a DUPLICATE.
+ */
+public class IngestionResult {
+    /**
+     * What happened to the document.
+     */
+    public enum Status {
+        /**
+         * The document was stored in the valid folder and added to the statistics.
+         */
+        ACCEPTED,
+        /**
+         * The name is not a valid document name; nothing was stored.
+         */
+        INVALID_NAME,
+        /**
+         * The document has no amount on its last line; nothing was stored (see the class comment for how this
+         * differs from a file of the data folder).
+         */
+        NO_AMOUNT,
+        /**
+         * A document with the same name is already in the valid folder, or a document with the same content
+         * has already been accepted; nothing was stored.
+         */
+        DUPLICATE,
+        /**
+         * The document is larger than allowed; nothing was stored.
+         */
+        TOO_LARGE
+    }
+
+    private final Status status;
+    private final ParsedDocument document;
+    /**
+     * IngestionResult constructor.
+     *
+     * @param status What happened to the document.
+     * @param document The parsed document if it was accepted, otherwise null.
+     */
+    public IngestionResult(Status status, ParsedDocument document) {
+        this.status = status;
+        this.document = document;
+    }
+    /**
+     * @return What happened to the document.
+     */
+    public Status getStatus() {
+        return status;
+    }
+    /**
+     * @return The parsed document if it was accepted, otherwise null.
+     */
+    public ParsedDocument getDocument() {
+        return document;
+    }
+}
@@ -0,0 +1,234 @@
+package by.financialstatements.model.fileprocessing.service;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+/**
+ * The MoveJournal class is the append-only journal of the file moves of a run. It holds two kinds of records:
+ * - an intent record (move number, source, target), written before the file is moved;
+ * - a done record (move number), written after the file is moved.
+ * Done records are buffered and written together with the next intent record, so each move costs one write call.
+ * The journal is forced to disk once per sync batch, not once per move. The file system is the final authority
+ * on whether a move happened, so recovery does not depend on the done records, which only show the progress.
+ * Commit rewrites the journal atomically, keeping only the moves that are still in progress.
+ */
+public class MoveJournal {
+    private static final int MAGIC = 0x4d4f564a; // "MOVJ"
+    private static final byte INTENT = 1;
+    private static final byte DONE = 2;
+
+    private final Path file;
+    private final IntSupplier syncBatch;
+    private final Map<Long, Entry> openMoves = new LinkedHashMap<>();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final DataOutputStream pendingOutput = new DataOutputStream(pending);
+    private FileChannel channel;
+    private long nextId;
+    private int unsynced;
+    /**
+     * MoveJournal constructor. The journal file is created on the first move.
+     *
+     * @param file Path to the journal file.
+     * @param syncBatch Number of intent records after which the journal is forced to disk.
+     */
+    public MoveJournal(Path file, int syncBatch) {
+        this(file, () -> syncBatch);
+    }
+    /**
+     * MoveJournal constructor with a sync batch that may change while the journal is used.
+     * The journal file is created on the first move.
+     *
+     * @param file Path to the journal file.
+     * @param syncBatch Supplier of the number of intent records after which the journal is forced to disk.
+     */
+    public MoveJournal(Path file, IntSupplier syncBatch) {
+        this.file = file;
+        this.syncBatch = syncBatch;
+    }
+    /**
+     * The begin method records the intent to move a file.
+     *
+     * @param source Current path of the file.
+     * @param target Path the file is moved to.
+     * @return The number of the move, to be passed to complete.
+     * @throws IOException If the journal cannot be written.
+     */
+    public synchronized long begin(Path source, Path target) throws IOException {
+        long id = nextId++;
+        pendingOutput.writeByte(INTENT);
+        pendingOutput.writeLong(id);
+        pendingOutput.writeUTF(source.toString());
+        pendingOutput.writeUTF(target.toString());
+        writePending();
+        openMoves.put(id, new Entry(id, source, target, false));
+        if (++unsynced >= Math.max(1, syncBatch.getAsInt())) {
+            channel.force(false);
+            unsynced = 0;
+        }
+        return id;
+    }
+    /**
+     * The complete method records that a move has finished. The record is written with the next intent or commit.
+     *
+     * @param id The number of the move returned by begin.
+     * @throws IOException If the record cannot be buffered.
+     */
+    public synchronized void complete(long id) throws IOException {
+        pendingOutput.writeByte(DONE);
+        pendingOutput.writeLong(id);
+        openMoves.remove(id);
+    }
+    /**
+     * The commit method makes the finished moves final: the journal is replaced atomically with one that
+     * contains only the moves still in progress, or deleted if there are none.
+     *
+     * @throws IOException If the journal cannot be written.
+     */
+    public synchronized void commit() throws IOException {
+        pending.reset();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        unsynced = 0;
+        if (openMoves.isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        for (Entry entry : openMoves.values()) {
+            pendingOutput.writeByte(INTENT);
+            pendingOutput.writeLong(entry.getId());
+            pendingOutput.writeUTF(entry.getSource().toString());
+            pendingOutput.writeUTF(entry.getTarget().toString());
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Path temporaryFile = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (FileChannel temporaryChannel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+            temporaryChannel.write(ByteBuffer.wrap(header()));
+            temporaryChannel.write(ByteBuffer.wrap(pending.toByteArray()));
+            temporaryChannel.force(false);
+        }
+        pending.reset();
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    /**
+     * The read method reads the moves recorded in a journal file. A record cut off by a crash is ignored.
+     *
+     * @param file Path to the journal file.
+     * @return The moves in the order they were started.
+     * @throws IOException If the file cannot be read or is not a move journal.
+     */
+    public static List<Entry> read(Path file) throws IOException {
+        Map<Long, Entry> entries = new LinkedHashMap<>();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("Not a move journal: " + file);
+            }
+            while (true) {
+                byte type = input.readByte();
+                long id = input.readLong();
+                if (type == INTENT) {
+                    entries.put(id, new Entry(id, Paths.get(input.readUTF()), Paths.get(input.readUTF()), false));
+                } else if (type == DONE && entries.containsKey(id)) {
+                    Entry entry = entries.get(id);
+                    entries.put(id, new Entry(id, entry.getSource(), entry.getTarget(), true));
+                } else if (type != DONE) {
+                    break;
+                }
+            }
+        } catch (EOFException e) {
+            // End of the journal, possibly in the middle of a record written when the run stopped
+        }
+        return new ArrayList<>(entries.values());
+    }
+    /**
+     * The writePending method writes the buffered records, creating the journal file if needed.
+     *
+     * @throws IOException If the journal cannot be written.
+     */
+    private void writePending() throws IOException {
+        if (channel == null) {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            if (channel.size() == 0) {
+                channel.write(ByteBuffer.wrap(header()));
+            }
+        }
+        ByteBuffer records = ByteBuffer.wrap(pending.toByteArray());
+        while (records.hasRemaining()) {
+            channel.write(records);
+        }
+        pending.reset();
+    }
+    /**
+     * The header method returns the bytes that start every journal file.
+     *
+     * @return The header.
+     */
+    private static byte[] header() {
+        return ByteBuffer.allocate(Integer.BYTES).putInt(MAGIC).array();
+    }
+    /**
+     * The Entry class is one move recorded in the journal.
+     */
+    public static class Entry {
+        private final long id;
+        private final Path source;
+        private final Path target;
+        private final boolean done;
+        /**
+         * Entry constructor.
+         *
+         * @param id Number of the move.
+         * @param source Path of the file before the move.
+         * @param target Path of the file after the move.
+         * @param done Whether the journal records the move as finished.
+         */
+        Entry(long id, Path source, Path target, boolean done) {
+            this.id = id;
+            this.source = source;
+            this.target = target;
+            this.done = done;
+        }
+        /**
+         * @return Number of the move.
+         */
+        public long getId() {
+            return id;
+        }
+        /**
+         * @return Path of the file before the move.
+         */
+        public Path getSource() {
+            return source;
+        }
+        /**
+         * @return Path of the file after the move.
+         */
+        public Path getTarget() {
+            return target;
+        }
+        /**
+         * @return Whether the journal records the move as finished.
+         */
+        public boolean isDone() {
+            return done;
+        }
+    }
+}
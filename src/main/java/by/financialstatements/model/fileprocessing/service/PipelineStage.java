@@ -0,0 +1,141 @@
+package by.financialstatements.model.fileprocessing.service;
+
+import by.financialstatements.model.log.CustomLogger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+/**
+ * The PipelineStage class is one stage of a processing pipeline: a bounded queue of items and a fixed number
+ * of worker threads that take items from the queue and handle them. A handler usually passes its result
+ * to the next stage with put, so a slow stage fills its queue and blocks the stage before it (backpressure).
+ * Memory is bounded by the queue capacities, whatever the number of items.
+ *
+ * The producer calls finish after the last item. When every worker of the stage has finished,
+ * the stage finishes the next stage, so the end of input travels down the pipeline.
+ * An exception thrown by the handler is logged, the item is skipped, and the first such exception
+ * is rethrown by await.
+ *
+ * @param <T> Type of the items handled by the stage.
+ */
+public class PipelineStage<T> {
+    private static final Object END = new Object();
+
+    private final String name;
+    private final BlockingQueue<Object> queue;
+    private final Handler<T> handler;
+    private final PipelineStage<?> next;
+    private final Thread[] workers;
+    private final AtomicInteger runningWorkers;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    /**
+     * PipelineStage constructor. Starts the worker threads.
+     *
+     * @param name Name of the stage, used for the thread names.
+     * @param threads Number of worker threads.
+     * @param capacity Capacity of the input queue.
+     * @param handler Action performed on every item.
+     * @param next Stage the handler passes its results to, finished after the last item; null for the last stage.
+     */
+    public PipelineStage(String name, int threads, int capacity, Handler<T> handler, PipelineStage<?> next) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.handler = handler;
+        this.next = next;
+        this.workers = new Thread[Math.max(1, threads)];
+        this.runningWorkers = new AtomicInteger(workers.length);
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = Thread.ofPlatform().daemon().name(name + "-" + (i + 1)).start(this::run);
+        }
+    }
+    /**
+     * The put method adds an item to the queue, waiting while the queue is full.
+     *
+     * @param item The item.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void put(T item) throws InterruptedException {
+        queue.put(item);
+    }
+    /**
+     * The finish method tells the stage that no more items will be added.
+     * The workers stop after handling the items already in the queue.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting for space in the queue.
+     */
+    public void finish() throws InterruptedException {
+        for (int i = 0; i < workers.length; i++) {
+            queue.put(END);
+        }
+    }
+    /**
+     * The cancel method stops the workers without handling the items left in the queue.
+     */
+    public void cancel() {
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+    /**
+     * The await method waits until every worker of the stage has stopped.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     * @throws RuntimeException The first exception thrown by the handler, if any.
+     */
+    public void await() throws InterruptedException {
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        RuntimeException exception = failure.get();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+    /**
+     * The run method is the loop of a worker thread.
+     */
+    @SuppressWarnings("unchecked")
+    private void run() {
+        try {
+            while (true) {
+                Object item = queue.take();
+                if (item == END) {
+                    break;
+                }
+                try {
+                    handler.handle((T) item);
+                } catch (RuntimeException e) {
+                    CustomLogger.error("Error in pipeline stage " + name + ": " + e.getMessage(), e);
+                    failure.compareAndSet(null, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (runningWorkers.decrementAndGet() == 0 && next != null) {
+                try {
+                    next.finish();
+                } catch (InterruptedException e) {
+                    // Cancelled: the next stage is cancelled as well
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+    /**
+     * Action performed by a stage on every item. It may wait for space in the queue of the next stage.
+     *
+     * @param <T> Type of the items.
+     */
+    @FunctionalInterface
+    public interface Handler<T> {
+        /**
+         * The handle method processes one item.
+         *
+         * @param item The item.
+         * @throws InterruptedException If the thread is interrupted while waiting.
+         */
+        void handle(T item) throws InterruptedException;
+    }
+}
@@ -0,0 +1,263 @@
+package by.financialstatements.model.log;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+/**
+ * The AsyncLogWriter class writes log records to files on a background thread.
+ * Callers only place a record into a lock-free ring buffer; the background thread drains it in batches,
+ * formats the records, writes them to log files that stay open, and flushes once per batch.
+ * When the buffer is full the record is either waited for (BLOCK) or dropped and counted (DROP).
+ * Once the log files in use are given with retainFiles, any other open file is closed after the batch
+ * that wrote to it, so files left behind by a configuration change are not kept open.
+ */
+public class AsyncLogWriter {
+    /**
+     * What to do with a record when the ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Wait until the background thread frees a slot.
+         */
+        BLOCK,
+        /**
+         * Discard the record and increase the dropped counter.
+         */
+        DROP
+    }
+
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final long IDLE_PARK_NANOS = 1_000_000L;
+    private static final long WAIT_PARK_NANOS = 10_000L;
+    private static final int WRITER_BUFFER_SIZE = 64 * 1024;
+
+    private final LogRingBuffer ringBuffer;
+    private final OverflowPolicy overflowPolicy;
+    private final int batchSize;
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Map<String, Writer> writers = new HashMap<>();
+    private final Thread consumer;
+    private volatile Set<String> retainedFiles;
+    private volatile boolean running = true;
+    private volatile long writtenCount;
+    private long reportedDroppedCount;
+    private String lastDropReportFile;
+    /**
+     * AsyncLogWriter constructor. Starts the background writer thread.
+     *
+     * @param capacity Capacity of the ring buffer (rounded up to a power of two).
+     * @param overflowPolicy What to do with a record when the buffer is full.
+     * @param batchSize Maximum number of records written between two flushes.
+     */
+    public AsyncLogWriter(int capacity, OverflowPolicy overflowPolicy, int batchSize) {
+        this.ringBuffer = new LogRingBuffer(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.batchSize = Math.max(1, batchSize);
+        this.consumer = Thread.ofPlatform().daemon().name("async-logger").start(this::run);
+    }
+    /**
+     * The append method queues a log record. The timestamp is taken at the moment of the call.
+     *
+     * @param level Log level (INFO, WARNING, ERROR).
+     * @param message Message to write to the log.
+     * @param throwable Exception whose stack is also written (may be null).
+     * @param logFile File to write the log to.
+     */
+    public void append(String level, String message, Throwable throwable, String logFile) {
+        LogRecord record = new LogRecord(System.currentTimeMillis(), level, message, throwable, logFile);
+        if (!running) {
+            droppedCount.incrementAndGet();
+            return;
+        }
+        while (!ringBuffer.offer(record)) {
+            if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            LockSupport.parkNanos(WAIT_PARK_NANOS);
+        }
+    }
+    /**
+     * The flush method waits until every record queued before the call has been written and flushed to its file.
+     */
+    public void flush() {
+        long target = ringBuffer.getProducedCount();
+        while (writtenCount < target && consumer.isAlive()) {
+            LockSupport.unpark(consumer);
+            LockSupport.parkNanos(WAIT_PARK_NANOS);
+        }
+    }
+    /**
+     * The close method writes all queued records, closes the log files and stops the background thread.
+     * Records logged after closing are counted as dropped.
+     */
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    /**
+     * The retainFiles method sets the log files that stay open. Other open files are closed by the background
+     * thread after its current batch; records still queued for them reopen them for one batch only.
+     *
+     * @param logFiles Log files in use.
+     */
+    public void retainFiles(Set<String> logFiles) {
+        retainedFiles = Set.copyOf(logFiles);
+        LockSupport.unpark(consumer);
+    }
+    /**
+     * The getDroppedCount method returns the number of records discarded because the buffer was full
+     * or the writer was already closed.
+     *
+     * @return Number of dropped records.
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+    /**
+     * The run method is the loop of the background thread: it drains the buffer in batches
+     * and, once the writer is closed, writes what is left and closes the files.
+     */
+    private void run() {
+        while (running || ringBuffer.getConsumedCount() < ringBuffer.getProducedCount()) {
+            if (drainBatch() == 0 && running) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        closeWriters();
+    }
+    /**
+     * The drainBatch method writes up to batchSize records and flushes the files they went to.
+     *
+     * @return Number of records written.
+     */
+    private int drainBatch() {
+        int count = 0;
+        LogRecord record;
+        while (count < batchSize && (record = ringBuffer.poll()) != null) {
+            write(record.getLogFile(), format(record));
+            lastDropReportFile = record.getLogFile();
+            count++;
+        }
+        reportDroppedRecords();
+        if (count > 0) {
+            flushWriters();
+            writtenCount = ringBuffer.getConsumedCount();
+        }
+        closeStaleWriters();
+        return count;
+    }
+    /**
+     * The format method builds the log line: timestamp, level, message and, optionally, the exception stack.
+     *
+     * @param record Record to format.
+     * @return The formatted log line.
+     */
+    private String format(LogRecord record) {
+        String timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(record.getTimestamp()), ZoneId.systemDefault())
+                .format(TIMESTAMP_FORMAT);
+        String logMessage = timestamp + " [" + record.getLevel().toUpperCase() + "] " + record.getMessage();
+        // If there is a throwable, include its stack in the message
+        if (record.getThrowable() != null) {
+            StringWriter sw = new StringWriter();
+            PrintWriter pw = new PrintWriter(sw);
+            record.getThrowable().printStackTrace(pw);
+            logMessage += "\n" + sw;
+        }
+        return logMessage + System.lineSeparator();
+    }
+    /**
+     * The reportDroppedRecords method writes a warning line when records were dropped since the last report.
+     */
+    private void reportDroppedRecords() {
+        long dropped = droppedCount.get();
+        if (dropped > reportedDroppedCount && lastDropReportFile != null) {
+            String timestamp = LocalDateTime.now().format(TIMESTAMP_FORMAT);
+            write(lastDropReportFile, timestamp + " [WARNING] " + (dropped - reportedDroppedCount)
+                    + " log records dropped because the log queue was full" + System.lineSeparator());
+            reportedDroppedCount = dropped;
+        }
+    }
+    /**
+     * The write method writes text to a log file, opening it in append mode on first use.
+     *
+     * @param logFile File to write to.
+     * @param text Text to write.
+     */
+    private void write(String logFile, String text) {
+        try {
+            Writer writer = writers.get(logFile);
+            if (writer == null) {
+                writer = new BufferedWriter(new FileWriter(logFile, true), WRITER_BUFFER_SIZE);
+                writers.put(logFile, writer);
+            }
+            writer.write(text);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Error writing to file " + logFile + ": " + e.getMessage());
+        }
+    }
+    /**
+     * The flushWriters method flushes every open log file.
+     */
+    private void flushWriters() {
+        for (Map.Entry<String, Writer> entry : writers.entrySet()) {
+            try {
+                entry.getValue().flush();
+            } catch (IOException e) {
+                System.err.println("Error writing to file " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+    /**
+     * The closeStaleWriters method closes the open log files that are not among the retained files.
+     */
+    private void closeStaleWriters() {
+        Set<String> retained = retainedFiles;
+        if (retained == null || writers.isEmpty()) {
+            return;
+        }
+        Iterator<Map.Entry<String, Writer>> iterator = writers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Writer> entry = iterator.next();
+            if (!retained.contains(entry.getKey())) {
+                iterator.remove();
+                try {
+                    entry.getValue().close();
+                } catch (IOException e) {
+                    System.err.println("Error closing file " + entry.getKey() + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+    /**
+     * The closeWriters method flushes and closes every open log file.
+     */
+    private void closeWriters() {
+        for (Map.Entry<String, Writer> entry : writers.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                System.err.println("Error closing file " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        writers.clear();
+    }
+}
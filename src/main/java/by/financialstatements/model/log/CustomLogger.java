@@ -2,21 +2,49 @@ package by.financialstatements.model.log;
 
 import by.financialstatements.model.login_service.service.PropsHandler;
 
-import java.io.*;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 /**
  * The CustomLogger class is responsible for logging messages of different levels (INFO, WARNING, ERROR) to files.
  * It provides convenient methods for writing logs with the current timestamp, message, and, optionally, the exception stack.
  * Logging is divided into files depending on the level: information and warning messages are saved to one file,
  * and error messages to another.
+ * Messages are written asynchronously in batches; the log files stay open for the lifetime of the application.
+ * The log files (INFO_LOG_FILE and ERROR_LOG_FILE) are taken from the current configuration for every message,
+ * so they can be changed while the application is running; files no longer configured are closed after a reload.
  */
 public class CustomLogger {
-    private static final String INFO_LOG_FILE = PropsHandler.getPropertyFromConfig("INFO_LOG_FILE");
-    private static final String ERROR_LOG_FILE = PropsHandler.getPropertyFromConfig("ERROR_LOG_FILE");
+    private static final AsyncLogWriter WRITER = createWriter();
     /**
-     * The log method writes a log to a file.
-     * It formats the message with a timestamp, log level, and optionally an exception trail.
+     * The createWriter method creates the background log writer from the configuration
+     * (LOG_QUEUE_CAPACITY, LOG_OVERFLOW_POLICY, LOG_BATCH_SIZE), registers a shutdown hook
+     * that writes all queued messages before the application exits, and a configuration listener
+     * that keeps only the configured log files open.
+     *
+     * @return The background log writer.
+     */
+    private static AsyncLogWriter createWriter() {
+        String capacity = PropsHandler.getPropertyFromConfig("LOG_QUEUE_CAPACITY");
+        String overflowPolicy = PropsHandler.getPropertyFromConfig("LOG_OVERFLOW_POLICY");
+        String batchSize = PropsHandler.getPropertyFromConfig("LOG_BATCH_SIZE");
+        AsyncLogWriter writer = new AsyncLogWriter(
+                capacity == null ? 8192 : Integer.parseInt(capacity.trim()),
+                overflowPolicy == null ? AsyncLogWriter.OverflowPolicy.BLOCK
+                        : AsyncLogWriter.OverflowPolicy.valueOf(overflowPolicy.trim().toUpperCase()),
+                batchSize == null ? 512 : Integer.parseInt(batchSize.trim()));
+        Runtime.getRuntime().addShutdownHook(new Thread(writer::close, "async-logger-shutdown"));
+        PropsHandler.addListener(config -> {
+            Set<String> logFiles = new HashSet<>(Arrays.asList(config.get("INFO_LOG_FILE"), config.get("ERROR_LOG_FILE")));
+            logFiles.remove(null);
+            writer.retainFiles(logFiles);
+        });
+        return writer;
+    }
+    /**
+     * The log method queues a log for writing to a file.
+     * The message is formatted with a timestamp, log level, and optionally an exception trail
+     * and written by a background thread (see AsyncLogWriter).
      *
      * @param level Log level (INFO, WARNING, ERROR).
      * @param message Message to write to the log.
@@ -24,43 +52,42 @@ public class CustomLogger {
      * @param logFile File to write the log to.
      */
     public static void log(String level, String message, Throwable throwable, String logFile) {
-        // Format timestamp and message
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-        String logMessage = String.format("%s [%s] %s", timestamp, level.toUpperCase(), message);
-        // If there is a throwable, include its stack in the message
-        if (throwable != null) {
-            StringWriter sw = new StringWriter();
-            PrintWriter pw = new PrintWriter(sw);
-            throwable.printStackTrace(pw);
-            logMessage += "\n" + sw.toString();
-        }
-        // Write message to file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(logFile, true))) {
-            writer.write(logMessage + System.lineSeparator());
-        } catch (IOException e) {
-            System.err.println("Error writing to file " + logFile + ": " + e.getMessage());
-        }
+        WRITER.append(level, message, throwable, logFile);
+    }
+    /**
+     * The flush method waits until every message logged so far has been written to its file.
+     */
+    public static void flush() {
+        WRITER.flush();
+    }
+    /**
+     * The getDroppedCount method returns the number of messages dropped because the log queue was full.
+     *
+     * @return Number of dropped messages.
+     */
+    public static long getDroppedCount() {
+        return WRITER.getDroppedCount();
     }
     /**
      * Logging of information messages (INFO).
      * @param message Message to log.
      */
     public static void info(String message) {
-        log("INFO", message, null, INFO_LOG_FILE);
+        log("INFO", message, null, PropsHandler.getPropertyFromConfig("INFO_LOG_FILE"));
     }
     /**
      * Logging of warning messages (WARNING).
      * @param message Message to log.
      */
     public static void warning(String message) {
-        log("WARNING", message, null, INFO_LOG_FILE);
+        log("WARNING", message, null, PropsHandler.getPropertyFromConfig("INFO_LOG_FILE"));
     }
     /**
      * Log error messages (ERROR).
      * @param message Message to log.
      */
     public static void error(String message) {
-        log("ERROR", message, null, ERROR_LOG_FILE);
+        log("ERROR", message, null, PropsHandler.getPropertyFromConfig("ERROR_LOG_FILE"));
     }
     /**
      * Log error messages (ERROR) with exception included.
@@ -68,6 +95,6 @@ public class CustomLogger {
      * @param throwable Exception to be included in the log.
      */
     public static void error(String message, Throwable throwable) {
-        log("ERROR", message, throwable, ERROR_LOG_FILE);
+        log("ERROR", message, throwable, PropsHandler.getPropertyFromConfig("ERROR_LOG_FILE"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package by.financialstatements.model.log;
+/**
+ * The LogRecord class holds a single log message between the moment it is logged
+ * and the moment the background writer formats it and writes it to its file.
+ */
+public class LogRecord {
+    private final long timestamp;
+    private final String level;
+    private final String message;
+    private final Throwable throwable;
+    private final String logFile;
+    /**
+     * LogRecord constructor.
+     *
+     * @param timestamp Time of the log call in milliseconds since the epoch.
+     * @param level Log level (INFO, WARNING, ERROR).
+     * @param message Message to write to the log.
+     * @param throwable Exception whose stack is also written (may be null).
+     * @param logFile File to write the log to.
+     */
+    public LogRecord(long timestamp, String level, String message, Throwable throwable, String logFile) {
+        this.timestamp = timestamp;
+        this.level = level;
+        this.message = message;
+        this.throwable = throwable;
+        this.logFile = logFile;
+    }
+    /**
+     * @return Time of the log call in milliseconds since the epoch.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+    /**
+     * @return Log level (INFO, WARNING, ERROR).
+     */
+    public String getLevel() {
+        return level;
+    }
+    /**
+     * @return Message to write to the log.
+     */
+    public String getMessage() {
+        return message;
+    }
+    /**
+     * @return Exception whose stack is also written, or null.
+     */
+    public Throwable getThrowable() {
+        return throwable;
+    }
+    /**
+     * @return File to write the log to.
+     */
+    public String getLogFile() {
+        return logFile;
+    }
+}
@@ -0,0 +1,90 @@
+package by.financialstatements.model.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+/**
+ * The LogRingBuffer class is a bounded lock-free queue of log records with many producers and a single consumer.
+ * Every slot carries a sequence number: a producer claims a position with a CAS on the tail counter,
+ * stores its record and then publishes the slot by advancing its sequence, so neither side ever takes a lock.
+ */
+public class LogRingBuffer {
+    private final LogRecord[] records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    /**
+     * LogRingBuffer constructor.
+     *
+     * @param capacity Requested capacity, rounded up to the next power of two.
+     */
+    public LogRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.records = new LogRecord[size];
+        this.sequences = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+    /**
+     * The offer method adds a record to the buffer. Safe to call from any number of threads.
+     *
+     * @param record Record to add.
+     * @return true if the record was added, false if the buffer is full.
+     */
+    public boolean offer(LogRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    records[index] = record;
+                    // Publish the slot to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+    /**
+     * The poll method removes the oldest published record. Must only be called from the consumer thread.
+     *
+     * @return The oldest record, or null if no record is ready.
+     */
+    public LogRecord poll() {
+        long position = head;
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        LogRecord record = records[index];
+        records[index] = null;
+        // Release the slot for the producer one lap ahead
+        sequences.set(index, position + records.length);
+        head = position + 1;
+        return record;
+    }
+    /**
+     * The getProducedCount method returns the number of records claimed by producers so far.
+     *
+     * @return Number of claimed positions.
+     */
+    public long getProducedCount() {
+        return tail.get();
+    }
+    /**
+     * The getConsumedCount method returns the number of records removed by the consumer so far.
+     *
+     * @return Number of consumed positions.
+     */
+    public long getConsumedCount() {
+        return head;
+    }
+}
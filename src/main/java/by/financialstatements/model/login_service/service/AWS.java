@@ -1,18 +1,20 @@
 package by.financialstatements.model.login_service.service;
 
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.AwsCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
-import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.metrics.PipelineMetrics;
+import by.financialstatements.model.metrics.Stage;
+import by.financialstatements.model.metrics.StageMetrics;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 /**
  * The AWS class provides functionality for integrating with Amazon S3.
  * It implements a method that sends a statistics file to the specified bucket on Amazon S3 using the provided credentials.
+ * All uploads go through one long-lived S3Uploader (multipart, concurrent, retrying).
  */
 public class AWS {
     /**
@@ -24,40 +26,103 @@ public class AWS {
      */
     private static final String secretKey = "BBBBB";
     /**
-     * The name of the S3 bucket where the data will be uploaded.
+     * The name of the S3 bucket where the data will be uploaded (unless S3_BUCKET is configured).
      */
     private static final String bucketName = "reports-tms";
     /**
-     * Region to which the S3 bucket is bound.
+     * Region to which the S3 bucket is bound (unless S3_REGION is configured).
      */
     private static final  String regionName = "eu-north-1";
     /**
      * The throwToAmazon method sends a stats file to the specified S3 bucket.
      * It:
+     * - Does nothing if S3_UPLOAD_ENABLED is set to false in the configuration.
      * - Retrieves the stats file, the path to which is specified in the configuration.
-     * - Creates an S3 client with the specified credentials and region.
-     * - Generates a PutObjectRequest` to upload a file to the bucket.
-     * - Performs the file upload and receives a response from Amazon S3.
+     * - Uploads it through the shared S3Uploader and waits for the upload to finish.
+     * - Logs an error if the upload fails after all retries.
      */
     public static void throwToAmazon() {
+        // Uploading can be switched off, e.g. for benchmarks and local runs
+        if ("false".equalsIgnoreCase(PropsHandler.getPropertyFromConfig("S3_UPLOAD_ENABLED"))) {
+            CustomLogger.info("Upload to S3 is disabled, statistics file is not sent");
+            return;
+        }
         // File name in S3 bucket
         String key = "statistics_ilya_kate.txt";
         // Statistics file obtained from configuration
-        File file = new File(PropsHandler.getPropertyFromConfig("STATISTICS_FILE"));
-        // Create AWS credentials
-        AwsCredentials credentials = AwsBasicCredentials.create(accessKey, secretKey);
-        // Create S3 client
-        S3Client s3Client = S3Client
-                .builder()
-                .region(Region.of(regionName))
-                .credentialsProvider(StaticCredentialsProvider.create(credentials))
-                .build();
-        // Generate a request to download a file
-        PutObjectRequest request = PutObjectRequest.builder()
-                .bucket(bucketName)
-                .key(key)
-                .build();
-        // Upload file to S3
-        PutObjectResponse response = s3Client.putObject(request, Path.of(file.toURI()));
+        Path file = Path.of(PropsHandler.getPropertyFromConfig("STATISTICS_FILE"));
+        StageMetrics metrics = PipelineMetrics.getInstance().stage(Stage.UPLOAD);
+        long start = System.nanoTime();
+        try {
+            throwToAmazon(file, key).join();
+            metrics.addBytes(Files.size(file));
+        } catch (IOException | CompletionException e) {
+            metrics.recordError();
+            CustomLogger.error("Error uploading statistics file to S3: " + e.getMessage(), e);
+        } finally {
+            metrics.record(start);
+        }
     }
-}
+    /**
+     * The throwToAmazon method starts uploading any file (a batch report, an archived document)
+     * to the S3 bucket and returns without waiting. Several uploads can run at the same time.
+     *
+     * @param file File to upload.
+     * @param key Object key in the bucket.
+     * @return Future completed when the upload finishes.
+     * @throws IOException If the size of the file cannot be read.
+     */
+    public static CompletableFuture<PutObjectResponse> throwToAmazon(Path file, String key) throws IOException {
+        return UploaderHolder.UPLOADER.upload(file, key);
+    }
+    /**
+     * Holder of the S3 uploader shared by all uploads. It is created on first use from the configuration
+     * (S3_BUCKET, S3_REGION, S3_ENDPOINT, S3_MULTIPART_THRESHOLD, S3_PART_SIZE, S3_MAX_IN_FLIGHT_BYTES,
+     * S3_MAX_RETRIES) and closed when the application exits.
+     */
+    private static class UploaderHolder {
+        private static final S3Uploader UPLOADER = createUploader();
+        /**
+         * The createUploader method creates the uploader from the configuration and registers its shutdown hook.
+         *
+         * @return The shared uploader.
+         */
+        private static S3Uploader createUploader() {
+            S3Uploader.Settings settings = new S3Uploader.Settings()
+                    .regionName(getProperty("S3_REGION", regionName))
+                    .endpoint(PropsHandler.getPropertyFromConfig("S3_ENDPOINT"))
+                    .credentials(accessKey, secretKey)
+                    .bucketName(getProperty("S3_BUCKET", bucketName));
+            String multipartThreshold = PropsHandler.getPropertyFromConfig("S3_MULTIPART_THRESHOLD");
+            if (multipartThreshold != null) {
+                settings.multipartThreshold(Long.parseLong(multipartThreshold.trim()));
+            }
+            String partSize = PropsHandler.getPropertyFromConfig("S3_PART_SIZE");
+            if (partSize != null) {
+                settings.partSize(Long.parseLong(partSize.trim()));
+            }
+            String maxInFlightBytes = PropsHandler.getPropertyFromConfig("S3_MAX_IN_FLIGHT_BYTES");
+            if (maxInFlightBytes != null) {
+                settings.maxInFlightBytes(Integer.parseInt(maxInFlightBytes.trim()));
+            }
+            String maxRetries = PropsHandler.getPropertyFromConfig("S3_MAX_RETRIES");
+            if (maxRetries != null) {
+                settings.maxRetries(Integer.parseInt(maxRetries.trim()));
+            }
+            S3Uploader uploader = new S3Uploader(settings);
+            Runtime.getRuntime().addShutdownHook(new Thread(uploader::close, "s3-uploader-shutdown"));
+            return uploader;
+        }
+        /**
+         * The getProperty method returns a configuration property or a default value if it is not set.
+         *
+         * @param propName The name of the property.
+         * @param defaultValue Value used when the property is missing or blank.
+         * @return The value of the property or the default value.
+         */
+        private static String getProperty(String propName, String defaultValue) {
+            String value = PropsHandler.getPropertyFromConfig(propName);
+            return value == null || value.isBlank() ? defaultValue : value.trim();
+        }
+    }
+}
\ No newline at end of file
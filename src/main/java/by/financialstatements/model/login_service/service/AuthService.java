@@ -2,25 +2,103 @@ package by.financialstatements.model.login_service.service;
 
 import by.financialstatements.model.exception.LoginFailedException;
 import by.financialstatements.model.log.CustomLogger;
-import by.financialstatements.model.login_service.encryptor.LoginEncryptor;
 import by.financialstatements.model.login_service.session.ApplicationSession;
-import by.financialstatements.model.login_service.storage.MockStorage;
+import by.financialstatements.model.login_service.session.SessionManager;
+import by.financialstatements.model.login_service.storage.Credential;
+import by.financialstatements.model.login_service.storage.CredentialStore;
 import by.financialstatements.model.login_service.tfa.TFALaunch;
+import by.financialstatements.model.login_service.tfa.TotpEngine;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 /**
  * The AuthService class represents the user authentication service.
  * Its main task is to verify the credentials entered by the user (login and password),
  * use two-factor authentication (TFA) to increase the security level,
- * and return a session object (ApplicationSession) depending on the success or failure of authentication.
+ * and return a session object (ApplicationSession, issued by SessionManager) depending on the success or failure
+ * of authentication.
+ *
+ * Credentials come from a CredentialStore that keeps them decoded, so a verification only hashes the password
+ * and checks the TOTP code (see TotpEngine, which also rejects codes that have already been used). Verifications run on a pool of AUTH_THREADS workers (the number of processors
+ * by default) and do not wait for any input, so many users can authenticate at the same time.
  */
 public class AuthService {
+    // Compared against when the login is unknown, so that unknown logins take as long as wrong passwords
+    private static final Credential UNKNOWN_USER = new Credential("", "", "AAAAAAAAAAAAAAAA", "");
+    private static final AuthService INSTANCE = fromConfig();
+
+    private final CredentialStore credentialStore;
+    private final SessionManager sessionManager;
+    private final Executor executor;
+    /**
+     * AuthService constructor.
+     *
+     * @param credentialStore Source of the user credentials.
+     * @param sessionManager Manager that issues the sessions.
+     * @param executor Executor that runs the verifications.
+     */
+    public AuthService(CredentialStore credentialStore, SessionManager sessionManager, Executor executor) {
+        this.credentialStore = credentialStore;
+        this.sessionManager = sessionManager;
+        this.executor = executor;
+    }
+    /**
+     * The getInstance method returns the authentication service configured from the application configuration.
+     *
+     * @return The shared authentication service.
+     */
+    public static AuthService getInstance() {
+        return INSTANCE;
+    }
+    /**
+     * The fromConfig method creates the authentication service with the configured credential store
+     * and AUTH_THREADS daemon workers.
+     *
+     * @return A new authentication service.
+     */
+    private static AuthService fromConfig() {
+        int threads = Math.max(1, PropsHandler.getConfig().getInt("AUTH_THREADS",
+                Runtime.getRuntime().availableProcessors()));
+        // One factory for the pool, so its counter numbers the workers auth-0, auth-1, ...
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().daemon().name("auth-", 0).factory());
+        return new AuthService(CredentialStore.fromConfig(), SessionManager.getInstance(), executor);
+    }
+    /**
+     * The authenticate method verifies the login, password and two-factor authentication code of a user
+     * without blocking the caller.
+     *
+     * @param login The user-entered login.
+     * @param password The user-entered password.
+     * @param code The user-entered two-factor authentication code.
+     * @return A future completed with a valid session, or completed exceptionally with a LoginFailedException
+     * if the credentials or the code are incorrect.
+     */
+    public CompletableFuture<ApplicationSession> authenticate(String login, String password, String code) {
+        return CompletableFuture.supplyAsync(() -> verify(login, password, code), executor);
+    }
+    /**
+     * The checkPassword method checks only the login and password, for example before asking for the code.
+     *
+     * @param login The user-entered login.
+     * @param password The user-entered password.
+     * @return The credentials of the user if the login and password are correct; null otherwise.
+     */
+    public Credential checkPassword(String login, String password) {
+        Credential credential = credentialStore.find(login);
+        boolean matches = (credential == null ? UNKNOWN_USER : credential).matchesPassword(password);
+        return credential != null && matches ? credential : null;
+    }
     /**
-     * The auth method performs the authentication process taking into account the following steps:
-     * - Retrieves encrypted credentials (login and password) from the mock storage (MockStorage).
-     * - Decrypts them using LoginEncryptor.
-     * - Compares the user-entered data with the data retrieved from the database.
-     * - If the credentials match, performs two-factor authentication (TFA).
-     * - If TFA is successful, returns an object with a valid session, otherwise terminates the process with an error.
-     * - If the credentials are incorrect or there is a TFA error, a LoginFailedException is thrown,
+     * The auth method performs the console authentication process taking into account the following steps:
+     * - Checks the login and password against the credential store.
+     * - If the credentials match, asks for the two-factor authentication code (TFA).
+     * - Verifies the credentials and the code with authenticate.
+     * - If TFA is successful, returns an object with a valid session.
+     * - If the credentials are incorrect or there is a TFA error, a LoginFailedException is logged,
      * and an object with an invalid session is returned.
      *
      * @param login The user-entered login.
@@ -28,33 +106,41 @@ public class AuthService {
      * @return An ApplicationSession object, which can be a "valid" or "invalid" session.
      */
     public static ApplicationSession auth(String login, String password) {
-        // Simulated database as storage
-        MockStorage storageLikeDB = new MockStorage();
-        String loginFromDB = storageLikeDB.getLogin();
-        String passwordFromDB = storageLikeDB.getPassword();
-        // Decrypt data from storage
-        String decryptedLogin = LoginEncryptor.decrypt(loginFromDB);
-        String decryptedPassword = LoginEncryptor.decrypt(passwordFromDB);
-
-        try {
-            // Checking the entered login and password
-            if (login.equals(decryptedLogin) &&
-                    password.equals(decryptedPassword)) {
-                CustomLogger.info("Login and password are entered correctly");
-                // Two-factor authentication (TFA)
-                if (TFALaunch.launchTFA()) {
-                    CustomLogger.info("Session started successfully");
-                    return new ApplicationSession("Valid session");
-                }
-                else {
-                    throw new LoginFailedException("Error starting session: invalid authentication code", null);
-                }
-            } else {
-                throw new LoginFailedException("Error starting session: invalid credentials", null);
-            }
-        } catch (LoginFailedException e) {
+        AuthService authService = getInstance();
+        Credential credential = authService.checkPassword(login, password);
+        if (credential == null) {
+            LoginFailedException e = new LoginFailedException("Error starting session: invalid credentials", null);
             CustomLogger.error(e.getMessage(), e);
-            return new ApplicationSession("Invalid session");
+            return authService.sessionManager.invalidSession();
+        }
+        CustomLogger.info("Login and password are entered correctly");
+        String code = TFALaunch.promptCode(credential.getTotpSecret(), credential.getAccount());
+        try {
+            return authService.authenticate(login, password, code).join();
+        } catch (CompletionException e) {
+            CustomLogger.error(e.getCause().getMessage(), e.getCause());
+            return authService.sessionManager.invalidSession();
+        }
+    }
+    /**
+     * The verify method checks the credentials and the code and issues a session.
+     *
+     * @param login The user-entered login.
+     * @param password The user-entered password.
+     * @param code The user-entered two-factor authentication code.
+     * @return A valid session.
+     * @throws LoginFailedException If the credentials or the code are incorrect.
+     */
+    private ApplicationSession verify(String login, String password, String code) {
+        Credential credential = checkPassword(login, password);
+        if (credential == null) {
+            throw new LoginFailedException("Error starting session: invalid credentials", null);
+        }
+        if (!TotpEngine.getInstance().verify(credential.getLogin(), credential.getTotpKey(), code)) {
+            throw new LoginFailedException("Error starting session: invalid authentication code", null);
         }
+        CustomLogger.info("Two-factor authentication completed successfully");
+        CustomLogger.info("Session started successfully");
+        return sessionManager.createSession();
     }
 }
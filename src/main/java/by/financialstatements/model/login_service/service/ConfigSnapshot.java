@@ -0,0 +1,172 @@
+package by.financialstatements.model.login_service.service;
+
+import by.financialstatements.model.log.CustomLogger;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+/**
+ * The ConfigSnapshot class is an immutable view of the configuration as it was loaded at one moment.
+ * PropsHandler replaces the whole snapshot when the configuration file changes, so values read
+ * from one snapshot always belong together.
+ *
+ * Typed values are parsed once per snapshot and cached, so reading a number or a path on a hot path
+ * is a map lookup. A value that cannot be parsed is reported once and the default is used instead,
+ * so a mistake in a live edit does not stop the application.
+ */
+public final class ConfigSnapshot {
+    private static final Object MISSING = new Object();
+
+    private final Map<String, String> values;
+    private final long version;
+    private final Instant loadTime;
+    private final Map<String, Object> parsedValues = new ConcurrentHashMap<>();
+    /**
+     * ConfigSnapshot constructor.
+     *
+     * @param properties Loaded properties; they are copied.
+     * @param version Number of the snapshot, increased on every reload.
+     */
+    public ConfigSnapshot(Properties properties, long version) {
+        Map<String, String> copy = new HashMap<>();
+        for (String name : properties.stringPropertyNames()) {
+            copy.put(name, properties.getProperty(name));
+        }
+        this.values = Map.copyOf(copy);
+        this.version = version;
+        this.loadTime = Instant.now();
+    }
+    /**
+     * The get method returns the raw value of a property.
+     *
+     * @param propName The name of the property.
+     * @return The value of the property, or null if the property is not found.
+     */
+    public String get(String propName) {
+        return values.get(propName);
+    }
+    /**
+     * The getString method returns the trimmed value of a property.
+     *
+     * @param propName The name of the property.
+     * @param defaultValue Value used when the property is missing or blank.
+     * @return The value of the property or the default value.
+     */
+    public String getString(String propName, String defaultValue) {
+        String value = values.get(propName);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+    /**
+     * The getInt method returns the value of a property as an int.
+     *
+     * @param propName The name of the property.
+     * @param defaultValue Value used when the property is missing, blank or not a number.
+     * @return The value of the property or the default value.
+     */
+    public int getInt(String propName, int defaultValue) {
+        Integer value = getParsed(propName, Integer.class, Integer::valueOf);
+        return value == null ? defaultValue : value;
+    }
+    /**
+     * The getLong method returns the value of a property as a long.
+     *
+     * @param propName The name of the property.
+     * @param defaultValue Value used when the property is missing, blank or not a number.
+     * @return The value of the property or the default value.
+     */
+    public long getLong(String propName, long defaultValue) {
+        Long value = getParsed(propName, Long.class, Long::valueOf);
+        return value == null ? defaultValue : value;
+    }
+    /**
+     * The getDouble method returns the value of a property as a double.
+     *
+     * @param propName The name of the property.
+     * @param defaultValue Value used when the property is missing, blank or not a number.
+     * @return The value of the property or the default value.
+     */
+    public double getDouble(String propName, double defaultValue) {
+        Double value = getParsed(propName, Double.class, Double::valueOf);
+        return value == null ? defaultValue : value;
+    }
+    /**
+     * The getBoolean method returns the value of a property as a boolean ("true" or "false", in any case).
+     *
+     * @param propName The name of the property.
+     * @param defaultValue Value used when the property is missing, blank or neither true nor false.
+     * @return The value of the property or the default value.
+     */
+    public boolean getBoolean(String propName, boolean defaultValue) {
+        Boolean value = getParsed(propName, Boolean.class, text -> {
+            if (!text.equalsIgnoreCase("true") && !text.equalsIgnoreCase("false")) {
+                throw new IllegalArgumentException("expected true or false");
+            }
+            return Boolean.valueOf(text);
+        });
+        return value == null ? defaultValue : value;
+    }
+    /**
+     * The getPath method returns the value of a property as a path.
+     *
+     * @param propName The name of the property.
+     * @return The path, or null if the property is missing or blank.
+     */
+    public Path getPath(String propName) {
+        return getParsed(propName, Path.class, Paths::get);
+    }
+    /**
+     * The getEnum method returns the value of a property as a constant of an enum (in any case).
+     *
+     * @param propName The name of the property.
+     * @param defaultValue Value used when the property is missing, blank or not a constant of the enum.
+     * @param <E> Type of the enum.
+     * @return The value of the property or the default value.
+     */
+    public <E extends Enum<E>> E getEnum(String propName, E defaultValue) {
+        E value = getParsed(propName, defaultValue.getDeclaringClass(), text -> Enum.valueOf(defaultValue.getDeclaringClass(), text.toUpperCase()));
+        return value == null ? defaultValue : value;
+    }
+    /**
+     * @return Number of the snapshot, increased on every reload.
+     */
+    public long getVersion() {
+        return version;
+    }
+    /**
+     * @return Time the snapshot was loaded.
+     */
+    public Instant getLoadTime() {
+        return loadTime;
+    }
+    /**
+     * The getParsed method parses the trimmed value of a property once and caches the result.
+     * If the same property is read as another type, it is parsed again and the cache is replaced.
+     *
+     * @param propName The name of the property.
+     * @param type Type of the parsed value.
+     * @param parser Parser of the value.
+     * @param <T> Type of the parsed value.
+     * @return The parsed value, or null if the property is missing, blank or cannot be parsed.
+     */
+    private <T> T getParsed(String propName, Class<T> type, Function<String, T> parser) {
+        Object parsed = parsedValues.get(propName);
+        if (parsed == null || parsed != MISSING && !type.isInstance(parsed)) {
+            parsed = MISSING;
+            String value = values.get(propName);
+            if (value != null && !value.isBlank()) {
+                try {
+                    parsed = parser.apply(value.trim());
+                } catch (RuntimeException e) {
+                    CustomLogger.error("Invalid value of " + propName + ": '" + value + "', using the default");
+                }
+            }
+            parsedValues.put(propName, parsed);
+        }
+        return parsed == MISSING ? null : type.cast(parsed);
+    }
+}
@@ -2,34 +2,178 @@ package by.financialstatements.model.login_service.service;
 
 import by.financialstatements.model.log.CustomLogger;
 
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 /**
  * The PropsHandler class is designed to manage application configuration properties.
  * It loads settings from a configuration file and provides methods to access this data.
+ * The file is src/main/resources/config.properties unless another path is given in the config.file system property;
+ * if the file does not exist, config.properties is loaded from the classpath.
+ *
+ * The loaded properties are kept as an immutable ConfigSnapshot. When CONFIG_RELOAD_ENABLED is true
+ * (the default), a daemon thread watches the file and, after it has been changed, loads it again and
+ * publishes a new snapshot in a single volatile write. Readers never lock: they see either the old or
+ * the new snapshot, never a mix. Settings that are read from the snapshot when they are used
+ * (paths, thread counts, batch sizes) take effect without a restart; listeners can be added
+ * to react to a reload.
  */
 public class PropsHandler {
-    private static final String CONFIG_FILE_PATH = "src/main/resources/config.properties";
-    private static Properties properties;
+    private static final String CONFIG_FILE_PATH = System.getProperty("config.file", "src/main/resources/config.properties");
+    private static final String CONFIG_RESOURCE = "config.properties";
+    private static final long RELOAD_DEBOUNCE_MILLIS = 200;
+    private static final List<Consumer<ConfigSnapshot>> LISTENERS = new CopyOnWriteArrayList<>();
+    // Empty until the file is loaded, so that logging an error during loading does not fail
+    private static volatile ConfigSnapshot snapshot = new ConfigSnapshot(new Properties(), 0);
+    private static Thread watcher;
     // Static block for initialization
     static {
-        properties = new Properties();
-        try (InputStream input = new FileInputStream(CONFIG_FILE_PATH)) {
+        snapshot = new ConfigSnapshot(load(), 1);
+        if (snapshot.getBoolean("CONFIG_RELOAD_ENABLED", true)) {
+            startWatching();
+        }
+    }
+    /**
+     * The getPropertyFromConfig method returns the value of a property by its name from the current snapshot.
+     *
+     * @param propName The name of the parameter whose value you want to get.
+     * @return The value of the property, or null if the property is not found.
+     */
+    public static String getPropertyFromConfig(String propName) {
+        return snapshot.get(propName);
+    }
+    /**
+     * The getConfig method returns the current configuration snapshot. Values that must be consistent
+     * with each other should be read from one snapshot.
+     *
+     * @return The current snapshot.
+     */
+    public static ConfigSnapshot getConfig() {
+        return snapshot;
+    }
+    /**
+     * The addListener method registers an action that is called with every new snapshot after a reload.
+     *
+     * @param listener The action.
+     */
+    public static void addListener(Consumer<ConfigSnapshot> listener) {
+        LISTENERS.add(listener);
+    }
+    /**
+     * The reload method loads the configuration file again and publishes it as a new snapshot.
+     * If the file cannot be read, the current snapshot is kept.
+     *
+     * @return The current snapshot after the reload.
+     */
+    public static synchronized ConfigSnapshot reload() {
+        Properties properties = new Properties();
+        Path file = Paths.get(CONFIG_FILE_PATH);
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+        } catch (IOException e) {
+            CustomLogger.error("Failed to reload properties from " + CONFIG_FILE_PATH + ", keeping the current ones", e);
+            return snapshot;
+        }
+        ConfigSnapshot reloaded = new ConfigSnapshot(properties, snapshot.getVersion() + 1);
+        snapshot = reloaded;
+        CustomLogger.info("Configuration reloaded from " + CONFIG_FILE_PATH + " (version " + reloaded.getVersion() + ")");
+        for (Consumer<ConfigSnapshot> listener : LISTENERS) {
+            try {
+                listener.accept(reloaded);
+            } catch (RuntimeException e) {
+                CustomLogger.error("Configuration listener failed: " + e.getMessage(), e);
+            }
+        }
+        return reloaded;
+    }
+    /**
+     * The startWatching method starts the daemon thread that reloads the configuration file when it changes.
+     * It does nothing if the thread is already running or the configuration was loaded from the classpath.
+     */
+    public static synchronized void startWatching() {
+        Path file = Paths.get(CONFIG_FILE_PATH).toAbsolutePath();
+        if (watcher != null || !Files.isRegularFile(file)) {
+            return;
+        }
+        watcher = Thread.ofPlatform().daemon().name("config-watcher").start(() -> watch(file));
+    }
+    /**
+     * The load method loads the properties from the configuration file or, if it does not exist, from the classpath.
+     *
+     * @return The loaded properties; empty if none could be loaded.
+     */
+    private static Properties load() {
+        Properties properties = new Properties();
+        Path file = Paths.get(CONFIG_FILE_PATH);
+        try (InputStream input = Files.isRegularFile(file) ? Files.newInputStream(file)
+                : PropsHandler.class.getClassLoader().getResourceAsStream(CONFIG_RESOURCE)) {
+            if (input == null) {
+                throw new IOException("file not found");
+            }
             // Load parameters from file
             properties.load(input);
         } catch (IOException e) {
             CustomLogger.error("Failed to load properties from " + CONFIG_FILE_PATH, e);
         }
+        return properties;
     }
     /**
-     * The getPropertyFromConfig method returns the value of a property by its name.
+     * The watch method is the loop of the watcher thread. The folder of the file is watched, because editors
+     * often replace a file instead of writing it in place. Events that follow each other within a short
+     * period are handled as one change.
      *
-     * @param propName The name of the parameter whose value you want to get.
-     * @return The value of the property, or null if the property is not found.
+     * @param file Absolute path to the configuration file.
      */
-    public static String getPropertyFromConfig(String propName) {
-        return properties.getProperty(propName);
+    private static void watch(Path file) {
+        try (WatchService watchService = file.getFileSystem().newWatchService()) {
+            file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = containsFile(key, file);
+                // Wait for the writer to finish and collect the events it causes meanwhile
+                WatchKey next;
+                while ((next = watchService.poll(RELOAD_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= containsFile(next, file);
+                }
+                if (changed) {
+                    reload();
+                }
+            }
+        } catch (IOException e) {
+            CustomLogger.error("Cannot watch configuration file " + file + ": " + e.getMessage(), e);
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    /**
+     * The containsFile method checks whether the events of a watch key concern the configuration file,
+     * and resets the key.
+     *
+     * @param key Signalled watch key.
+     * @param file Absolute path to the configuration file.
+     * @return true if one of the events concerns the file (or events were lost).
+     */
+    private static boolean containsFile(WatchKey key, Path file) {
+        boolean found = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context())) {
+                found = true;
+            }
+        }
+        key.reset();
+        return found;
     }
 }
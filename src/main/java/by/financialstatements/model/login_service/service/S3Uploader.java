@@ -0,0 +1,189 @@
+package by.financialstatements.model.login_service.service;
+
+import by.financialstatements.model.log.CustomLogger;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.core.retry.backoff.FullJitterBackoffStrategy;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.multipart.MultipartConfiguration;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+/**
+ * The S3Uploader class uploads files to an S3 bucket through one long-lived asynchronous client.
+ * It:
+ * - Sends objects larger than the multipart threshold as multipart uploads with parts sent in parallel.
+ * - Runs several uploads at the same time, limiting the total size of the files in flight.
+ * - Retries failed requests with exponential backoff and jitter.
+ * - Can send requests to another endpoint (for example a local S3-compatible server) instead of AWS.
+ */
+public class S3Uploader implements AutoCloseable {
+    private final S3AsyncClient s3Client;
+    private final String bucketName;
+    private final int maxInFlightBytes;
+    private final Semaphore inFlightBytes;
+    /**
+     * S3Uploader constructor. Creates the asynchronous S3 client.
+     *
+     * @param settings Connection and tuning settings.
+     */
+    public S3Uploader(Settings settings) {
+        this.bucketName = settings.bucketName;
+        this.maxInFlightBytes = settings.maxInFlightBytes;
+        this.inFlightBytes = new Semaphore(settings.maxInFlightBytes);
+        RetryPolicy retryPolicy = RetryPolicy.builder()
+                .numRetries(settings.maxRetries)
+                .backoffStrategy(FullJitterBackoffStrategy.builder()
+                        .baseDelay(Duration.ofMillis(100))
+                        .maxBackoffTime(Duration.ofSeconds(20))
+                        .build())
+                .build();
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+                .region(Region.of(settings.regionName))
+                .credentialsProvider(StaticCredentialsProvider.create(
+                        AwsBasicCredentials.create(settings.accessKey, settings.secretKey)))
+                .overrideConfiguration(ClientOverrideConfiguration.builder().retryPolicy(retryPolicy).build())
+                .multipartEnabled(true)
+                .multipartConfiguration(MultipartConfiguration.builder()
+                        .thresholdInBytes(settings.multipartThreshold)
+                        .minimumPartSizeInBytes(settings.partSize)
+                        .build());
+        if (settings.endpoint != null && !settings.endpoint.isBlank()) {
+            // Local S3-compatible servers usually do not support virtual-hosted bucket names
+            builder.endpointOverride(URI.create(settings.endpoint)).forcePathStyle(true);
+        }
+        this.s3Client = builder.build();
+    }
+    /**
+     * The upload method starts uploading a file and returns immediately.
+     * If the files already in flight take up the whole limit, the method waits until enough of them finish.
+     *
+     * @param file File to upload.
+     * @param key Object key in the bucket.
+     * @return Future completed with the S3 response, or exceptionally if the upload failed after all retries.
+     * @throws IOException If the size of the file cannot be read.
+     */
+    public CompletableFuture<PutObjectResponse> upload(Path file, String key) throws IOException {
+        // A file larger than the limit takes the whole limit and is uploaded alone
+        int permits = (int) Math.min(Math.max(1, Files.size(file)), maxInFlightBytes);
+        inFlightBytes.acquireUninterruptibly(permits);
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(key)
+                .build();
+        CompletableFuture<PutObjectResponse> response;
+        try {
+            response = s3Client.putObject(request, AsyncRequestBody.fromFile(file));
+        } catch (RuntimeException e) {
+            inFlightBytes.release(permits);
+            throw e;
+        }
+        return response.whenComplete((result, error) -> {
+            inFlightBytes.release(permits);
+            if (error != null) {
+                CustomLogger.error("Error uploading " + file.getFileName() + " to S3 as " + key, error);
+            } else {
+                CustomLogger.info("File " + file.getFileName() + " uploaded to S3 as " + key);
+            }
+        });
+    }
+    /**
+     * The close method closes the S3 client. Uploads still in flight are cancelled.
+     */
+    @Override
+    public void close() {
+        s3Client.close();
+    }
+    /**
+     * The Settings class holds the connection and tuning settings of the uploader.
+     */
+    public static class Settings {
+        private String regionName;
+        private String endpoint;
+        private String accessKey;
+        private String secretKey;
+        private String bucketName;
+        private long multipartThreshold = 16L * 1024 * 1024;
+        private long partSize = 8L * 1024 * 1024;
+        private int maxInFlightBytes = 64 * 1024 * 1024;
+        private int maxRetries = 5;
+        /**
+         * @param regionName Region to which the S3 bucket is bound.
+         * @return These settings.
+         */
+        public Settings regionName(String regionName) {
+            this.regionName = regionName;
+            return this;
+        }
+        /**
+         * @param endpoint Endpoint URL to use instead of AWS (null or blank for AWS).
+         * @return These settings.
+         */
+        public Settings endpoint(String endpoint) {
+            this.endpoint = endpoint;
+            return this;
+        }
+        /**
+         * @param accessKey Access key.
+         * @param secretKey Secret key.
+         * @return These settings.
+         */
+        public Settings credentials(String accessKey, String secretKey) {
+            this.accessKey = accessKey;
+            this.secretKey = secretKey;
+            return this;
+        }
+        /**
+         * @param bucketName The name of the S3 bucket where the data will be uploaded.
+         * @return These settings.
+         */
+        public Settings bucketName(String bucketName) {
+            this.bucketName = bucketName;
+            return this;
+        }
+        /**
+         * @param multipartThreshold Size in bytes from which files are uploaded in parts.
+         * @return These settings.
+         */
+        public Settings multipartThreshold(long multipartThreshold) {
+            this.multipartThreshold = multipartThreshold;
+            return this;
+        }
+        /**
+         * @param partSize Size in bytes of a part of a multipart upload.
+         * @return These settings.
+         */
+        public Settings partSize(long partSize) {
+            this.partSize = partSize;
+            return this;
+        }
+        /**
+         * @param maxInFlightBytes Maximum total size in bytes of the files being uploaded at the same time.
+         * @return These settings.
+         */
+        public Settings maxInFlightBytes(int maxInFlightBytes) {
+            this.maxInFlightBytes = maxInFlightBytes;
+            return this;
+        }
+        /**
+         * @param maxRetries Number of retries of a failed request.
+         * @return These settings.
+         */
+        public Settings maxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+            return this;
+        }
+    }
+}
@@ -1,68 +1,86 @@
 package by.financialstatements.model.login_service.session;
 
-import java.util.Calendar;
-import java.util.Date;
-import java.util.Random;
-import java.util.stream.Collectors;
 /**
  * The ApplicationSession class represents a user session in an application.
- * It generates an access token accessToken and sets the session expiration time.
- * A session is considered valid if the token was successfully generated, its expiration time was set,
- * and the expiration time has not yet expired.
+ * Sessions are issued by SessionManager, which generates the access token and sets the time to live.
+ * A session is considered valid if it has a token, has not been closed, and its expiration time has not yet passed.
+ *
+ * The expiration time is kept as a System.nanoTime() value, so it is not affected by changes of the wall clock,
+ * and checking validity does not allocate. A session that is in use can be renewed: every renewal moves
+ * the expiration time to a full time to live from now (sliding expiry), but never past the maximum lifetime
+ * counted from the creation of the session.
  */
 public class ApplicationSession {
-    private String accessToken;
-    private Date expDate;
+    private static final int TOKEN_LENGTH = 16;
+
+    private final String accessToken;
+    private final long ttlNanos;
+    private final long maxExpirationNanos;
+    private volatile long expirationNanos;
+    private volatile boolean closed;
     /**
-     * The ApplicationSession constructor creates a session based on the input parameter.
-     * If the message indicates that the session is valid ("Valid session"), the token and expiration
-     * time are initialized.
+     * The ApplicationSession constructor creates a session that expires after its time to live.
      *
-     * @param message Message indicating the session status ("Valid session").
+     * @param accessToken Access token of the session, or null for an invalid session.
+     * @param ttlNanos Time to live in nanoseconds, restarted by every renewal.
+     * @param maxLifetimeNanos Longest time the session can be kept alive by renewals, in nanoseconds.
      */
-    public ApplicationSession(String message) {
-        if (message.equals("Valid session")) {
-            setAccessToken();
-            setExpDate();
-        }
+    public ApplicationSession(String accessToken, long ttlNanos, long maxLifetimeNanos) {
+        long now = System.nanoTime();
+        this.accessToken = accessToken;
+        this.ttlNanos = ttlNanos;
+        this.maxExpirationNanos = now + Math.max(ttlNanos, maxLifetimeNanos);
+        this.expirationNanos = now + ttlNanos;
     }
     /**
      * The isSessionValid method checks if the session is valid.
      * The session is considered valid if:
      * - The token exists;
-     * - The expiration time is set;
      * - The token is 16 characters long;
-     * - The current date and time are less than the expiration time.
+     * - The session has not been closed;
+     * - The current time is less than the expiration time.
      *
      * @return true if the session is valid; false otherwise.
      */
     public boolean isSessionValid() {
-        return this.accessToken != null
-                && this.expDate != null
-                && this.accessToken.length() == 16
-                && this.expDate.after(new Date());
+        return accessToken != null
+                && accessToken.length() == TOKEN_LENGTH
+                && !closed
+                && System.nanoTime() - expirationNanos < 0;
     }
     /**
-     * The setAccessToken method generates a random token of 16 characters.
-     * The characters used are lowercase alphabetic letters and numbers.
+     * The renew method extends a valid session to a full time to live from now, limited by its maximum lifetime.
+     * An expired or closed session cannot be renewed.
+     *
+     * @return true if the session is still valid after the renewal; false otherwise.
      */
-    private void setAccessToken() {
-        String symbols = "abcdefghijklmnopqrstuvwxyz0123456789";
-        this.accessToken = new Random()
-                .ints(16, 0, symbols.length())
-                .mapToObj(symbols::charAt)
-                .map(Object::toString)
-                .collect(Collectors.joining());
-
+    public boolean renew() {
+        if (!isSessionValid()) {
+            return false;
+        }
+        long now = System.nanoTime();
+        long expiration = now + ttlNanos;
+        expirationNanos = expiration - maxExpirationNanos < 0 ? expiration : maxExpirationNanos;
+        return true;
+    }
+    /**
+     * The close method ends the session; it is no longer valid afterwards.
+     */
+    public void close() {
+        closed = true;
+    }
+    /**
+     * The getRemainingNanos method returns the time left until the session expires.
+     *
+     * @return Remaining time in nanoseconds, 0 if the session is not valid.
+     */
+    public long getRemainingNanos() {
+        return isSessionValid() ? expirationNanos - System.nanoTime() : 0;
     }
     /**
-     * The setExpDate method sets the token expiration date.
-     * The session will be active for 1 minute from the moment it is created.
+     * @return Access token of the session, or null for an invalid session.
      */
-    private void setExpDate() {
-        Calendar calendar = Calendar.getInstance();
-        calendar.setTime(new Date());
-        calendar.add(Calendar.MINUTE, 1);
-        this.expDate = calendar.getTime();
+    public String getAccessToken() {
+        return accessToken;
     }
 }
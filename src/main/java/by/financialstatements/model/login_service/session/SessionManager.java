@@ -0,0 +1,164 @@
+package by.financialstatements.model.login_service.session;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.ConfigSnapshot;
+import by.financialstatements.model.login_service.service.PropsHandler;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+/**
+ * The SessionManager class issues application sessions and keeps track of the active ones.
+ * - Tokens are 16 URL-safe Base64 characters (96 random bits) taken from a SecureRandom. Random bytes
+ *   are generated in blocks, so most tokens are made without calling the generator.
+ * - Active sessions are kept in a concurrent map by token; a daemon thread removes expired and closed sessions
+ *   every SESSION_EVICTION_INTERVAL_SECONDS (30 by default).
+ * - A session lives SESSION_TTL_SECONDS (60 by default) after its creation or last renewal,
+ *   and at most SESSION_MAX_LIFETIME_SECONDS (28800 by default) in total.
+ */
+public class SessionManager {
+    private static final int TOKEN_BYTES = 12;
+    private static final int RANDOM_BLOCK_TOKENS = 64;
+    private static final SessionManager INSTANCE = fromConfig();
+
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] randomBlock = new byte[TOKEN_BYTES * RANDOM_BLOCK_TOKENS];
+    private final Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+    private final Map<String, ApplicationSession> sessions = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final long maxLifetimeNanos;
+    private int randomOffset = randomBlock.length;
+    /**
+     * SessionManager constructor. The eviction thread is started by create, once the manager is fully built.
+     *
+     * @param ttlSeconds Time to live of a session in seconds, restarted by every renewal.
+     * @param maxLifetimeSeconds Longest time a session can be kept alive by renewals, in seconds.
+     */
+    private SessionManager(long ttlSeconds, long maxLifetimeSeconds) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxLifetimeNanos = TimeUnit.SECONDS.toNanos(maxLifetimeSeconds);
+    }
+    /**
+     * The create method creates a session manager and starts its eviction thread.
+     *
+     * @param ttlSeconds Time to live of a session in seconds, restarted by every renewal.
+     * @param maxLifetimeSeconds Longest time a session can be kept alive by renewals, in seconds.
+     * @param evictionIntervalSeconds Interval between removals of expired sessions, in seconds.
+     * @return The new session manager.
+     */
+    public static SessionManager create(long ttlSeconds, long maxLifetimeSeconds, long evictionIntervalSeconds) {
+        SessionManager manager = new SessionManager(ttlSeconds, maxLifetimeSeconds);
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(
+                task -> Thread.ofPlatform().daemon().name("session-evictor").unstarted(task));
+        long interval = Math.max(1, evictionIntervalSeconds);
+        evictor.scheduleWithFixedDelay(manager::evictExpired, interval, interval, TimeUnit.SECONDS);
+        return manager;
+    }
+    /**
+     * The getInstance method returns the session manager configured from the application configuration.
+     *
+     * @return The shared session manager.
+     */
+    public static SessionManager getInstance() {
+        return INSTANCE;
+    }
+    /**
+     * The fromConfig method creates a session manager from the configuration properties described in the class comment.
+     *
+     * @return A new session manager.
+     */
+    private static SessionManager fromConfig() {
+        ConfigSnapshot config = PropsHandler.getConfig();
+        return create(config.getLong("SESSION_TTL_SECONDS", 60),
+                config.getLong("SESSION_MAX_LIFETIME_SECONDS", 28800),
+                config.getLong("SESSION_EVICTION_INTERVAL_SECONDS", 30));
+    }
+    /**
+     * The createSession method issues a new valid session with a fresh token and registers it as active.
+     *
+     * @return The new session.
+     */
+    public ApplicationSession createSession() {
+        String token;
+        ApplicationSession session;
+        do {
+            token = nextToken();
+            session = new ApplicationSession(token, ttlNanos, maxLifetimeNanos);
+        } while (sessions.putIfAbsent(token, session) != null);
+        return session;
+    }
+    /**
+     * The invalidSession method returns a session without a token, which is never valid.
+     *
+     * @return An invalid session.
+     */
+    public ApplicationSession invalidSession() {
+        return new ApplicationSession(null, 0, 0);
+    }
+    /**
+     * The findSession method returns the active session with a token.
+     *
+     * @param token Access token.
+     * @return The session, or null if there is no valid session with this token.
+     */
+    public ApplicationSession findSession(String token) {
+        ApplicationSession session = token == null ? null : sessions.get(token);
+        return session != null && session.isSessionValid() ? session : null;
+    }
+    /**
+     * The closeSession method ends a session and forgets it.
+     *
+     * @param session The session.
+     */
+    public void closeSession(ApplicationSession session) {
+        session.close();
+        if (session.getAccessToken() != null) {
+            sessions.remove(session.getAccessToken(), session);
+        }
+    }
+    /**
+     * The getActiveSessionCount method returns the number of sessions that have not been removed yet.
+     * Sessions that expired since the last eviction are included.
+     *
+     * @return Number of sessions.
+     */
+    public int getActiveSessionCount() {
+        return sessions.size();
+    }
+    /**
+     * The evictExpired method removes expired and closed sessions.
+     */
+    void evictExpired() {
+        int before = sessions.size();
+        sessions.values().removeIf(session -> !session.isSessionValid());
+        int evicted = before - sessions.size();
+        if (evicted > 0) {
+            CustomLogger.info("Expired sessions removed: " + evicted);
+        }
+    }
+    /**
+     * The nextToken method makes a token from the next random bytes of the block, generating a new block
+     * when the current one is used up.
+     *
+     * @return A new token of 16 characters.
+     */
+    private String nextToken() {
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        synchronized (randomBlock) {
+            if (randomOffset == randomBlock.length) {
+                random.nextBytes(randomBlock);
+                randomOffset = 0;
+            }
+            System.arraycopy(randomBlock, randomOffset, tokenBytes, 0, TOKEN_BYTES);
+            // Used bytes are cleared so they do not stay in memory
+            Arrays.fill(randomBlock, randomOffset, randomOffset + TOKEN_BYTES, (byte) 0);
+            randomOffset += TOKEN_BYTES;
+        }
+        return encoder.encodeToString(tokenBytes);
+    }
+}
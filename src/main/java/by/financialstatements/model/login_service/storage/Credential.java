@@ -0,0 +1,83 @@
+package by.financialstatements.model.login_service.storage;
+
+import by.financialstatements.model.login_service.tfa.TotpEngine;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+/**
+ * The Credential class holds the decoded credential material of one user, prepared once when it is loaded:
+ * - the SHA-256 digest of the password, compared in constant time;
+ * - the TOTP secret in Base32, as shown to the authenticator app, and the decoded key used to verify codes;
+ * - the account name shown by the authenticator app.
+ * The password itself is not kept.
+ */
+public final class Credential {
+    private final String login;
+    private final byte[] passwordDigest;
+    private final String totpSecret;
+    private final SecretKeySpec totpKey;
+    private final String account;
+    /**
+     * Credential constructor.
+     *
+     * @param login The login.
+     * @param password The password in plain text.
+     * @param totpSecret TOTP secret in Base32.
+     * @param account Account name shown by the authenticator app.
+     */
+    public Credential(String login, String password, String totpSecret, String account) {
+        this.login = login;
+        this.passwordDigest = digest(password);
+        this.totpSecret = totpSecret;
+        this.totpKey = TotpEngine.decodeKey(totpSecret);
+        this.account = account;
+    }
+    /**
+     * The matchesPassword method checks a password. The time taken does not depend on how much of it matches.
+     *
+     * @param password Password entered by the user.
+     * @return true if the password is correct.
+     */
+    public boolean matchesPassword(String password) {
+        return MessageDigest.isEqual(passwordDigest, digest(password));
+    }
+    /**
+     * The digest method calculates the SHA-256 digest of a password.
+     *
+     * @param password The password.
+     * @return The digest.
+     */
+    static byte[] digest(String password) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(password.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+    /**
+     * @return The login.
+     */
+    public String getLogin() {
+        return login;
+    }
+    /**
+     * @return TOTP secret in Base32.
+     */
+    public String getTotpSecret() {
+        return totpSecret;
+    }
+    /**
+     * @return Decoded TOTP key.
+     */
+    public SecretKeySpec getTotpKey() {
+        return totpKey;
+    }
+    /**
+     * @return Account name shown by the authenticator app.
+     */
+    public String getAccount() {
+        return account;
+    }
+}
@@ -0,0 +1,37 @@
+package by.financialstatements.model.login_service.storage;
+
+import by.financialstatements.model.login_service.service.ConfigSnapshot;
+import by.financialstatements.model.login_service.service.PropsHandler;
+
+import java.nio.file.Path;
+/**
+ * The CredentialStore interface is the source of user credentials for AuthService.
+ * Implementations keep the decoded credentials in memory, so a lookup does not decode anything,
+ * and must allow concurrent lookups.
+ */
+public interface CredentialStore {
+    /**
+     * The find method returns the credentials of a user.
+     *
+     * @param login The login.
+     * @return The credentials, or null if there is no such user.
+     */
+    Credential find(String login);
+    /**
+     * The fromConfig method creates the store selected by CREDENTIAL_STORE: "file" reads the users from
+     * CREDENTIAL_FILE (see FileCredentialStore); "memory", the default, holds the user of MockStorage.
+     *
+     * @return A new credential store.
+     */
+    static CredentialStore fromConfig() {
+        ConfigSnapshot config = PropsHandler.getConfig();
+        if (config.getString("CREDENTIAL_STORE", "memory").equalsIgnoreCase("file")) {
+            Path file = config.getPath("CREDENTIAL_FILE");
+            if (file == null) {
+                throw new IllegalStateException("CREDENTIAL_FILE must be set when CREDENTIAL_STORE is file");
+            }
+            return FileCredentialStore.open(file);
+        }
+        return InMemoryCredentialStore.fromMockStorage();
+    }
+}
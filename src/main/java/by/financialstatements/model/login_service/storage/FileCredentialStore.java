@@ -0,0 +1,100 @@
+package by.financialstatements.model.login_service.storage;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.encryptor.LoginEncryptor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+/**
+ * The FileCredentialStore class reads credentials from a text file with one user per line:
+ * encrypted login, encrypted password (both as produced by LoginEncryptor.encrypt), TOTP secret in Base32
+ * and account name, separated by commas. Empty lines and lines starting with # are ignored.
+ *
+ * The file is decoded once into an immutable map that is replaced as a whole, so lookups never lock.
+ * The file is read again on a lookup if its modification time has changed, at most once per second.
+ */
+public class FileCredentialStore implements CredentialStore {
+    private static final long CHECK_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final Path file;
+    private volatile Map<String, Credential> credentials;
+    private volatile FileTime lastModified;
+    private volatile long nextCheckNanos;
+    /**
+     * FileCredentialStore constructor. The file is read by open, once the store is fully built.
+     *
+     * @param file Path to the credential file.
+     */
+    private FileCredentialStore(Path file) {
+        this.file = file;
+    }
+    /**
+     * The open method creates a store and reads the credential file.
+     *
+     * @param file Path to the credential file.
+     * @return The store with the users of the file.
+     * @throws UncheckedIOException If the file cannot be read.
+     */
+    public static FileCredentialStore open(Path file) {
+        FileCredentialStore store = new FileCredentialStore(file);
+        try {
+            store.reload();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read credential file " + file, e);
+        }
+        return store;
+    }
+
+    @Override
+    public Credential find(String login) {
+        long now = System.nanoTime();
+        if (now - nextCheckNanos >= 0) {
+            nextCheckNanos = now + CHECK_INTERVAL_NANOS;
+            try {
+                if (!Files.getLastModifiedTime(file).equals(lastModified)) {
+                    reload();
+                }
+            } catch (IOException e) {
+                CustomLogger.error("Cannot reload credential file " + file + ", keeping the loaded users: " + e.getMessage());
+            }
+        }
+        return login == null ? null : credentials.get(login);
+    }
+    /**
+     * The reload method reads the file again and replaces the loaded users.
+     *
+     * @throws IOException If the file cannot be read.
+     */
+    public synchronized void reload() throws IOException {
+        FileTime modified = Files.getLastModifiedTime(file);
+        List<String> lines = Files.readAllLines(file);
+        Map<String, Credential> loaded = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",", -1);
+            if (fields.length != 4) {
+                CustomLogger.error("Invalid credential line " + (i + 1) + " in " + file);
+                continue;
+            }
+            try {
+                String login = LoginEncryptor.decrypt(fields[0].trim());
+                loaded.put(login, new Credential(login, LoginEncryptor.decrypt(fields[1].trim()),
+                        fields[2].trim(), fields[3].trim()));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                CustomLogger.error("Invalid credential line " + (i + 1) + " in " + file + ": " + e.getMessage());
+            }
+        }
+        credentials = Map.copyOf(loaded);
+        lastModified = modified;
+        CustomLogger.info("Credentials loaded from " + file + ": " + loaded.size() + " users");
+    }
+}
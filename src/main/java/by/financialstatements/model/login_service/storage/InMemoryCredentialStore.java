@@ -0,0 +1,50 @@
+package by.financialstatements.model.login_service.storage;
+
+import by.financialstatements.model.login_service.encryptor.LoginEncryptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+/**
+ * The InMemoryCredentialStore class keeps credentials in a concurrent map.
+ * Users can be added and removed while lookups are running.
+ */
+public class InMemoryCredentialStore implements CredentialStore {
+    private static final String MOCK_TOTP_SECRET = "QDWSM3OYBPGTEVSPB5FKVDM3CSNCWHVK";
+    private static final String MOCK_ACCOUNT = "ilya_kate@gmail.com";
+
+    private final Map<String, Credential> credentials = new ConcurrentHashMap<>();
+    /**
+     * The fromMockStorage method creates a store with the user of MockStorage, decrypting the stored login
+     * and password once.
+     *
+     * @return A new credential store.
+     */
+    public static InMemoryCredentialStore fromMockStorage() {
+        MockStorage storageLikeDB = new MockStorage();
+        InMemoryCredentialStore store = new InMemoryCredentialStore();
+        store.add(new Credential(LoginEncryptor.decrypt(storageLikeDB.getLogin()),
+                LoginEncryptor.decrypt(storageLikeDB.getPassword()), MOCK_TOTP_SECRET, MOCK_ACCOUNT));
+        return store;
+    }
+    /**
+     * The add method adds a user, replacing the credentials of a user with the same login.
+     *
+     * @param credential The credentials.
+     */
+    public void add(Credential credential) {
+        credentials.put(credential.getLogin(), credential);
+    }
+    /**
+     * The remove method removes a user.
+     *
+     * @param login The login.
+     */
+    public void remove(String login) {
+        credentials.remove(login);
+    }
+
+    @Override
+    public Credential find(String login) {
+        return login == null ? null : credentials.get(login);
+    }
+}
@@ -5,21 +5,29 @@ import com.google.zxing.MultiFormatWriter;
 import com.google.zxing.WriterException;
 import com.google.zxing.client.j2se.MatrixToImageWriter;
 import com.google.zxing.common.BitMatrix;
-import de.taimos.totp.TOTP;
 import org.apache.commons.codec.binary.Base32;
-import org.apache.commons.codec.binary.Hex;
 
-import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 /**
  * The TFAUtils class contains utility methods for working with two-factor authentication (2FA),
  * including generating a secret key, a one-time-password (TOTP), a URL for Google Authenticator
  * and creating QR codes.
+ * QR code images are built once for every URL and size and kept in memory; a QR code file is written
+ * only if it does not already hold the same image.
  */
 public class TFAUtils {
+    private static final Map<String, byte[]> QR_CODE_IMAGES = new ConcurrentHashMap<>();
+
     /**
      * The generateSecretKey method generates a random secret key for 2FA.
      *
@@ -34,15 +42,13 @@ public class TFAUtils {
     }
     /**
      * The getTOTPCode method generates a temporary one-time password (TOTP) based on the secret key.
+     * To check codes repeatedly, decode the key once and use TotpEngine.verify instead.
      *
      * @param secretKey The secret key in Base32 format.
      * @return The one-time code as a string.
      */
     public static String getTOTPCode(String secretKey) {
-        Base32 base32 = new Base32();
-        byte[] bytes = base32.decode(secretKey);
-        String hexKey = Hex.encodeHexString(bytes);
-        return TOTP.getOTP(hexKey);
+        return TotpEngine.getInstance().getCode(TotpEngine.decodeKey(secretKey));
     }
     /**
      * The getGoogleAuthenticatorBarCode method generates a URL for adding an account
@@ -76,9 +82,37 @@ public class TFAUtils {
      */
     public static void createQRCode(String barCodeData, String filePath, int height, int width)
             throws WriterException, IOException {
-        BitMatrix matrix = new MultiFormatWriter().encode(barCodeData, BarcodeFormat.QR_CODE, width, height);
-        try (FileOutputStream out = new FileOutputStream(filePath)) {
+        byte[] image = getQRCodeImage(barCodeData, height, width);
+        Path file = Paths.get(filePath);
+        if (Files.isRegularFile(file) && Files.size(file) == image.length
+                && Arrays.equals(Files.readAllBytes(file), image)) {
+            return;
+        }
+        Files.write(file, image);
+    }
+    /**
+     * The getQRCodeImage method returns the PNG image of a QR code, building it only the first time
+     * it is requested for the URL and size.
+     *
+     * @param barCodeData The URL for the QR code.
+     * @param height The height of the QR code image.
+     * @param width The width of the QR code image.
+     * @return The PNG image; it must not be modified.
+     *
+     * @throws WriterException If an error occurred while creating the QR code matrix.
+     * @throws IOException If an error occurred while encoding the image.
+     */
+    public static byte[] getQRCodeImage(String barCodeData, int height, int width)
+            throws WriterException, IOException {
+        String cacheKey = width + "x" + height + ":" + barCodeData;
+        byte[] image = QR_CODE_IMAGES.get(cacheKey);
+        if (image == null) {
+            BitMatrix matrix = new MultiFormatWriter().encode(barCodeData, BarcodeFormat.QR_CODE, width, height);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
             MatrixToImageWriter.writeToStream(matrix, "png", out);
+            image = out.toByteArray();
+            QR_CODE_IMAGES.putIfAbsent(cacheKey, image);
         }
+        return image;
     }
 }
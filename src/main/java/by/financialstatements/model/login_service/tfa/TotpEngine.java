@@ -0,0 +1,228 @@
+package by.financialstatements.model.login_service.tfa;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.ConfigSnapshot;
+import by.financialstatements.model.login_service.service.PropsHandler;
+import org.apache.commons.codec.binary.Base32;
+
+import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+/**
+ * The TotpEngine class calculates and verifies time-based one-time passwords (RFC 6238: HMAC-SHA1,
+ * 30-second steps, 6 digits), the codes shown by Google Authenticator.
+ *
+ * - Keys are decoded from Base32 once (decodeKey) and kept by the caller.
+ * - Every thread reuses its own Mac and buffers, so a verification does not look up the algorithm or allocate.
+ * - A code is accepted if it matches any step within TOTP_WINDOW_STEPS (1 by default) of the current one,
+ *   so a clock that is a little early or late does not reject valid codes.
+ * - A code is accepted once: the last step used by every user is remembered, and codes of that step
+ *   or earlier are rejected. A remembered step is forgotten once it has left the window, and at most
+ *   TOTP_REPLAY_CACHE_SIZE (100000 by default) users are remembered; when the cache is full of steps
+ *   that are still in the window, new verifications are rejected rather than risking a replay.
+ */
+public class TotpEngine {
+    private static final String ALGORITHM = "HmacSHA1";
+    private static final long STEP_MILLIS = 30_000;
+    private static final int DIGITS = 6;
+    private static final int MODULUS = 1_000_000;
+    private static final TotpEngine INSTANCE = fromConfig();
+
+    private final int windowSteps;
+    private final int replayCacheSize;
+    private final LongSupplier clock;
+    private final Map<String, Long> lastUsedSteps = new ConcurrentHashMap<>();
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(TotpEngine::newMac);
+    private final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[Long.BYTES + 20]);
+    /**
+     * TotpEngine constructor.
+     *
+     * @param windowSteps Number of steps before and after the current one whose codes are accepted.
+     * @param replayCacheSize Largest number of users whose last used step is remembered.
+     * @param clock Source of the current time in milliseconds since the epoch.
+     */
+    public TotpEngine(int windowSteps, int replayCacheSize, LongSupplier clock) {
+        this.windowSteps = Math.max(0, windowSteps);
+        this.replayCacheSize = Math.max(1, replayCacheSize);
+        this.clock = clock;
+    }
+    /**
+     * The getInstance method returns the engine configured from the application configuration.
+     *
+     * @return The shared engine.
+     */
+    public static TotpEngine getInstance() {
+        return INSTANCE;
+    }
+    /**
+     * The fromConfig method creates an engine from the configuration properties described in the class comment.
+     *
+     * @return A new engine that uses the system clock.
+     */
+    private static TotpEngine fromConfig() {
+        ConfigSnapshot config = PropsHandler.getConfig();
+        return new TotpEngine(config.getInt("TOTP_WINDOW_STEPS", 1),
+                config.getInt("TOTP_REPLAY_CACHE_SIZE", 100000), System::currentTimeMillis);
+    }
+    /**
+     * The decodeKey method decodes a Base32 secret into a key for this engine.
+     *
+     * @param secretKey The secret key in Base32 format.
+     * @return The key.
+     */
+    public static SecretKeySpec decodeKey(String secretKey) {
+        return new SecretKeySpec(new Base32().decode(secretKey), ALGORITHM);
+    }
+    /**
+     * The getCode method calculates the code of the current step.
+     *
+     * @param key Key returned by decodeKey.
+     * @return The code, 6 digits with leading zeros.
+     */
+    public String getCode(SecretKeySpec key) {
+        String code = Integer.toString(generate(key, currentStep()));
+        return "0".repeat(DIGITS - code.length()) + code;
+    }
+    /**
+     * The verify method checks a code entered by a user against every step of the window
+     * and, if it matches, marks its step as used by the user.
+     *
+     * @param user Name of the user, the scope of the replay check.
+     * @param key Key returned by decodeKey.
+     * @param code The entered code.
+     * @return true if the code is correct and has not been used before; false otherwise.
+     */
+    public boolean verify(String user, SecretKeySpec key, String code) {
+        int value = parseCode(code);
+        if (value < 0) {
+            return false;
+        }
+        long step = currentStep();
+        long matchedStep = -1;
+        // Every step is checked, so the time taken does not show which one matched
+        for (long candidate = step - windowSteps; candidate <= step + windowSteps; candidate++) {
+            if (generate(key, candidate) == value) {
+                matchedStep = candidate;
+            }
+        }
+        if (matchedStep < 0) {
+            return false;
+        }
+        return markUsed(user, matchedStep, step);
+    }
+    /**
+     * The generate method calculates the code of a step (RFC 4226 dynamic truncation).
+     *
+     * @param key The key.
+     * @param step Number of the 30-second step since the epoch.
+     * @return The code as a number.
+     */
+    int generate(SecretKeySpec key, long step) {
+        Mac mac = macs.get();
+        byte[] buffer = buffers.get();
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            buffer[i] = (byte) step;
+            step >>>= 8;
+        }
+        try {
+            mac.init(key);
+            mac.update(buffer, 0, Long.BYTES);
+            mac.doFinal(buffer, Long.BYTES);
+        } catch (InvalidKeyException | ShortBufferException e) {
+            throw new IllegalStateException("Cannot calculate TOTP code", e);
+        }
+        int offset = Long.BYTES + (buffer[buffer.length - 1] & 0x0f);
+        int binary = (buffer[offset] & 0x7f) << 24
+                | (buffer[offset + 1] & 0xff) << 16
+                | (buffer[offset + 2] & 0xff) << 8
+                | (buffer[offset + 3] & 0xff);
+        return binary % MODULUS;
+    }
+    /**
+     * The markUsed method records that a user has used a step, unless the user has already used it or a later one.
+     *
+     * @param user Name of the user.
+     * @param matchedStep Step of the entered code.
+     * @param currentStep The current step.
+     * @return true if the step was recorded; false if it is a replay or the cache is full.
+     */
+    private boolean markUsed(String user, long matchedStep, long currentStep) {
+        if (lastUsedSteps.size() >= replayCacheSize && !lastUsedSteps.containsKey(user)) {
+            // Steps that have left the window can no longer be replayed
+            long oldestUsable = currentStep - windowSteps;
+            lastUsedSteps.values().removeIf(usedStep -> usedStep < oldestUsable);
+            if (lastUsedSteps.size() >= replayCacheSize) {
+                CustomLogger.error("TOTP replay cache is full, rejecting the code of " + user);
+                return false;
+            }
+        }
+        boolean[] accepted = new boolean[1];
+        lastUsedSteps.compute(user, (name, lastStep) -> {
+            if (lastStep != null && lastStep >= matchedStep) {
+                return lastStep;
+            }
+            accepted[0] = true;
+            return matchedStep;
+        });
+        if (!accepted[0]) {
+            CustomLogger.warning("TOTP code of " + user + " has already been used");
+        }
+        return accepted[0];
+    }
+    /**
+     * The parseCode method parses a code of exactly 6 digits.
+     *
+     * @param code The entered code.
+     * @return The code as a number, or -1 if it is not 6 digits.
+     */
+    private static int parseCode(String code) {
+        if (code == null) {
+            return -1;
+        }
+        int start = 0;
+        int end = code.length();
+        while (start < end && Character.isWhitespace(code.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(code.charAt(end - 1))) {
+            end--;
+        }
+        if (end - start != DIGITS) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    /**
+     * The currentStep method returns the number of the current 30-second step since the epoch.
+     *
+     * @return The current step.
+     */
+    private long currentStep() {
+        return Math.floorDiv(clock.getAsLong(), STEP_MILLIS);
+    }
+    /**
+     * The newMac method creates the HMAC-SHA1 instance of a thread.
+     *
+     * @return A new Mac.
+     */
+    private static Mac newMac() {
+        try {
+            return Mac.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package by.financialstatements.model.metrics;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.PropsHandler;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+/**
+ * The PipelineMetrics class collects per-stage counters, byte counts and latency histograms of the processing
+ * pipeline (walk, validate, move, parse, aggregate, write, upload). It:
+ * - Is shared by all workers and updated without locks (see StageMetrics and LatencyHistogram).
+ * - Is visible over JMX as "by.financialstatements:type=PipelineMetrics".
+ * - Reports files whose stage takes longer than SLOW_FILE_THRESHOLD_MILLIS (1000 by default) as slow.
+ * - Writes an end-of-run summary to METRICS_SUMMARY_FILE if it is configured.
+ */
+public class PipelineMetrics implements PipelineMetricsMXBean {
+    private static final String OBJECT_NAME = "by.financialstatements:type=PipelineMetrics";
+    private static final int MAX_SLOW_FILES = 100;
+    private static final PipelineMetrics INSTANCE = createInstance();
+
+    private final Map<Stage, StageMetrics> stages = new EnumMap<>(Stage.class);
+    private final LongSupplier slowFileThresholdMillis;
+    private final ConcurrentLinkedDeque<String> slowFiles = new ConcurrentLinkedDeque<>();
+    private final LongAdder slowFileCount = new LongAdder();
+    private volatile Instant startTime = Instant.now();
+    /**
+     * PipelineMetrics constructor.
+     *
+     * @param slowFileThresholdMillis Duration of a stage in milliseconds above which a file is reported as slow.
+     */
+    public PipelineMetrics(long slowFileThresholdMillis) {
+        this(() -> slowFileThresholdMillis);
+    }
+    /**
+     * PipelineMetrics constructor with a slow file threshold that may change while the metrics are used.
+     *
+     * @param slowFileThresholdMillis Supplier of the duration of a stage in milliseconds above which a file
+     * is reported as slow.
+     */
+    public PipelineMetrics(LongSupplier slowFileThresholdMillis) {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new StageMetrics(stage));
+        }
+        this.slowFileThresholdMillis = slowFileThresholdMillis;
+    }
+    /**
+     * The getInstance method returns the metrics of the application.
+     *
+     * @return The shared metrics.
+     */
+    public static PipelineMetrics getInstance() {
+        return INSTANCE;
+    }
+    /**
+     * The stage method returns the measurements of a stage.
+     *
+     * @param stage The stage.
+     * @return The measurements of the stage.
+     */
+    public StageMetrics stage(Stage stage) {
+        return stages.get(stage);
+    }
+    /**
+     * The record method records one run of a stage for a file and reports the file if the run was slow.
+     *
+     * @param stage The stage.
+     * @param startNanos Value of System.nanoTime() when the stage started.
+     * @param file The file handled by the stage.
+     */
+    public void record(Stage stage, long startNanos, Path file) {
+        long nanos = stages.get(stage).record(startNanos);
+        if (nanos > TimeUnit.MILLISECONDS.toNanos(slowFileThresholdMillis.getAsLong())) {
+            String description = file.getFileName() + ": " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms in " + stage;
+            CustomLogger.warning("Slow file " + description);
+            slowFileCount.increment();
+            slowFiles.addLast(description);
+            // Keep only the most recent slow files
+            while (slowFiles.size() > MAX_SLOW_FILES) {
+                slowFiles.pollFirst();
+            }
+        }
+    }
+    /**
+     * The writeSummary method writes a table of all stages and the list of slow files to METRICS_SUMMARY_FILE.
+     * Nothing is written if the property is not set.
+     */
+    public void writeSummary() {
+        writeSummary(PropsHandler.getConfig().getPath("METRICS_SUMMARY_FILE"));
+    }
+    /**
+     * The writeSummary method writes a table of all stages and the list of slow files to the given file.
+     *
+     * @param summaryFile Path to the summary file, or null to write nothing.
+     */
+    public void writeSummary(Path summaryFile) {
+        if (summaryFile == null) {
+            return;
+        }
+        try {
+            Files.writeString(summaryFile, getSummary());
+            CustomLogger.info("Metrics summary successfully written to file " + summaryFile);
+        } catch (IOException e) {
+            CustomLogger.error("Error writing metrics summary file: " + e.getMessage());
+        }
+    }
+    /**
+     * The getSummary method formats all stages and the slow files as a text table.
+     *
+     * @return The summary text.
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format(Locale.ROOT, "Pipeline metrics since %s:%n", startTime));
+        summary.append(String.format(Locale.ROOT, "%-10s %10s %14s %8s %12s %12s %12s %12s %12s%n",
+                "stage", "count", "bytes", "errors", "mean_us", "p50_us", "p90_us", "p99_us", "max_us"));
+        for (StageMetrics metrics : stages.values()) {
+            LatencyHistogram latency = metrics.getLatency();
+            summary.append(String.format(Locale.ROOT, "%-10s %10d %14d %8d %12d %12d %12d %12d %12d%n",
+                    metrics.getStage(), metrics.getCount(), metrics.getBytes(), metrics.getErrors(),
+                    toMicros(latency.getMeanNanos()), toMicros(latency.getPercentileNanos(50)),
+                    toMicros(latency.getPercentileNanos(90)), toMicros(latency.getPercentileNanos(99)),
+                    toMicros(latency.getMaxNanos())));
+        }
+        summary.append(String.format(Locale.ROOT, "Slow files (over %d ms): %d%n",
+                slowFileThresholdMillis.getAsLong(), getSlowFileCount()));
+        for (String slowFile : slowFiles) {
+            summary.append("  - ").append(slowFile).append(System.lineSeparator());
+        }
+        return summary.toString();
+    }
+    @Override
+    public Map<String, Long> getCounts() {
+        return collect(StageMetrics::getCount);
+    }
+    @Override
+    public Map<String, Long> getBytes() {
+        return collect(StageMetrics::getBytes);
+    }
+    @Override
+    public Map<String, Long> getErrors() {
+        return collect(StageMetrics::getErrors);
+    }
+    @Override
+    public Map<String, Long> getMeanMicros() {
+        return collect(metrics -> toMicros(metrics.getLatency().getMeanNanos()));
+    }
+    @Override
+    public Map<String, Long> getP99Micros() {
+        return collect(metrics -> toMicros(metrics.getLatency().getPercentileNanos(99)));
+    }
+    @Override
+    public Map<String, Long> getMaxMicros() {
+        return collect(metrics -> toMicros(metrics.getLatency().getMaxNanos()));
+    }
+    @Override
+    public List<String> getSlowFiles() {
+        return new ArrayList<>(slowFiles);
+    }
+    @Override
+    public long getSlowFileCount() {
+        return slowFileCount.sum();
+    }
+    @Override
+    public void reset() {
+        for (StageMetrics metrics : stages.values()) {
+            metrics.reset();
+        }
+        slowFiles.clear();
+        slowFileCount.reset();
+        startTime = Instant.now();
+    }
+    /**
+     * The collect method builds a map from stage name to a value of its measurements.
+     *
+     * @param value Function that extracts the value from the measurements of a stage.
+     * @return Map in stage order.
+     */
+    private Map<String, Long> collect(ToLongFunction<StageMetrics> value) {
+        Map<String, Long> values = new LinkedHashMap<>();
+        for (StageMetrics metrics : stages.values()) {
+            values.put(metrics.getStage().name(), value.applyAsLong(metrics));
+        }
+        return values;
+    }
+    /**
+     * The toMicros method converts nanoseconds to microseconds.
+     *
+     * @param nanos Duration in nanoseconds.
+     * @return Duration in microseconds.
+     */
+    private static long toMicros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+    /**
+     * The createInstance method creates the shared metrics from the configuration and registers them with JMX.
+     * A failed registration is logged and the metrics keep working without the JMX view.
+     *
+     * @return The shared metrics.
+     */
+    private static PipelineMetrics createInstance() {
+        // The threshold is read from the current configuration on every check, so it follows reloads
+        PipelineMetrics metrics = new PipelineMetrics(() -> PropsHandler.getConfig().getLong("SLOW_FILE_THRESHOLD_MILLIS", 1000));
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            CustomLogger.error("Error registering pipeline metrics with JMX: " + e.getMessage(), e);
+        }
+        return metrics;
+    }
+}
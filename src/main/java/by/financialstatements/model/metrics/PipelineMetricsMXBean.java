@@ -0,0 +1,46 @@
+package by.financialstatements.model.metrics;
+
+import java.util.List;
+import java.util.Map;
+/**
+ * The PipelineMetricsMXBean interface is the JMX view of PipelineMetrics, registered as
+ * "by.financialstatements:type=PipelineMetrics". All maps are keyed by stage name.
+ */
+public interface PipelineMetricsMXBean {
+    /**
+     * @return Number of runs of every stage.
+     */
+    Map<String, Long> getCounts();
+    /**
+     * @return Number of bytes handled by every stage.
+     */
+    Map<String, Long> getBytes();
+    /**
+     * @return Number of failed runs of every stage.
+     */
+    Map<String, Long> getErrors();
+    /**
+     * @return Mean latency of every stage in microseconds.
+     */
+    Map<String, Long> getMeanMicros();
+    /**
+     * @return 99th percentile latency of every stage in microseconds.
+     */
+    Map<String, Long> getP99Micros();
+    /**
+     * @return Maximum latency of every stage in microseconds.
+     */
+    Map<String, Long> getMaxMicros();
+    /**
+     * @return The most recent slow files, one description per file.
+     */
+    List<String> getSlowFiles();
+    /**
+     * @return Number of slow files reported since the last reset.
+     */
+    long getSlowFileCount();
+    /**
+     * The reset method clears all measurements.
+     */
+    void reset();
+}
@@ -0,0 +1,42 @@
+package by.financialstatements.model.metrics;
+/**
+ * The Stage enum lists the stages of the processing pipeline that are measured by PipelineMetrics.
+ */
+public enum Stage {
+    /**
+     * Walking the data folder and discovering files.
+     */
+    WALK,
+    /**
+     * Checking a file name against the document type rules.
+     */
+    VALIDATE,
+    /**
+     * Decompressing an archive entry and writing it to the valid or invalid folder.
+     */
+    EXTRACT,
+    /**
+     * Fingerprinting a valid file and looking it up in the duplicate index.
+     */
+    DEDUP,
+    /**
+     * Moving a file to the valid or invalid folder.
+     */
+    MOVE,
+    /**
+     * Reading the total line of a file and extracting its amount.
+     */
+    PARSE,
+    /**
+     * Adding an amount to the statistics.
+     */
+    AGGREGATE,
+    /**
+     * Writing the statistics file.
+     */
+    WRITE,
+    /**
+     * Uploading the statistics file to S3.
+     */
+    UPLOAD
+}
@@ -0,0 +1,85 @@
+package by.financialstatements.model.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * The StageMetrics class holds the measurements of one pipeline stage: how many times it ran,
+ * how many bytes it handled, how many times it failed, and a histogram of its latency.
+ * All counters can be updated concurrently from several workers without locking.
+ */
+public class StageMetrics {
+    private final Stage stage;
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+    /**
+     * StageMetrics constructor.
+     *
+     * @param stage The measured stage.
+     */
+    StageMetrics(Stage stage) {
+        this.stage = stage;
+    }
+    /**
+     * The record method records one run of the stage that started at the given time.
+     *
+     * @param startNanos Value of System.nanoTime() when the stage started.
+     * @return The duration of the run in nanoseconds.
+     */
+    public long record(long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        latency.record(nanos);
+        return nanos;
+    }
+    /**
+     * The addBytes method adds to the number of bytes handled by the stage.
+     *
+     * @param count Number of bytes.
+     */
+    public void addBytes(long count) {
+        bytes.add(count);
+    }
+    /**
+     * The recordError method counts a failed run of the stage.
+     */
+    public void recordError() {
+        errors.increment();
+    }
+    /**
+     * @return The measured stage.
+     */
+    public Stage getStage() {
+        return stage;
+    }
+    /**
+     * @return Number of recorded runs of the stage.
+     */
+    public long getCount() {
+        return latency.getCount();
+    }
+    /**
+     * @return Number of bytes handled by the stage.
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+    /**
+     * @return Number of failed runs of the stage.
+     */
+    public long getErrors() {
+        return errors.sum();
+    }
+    /**
+     * @return Latency histogram of the stage.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+    /**
+     * The reset method clears all measurements of the stage.
+     */
+    public void reset() {
+        bytes.reset();
+        errors.reset();
+        latency.reset();
+    }
+}
@@ -0,0 +1,311 @@
+package by.financialstatements.model.server;
+
+import by.financialstatements.model.exception.LoginFailedException;
+import by.financialstatements.model.fileprocessing.service.FileProcessor;
+import by.financialstatements.model.fileprocessing.service.IngestionResult;
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.AuthService;
+import by.financialstatements.model.login_service.service.ConfigSnapshot;
+import by.financialstatements.model.login_service.service.PropsHandler;
+import by.financialstatements.model.login_service.session.ApplicationSession;
+import by.financialstatements.model.login_service.session.SessionManager;
+import by.financialstatements.model.metrics.PipelineMetrics;
+import by.financialstatements.model.metrics.Stage;
+import by.financialstatements.model.metrics.StageMetrics;
+import by.financialstatements.model.statistics.AmountParser;
+import by.financialstatements.model.statistics.CategoryTotals;
+import by.financialstatements.model.statistics.ParsedDocument;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * The IngestionServer class is an embedded HTTP server (the JDK HttpServer) that lets other systems submit
+ * statements and read the statistics. Every request is handled on its own virtual thread, so thousands of
+ * slow uploads only cost memory for their buffers. Endpoints:
+ * - POST /login with a form body (login, password, code): authenticates through AuthService and returns a token.
+ * - POST /documents/{name}: uploads a document; the body is streamed through FileProcessor.ingest.
+ *   Answers 201 (stored), 409 (already stored), 413 (too large) or 422 (invalid name or no amount).
+ * - GET /statistics: the current totals of every category.
+ * - GET /status: server state, upload counters, active sessions and the counters of every pipeline stage.
+ * All endpoints except /login need an "Authorization: Bearer &lt;token&gt;" header with a valid session token;
+ * every authorized request renews the session.
+ *
+ * The address is HTTP_HOST (127.0.0.1 by default) and HTTP_PORT (8080 by default; 0 picks a free port),
+ * and uploads are limited to HTTP_MAX_UPLOAD_BYTES (10 MB by default).
+ */
+public class IngestionServer {
+    private final FileProcessor fileProcessor;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Instant startTime = Instant.now();
+    private final AtomicLong activeUploads = new AtomicLong();
+    private final LongAdder acceptedUploads = new LongAdder();
+    private final LongAdder rejectedUploads = new LongAdder();
+    /**
+     * IngestionServer constructor. Binds the address from the configuration; the server is started by start.
+     *
+     * @param fileProcessor Processor that validates the uploads and holds the totals.
+     * @throws IOException If the address cannot be bound.
+     */
+    public IngestionServer(FileProcessor fileProcessor) throws IOException {
+        this(fileProcessor, new InetSocketAddress(PropsHandler.getConfig().getString("HTTP_HOST", "127.0.0.1"),
+                PropsHandler.getConfig().getInt("HTTP_PORT", 8080)));
+    }
+    /**
+     * IngestionServer constructor with an explicit address.
+     *
+     * @param fileProcessor Processor that validates the uploads and holds the totals.
+     * @param address Address to listen on.
+     * @throws IOException If the address cannot be bound.
+     */
+    public IngestionServer(FileProcessor fileProcessor, InetSocketAddress address) throws IOException {
+        this.fileProcessor = fileProcessor;
+        this.server = HttpServer.create(address, PropsHandler.getConfig().getInt("HTTP_BACKLOG", 1024));
+        server.setExecutor(executor);
+        server.createContext("/login", exchange -> handle(exchange, "POST", false, this::login));
+        server.createContext("/documents/", exchange -> handle(exchange, "POST", true, this::upload));
+        server.createContext("/statistics", exchange -> handle(exchange, "GET", true, this::statistics));
+        server.createContext("/status", exchange -> handle(exchange, "GET", true, this::status));
+    }
+    /**
+     * The start method starts accepting requests.
+     */
+    public void start() {
+        server.start();
+        CustomLogger.info("Ingestion server listening on " + getAddress());
+    }
+    /**
+     * The stop method stops accepting requests, waits up to the given time for the running ones,
+     * and writes the statistics.
+     *
+     * @param delaySeconds Longest time to wait for running requests.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.close();
+        fileProcessor.writeStatistics();
+        CustomLogger.info("Ingestion server stopped");
+    }
+    /**
+     * @return The address the server listens on, with the actual port.
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+    /**
+     * The handle method checks the method and the session of a request, runs its handler, and answers
+     * 500 if the handler fails.
+     *
+     * @param exchange The request.
+     * @param method The allowed method.
+     * @param authorized Whether a valid session token is required.
+     * @param handler Handler of the request.
+     * @throws IOException If the answer cannot be sent.
+     */
+    private void handle(HttpExchange exchange, String method, boolean authorized, HttpHandler handler) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals(method)) {
+                exchange.getResponseHeaders().set("Allow", method);
+                send(exchange, 405, "{\"error\":\"method not allowed\"}");
+                return;
+            }
+            if (authorized && !isAuthorized(exchange)) {
+                exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+                send(exchange, 401, "{\"error\":\"missing or expired session\"}");
+                return;
+            }
+            try {
+                handler.handle(exchange);
+            } catch (RuntimeException | IOException e) {
+                CustomLogger.error("Error handling " + method + " " + exchange.getRequestURI().getPath()
+                        + ": " + e.getMessage(), e);
+                send(exchange, 500, "{\"error\":\"internal error\"}");
+            }
+        }
+    }
+    /**
+     * The isAuthorized method checks the bearer token of a request and renews its session.
+     *
+     * @param exchange The request.
+     * @return true if the token belongs to a valid session.
+     */
+    private static boolean isAuthorized(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Bearer ", 0, 7)) {
+            return false;
+        }
+        ApplicationSession session = SessionManager.getInstance().findSession(header.substring(7).trim());
+        return session != null && session.renew();
+    }
+    /**
+     * The login method handles POST /login.
+     *
+     * @param exchange The request.
+     * @throws IOException If the request cannot be read or the answer cannot be sent.
+     */
+    private void login(HttpExchange exchange) throws IOException {
+        Map<String, String> form = parseForm(exchange.getRequestBody());
+        try {
+            ApplicationSession session = AuthService.getInstance()
+                    .authenticate(form.get("login"), form.get("password"), form.get("code")).join();
+            send(exchange, 200, "{\"token\":\"" + session.getAccessToken() + "\"}");
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof LoginFailedException)) {
+                throw e;
+            }
+            CustomLogger.error(e.getCause().getMessage(), e.getCause());
+            send(exchange, 401, "{\"error\":\"authentication failed\"}");
+        }
+    }
+    /**
+     * The upload method handles POST /documents/{name}.
+     *
+     * @param exchange The request.
+     * @throws IOException If the request cannot be read, the document cannot be stored or the answer cannot be sent.
+     */
+    private void upload(HttpExchange exchange) throws IOException {
+        String fileName = exchange.getRequestURI().getPath().substring("/documents/".length());
+        activeUploads.incrementAndGet();
+        IngestionResult result;
+        try (InputStream body = exchange.getRequestBody()) {
+            result = fileProcessor.ingest(fileName, body,
+                    PropsHandler.getConfig().getLong("HTTP_MAX_UPLOAD_BYTES", 10L * 1024 * 1024));
+        } finally {
+            activeUploads.decrementAndGet();
+        }
+        if (result.getStatus() == IngestionResult.Status.ACCEPTED) {
+            acceptedUploads.increment();
+            ParsedDocument document = result.getDocument();
+            send(exchange, 201, "{\"file\":\"" + escape(fileName) + "\",\"category\":\""
+                    + escape(document.getDocumentAmount().getCategory()) + "\",\"amount\":"
+                    + AmountParser.format(document.getDocumentAmount().getAmount()) + "}");
+            return;
+        }
+        rejectedUploads.increment();
+        int code = switch (result.getStatus()) {
+            case DUPLICATE -> 409;
+            case TOO_LARGE -> 413;
+            default -> 422;
+        };
+        send(exchange, code, "{\"file\":\"" + escape(fileName) + "\",\"error\":\""
+                + result.getStatus().name().toLowerCase() + "\"}");
+    }
+    /**
+     * The statistics method handles GET /statistics.
+     *
+     * @param exchange The request.
+     * @throws IOException If the answer cannot be sent.
+     */
+    private void statistics(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder("{");
+        for (Map.Entry<String, CategoryTotals> entry : fileProcessor.getStatistics().entrySet()) {
+            CategoryTotals totals = entry.getValue();
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(escape(entry.getKey())).append("\":{\"count\":").append(totals.getCount())
+                    .append(",\"sum\":").append(AmountParser.format(totals.getSum()));
+            if (totals.getCount() > 0) {
+                json.append(",\"min\":").append(AmountParser.format(totals.getMin()))
+                        .append(",\"max\":").append(AmountParser.format(totals.getMax()))
+                        .append(",\"mean\":").append(AmountParser.format(totals.getMean()));
+            }
+            json.append('}');
+        }
+        send(exchange, 200, json.append('}').toString());
+    }
+    /**
+     * The status method handles GET /status.
+     *
+     * @param exchange The request.
+     * @throws IOException If the answer cannot be sent.
+     */
+    private void status(HttpExchange exchange) throws IOException {
+        StringBuilder json = new StringBuilder("{\"status\":\"running\"")
+                .append(",\"startTime\":\"").append(startTime).append('"')
+                .append(",\"activeUploads\":").append(activeUploads.get())
+                .append(",\"acceptedUploads\":").append(acceptedUploads.sum())
+                .append(",\"rejectedUploads\":").append(rejectedUploads.sum())
+                .append(",\"activeSessions\":").append(SessionManager.getInstance().getActiveSessionCount())
+                .append(",\"configVersion\":").append(PropsHandler.getConfig().getVersion())
+                .append(",\"stages\":{");
+        for (Stage stage : Stage.values()) {
+            StageMetrics metrics = PipelineMetrics.getInstance().stage(stage);
+            json.append(stage.ordinal() == 0 ? "" : ",").append('"').append(stage.name().toLowerCase())
+                    .append("\":{\"count\":").append(metrics.getCount())
+                    .append(",\"errors\":").append(metrics.getErrors())
+                    .append(",\"bytes\":").append(metrics.getBytes()).append('}');
+        }
+        send(exchange, 200, json.append("}}").toString());
+    }
+    /**
+     * The send method sends a JSON answer.
+     *
+     * @param exchange The request.
+     * @param code HTTP status code.
+     * @param json Body of the answer.
+     * @throws IOException If the answer cannot be sent.
+     */
+    private static void send(HttpExchange exchange, int code, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+    /**
+     * The parseForm method parses an application/x-www-form-urlencoded body.
+     *
+     * @param body The body; at most 8 KB are read.
+     * @return Map from field name to value.
+     * @throws IOException If the body cannot be read.
+     */
+    private static Map<String, String> parseForm(InputStream body) throws IOException {
+        String text = new String(body.readNBytes(8192), StandardCharsets.UTF_8);
+        Map<String, String> form = new HashMap<>();
+        for (String pair : text.split("&")) {
+            int separator = pair.indexOf('=');
+            if (separator > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+    /**
+     * The escape method escapes a string for a JSON string literal.
+     *
+     * @param value The string.
+     * @return The escaped string.
+     */
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,168 @@
+package by.financialstatements.model.shard;
+
+import by.financialstatements.model.statistics.CategoryTotals;
+import by.financialstatements.model.statistics.breakdown.BreakdownAggregator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+/**
+ * The PartialStatistics class holds the statistics of the files of one shard of a sharded run, in a form that can be
+ * merged with the statistics of the other shards without loss: the count, sum, minimum and maximum of every
+ * category and, if breakdowns are enabled, the breakdown tables and sketches (see BreakdownAggregator).
+ *
+ * File format (big-endian): magic, version, run identifier, shard number, number of shards, time written, the categories
+ * (name, count, sum, minimum, maximum), then a flag and the breakdowns if there are any.
+ * The file is saved to a temporary file which then replaces the old one, so the coordinator never reads
+ * a half-written file.
+ */
+public class PartialStatistics {
+    private static final int MAGIC = 0x46535053;
+    private static final int VERSION = 4;
+
+    private final String runId;
+    private final int shardIndex;
+    private final int shardCount;
+    private final long writtenAt;
+    private final Map<String, CategoryTotals> statistics;
+    private final BreakdownAggregator breakdown;
+    /**
+     * PartialStatistics constructor.
+     *
+     * @param runId Identifier of the run.
+     * @param shardIndex Number of the shard.
+     * @param shardCount Number of shards of the run.
+     * @param writtenAt Time the statistics were taken, in milliseconds since the epoch.
+     * @param statistics Map from category to its totals, in category order.
+     * @param breakdown Breakdowns of the shard, or null if they are not enabled.
+     */
+    public PartialStatistics(String runId, int shardIndex, int shardCount, long writtenAt,
+                             Map<String, CategoryTotals> statistics, BreakdownAggregator breakdown) {
+        this.runId = runId;
+        this.shardIndex = shardIndex;
+        this.shardCount = shardCount;
+        this.writtenAt = writtenAt;
+        this.statistics = statistics;
+        this.breakdown = breakdown;
+    }
+    /**
+     * The fileFor method returns the path of the partial statistics file of a shard.
+     *
+     * @param directory Folder with the partial statistics files.
+     * @param shard The shard.
+     * @return Path of the file, named after the shard number and the number of shards.
+     */
+    public static Path fileFor(Path directory, ShardAssignment shard) {
+        return directory.resolve(String.format("partial-%d-of-%d.bin", shard.getIndex(), shard.getCount()));
+    }
+    /**
+     * The load method reads partial statistics from a file.
+     *
+     * @param file Path to the file.
+     * @param maxGroups Maximum number of groups kept in each breakdown of a category.
+     * @return The partial statistics.
+     * @throws IOException If the file cannot be read or is not a partial statistics file.
+     */
+    public static PartialStatistics load(Path file, int maxGroups) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException("Not a partial statistics file: " + file);
+            }
+            String runId = input.readUTF();
+            int shardIndex = input.readInt();
+            int shardCount = input.readInt();
+            long writtenAt = input.readLong();
+            int categoryCount = input.readInt();
+            Map<String, CategoryTotals> statistics = new LinkedHashMap<>();
+            for (int i = 0; i < categoryCount; i++) {
+                statistics.put(input.readUTF(), new CategoryTotals(input.readLong(), input.readLong(),
+                        input.readLong(), input.readLong()));
+            }
+            BreakdownAggregator breakdown = input.readBoolean() ? BreakdownAggregator.readFrom(input,
+                    new ArrayList<>(statistics.keySet()), maxGroups) : null;
+            return new PartialStatistics(runId, shardIndex, shardCount, writtenAt, statistics, breakdown);
+        }
+    }
+    /**
+     * The save method writes the partial statistics to a file, replacing the previous version atomically.
+     *
+     * @param file Path to the file.
+     * @throws IOException If the file cannot be written.
+     * @throws IllegalArgumentException If the breakdowns have other categories than the totals.
+     */
+    public void save(Path file) throws IOException {
+        if (breakdown != null && !breakdown.getCategories().equals(List.copyOf(statistics.keySet()))) {
+            throw new IllegalArgumentException("Breakdown categories " + breakdown.getCategories()
+                    + " differ from " + statistics.keySet());
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporaryFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeUTF(runId);
+            output.writeInt(shardIndex);
+            output.writeInt(shardCount);
+            output.writeLong(writtenAt);
+            output.writeInt(statistics.size());
+            for (Map.Entry<String, CategoryTotals> category : statistics.entrySet()) {
+                CategoryTotals totals = category.getValue();
+                output.writeUTF(category.getKey());
+                output.writeLong(totals.getCount());
+                output.writeLong(totals.getSum());
+                output.writeLong(totals.getMin());
+                output.writeLong(totals.getMax());
+            }
+            output.writeBoolean(breakdown != null);
+            if (breakdown != null) {
+                breakdown.writeTo(output);
+            }
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    /**
+     * @return Identifier of the run.
+     */
+    public String getRunId() {
+        return runId;
+    }
+    /**
+     * @return Number of the shard.
+     */
+    public int getShardIndex() {
+        return shardIndex;
+    }
+    /**
+     * @return Number of shards of the run.
+     */
+    public int getShardCount() {
+        return shardCount;
+    }
+    /**
+     * @return Time the statistics were taken, in milliseconds since the epoch.
+     */
+    public long getWrittenAt() {
+        return writtenAt;
+    }
+    /**
+     * @return Map from category to its totals, in category order.
+     */
+    public Map<String, CategoryTotals> getStatistics() {
+        return statistics;
+    }
+    /**
+     * @return Breakdowns of the shard, or null if they were not enabled.
+     */
+    public BreakdownAggregator getBreakdown() {
+        return breakdown;
+    }
+}
@@ -0,0 +1,151 @@
+package by.financialstatements.model.shard;
+
+import by.financialstatements.model.login_service.service.ConfigSnapshot;
+import by.financialstatements.model.login_service.service.PropsHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+/**
+ * The ShardAssignment class decides which of the worker processes of a sharded run handles a file.
+ * Files are assigned by their name with jump consistent hashing (Lamping and Veach), so every worker
+ * reaches the same decision without talking to the others, the shards are of about the same size, and
+ * changing the number of shards from n to n + 1 moves only about 1 / (n + 1) of the files to another shard.
+ * State files that must not be shared between workers (move journal, indexes) get a per-shard name (see forShard).
+ * Every run has an identifier, given to all its workers and to the coordinator, so that partial statistics
+ * left by an earlier run are never merged into a later one (see StatisticsMerger).
+ */
+public class ShardAssignment {
+    private final int index;
+    private final int count;
+    private final String runId;
+    /**
+     * ShardAssignment constructor.
+     *
+     * @param index Number of this shard, from 0 to count - 1.
+     * @param count Number of shards.
+     * @param runId Identifier of the run, the same for all its workers.
+     * @throws IllegalArgumentException If the index is not a shard number or the run identifier is blank.
+     */
+    public ShardAssignment(int index, int count, String runId) {
+        if (count < 1 || index < 0 || index >= count) {
+            throw new IllegalArgumentException("Invalid shard " + index + " of " + count);
+        }
+        if (runId == null || runId.isBlank()) {
+            throw new IllegalArgumentException("A sharded run needs a run identifier (SHARD_RUN_ID)");
+        }
+        this.index = index;
+        this.count = count;
+        this.runId = runId.trim();
+    }
+    /**
+     * The fromConfig method returns the shard set by SHARD_INDEX, SHARD_COUNT and SHARD_RUN_ID.
+     *
+     * @return The shard, or null if SHARD_COUNT is not set or is 1, which means the run is not sharded.
+     * @throws IllegalArgumentException If SHARD_INDEX is not a shard number or SHARD_RUN_ID is not set.
+     */
+    public static ShardAssignment fromConfig() {
+        ConfigSnapshot config = PropsHandler.getConfig();
+        int count = config.getInt("SHARD_COUNT", 1);
+        return count <= 1 ? null
+                : new ShardAssignment(config.getInt("SHARD_INDEX", -1), count, config.getString("SHARD_RUN_ID", null));
+    }
+    /**
+     * The parse method reads a shard written as "index/count", for example "0/4".
+     *
+     * @param text The shard.
+     * @param runId Identifier of the run.
+     * @return The shard.
+     * @throws IllegalArgumentException If the text is not a shard or the run identifier is blank.
+     */
+    public static ShardAssignment parse(String text, String runId) {
+        int slash = text.indexOf('/');
+        if (slash < 0) {
+            throw new IllegalArgumentException("Expected a shard as index/count: " + text);
+        }
+        try {
+            return new ShardAssignment(Integer.parseInt(text.substring(0, slash).trim()),
+                    Integer.parseInt(text.substring(slash + 1).trim()), runId);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Expected a shard as index/count: " + text);
+        }
+    }
+    /**
+     * The owns method checks whether a file belongs to this shard.
+     *
+     * @param fileName Name of the file.
+     * @return true if this shard handles the file.
+     */
+    public boolean owns(String fileName) {
+        return shardOf(fileName, count) == index;
+    }
+    /**
+     * The shardOf method returns the shard a file belongs to.
+     *
+     * @param fileName Name of the file.
+     * @param count Number of shards.
+     * @return Number of the shard, from 0 to count - 1.
+     */
+    public static int shardOf(String fileName, int count) {
+        long key = hash(fileName);
+        long shard = -1;
+        long next = 0;
+        while (next < count) {
+            shard = next;
+            key = key * 2862933555777941757L + 1;
+            next = (long) ((shard + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+        }
+        return (int) shard;
+    }
+    /**
+     * The forShard method gives a state file or folder a name of its own for this shard, so that workers
+     * running at the same time do not share it.
+     *
+     * @param path Path set in the configuration, or null.
+     * @return The path with ".shard-index" appended to its name, or null if the path is null.
+     */
+    public Path forShard(Path path) {
+        return path == null ? null : path.resolveSibling(path.getFileName() + ".shard-" + index);
+    }
+    /**
+     * @return Number of this shard, from 0 to getCount() - 1.
+     */
+    public int getIndex() {
+        return index;
+    }
+    /**
+     * @return Number of shards.
+     */
+    public int getCount() {
+        return count;
+    }
+    /**
+     * @return Identifier of the run.
+     */
+    public String getRunId() {
+        return runId;
+    }
+    /**
+     * @return The shard as "index/count".
+     */
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+    /**
+     * The hash method calculates a 64-bit hash of a file name: FNV-1a over its UTF-8 bytes followed by
+     * a finalizer that spreads the bits.
+     *
+     * @param fileName Name of the file.
+     * @return The hash.
+     */
+    private static long hash(String fileName) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : fileName.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,96 @@
+package by.financialstatements.model.shard;
+
+import by.financialstatements.model.exception.ShardMergeException;
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.PropsHandler;
+import by.financialstatements.model.statistics.CategoryTotals;
+import by.financialstatements.model.statistics.StatisticsWriter;
+import by.financialstatements.model.statistics.breakdown.BreakdownAggregator;
+import by.financialstatements.model.statistics.breakdown.BreakdownWriter;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+/**
+ * The StatisticsMerger class is the coordinator of a sharded run: once every worker has written its partial
+ * statistics (see PartialStatistics), it merges them and writes the same reports as a single process would,
+ * the statistics file (see StatisticsWriter) and, if BREAKDOWN_FILE is set, the breakdown file.
+ * Totals are merged exactly; distinct counterparties and quantiles are merged from their sketches,
+ * with the same accuracy as in a single process.
+ * Only the files of the given run are merged: files left in the folder by other runs are skipped with a warning,
+ * so that a stale shard can never take the place of a shard of this run that failed or has not finished.
+ */
+public class StatisticsMerger {
+    private final StatisticsWriter statisticsWriter = new StatisticsWriter();
+    private final BreakdownWriter breakdownWriter = new BreakdownWriter();
+    /**
+     * The merge method reads the partial statistics files of a run from a folder, checks that they are all
+     * the shards of the run, and writes the merged reports.
+     *
+     * @param directory Folder with the partial statistics files (PARTIAL_STATISTICS_DIR).
+     * @param runId Identifier of the run whose shards are merged (SHARD_RUN_ID).
+     * @return Map from category to its merged totals, in category order.
+     * @throws IOException If the folder or a partial statistics file cannot be read.
+     * @throws ShardMergeException If the files of the run are not exactly its shards.
+     */
+    public Map<String, CategoryTotals> merge(Path directory, String runId) throws IOException {
+        int maxGroups = PropsHandler.getConfig().getInt("BREAKDOWN_MAX_GROUPS", 10000);
+        Map<Integer, PartialStatistics> partials = new TreeMap<>();
+        List<Path> staleFiles = new ArrayList<>();
+        int shardCount = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "partial-*-of-*.bin")) {
+            for (Path file : files) {
+                PartialStatistics partial = PartialStatistics.load(file, maxGroups);
+                if (!partial.getRunId().equals(runId)) {
+                    CustomLogger.warning("Partial statistics " + file + " of run " + partial.getRunId()
+                            + " skipped: not of run " + runId);
+                    staleFiles.add(file.getFileName());
+                    continue;
+                }
+                if (shardCount != 0 && partial.getShardCount() != shardCount) {
+                    throw new ShardMergeException("Partial statistics of runs with " + shardCount + " and "
+                            + partial.getShardCount() + " shards found for run " + runId + " in " + directory);
+                }
+                shardCount = partial.getShardCount();
+                partials.put(partial.getShardIndex(), partial);
+            }
+        }
+        if (partials.isEmpty() || partials.size() != shardCount) {
+            throw new ShardMergeException("Partial statistics of " + partials.size() + " of " + shardCount
+                    + " shards of run " + runId + " found in " + directory + ", shards present: " + partials.keySet()
+                    + (staleFiles.isEmpty() ? "" : ", files of other runs skipped: " + staleFiles));
+        }
+        Map<String, CategoryTotals> statistics = new LinkedHashMap<>();
+        BreakdownAggregator breakdown = null;
+        boolean breakdownComplete = true;
+        for (PartialStatistics partial : partials.values()) {
+            CustomLogger.info("Merging statistics of shard " + partial.getShardIndex() + "/" + shardCount
+                    + " written at " + Instant.ofEpochMilli(partial.getWrittenAt()));
+            partial.getStatistics().forEach((category, totals) -> statistics.merge(category, totals, CategoryTotals::merge));
+            if (partial.getBreakdown() == null) {
+                breakdownComplete = false;
+            } else if (breakdown == null) {
+                breakdown = partial.getBreakdown();
+            } else {
+                breakdown.merge(partial.getBreakdown());
+            }
+        }
+        statisticsWriter.writeCategoryStatisticsToFile(statistics);
+        if (BreakdownWriter.isEnabled()) {
+            if (breakdown != null && breakdownComplete) {
+                breakdownWriter.writeBreakdownToFile(breakdown);
+            } else {
+                CustomLogger.warning("Breakdown not written: some shards were processed without breakdowns");
+            }
+        }
+        CustomLogger.info("Statistics of " + shardCount + " shards of run " + runId + " merged");
+        return statistics;
+    }
+}
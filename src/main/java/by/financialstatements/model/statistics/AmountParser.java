@@ -0,0 +1,185 @@
+package by.financialstatements.model.statistics;
+
+import java.math.BigDecimal;
+/**
+ * The AmountParser class extracts monetary amounts from the total lines of financial documents.
+ * Parsing is done by a hand-written scan over the characters, without regular expressions or temporary strings.
+ * Amounts are returned as fixed-point values in minor units (hundredths), so totals can be summed without
+ * floating point drift. Digits after the second decimal place are rounded half-up, and amounts too large
+ * for a long in minor units are reported as invalid.
+ */
+public class AmountParser {
+    /**
+     * Value returned when the line does not contain an amount in the expected format.
+     */
+    public static final long INVALID_AMOUNT = Long.MIN_VALUE;
+
+    private static final String ORDER_TOTAL_LABEL = "Order Total";
+    private static final long MAX_UNITS = (Long.MAX_VALUE - 100) / 100;
+    /**
+     * The parseAmount method extracts an amount from an invoice or check total line.
+     * All characters except digits, ',' and '.' are ignored; the remaining digits form the number
+     * and a single ',' or '.' is the decimal separator (for example "Bill total amount EURO 102,78").
+     *
+     * @param line The last line from the file.
+     * @return The amount in minor units, or INVALID_AMOUNT if there are no digits or more than one separator.
+     */
+    public static long parseAmount(CharSequence line) {
+        long units = 0;
+        int fractionDigits = 0;
+        int fraction = 0;
+        boolean roundUp = false;
+        boolean hasDigits = false;
+        boolean hasSeparator = false;
+        for (int i = 0, length = line.length(); i < length; i++) {
+            char c = line.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigits = true;
+                int digit = c - '0';
+                if (!hasSeparator) {
+                    if (units > (MAX_UNITS - digit) / 10) {
+                        return INVALID_AMOUNT;
+                    }
+                    units = units * 10 + digit;
+                } else if (fractionDigits < 2) {
+                    fraction = fraction * 10 + digit;
+                    fractionDigits++;
+                } else if (fractionDigits == 2) {
+                    roundUp = digit >= 5;
+                    fractionDigits++;
+                }
+            } else if (c == ',' || c == '.') {
+                if (hasSeparator) {
+                    return INVALID_AMOUNT;
+                }
+                hasSeparator = true;
+            }
+        }
+        if (!hasDigits) {
+            return INVALID_AMOUNT;
+        }
+        return toMinorUnits(units, fraction, fractionDigits, roundUp);
+    }
+    /**
+     * The parseOrderAmount method extracts the value of the "Order Total" field, for example "Order Total 1,228.01".
+     * The label must be followed by one whitespace character and a number with ',' as the thousands separator
+     * and '.' as the decimal separator.
+     *
+     * @param line The last line from the file.
+     * @return The amount in minor units, or INVALID_AMOUNT if the field is not found.
+     */
+    public static long parseOrderAmount(CharSequence line) {
+        int length = line.length();
+        int labelLength = ORDER_TOTAL_LABEL.length();
+        for (int start = 0; start + labelLength < length; start++) {
+            if (regionMatches(line, start) && isWhitespace(line.charAt(start + labelLength))) {
+                long amount = parseGroupedNumber(line, start + labelLength + 1);
+                if (amount != INVALID_AMOUNT) {
+                    return amount;
+                }
+            }
+        }
+        return INVALID_AMOUNT;
+    }
+    /**
+     * The format method converts an amount in minor units to a plain decimal string, for example 122801 to "1228.01".
+     *
+     * @param minorUnits The amount in minor units.
+     * @return The amount as a string with two decimal places.
+     */
+    public static String format(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, 2).toPlainString();
+    }
+    /**
+     * The parseGroupedNumber method parses a number of the form 1,234,567.89 starting at the given position:
+     * one to three digits, any number of ",ddd" groups, a '.' and at least one digit.
+     *
+     * @param line The line being parsed.
+     * @param position Position of the first digit.
+     * @return The amount in minor units, or INVALID_AMOUNT if the number does not have this form.
+     */
+    private static long parseGroupedNumber(CharSequence line, int position) {
+        int length = line.length();
+        long units = 0;
+        int leadingDigits = 0;
+        while (position < length && isDigit(line.charAt(position))) {
+            if (++leadingDigits > 3) {
+                return INVALID_AMOUNT;
+            }
+            units = units * 10 + (line.charAt(position++) - '0');
+        }
+        if (leadingDigits == 0) {
+            return INVALID_AMOUNT;
+        }
+        // Thousands groups: each must be exactly three digits followed by ',' or '.'
+        while (position + 4 < length && line.charAt(position) == ','
+                && isDigit(line.charAt(position + 1)) && isDigit(line.charAt(position + 2))
+                && isDigit(line.charAt(position + 3))) {
+            if (units > (MAX_UNITS - 999) / 1000) {
+                return INVALID_AMOUNT;
+            }
+            units = units * 1000 + (line.charAt(position + 1) - '0') * 100
+                    + (line.charAt(position + 2) - '0') * 10 + (line.charAt(position + 3) - '0');
+            position += 4;
+        }
+        if (position + 1 >= length || line.charAt(position) != '.' || !isDigit(line.charAt(position + 1))) {
+            return INVALID_AMOUNT;
+        }
+        position++;
+        int fractionDigits = 0;
+        int fraction = 0;
+        boolean roundUp = false;
+        while (position < length && isDigit(line.charAt(position))) {
+            int digit = line.charAt(position++) - '0';
+            if (fractionDigits < 2) {
+                fraction = fraction * 10 + digit;
+            } else if (fractionDigits == 2) {
+                roundUp = digit >= 5;
+            }
+            fractionDigits++;
+        }
+        return toMinorUnits(units, fraction, fractionDigits, roundUp);
+    }
+    /**
+     * The toMinorUnits method combines the integer and fractional parts into minor units.
+     *
+     * @param units Integer part of the amount.
+     * @param fraction First (up to two) fractional digits as a number.
+     * @param fractionDigits Number of fractional digits read.
+     * @param roundUp Whether the third fractional digit is 5 or more.
+     * @return The amount in minor units.
+     */
+    private static long toMinorUnits(long units, int fraction, int fractionDigits, boolean roundUp) {
+        if (fractionDigits == 1) {
+            fraction *= 10;
+        }
+        return units * 100 + fraction + (roundUp ? 1 : 0);
+    }
+    /**
+     * The regionMatches method checks whether the "Order Total" label starts at the given position.
+     *
+     * @param line The line being parsed.
+     * @param start Position to check.
+     * @return true if the label starts at the position.
+     */
+    private static boolean regionMatches(CharSequence line, int start) {
+        for (int i = 0; i < ORDER_TOTAL_LABEL.length(); i++) {
+            if (line.charAt(start + i) != ORDER_TOTAL_LABEL.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    /**
+     * Same set of characters as the \d class of java.util.regex.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+    /**
+     * Same set of characters as the \s class of java.util.regex.
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,182 @@
+package by.financialstatements.model.statistics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.List;
+/**
+ * The CategoryAggregator class accumulates the count, sum, minimum and maximum of amounts per category
+ * from many threads at once. Categories are numbered densely from 0, so all updates work on primitive arrays
+ * without boxing or map lookups.
+ *
+ * Like LongAdder, the totals are spread over several stripes (about two per processor), and each thread starts
+ * at its own stripe, so concurrent adds rarely touch the same memory. Each stripe is one padded long array
+ * guarded by a sequence number:
+ * - A writer claims a stripe by moving its sequence from even to odd with a CAS, updates the four values and
+ *   releases the stripe with the next even number. If the stripe is busy it moves on to the next one instead of waiting.
+ * - A reader copies a stripe and keeps the copy only if the sequence was even and unchanged, so a snapshot
+ *   never contains half of an add (for example a sum that includes an amount the count does not).
+ */
+public class CategoryAggregator {
+    private static final VarHandle SEQUENCE = MethodHandles.arrayElementVarHandle(long[].class);
+    // Padding of a whole cache line on both sides of a stripe prevents false sharing between stripes
+    private static final int PADDING = 8;
+    private static final int SEQUENCE_INDEX = PADDING;
+    private static final int DATA_INDEX = PADDING + 1;
+    private static final int VALUES = 4;
+    private static final int COUNT = 0;
+    private static final int SUM = 1;
+    private static final int MIN = 2;
+    private static final int MAX = 3;
+
+    private final List<String> categories;
+    private final long[][] stripes;
+    private final int stripeMask;
+    /**
+     * CategoryAggregator constructor.
+     *
+     * @param categories Names of the categories; a category is identified by its position in this list.
+     */
+    public CategoryAggregator(List<String> categories) {
+        this.categories = List.copyOf(categories);
+        int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+        this.stripes = new long[stripeCount][];
+        this.stripeMask = stripeCount - 1;
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new long[DATA_INDEX + this.categories.size() * VALUES + PADDING];
+            for (int category = 0; category < this.categories.size(); category++) {
+                stripes[i][DATA_INDEX + category * VALUES + MIN] = Long.MAX_VALUE;
+                stripes[i][DATA_INDEX + category * VALUES + MAX] = Long.MIN_VALUE;
+            }
+        }
+    }
+    /**
+     * The add method counts one document of a category with the given amount.
+     *
+     * @param category Number of the category.
+     * @param amount Amount in minor units.
+     */
+    public void add(int category, long amount) {
+        long[] stripe = claimStripe();
+        int offset = DATA_INDEX + category * VALUES;
+        stripe[offset + COUNT]++;
+        stripe[offset + SUM] += amount;
+        stripe[offset + MIN] = Math.min(stripe[offset + MIN], amount);
+        stripe[offset + MAX] = Math.max(stripe[offset + MAX], amount);
+        release(stripe);
+    }
+    /**
+     * The addTotals method counts a group of documents of a category at once, for example totals kept from an earlier run.
+     *
+     * @param category Number of the category.
+     * @param totals Totals of the documents.
+     */
+    public void addTotals(int category, CategoryTotals totals) {
+        if (totals.getCount() == 0) {
+            return;
+        }
+        long[] stripe = claimStripe();
+        int offset = DATA_INDEX + category * VALUES;
+        stripe[offset + COUNT] += totals.getCount();
+        stripe[offset + SUM] += totals.getSum();
+        stripe[offset + MIN] = Math.min(stripe[offset + MIN], totals.getMin());
+        stripe[offset + MAX] = Math.max(stripe[offset + MAX], totals.getMax());
+        release(stripe);
+    }
+    /**
+     * The snapshot method returns the totals of every category, combining a consistent copy of each stripe.
+     *
+     * @return Totals in the order of the category list.
+     */
+    public CategoryTotals[] snapshot() {
+        int size = categories.size() * VALUES;
+        long[] combined = new long[size];
+        long[] copy = new long[size];
+        for (int category = 0; category < categories.size(); category++) {
+            combined[category * VALUES + MIN] = Long.MAX_VALUE;
+            combined[category * VALUES + MAX] = Long.MIN_VALUE;
+        }
+        for (long[] stripe : stripes) {
+            readStripe(stripe, copy);
+            for (int offset = 0; offset < size; offset += VALUES) {
+                combined[offset + COUNT] += copy[offset + COUNT];
+                combined[offset + SUM] += copy[offset + SUM];
+                combined[offset + MIN] = Math.min(combined[offset + MIN], copy[offset + MIN]);
+                combined[offset + MAX] = Math.max(combined[offset + MAX], copy[offset + MAX]);
+            }
+        }
+        CategoryTotals[] totals = new CategoryTotals[categories.size()];
+        for (int category = 0; category < totals.length; category++) {
+            int offset = category * VALUES;
+            boolean empty = combined[offset + MIN] > combined[offset + MAX];
+            totals[category] = new CategoryTotals(combined[offset + COUNT], combined[offset + SUM],
+                    empty ? 0 : combined[offset + MIN], empty ? 0 : combined[offset + MAX]);
+        }
+        return totals;
+    }
+    /**
+     * The getCategories method returns the names of the categories.
+     *
+     * @return Category names; the position of a name is the number of the category.
+     */
+    public List<String> getCategories() {
+        return categories;
+    }
+    /**
+     * The claimStripe method takes exclusive ownership of a stripe, starting with the stripe of the current thread
+     * and moving on to the next one while stripes are busy.
+     *
+     * @return The claimed stripe; it must be released with release.
+     */
+    private long[] claimStripe() {
+        int index = (int) mix(Thread.currentThread().threadId()) & stripeMask;
+        for (int attempt = 1; ; attempt++) {
+            long[] stripe = stripes[index];
+            long sequence = (long) SEQUENCE.getVolatile(stripe, SEQUENCE_INDEX);
+            if ((sequence & 1) == 0 && SEQUENCE.compareAndSet(stripe, SEQUENCE_INDEX, sequence, sequence + 1)) {
+                return stripe;
+            }
+            index = (index + 1) & stripeMask;
+            if (attempt % stripes.length == 0) {
+                // Every stripe was busy
+                Thread.onSpinWait();
+            }
+        }
+    }
+    /**
+     * The release method publishes the changes made to a claimed stripe and gives up ownership.
+     *
+     * @param stripe The claimed stripe.
+     */
+    private static void release(long[] stripe) {
+        SEQUENCE.setRelease(stripe, SEQUENCE_INDEX, stripe[SEQUENCE_INDEX] + 1);
+    }
+    /**
+     * The readStripe method copies the values of a stripe, retrying while a writer is changing it.
+     *
+     * @param stripe The stripe to read.
+     * @param copy Array receiving the values of all categories.
+     */
+    private static void readStripe(long[] stripe, long[] copy) {
+        while (true) {
+            long before = (long) SEQUENCE.getAcquire(stripe, SEQUENCE_INDEX);
+            if ((before & 1) == 0) {
+                System.arraycopy(stripe, DATA_INDEX, copy, 0, copy.length);
+                VarHandle.acquireFence();
+                if ((long) SEQUENCE.getVolatile(stripe, SEQUENCE_INDEX) == before) {
+                    return;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+    /**
+     * The mix method spreads the bits of a thread id so that consecutive ids land on different stripes.
+     *
+     * @param value Thread id.
+     * @return The mixed value.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+        return value ^ (value >>> 33);
+    }
+}
@@ -0,0 +1,70 @@
+package by.financialstatements.model.statistics;
+/**
+ * The CategoryTotals class is a snapshot of the statistics of one category: number of documents,
+ * sum, smallest and largest amount. Amounts are in minor units (hundredths).
+ */
+public class CategoryTotals {
+    private final long count;
+    private final long sum;
+    private final long min;
+    private final long max;
+    /**
+     * CategoryTotals constructor.
+     *
+     * @param count Number of documents.
+     * @param sum Sum of the amounts.
+     * @param min Smallest amount (0 if there are no documents).
+     * @param max Largest amount (0 if there are no documents).
+     */
+    public CategoryTotals(long count, long sum, long min, long max) {
+        this.count = count;
+        this.sum = sum;
+        this.min = min;
+        this.max = max;
+    }
+    /**
+     * The merge method combines these totals with the totals of other documents of the same category.
+     *
+     * @param other The other totals.
+     * @return The totals of the documents of both.
+     */
+    public CategoryTotals merge(CategoryTotals other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            return other;
+        }
+        return new CategoryTotals(count + other.count, sum + other.sum, Math.min(min, other.min), Math.max(max, other.max));
+    }
+    /**
+     * @return Number of documents.
+     */
+    public long getCount() {
+        return count;
+    }
+    /**
+     * @return Sum of the amounts in minor units.
+     */
+    public long getSum() {
+        return sum;
+    }
+    /**
+     * @return Smallest amount in minor units, or 0 if there are no documents.
+     */
+    public long getMin() {
+        return min;
+    }
+    /**
+     * @return Largest amount in minor units, or 0 if there are no documents.
+     */
+    public long getMax() {
+        return max;
+    }
+    /**
+     * @return Average amount in minor units rounded to the nearest unit, or 0 if there are no documents.
+     */
+    public long getMean() {
+        return count == 0 ? 0 : Math.round((double) sum / count);
+    }
+}
@@ -0,0 +1,31 @@
+package by.financialstatements.model.statistics;
+/**
+ * The DocumentAmount class is the contribution of one document to the statistics:
+ * the category it is counted in and its amount.
+ */
+public class DocumentAmount {
+    private final String category;
+    private final long amount;
+    /**
+     * DocumentAmount constructor.
+     *
+     * @param category Statistics category ("invoices", "orders", "checks").
+     * @param amount Amount in minor units.
+     */
+    public DocumentAmount(String category, long amount) {
+        this.category = category;
+        this.amount = amount;
+    }
+    /**
+     * @return Statistics category ("invoices", "orders", "checks").
+     */
+    public String getCategory() {
+        return category;
+    }
+    /**
+     * @return Amount in minor units.
+     */
+    public long getAmount() {
+        return amount;
+    }
+}
@@ -0,0 +1,184 @@
+package by.financialstatements.model.statistics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+/**
+ * The DocumentStreamReader class reads a document from a stream in a single pass and keeps only what the statistics
+ * need: the beginning of the document (for DocumentFieldExtractor) and its last line (for the amount).
+ * The bytes can be copied to an output stream at the same time, so a document received over the network
+ * is stored and parsed without being read twice. Memory use does not depend on the document size.
+ *
+ * The last line is the same as the one returned by LastLineReader: "\n", "\r" and "\r\n" are line terminators,
+ * and a single trailing terminator does not start a new line. Of a line longer than MAX_LINE_LENGTH bytes
+ * only its last MAX_LINE_LENGTH bytes are kept, since the amount is at the end of the line.
+ */
+public class DocumentStreamReader {
+    public static final int HEAD_SIZE = 4096;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final byte[] head = new byte[HEAD_SIZE];
+    private int headLength;
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private byte[] previousLine = new byte[256];
+    private int previousLineLength = -1;
+    private boolean afterCarriageReturn;
+    private long size;
+    /**
+     * The read method reads the stream to its end.
+     *
+     * @param input The document.
+     * @param copy Stream that receives a copy of every byte, or null.
+     * @param maxSize Largest number of bytes accepted.
+     * @return The number of bytes read.
+     * @throws IOException If the stream cannot be read or copied, or is longer than maxSize.
+     */
+    public long read(InputStream input, OutputStream copy, long maxSize) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = input.read(buffer)) >= 0) {
+            size += read;
+            if (size > maxSize) {
+                throw new DocumentTooLargeException(maxSize);
+            }
+            if (copy != null) {
+                copy.write(buffer, 0, read);
+            }
+            accept(buffer, read);
+        }
+        return size;
+    }
+    /**
+     * The getHead method returns the beginning of the document, decoded as ISO-8859-1 like in DocumentFieldExtractor.
+     *
+     * @return The first HEAD_SIZE bytes of the document, or all of it if it is shorter.
+     */
+    public CharSequence getHead() {
+        return new String(head, 0, headLength, StandardCharsets.ISO_8859_1);
+    }
+    /**
+     * The getLastLine method returns the last line of the document.
+     *
+     * @return The last line without its terminator (may be empty), or null if the document is empty.
+     * @throws CharacterCodingException If the last line is not valid UTF-8.
+     */
+    public String getLastLine() throws CharacterCodingException {
+        byte[] bytes;
+        int length;
+        if (lineLength > 0 || previousLineLength < 0) {
+            if (size == 0) {
+                return null;
+            }
+            bytes = line;
+            length = lineLength;
+        } else {
+            // The document ends with a terminator, which does not start a new line
+            bytes = previousLine;
+            length = previousLineLength;
+        }
+        int offset = 0;
+        if (length == MAX_LINE_LENGTH) {
+            // A cut line may start inside a character: skip its continuation bytes
+            while (offset < 3 && offset < length && (bytes[offset] & 0xC0) == 0x80) {
+                offset++;
+            }
+        }
+        return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(bytes, offset, length - offset)).toString();
+    }
+    /**
+     * @return Number of bytes read.
+     */
+    public long getSize() {
+        return size;
+    }
+    /**
+     * The accept method adds a block of bytes to the head and splits it into lines.
+     *
+     * @param bytes The block.
+     * @param length Number of bytes in the block.
+     */
+    private void accept(byte[] bytes, int length) {
+        if (headLength < HEAD_SIZE) {
+            int count = Math.min(length, HEAD_SIZE - headLength);
+            System.arraycopy(bytes, 0, head, headLength, count);
+            headLength += count;
+        }
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if (b == '\n' || b == '\r') {
+                if (b == '\n' && afterCarriageReturn && i == start && lineLength == 0) {
+                    // Second byte of "\r\n"
+                    afterCarriageReturn = false;
+                    start = i + 1;
+                    continue;
+                }
+                append(bytes, start, i - start);
+                endLine();
+                afterCarriageReturn = b == '\r';
+                start = i + 1;
+            } else {
+                afterCarriageReturn = false;
+            }
+        }
+        append(bytes, start, length - start);
+    }
+    /**
+     * The append method adds bytes to the current line; once it is longer than MAX_LINE_LENGTH,
+     * its first bytes are dropped.
+     *
+     * @param bytes Source of the bytes.
+     * @param offset Position of the first byte.
+     * @param count Number of bytes.
+     */
+    private void append(byte[] bytes, int offset, int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (count >= MAX_LINE_LENGTH) {
+            offset += count - MAX_LINE_LENGTH;
+            count = MAX_LINE_LENGTH;
+            lineLength = 0;
+        } else if (lineLength + count > MAX_LINE_LENGTH) {
+            int dropped = lineLength + count - MAX_LINE_LENGTH;
+            System.arraycopy(line, dropped, line, 0, lineLength - dropped);
+            lineLength -= dropped;
+        }
+        if (lineLength + count > line.length) {
+            line = Arrays.copyOf(line, Math.min(MAX_LINE_LENGTH, Math.max(line.length * 2, lineLength + count)));
+        }
+        System.arraycopy(bytes, offset, line, lineLength, count);
+        lineLength += count;
+    }
+    /**
+     * The endLine method makes the current line the previous one and starts a new line, reusing the buffers.
+     */
+    private void endLine() {
+        byte[] swap = previousLine;
+        previousLine = line;
+        previousLineLength = lineLength;
+        line = swap;
+        lineLength = 0;
+    }
+    /**
+     * The exception thrown when a document is longer than the accepted size.
+     */
+    public static class DocumentTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * DocumentTooLargeException constructor.
+         *
+         * @param maxSize Largest number of bytes accepted.
+         */
+        public DocumentTooLargeException(long maxSize) {
+            super("Document is larger than " + maxSize + " bytes");
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package by.financialstatements.model.statistics;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+/**
+ * The LastLineReader class reads the last line of a file without reading the whole file.
+ * It seeks to the end of the file, scans backwards block by block for the previous line terminator
+ * and decodes only the bytes of the last line, so the cost does not depend on the file size.
+ * The result is the same as the last line returned by BufferedReader.readLine():
+ * "\n", "\r" and "\r\n" are line terminators, and a single trailing terminator does not start a new line.
+ * The beginning of the file can be read in the same pass; if the whole file fits into it, the last line
+ * is taken from those bytes and the file is read only once.
+ */
+public class LastLineReader {
+    private static final int BLOCK_SIZE = 8192;
+    /**
+     * The readLastLine method returns the last line of the file.
+     *
+     * @param file Path to the file to read.
+     * @return The last line without its terminator (may be empty), or null if the file is empty.
+     * @throws IOException If the file cannot be read or the last line is not valid UTF-8.
+     */
+    public static String readLastLine(Path file) throws IOException {
+        return readLastLine(file, null);
+    }
+    /**
+     * The readLastLine method returns the last line of the file and reads the beginning of the file
+     * into a buffer, with a single open of the file.
+     *
+     * @param file Path to the file to read.
+     * @param head Empty buffer backed by an array, filled with the first bytes of the file (as many as fit)
+     * and flipped; or null if the beginning is not needed.
+     * @return The last line without its terminator (may be empty), or null if the file is empty.
+     * @throws IOException If the file cannot be read or the last line is not valid UTF-8.
+     */
+    public static String readLastLine(Path file, ByteBuffer head) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long end = channel.size();
+            if (head != null) {
+                head.limit((int) Math.min(head.capacity(), end));
+                readFully(channel, head, 0);
+                head.flip();
+                if (head.limit() == end) {
+                    return lastLine(head);
+                }
+            }
+            if (end == 0) {
+                return null;
+            }
+            // Skip the trailing line terminator ("\n", "\r" or "\r\n")
+            ByteBuffer tail = ByteBuffer.allocate((int) Math.min(2, end));
+            readFully(channel, tail, end - tail.capacity());
+            byte last = tail.get(tail.capacity() - 1);
+            if (last == '\n') {
+                end--;
+                if (tail.capacity() == 2 && tail.get(0) == '\r') {
+                    end--;
+                }
+            } else if (last == '\r') {
+                end--;
+            }
+            // Scan backwards for the terminator of the previous line
+            long start = findLineStart(channel, end);
+            ByteBuffer line = ByteBuffer.allocate((int) (end - start));
+            readFully(channel, line, start);
+            line.flip();
+            return StandardCharsets.UTF_8.newDecoder().decode(line).toString();
+        }
+    }
+    /**
+     * The lastLine method returns the last line of a file that has been read whole.
+     *
+     * @param content The bytes of the file, from its position to its limit; they are not consumed.
+     * @return The last line without its terminator (may be empty), or null if the file is empty.
+     * @throws CharacterCodingException If the last line is not valid UTF-8.
+     */
+    private static String lastLine(ByteBuffer content) throws CharacterCodingException {
+        int end = content.limit();
+        if (end == 0) {
+            return null;
+        }
+        // Skip the trailing line terminator ("\n", "\r" or "\r\n")
+        byte last = content.get(end - 1);
+        if (last == '\n') {
+            end--;
+            if (end > 0 && content.get(end - 1) == '\r') {
+                end--;
+            }
+        } else if (last == '\r') {
+            end--;
+        }
+        int start = end;
+        while (start > 0 && content.get(start - 1) != '\n' && content.get(start - 1) != '\r') {
+            start--;
+        }
+        return StandardCharsets.UTF_8.newDecoder().decode(content.duplicate().limit(end).position(start)).toString();
+    }
+    /**
+     * The findLineStart method finds the position right after the last line terminator before the given position.
+     *
+     * @param channel Channel of the file being read.
+     * @param end Position where the line ends.
+     * @return The position where the line starts (0 if there is no terminator before it).
+     * @throws IOException If the file cannot be read.
+     */
+    private static long findLineStart(FileChannel channel, long end) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate((int) Math.min(BLOCK_SIZE, end));
+        long position = end;
+        while (position > 0) {
+            long from = Math.max(0, position - block.capacity());
+            block.clear().limit((int) (position - from));
+            readFully(channel, block, from);
+            for (int i = block.limit() - 1; i >= 0; i--) {
+                byte b = block.get(i);
+                if (b == '\n' || b == '\r') {
+                    return from + i + 1;
+                }
+            }
+            position = from;
+        }
+        return 0;
+    }
+    /**
+     * The readFully method fills the remaining space of the buffer with bytes starting at the given position.
+     *
+     * @param channel Channel of the file being read.
+     * @param buffer Buffer to fill.
+     * @param position Position of the first byte to read.
+     * @throws IOException If the file cannot be read or ends too early.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of file at position " + position);
+            }
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package by.financialstatements.model.statistics;
+
+import by.financialstatements.model.statistics.breakdown.DocumentFields;
+/**
+ * The ParsedDocument class is everything the statistics need from one document, read from its file
+ * by StatisticsCalculator.parseDocument and added to the totals by StatisticsCalculator.addDocument.
+ * Splitting the two lets file reading and aggregation run in different stages.
+ */
+public class ParsedDocument {
+    private final String fileName;
+    private final DocumentAmount documentAmount;
+    private final DocumentFields fields;
+    /**
+     * ParsedDocument constructor.
+     *
+     * @param fileName Name of the document file.
+     * @param documentAmount Category and amount of the document.
+     * @param fields Date and counterparty of the document, or null if they are not needed or could not be read.
+     */
+    public ParsedDocument(String fileName, DocumentAmount documentAmount, DocumentFields fields) {
+        this.fileName = fileName;
+        this.documentAmount = documentAmount;
+        this.fields = fields;
+    }
+    /**
+     * @return Name of the document file.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+    /**
+     * @return Category and amount of the document.
+     */
+    public DocumentAmount getDocumentAmount() {
+        return documentAmount;
+    }
+    /**
+     * @return Date and counterparty of the document, or null if they are not needed or could not be read.
+     */
+    public DocumentFields getFields() {
+        return fields;
+    }
+}
@@ -1,38 +1,102 @@
 package by.financialstatements.model.statistics;
 
+import by.financialstatements.model.classifier.AmountFormat;
+import by.financialstatements.model.classifier.DocumentClassifier;
+import by.financialstatements.model.classifier.DocumentType;
 import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.ConfigSnapshot;
+import by.financialstatements.model.login_service.service.PropsHandler;
+import by.financialstatements.model.metrics.PipelineMetrics;
+import by.financialstatements.model.metrics.Stage;
+import by.financialstatements.model.statistics.breakdown.BreakdownAggregator;
+import by.financialstatements.model.statistics.breakdown.BreakdownWriter;
+import by.financialstatements.model.statistics.breakdown.DocumentFieldExtractor;
+import by.financialstatements.model.statistics.breakdown.DocumentFields;
+import by.financialstatements.model.statistics.columnar.ColumnarStatisticsWriter;
+import by.financialstatements.model.statistics.columnar.DocumentRows;
+import by.financialstatements.model.statistics.lineitem.LineItemParser;
+import by.financialstatements.model.statistics.lineitem.LineItemReport;
+import by.financialstatements.model.statistics.lineitem.LineItems;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Set;
 /**
  * The StatisticsCalculator class is used to calculate financial statistics,
  * such as invoice, order, and receipt data.
  * It parses a list of files, extracts the required data, and stores the results.
+ * Amounts are kept as fixed-point values in minor units (hundredths) to avoid floating point drift.
+ * Totals are accumulated in a CategoryAggregator, so one calculator can be shared by concurrent workers
+ * and, besides the sum, gives the number of documents and the smallest, largest and average amount per category.
+ * If BREAKDOWN_FILE is configured, every document is also added to the breakdowns by month and counterparty
+ * (see BreakdownAggregator); if COLUMNAR_STATISTICS_FILE is configured, a row is kept for every document
+ * (see DocumentRows).
+ * With PARSE_MODE=FULL_DOCUMENT, files are read whole (see LineItemParser) and documents whose line items
+ * do not add up to their total are logged and collected in a LineItemReport; by default (LAST_LINE)
+ * only the last line of every file is read. Reading a whole file costs time in proportion to its size, while
+ * reading the last line does not (see LineItemParserBenchmark). LINE_ITEM_MAX_BYTES can cap the size of the files
+ * read whole; larger files are then read like in LAST_LINE mode and counted as unchecked. It is not set by default,
+ * so every file is checked.
  */
 public class StatisticsCalculator {
-    private final Map<String, Double> statistics;
     /**
-     * StatisticsCalculator constructor. Initializes statistics to default values ​​(0.0).
+     * How much of a file is read to calculate the statistics.
+     */
+    public enum ParseMode {
+        /**
+         * Only the last line (the total) is read, seeking from the end of the file.
+         */
+        LAST_LINE,
+        /**
+         * The whole file is read to check its line items against the total (up to LINE_ITEM_MAX_BYTES, if set).
+         */
+        FULL_DOCUMENT
+    }
+
+    private static final PipelineMetrics METRICS = PipelineMetrics.getInstance();
+    // The parser reuses its buffer, so every thread gets its own
+    private static final ThreadLocal<LineItemParser> LINE_ITEM_PARSERS = ThreadLocal.withInitial(LineItemParser::new);
+
+    private final CategoryAggregator aggregator;
+    private final Map<String, Integer> categoryNumbers;
+    private final BreakdownAggregator breakdown;
+    private final DocumentRows documentRows;
+    private final LineItemReport lineItemReport;
+    private final DocumentFieldExtractor fieldExtractor = new DocumentFieldExtractor();
+    /**
+     * StatisticsCalculator constructor. Initializes statistics to default values (0) for the
+     * "invoices", "orders" and "checks" categories and the categories of all configured document types.
      */
     public StatisticsCalculator() {
-        this.statistics = new HashMap<>();
-        statistics.put("invoices", 0.0);
-        statistics.put("orders", 0.0);
-        statistics.put("checks", 0.0);
+        Set<String> categories = new LinkedHashSet<>(List.of("invoices", "orders", "checks"));
+        for (DocumentType type : DocumentClassifier.getInstance().getTypes()) {
+            categories.add(type.getCategory());
+        }
+        this.aggregator = new CategoryAggregator(new ArrayList<>(categories));
+        Map<String, Integer> numbers = new HashMap<>();
+        for (String category : aggregator.getCategories()) {
+            numbers.put(category, numbers.size());
+        }
+        this.categoryNumbers = Map.copyOf(numbers);
+        this.breakdown = !BreakdownWriter.isEnabled() ? null : new BreakdownAggregator(aggregator.getCategories(),
+                PropsHandler.getConfig().getInt("BREAKDOWN_MAX_GROUPS", 10000));
+        this.documentRows = ColumnarStatisticsWriter.isEnabled() ? new DocumentRows() : null;
+        this.lineItemReport = new LineItemReport(PropsHandler.getConfig().getInt("LINE_ITEM_REPORT_MAX_DOCUMENTS", 10000));
     }
     /**
      * The calculateStatistics method calculates statistics based on the provided files.
      *
      * Execution steps:
-     * - Reads the last line of each file.
-     * - Determines the file type (invoice, order, receipt).
+     * - Reads the last line of each file (seeking from the end, see LastLineReader).
+     * - Determines the file type (invoice, order, receipt) with DocumentClassifier.
      * - Extracts data and adds it to the appropriate statistics category.
      * - Logs read errors or invalid data.
      *
@@ -40,113 +104,324 @@ public class StatisticsCalculator {
      */
     public void calculateStatistics(List<Path> validFiles) {
         for (Path file : validFiles) {
-            try (BufferedReader reader = Files.newBufferedReader(file)) {
-                String currentLine;
-                String lastLine = null;
-                // Read the last line of the file
-                while ((currentLine = reader.readLine()) != null) {
-                    lastLine = currentLine;
-                }
-                CustomLogger.info("Last line of the file " + file.getFileName() + ": " + lastLine);
-                if (lastLine != null && !lastLine.isEmpty()) {
-                    String fileName = file.getFileName().toString();
-                    double amount;
-                    // Determining the file type and processing data
-                    switch (getFileType(fileName)) {
-                        case "invoice":
-                            amount = parseAmount(lastLine);
-                            statistics.put("invoices", statistics.get("invoices") + amount);
-                            CustomLogger.info("Added to invoices: " + amount);
-                            break;
-                        case "order":
-                            amount = parseOrderAmount(lastLine);
-                            statistics.put("orders", statistics.get("orders") + amount);
-                            CustomLogger.info("Added to orders: " + amount);
-                            break;
-                        case "check":
-                            amount = parseAmount(lastLine);
-                            statistics.put("checks", statistics.get("checks") + amount);
-                            CustomLogger.info("Added to checks: " + amount);
-                            break;
-                        default:
-                            CustomLogger.error("Unknown file type for " + fileName);
-                    }
-                }
-            } catch (IOException e) {
-                CustomLogger.error("Error reading file: " + file.getFileName() + " " + e.getMessage());
-            }
+            calculateStatistics(file);
         }
     }
     /**
-     * The getStatistics method returns the calculated statistics.
+     * The calculateStatistics method calculates statistics for a single file and adds them to the totals.
+     * It is safe to call concurrently from several threads.
      *
-     * @return Map with statistics (categories and their values).
+     * @param file File that contains valid data.
      */
-    public Map<String, Double> getStatistics() {
-        return statistics;
+    public void calculateStatistics(Path file) {
+        calculateStatistics(file, DocumentClassifier.getInstance().classify(file.getFileName().toString()).getType());
     }
     /**
-     * The parseAmount method extracts a numeric value (amount) from a string.
+     * The calculateStatistics method calculates statistics for a single file whose type is already known
+     * (for example from validation) and adds them to the totals.
      *
-     * @param line The last line from the file.
-     * @return The extracted value as a double, or 0.0 if the format is invalid.
+     * @param file File that contains valid data.
+     * @param type Document type of the file, or null if it is unknown.
+     */
+    public void calculateStatistics(Path file, DocumentType type) {
+        ParsedDocument document = parseDocument(file, type);
+        if (document != null) {
+            addDocument(document);
+        }
+    }
+    /**
+     * The parseDocument method reads from a file everything the statistics need: the amount and,
+     * if breakdowns or document rows are enabled, the date and counterparty. The totals are not changed.
+     * The PARSE_MODE configuration property decides whether only the last line or the whole file is read.
+     *
+     * @param file File that contains valid data.
+     * @param type Document type of the file, or null if it is unknown.
+     * @return The parsed document, or null if the file has no amount or cannot be read.
+     */
+    public ParsedDocument parseDocument(Path file, DocumentType type) {
+        ConfigSnapshot config = PropsHandler.getConfig();
+        if (config.getEnum("PARSE_MODE", ParseMode.LAST_LINE) == ParseMode.FULL_DOCUMENT) {
+            return parseFullDocument(file, type, config.getLong("LINE_ITEM_MAX_BYTES", Long.MAX_VALUE));
+        }
+        return parseLastLine(file, type);
+    }
+    /**
+     * The parseLastLine method reads the amount from the last line of a file and, if breakdowns or document rows
+     * are enabled, the date and counterparty from its beginning.
+     *
+     * @param file File that contains valid data.
+     * @param type Document type of the file, or null if it is unknown.
+     * @return The parsed document, or null if the file has no amount or cannot be read.
+     */
+    private ParsedDocument parseLastLine(Path file, DocumentType type) {
+        // The beginning of the document is read with the last line, not by opening the file again
+        ByteBuffer head = breakdown != null || documentRows != null
+                ? ByteBuffer.allocate(DocumentStreamReader.HEAD_SIZE) : null;
+        DocumentAmount documentAmount = extractAmount(file, type, head);
+        if (documentAmount == null) {
+            return null;
+        }
+        // The header is ASCII, so every byte is taken as one character
+        DocumentFields fields = head == null ? null : fieldExtractor.extract(
+                new String(head.array(), 0, head.limit(), StandardCharsets.ISO_8859_1), type);
+        return new ParsedDocument(file.getFileName().toString(), documentAmount, fields);
+    }
+    /**
+     * The parseFullDocument method reads a whole file once, extracts the amount from its last line and checks
+     * that its line items add up to that amount. A mismatch is logged and added to the line item report;
+     * the amount stated in the document is used for the totals either way. A file larger than maxBytes, which
+     * is only set when LINE_ITEM_MAX_BYTES is configured, is not checked: only its last line is read
+     * (see parseLastLine), and it is counted in the line item report.
+     *
+     * @param file File that contains valid data.
+     * @param type Document type of the file, or null if it is unknown.
+     * @param maxBytes Size of the largest file read whole; Long.MAX_VALUE for no limit.
+     * @return The parsed document, or null if the file has no amount or cannot be read.
      */
-    private double parseAmount(String line) {
+    private ParsedDocument parseFullDocument(Path file, DocumentType type, long maxBytes) {
+        long start = System.nanoTime();
+        String fileName = file.getFileName().toString();
+        LineItems lineItems;
+        // The beginning of the document is kept from the same read for the date and counterparty
+        boolean withFields = breakdown != null || documentRows != null;
         try {
-            String number = line.replaceAll("[^0-9,\\.]", "");
-            double parsedAmount = Double.parseDouble(number.replace(',', '.'));
-            CustomLogger.info("Extracted amount: " + parsedAmount);
-            return parsedAmount;
-        } catch (NumberFormatException e) {
-            CustomLogger.error("Invalid number format: " + line);
-            return 0.0;
+            lineItems = LINE_ITEM_PARSERS.get().parse(file, withFields, maxBytes);
+        } catch (IOException e) {
+            METRICS.stage(Stage.PARSE).recordError();
+            METRICS.record(Stage.PARSE, start, file);
+            CustomLogger.error("Error reading file: " + fileName + " " + e.getMessage());
+            return null;
+        }
+        if (lineItems == null) {
+            lineItemReport.recordUnchecked();
+            return parseLastLine(file, type);
+        }
+        try {
+            DocumentAmount documentAmount = toDocumentAmount(fileName, type, lineItems.getLastLine());
+            if (documentAmount == null) {
+                return null;
+            }
+            LineItemReport.Mismatch mismatch = lineItemReport.check(fileName, documentAmount.getCategory(),
+                    lineItems, documentAmount.getAmount());
+            if (mismatch != null) {
+                CustomLogger.warning("Line items of " + fileName + " add up to "
+                        + AmountParser.format(mismatch.getItemSum()) + " instead of the total "
+                        + AmountParser.format(mismatch.getTotal()));
+            }
+            DocumentFields fields = withFields ? fieldExtractor.extract(lineItems.getHead(), type) : null;
+            return new ParsedDocument(fileName, documentAmount, fields);
+        } finally {
+            METRICS.record(Stage.PARSE, start, file);
         }
     }
     /**
-     * The parseOrderAmount method extracts the value for orders (the "Order Total" field).
+     * The parseDocument method extracts everything the statistics need from a document that has been read
+     * from a stream (see DocumentStreamReader) instead of a file. The totals are not changed.
      *
-     * @param line The last line from the file.
-     * @return The extracted value as a double, or 0.0 if the format is invalid.
+     * @param fileName Name of the document.
+     * @param type Document type of the document.
+     * @param lastLine Last line of the document, or null if it is empty.
+     * @param head Beginning of the document, one character per byte.
+     * @return The parsed document, or null if the document has no amount.
      */
-    private double parseOrderAmount(String line) {
+    public ParsedDocument parseDocument(String fileName, DocumentType type, String lastLine, CharSequence head) {
+        long start = System.nanoTime();
         try {
-            String pattern = "(?<=Order Total\\s)(\\d{1,3}(?:,\\d{3})*\\.\\d+)";
-            Pattern regex = Pattern.compile(pattern);
-            Matcher matcher = regex.matcher(line);
-            if (matcher.find()) {
-                String number = matcher.group(1).replace(",", "");
-                double parsedAmount = Double.parseDouble(number);
-                CustomLogger.info("Extracted amount for order: " + parsedAmount);
-                return parsedAmount;
-            } else {
-                throw new NumberFormatException("Number not found in line: " + line);
+            DocumentAmount documentAmount = toDocumentAmount(fileName, type, lastLine);
+            if (documentAmount == null) {
+                return null;
             }
-        } catch (NumberFormatException e) {
-            CustomLogger.error("Invalid number format: " + line);
-            return 0.0;
+            DocumentFields fields = breakdown != null || documentRows != null ? fieldExtractor.extract(head, type) : null;
+            return new ParsedDocument(fileName, documentAmount, fields);
+        } finally {
+            METRICS.stage(Stage.PARSE).record(start);
+        }
+    }
+    /**
+     * The addDocument method adds a parsed document to the totals and, if they are enabled,
+     * to the breakdowns and the document rows. It is safe to call concurrently from several threads.
+     *
+     * @param document Document returned by parseDocument.
+     */
+    public void addDocument(ParsedDocument document) {
+        DocumentAmount documentAmount = document.getDocumentAmount();
+        addAmount(documentAmount.getCategory(), documentAmount.getAmount());
+        DocumentFields fields = document.getFields();
+        if (fields != null) {
+            int category = categoryNumbers.get(documentAmount.getCategory());
+            if (breakdown != null) {
+                breakdown.add(category, documentAmount.getAmount(), fields);
+            }
+            if (documentRows != null) {
+                documentRows.add(category, documentAmount.getAmount(), fields.getDate(), document.getFileName());
+            }
+        }
+    }
+    /**
+     * The extractAmount method reads the last line of a file, determines the file type and extracts the amount,
+     * without changing the totals.
+     *
+     * @param file File that contains valid data.
+     * @return The statistics category and amount of the file, or null if the file has no amount or cannot be read.
+     */
+    public DocumentAmount extractAmount(Path file) {
+        return extractAmount(file, DocumentClassifier.getInstance().classify(file.getFileName().toString()).getType());
+    }
+    /**
+     * The extractAmount method reads the last line of a file of a known type and extracts the amount,
+     * without changing the totals.
+     *
+     * @param file File that contains valid data.
+     * @param type Document type of the file, or null if it is unknown.
+     * @return The statistics category and amount of the file, or null if the file has no amount or cannot be read.
+     */
+    public DocumentAmount extractAmount(Path file, DocumentType type) {
+        return extractAmount(file, type, null);
+    }
+    /**
+     * The extractAmount method reads the last line of a file of a known type and extracts the amount,
+     * reading the beginning of the file in the same pass.
+     *
+     * @param file File that contains valid data.
+     * @param type Document type of the file, or null if it is unknown.
+     * @param head Empty buffer for the beginning of the file (see LastLineReader), or null.
+     * @return The statistics category and amount of the file, or null if the file has no amount or cannot be read.
+     */
+    private DocumentAmount extractAmount(Path file, DocumentType type, ByteBuffer head) {
+        long start = System.nanoTime();
+        try {
+            // Read the last line of the file
+            String lastLine = LastLineReader.readLastLine(file, head);
+            return toDocumentAmount(file.getFileName().toString(), type, lastLine);
+        } catch (IOException e) {
+            METRICS.stage(Stage.PARSE).recordError();
+            CustomLogger.error("Error reading file: " + file.getFileName() + " " + e.getMessage());
+        } finally {
+            METRICS.record(Stage.PARSE, start, file);
+        }
+        return null;
+    }
+    /**
+     * The toDocumentAmount method extracts the amount from the last line of a document.
+     *
+     * @param fileName Name of the document.
+     * @param type Document type of the document, or null if it is unknown.
+     * @param lastLine Last line of the document, or null if it is empty.
+     * @return The statistics category and amount of the document, or null if it has no amount.
+     */
+    private DocumentAmount toDocumentAmount(String fileName, DocumentType type, String lastLine) {
+        CustomLogger.info("Last line of the file " + fileName + ": " + lastLine);
+        if (lastLine == null || lastLine.isEmpty()) {
+            return null;
         }
+        METRICS.stage(Stage.PARSE).addBytes(lastLine.length());
+        if (type == null) {
+            METRICS.stage(Stage.PARSE).recordError();
+            CustomLogger.error("Unknown file type for " + fileName);
+            return null;
+        }
+        return new DocumentAmount(type.getCategory(), parseAmount(lastLine, type.getAmountFormat()));
+    }
+    /**
+     * The addAmount method adds an amount to a statistics category.
+     *
+     * @param category Statistics category ("invoices", "orders", "checks").
+     * @param amount Amount in minor units.
+     */
+    public void addAmount(String category, long amount) {
+        Integer number = categoryNumbers.get(category);
+        if (number == null) {
+            METRICS.stage(Stage.AGGREGATE).recordError();
+            CustomLogger.error("Unknown statistics category: " + category);
+            return;
+        }
+        long start = System.nanoTime();
+        aggregator.add(number, amount);
+        METRICS.stage(Stage.AGGREGATE).record(start);
+        CustomLogger.info("Added to " + category + ": " + AmountParser.format(amount));
+    }
+    /**
+     * The addTotals method adds the totals of a group of documents to a statistics category in one step.
+     *
+     * @param category Statistics category ("invoices", "orders", "checks").
+     * @param totals Number, sum, smallest and largest amount of the documents.
+     */
+    public void addTotals(String category, CategoryTotals totals) {
+        Integer number = categoryNumbers.get(category);
+        if (number == null) {
+            METRICS.stage(Stage.AGGREGATE).recordError();
+            CustomLogger.error("Unknown statistics category: " + category);
+            return;
+        }
+        long start = System.nanoTime();
+        aggregator.addTotals(number, totals);
+        METRICS.stage(Stage.AGGREGATE).record(start);
+        CustomLogger.info("Added to " + category + ": " + totals.getCount() + " documents, "
+                + AmountParser.format(totals.getSum()));
+    }
+    /**
+     * The getStatistics method returns a consistent snapshot of the calculated totals.
+     *
+     * @return Map with statistics (categories and their values in minor units, i.e. hundredths).
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        getCategoryStatistics().forEach((category, totals) -> statistics.put(category, totals.getSum()));
+        return statistics;
+    }
+    /**
+     * The getBreakdown method returns the breakdowns by month and counterparty.
+     *
+     * @return The breakdowns, or null if BREAKDOWN_FILE is not configured.
+     */
+    public BreakdownAggregator getBreakdown() {
+        return breakdown;
+    }
+    /**
+     * The getDocumentRows method returns the rows of the processed documents.
+     *
+     * @return The rows, or null if COLUMNAR_STATISTICS_FILE is not configured.
+     */
+    public DocumentRows getDocumentRows() {
+        return documentRows;
     }
     /**
-     * The getFileType method determines the file type based on its name.
+     * The getLineItemReport method returns the documents whose line items do not add up to their total.
      *
-     * File types:
-     * - "invoice" for invoices.
-     * - "order" for orders.
-     * - "check" for checks.
-     * - "unknown" for any other format.
+     * @return The report; it is empty unless files were parsed with PARSE_MODE=FULL_DOCUMENT.
+     */
+    public LineItemReport getLineItemReport() {
+        return lineItemReport;
+    }
+    /**
+     * The getCategoryStatistics method returns a consistent snapshot of the count, sum, minimum, maximum
+     * and mean of every category.
+     *
+     * @return Map from category to its totals, in category order.
+     */
+    public Map<String, CategoryTotals> getCategoryStatistics() {
+        CategoryTotals[] totals = aggregator.snapshot();
+        Map<String, CategoryTotals> statistics = new LinkedHashMap<>();
+        for (int i = 0; i < totals.length; i++) {
+            statistics.put(aggregator.getCategories().get(i), totals[i]);
+        }
+        return statistics;
+    }
+    /**
+     * The parseAmount method extracts a numeric value (amount) from a string.
      *
-     * @param fileName The file name.
-     * @return The file type as a string.
+     * @param line The last line from the file.
+     * @param amountFormat Format of the total line of the document type.
+     * @return The extracted value in minor units, or 0 if the format is invalid.
      */
-    private String getFileType(String fileName) {
-        String lowerCaseFileName = fileName.toLowerCase();
-        if (lowerCaseFileName.contains("invoice")) {
-            return "invoice";
-        } else if (lowerCaseFileName.contains("order")) {
-            return "order";
-        } else if (lowerCaseFileName.contains("electric_bill")) {
-            return "check";
+    private long parseAmount(String line, AmountFormat amountFormat) {
+        long parsedAmount = amountFormat.parse(line);
+        if (parsedAmount == AmountParser.INVALID_AMOUNT) {
+            METRICS.stage(Stage.PARSE).recordError();
+            CustomLogger.error("Invalid number format: " + line);
+            return 0;
         }
-        return "unknown";
+        CustomLogger.info("Extracted amount: " + AmountParser.format(parsedAmount));
+        return parsedAmount;
     }
 }
\ No newline at end of file
@@ -1,40 +1,85 @@
 package by.financialstatements.model.statistics;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import by.financialstatements.model.log.CustomLogger;
 import by.financialstatements.model.login_service.service.PropsHandler;
+import by.financialstatements.model.metrics.PipelineMetrics;
+import by.financialstatements.model.metrics.Stage;
 /**
  * The StatisticsWriter class is responsible for writing the calculated statistics to a file.
- * Uses configuration properties to determine the path to the file.
+ * Uses configuration properties to determine the path to the file; the path is read on every write,
+ * so it can be changed while the application is running.
  */
 public class StatisticsWriter {
-    private static final String STATISTICS_FILE = PropsHandler.getPropertyFromConfig("STATISTICS_FILE");
     /**
      * The writeStatisticsToFile method writes statistics to a text file.
      *
      * @param statistics A statistics map with keys ("invoices", "orders", "checks")
-     * and their corresponding values.
+     * and their corresponding values in minor units (hundredths).
      */
-    public void writeStatisticsToFile(Map<String, Double> statistics) {
+    public void writeStatisticsToFile(Map<String, Long> statistics) {
+        writeToFile(formatTotals(statistics));
+    }
+    /**
+     * The writeCategoryStatisticsToFile method writes statistics to a text file: the total turnover of every category,
+     * followed by the number of documents and the smallest, largest and average amount of every category.
+     *
+     * @param statistics A map from category to its totals, in the order they should be listed.
+     */
+    public void writeCategoryStatisticsToFile(Map<String, CategoryTotals> statistics) {
+        Map<String, Long> sums = new LinkedHashMap<>();
+        statistics.forEach((category, totals) -> sums.put(category, totals.getSum()));
+        StringBuilder stats = new StringBuilder(formatTotals(sums));
+        stats.append(String.format("Documents:%n"));
+        statistics.forEach((category, totals) -> stats.append(String.format(
+                "  - %s: %d, min %.2f, max %.2f, mean %.2f%n", category, totals.getCount(),
+                BigDecimal.valueOf(totals.getMin(), 2), BigDecimal.valueOf(totals.getMax(), 2),
+                BigDecimal.valueOf(totals.getMean(), 2))));
+        writeToFile(stats.toString());
+    }
+    /**
+     * The formatTotals method formats the total turnover of the "invoices", "orders" and "checks" categories.
+     *
+     * @param statistics A statistics map with keys ("invoices", "orders", "checks")
+     * and their corresponding values in minor units (hundredths).
+     * @return The formatted totals.
+     */
+    private String formatTotals(Map<String, Long> statistics) {
+        return String.format(
+                "Statistics:%n" +
+                        "  - Total turnover for all invoices: %.2f%n" +
+                        "  - Total turnover for all orders: %.2f%n" +
+                        "  - Total turnover for all checks: %.2f%n",
+                BigDecimal.valueOf(statistics.get("invoices"), 2),
+                BigDecimal.valueOf(statistics.get("orders"), 2),
+                BigDecimal.valueOf(statistics.get("checks"), 2)
+        );
+    }
+    /**
+     * The writeToFile method writes the formatted statistics to the statistics file.
+     *
+     * @param stats The formatted statistics.
+     */
+    private void writeToFile(String stats) {
+        long start = System.nanoTime();
+        String statisticsFile = PropsHandler.getPropertyFromConfig("STATISTICS_FILE");
         try {
-            String stats = String.format(
-                    "Statistics:%n" +
-                            "  - Total turnover for all invoices: %.2f%n" +
-                            "  - Total turnover for all orders: %.2f%n" +
-                            "  - Total turnover for all checks: %.2f%n",
-                    statistics.get("invoices"),
-                    statistics.get("orders"),
-                    statistics.get("checks")
-            );
             // Write a line to a file
-            Files.write(Paths.get(STATISTICS_FILE), stats.getBytes());
-            CustomLogger.info("Statistics successfully written to file " + STATISTICS_FILE);
+            byte[] bytes = stats.getBytes();
+            Files.write(Paths.get(statisticsFile), bytes);
+            PipelineMetrics.getInstance().stage(Stage.WRITE).addBytes(bytes.length);
+            CustomLogger.info("Statistics successfully written to file " + statisticsFile);
         } catch (IOException e) {
+            PipelineMetrics.getInstance().stage(Stage.WRITE).recordError();
             CustomLogger.error("Error writing statistics file: " + e.getMessage());
+        } finally {
+            PipelineMetrics.getInstance().stage(Stage.WRITE).record(start);
         }
     }
 }
\ No newline at end of file
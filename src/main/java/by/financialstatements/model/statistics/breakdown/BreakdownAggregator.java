@@ -0,0 +1,251 @@
+package by.financialstatements.model.statistics.breakdown;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+/**
+ * The BreakdownAggregator class builds the breakdowns of the statistics while documents are processed,
+ * without keeping the documents themselves:
+ * - totals per month and category, and per counterparty and category, in bounded GroupTables; counterparty
+ *   groups are keyed by the hash of the name and matched by the name itself, ignoring case, so a hash
+ *   collision never merges two counterparties. The counterparty tables evict their smaller groups when full
+ *   (see GroupTable), so the largest counterparties are found however many small ones come first;
+ * - the approximate number of distinct counterparties, overall and per category (HyperLogLog);
+ * - approximate quantiles of the amounts per category (QuantileSketch).
+ * Memory is bounded by the group limit and the fixed size of the sketches, whatever the number of documents.
+ * The breakdowns of separate sets of documents (for example of the shards of a sharded run) can be written
+ * with writeTo and merged into the breakdowns of all the documents.
+ *
+ * The breakdowns of every category are kept apart, each with its own lock, so workers adding documents
+ * of different categories do not wait for each other. The overall distinct counterparties are the union
+ * of the per-category sketches, which is exactly what a single sketch of all documents would hold.
+ * All methods are thread-safe.
+ */
+public class BreakdownAggregator {
+    private final List<String> categories;
+    private final CategoryBreakdown[] stripes;
+    /**
+     * BreakdownAggregator constructor.
+     *
+     * @param categories Names of the statistics categories; a category is identified by its position in this list.
+     * @param maxGroups Maximum number of groups kept in each breakdown of a category.
+     */
+    public BreakdownAggregator(List<String> categories, int maxGroups) {
+        this.categories = List.copyOf(categories);
+        this.stripes = new CategoryBreakdown[categories.size()];
+        for (int i = 0; i < categories.size(); i++) {
+            stripes[i] = new CategoryBreakdown(maxGroups);
+        }
+    }
+    /**
+     * The add method adds a document to all breakdowns of its category.
+     *
+     * @param category Number of the statistics category of the document.
+     * @param amount Amount in minor units.
+     * @param fields Month and counterparty of the document.
+     */
+    public void add(int category, long amount, DocumentFields fields) {
+        long monthKey = (long) fields.getMonth() << 8 | category;
+        long counterpartyHash = HyperLogLog.hash(fields.getCounterparty());
+        CategoryBreakdown stripe = stripes[category];
+        synchronized (stripe) {
+            stripe.monthTotals.add(monthKey, null, category, amount);
+            stripe.counterpartyTotals.add(counterpartyHash, fields.getCounterparty(), category, amount);
+            stripe.counterparties.add(counterpartyHash);
+            stripe.amounts.add(amount);
+        }
+    }
+    /**
+     * The merge method adds the breakdowns of other documents to these breakdowns.
+     *
+     * @param other Breakdowns with the same categories.
+     * @throws IllegalArgumentException If the categories differ.
+     */
+    public void merge(BreakdownAggregator other) {
+        if (!categories.equals(other.categories)) {
+            throw new IllegalArgumentException("Cannot merge breakdowns of categories " + other.categories
+                    + " into " + categories);
+        }
+        for (int i = 0; i < stripes.length; i++) {
+            synchronized (stripes[i]) {
+                synchronized (other.stripes[i]) {
+                    stripes[i].merge(other.stripes[i]);
+                }
+            }
+        }
+    }
+    /**
+     * The writeTo method writes the breakdowns: for every category, its group tables followed by its sketches.
+     * The categories themselves are not written.
+     *
+     * @param output Destination of the breakdowns.
+     * @throws IOException If the breakdowns cannot be written.
+     */
+    public void writeTo(DataOutput output) throws IOException {
+        for (CategoryBreakdown stripe : stripes) {
+            synchronized (stripe) {
+                stripe.monthTotals.writeTo(output);
+                stripe.counterpartyTotals.writeTo(output);
+                stripe.counterparties.writeTo(output);
+                stripe.amounts.writeTo(output);
+            }
+        }
+    }
+    /**
+     * The readFrom method reads breakdowns written by writeTo.
+     *
+     * @param input Source of the breakdowns.
+     * @param categories Names of the categories the breakdowns were written with.
+     * @param maxGroups Maximum number of groups kept in each breakdown of a category.
+     * @return The breakdowns.
+     * @throws IOException If the breakdowns cannot be read.
+     */
+    public static BreakdownAggregator readFrom(DataInput input, List<String> categories, int maxGroups)
+            throws IOException {
+        BreakdownAggregator breakdown = new BreakdownAggregator(categories, maxGroups);
+        for (CategoryBreakdown stripe : breakdown.stripes) {
+            stripe.monthTotals.merge(GroupTable.readFrom(input, maxGroups, false));
+            stripe.counterpartyTotals.merge(GroupTable.readFrom(input, maxGroups, true));
+            stripe.counterparties.merge(HyperLogLog.readFrom(input));
+            stripe.amounts.merge(QuantileSketch.readFrom(input));
+        }
+        return breakdown;
+    }
+    /**
+     * The getMonthTotals method returns the totals per month and category, ordered by month and category.
+     * The month of a group is getMonth(group).
+     *
+     * @return The groups.
+     */
+    public List<GroupTable.Group> getMonthTotals() {
+        List<GroupTable.Group> groups = new ArrayList<>();
+        for (CategoryBreakdown stripe : stripes) {
+            synchronized (stripe) {
+                groups.addAll(stripe.monthTotals.getGroups(Comparator.comparingLong(GroupTable.Group::getKey)));
+            }
+        }
+        groups.sort(Comparator.comparingLong(GroupTable.Group::getKey));
+        return groups;
+    }
+    /**
+     * The getCounterpartyTotals method returns the totals per counterparty and category, largest sum first.
+     * The label of a group is the name of the counterparty; its error bounds the amounts of the counterparty
+     * that were evicted before it was kept.
+     *
+     * @return The groups.
+     */
+    public List<GroupTable.Group> getCounterpartyTotals() {
+        Comparator<GroupTable.Group> order = Comparator.comparingLong(GroupTable.Group::getSum).reversed();
+        List<GroupTable.Group> groups = new ArrayList<>();
+        for (CategoryBreakdown stripe : stripes) {
+            synchronized (stripe) {
+                groups.addAll(stripe.counterpartyTotals.getGroups(order));
+            }
+        }
+        groups.sort(order);
+        return groups;
+    }
+    /**
+     * The getUntrackedCount method returns the number of documents left out of a breakdown because its group limit
+     * was reached, including documents of evicted counterparties (they are still included in the totals).
+     *
+     * @return Number of documents missing from the month or counterparty breakdown, whichever is larger.
+     */
+    public long getUntrackedCount() {
+        long months = 0;
+        long counterparties = 0;
+        for (CategoryBreakdown stripe : stripes) {
+            synchronized (stripe) {
+                months += stripe.monthTotals.getOverflowCount();
+                counterparties += stripe.counterpartyTotals.getOverflowCount();
+            }
+        }
+        return Math.max(months, counterparties);
+    }
+    /**
+     * The getDistinctCounterparties method estimates the number of distinct counterparties.
+     *
+     * @return The estimated number of counterparties of all categories.
+     */
+    public long getDistinctCounterparties() {
+        HyperLogLog counterparties = new HyperLogLog();
+        for (CategoryBreakdown stripe : stripes) {
+            synchronized (stripe) {
+                counterparties.merge(stripe.counterparties);
+            }
+        }
+        return counterparties.estimate();
+    }
+    /**
+     * The getDistinctCounterparties method estimates the number of distinct counterparties of a category.
+     *
+     * @param category Number of the statistics category.
+     * @return The estimated number of counterparties.
+     */
+    public long getDistinctCounterparties(int category) {
+        synchronized (stripes[category]) {
+            return stripes[category].counterparties.estimate();
+        }
+    }
+    /**
+     * The getAmountQuantile method estimates a quantile of the amounts of a category.
+     *
+     * @param category Number of the statistics category.
+     * @param quantile Quantile between 0 and 1.
+     * @return The estimated amount in minor units, or 0 if the category has no documents.
+     */
+    public long getAmountQuantile(int category, double quantile) {
+        synchronized (stripes[category]) {
+            return stripes[category].amounts.quantile(quantile);
+        }
+    }
+    /**
+     * The getCategories method returns the names of the statistics categories.
+     *
+     * @return Category names; the position of a name is the number of the category.
+     */
+    public List<String> getCategories() {
+        return categories;
+    }
+    /**
+     * The getMonth method returns the month of a group of the month breakdown.
+     *
+     * @param group Group returned by getMonthTotals.
+     * @return The month as yyyymm, or DocumentFields.UNKNOWN_MONTH.
+     */
+    public static int getMonth(GroupTable.Group group) {
+        return (int) (group.getKey() >>> 8);
+    }
+    /**
+     * The CategoryBreakdown class holds the breakdowns of one category; it is guarded by its own monitor.
+     */
+    private static class CategoryBreakdown {
+        private final GroupTable monthTotals;
+        private final GroupTable counterpartyTotals;
+        private final HyperLogLog counterparties = new HyperLogLog();
+        private final QuantileSketch amounts = new QuantileSketch();
+        /**
+         * CategoryBreakdown constructor.
+         *
+         * @param maxGroups Maximum number of groups kept in each group table.
+         */
+        CategoryBreakdown(int maxGroups) {
+            this.monthTotals = new GroupTable(maxGroups);
+            this.counterpartyTotals = new GroupTable(maxGroups, true);
+        }
+        /**
+         * The merge method adds the breakdowns of the same category of other documents to these breakdowns.
+         *
+         * @param other Breakdowns of the same category.
+         */
+        void merge(CategoryBreakdown other) {
+            monthTotals.merge(other.monthTotals);
+            counterpartyTotals.merge(other.counterpartyTotals);
+            counterparties.merge(other.counterparties);
+            amounts.merge(other.amounts);
+        }
+    }
+}
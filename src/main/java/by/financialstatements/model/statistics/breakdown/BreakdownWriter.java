@@ -0,0 +1,96 @@
+package by.financialstatements.model.statistics.breakdown;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.ConfigSnapshot;
+import by.financialstatements.model.login_service.service.PropsHandler;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+/**
+ * The BreakdownWriter class writes the breakdowns of the statistics to the file set in BREAKDOWN_FILE.
+ * The counterparty breakdown lists the BREAKDOWN_TOP_COUNTERPARTIES (10 by default) largest counterparties
+ * of every category; a counterparty kept only after smaller ones were evicted shows how much of its total
+ * may be missing.
+ */
+public class BreakdownWriter {
+    /**
+     * The writeBreakdownToFile method writes the month and counterparty breakdowns, the distinct counterparty
+     * estimates and the amount quantiles to a text file. Nothing is written if BREAKDOWN_FILE is not set.
+     *
+     * @param breakdown The breakdowns to write.
+     */
+    public void writeBreakdownToFile(BreakdownAggregator breakdown) {
+        ConfigSnapshot config = PropsHandler.getConfig();
+        Path breakdownFile = config.getPath("BREAKDOWN_FILE");
+        if (breakdownFile == null) {
+            return;
+        }
+        int topCounterparties = config.getInt("BREAKDOWN_TOP_COUNTERPARTIES", 10);
+        List<String> categories = breakdown.getCategories();
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Breakdown by month:%n"));
+        for (GroupTable.Group group : breakdown.getMonthTotals()) {
+            int month = BreakdownAggregator.getMonth(group);
+            String monthLabel = month == DocumentFields.UNKNOWN_MONTH ? "unknown"
+                    : String.format(Locale.ROOT, "%04d-%02d", month / 100, month % 100);
+            report.append(formatGroup(monthLabel + " " + categories.get(group.getCategory()), group));
+        }
+        report.append(String.format("Breakdown by counterparty (top %d per category):%n", topCounterparties));
+        int[] listed = new int[categories.size()];
+        for (GroupTable.Group group : breakdown.getCounterpartyTotals()) {
+            if (listed[group.getCategory()]++ < topCounterparties) {
+                report.append(formatGroup(categories.get(group.getCategory()) + " " + group.getLabel(), group));
+            }
+        }
+        if (breakdown.getUntrackedCount() > 0) {
+            report.append(String.format("Documents not broken down (group limit reached): %d%n",
+                    breakdown.getUntrackedCount()));
+        }
+        report.append(String.format("Distinct counterparties (approximate): %d%n", breakdown.getDistinctCounterparties()));
+        for (int category = 0; category < categories.size(); category++) {
+            report.append(String.format("  - %s: %d%n", categories.get(category),
+                    breakdown.getDistinctCounterparties(category)));
+        }
+        report.append(String.format("Amount quantiles (approximate, 1%% relative error):%n"));
+        for (int category = 0; category < categories.size(); category++) {
+            report.append(String.format("  - %s: p50 %.2f, p90 %.2f, p99 %.2f%n", categories.get(category),
+                    BigDecimal.valueOf(breakdown.getAmountQuantile(category, 0.5), 2),
+                    BigDecimal.valueOf(breakdown.getAmountQuantile(category, 0.9), 2),
+                    BigDecimal.valueOf(breakdown.getAmountQuantile(category, 0.99), 2)));
+        }
+        try {
+            Files.writeString(breakdownFile, report);
+            CustomLogger.info("Breakdown successfully written to file " + breakdownFile);
+        } catch (IOException e) {
+            CustomLogger.error("Error writing breakdown file: " + e.getMessage());
+        }
+    }
+    /**
+     * The isEnabled method checks whether BREAKDOWN_FILE is configured.
+     *
+     * @return true if breakdowns should be calculated and written.
+     */
+    public static boolean isEnabled() {
+        return PropsHandler.getConfig().getPath("BREAKDOWN_FILE") != null;
+    }
+    /**
+     * The formatGroup method formats one line of a breakdown.
+     *
+     * @param name Name of the group.
+     * @param group The group.
+     * @return The formatted line.
+     */
+    private static String formatGroup(String name, GroupTable.Group group) {
+        String line = String.format("  - %s: %d documents, total %.2f, min %.2f, max %.2f", name, group.getCount(),
+                BigDecimal.valueOf(group.getSum(), 2), BigDecimal.valueOf(group.getMin(), 2),
+                BigDecimal.valueOf(group.getMax(), 2));
+        if (group.getError() > 0) {
+            line += String.format(" (up to %.2f more not broken down)", BigDecimal.valueOf(group.getError(), 2));
+        }
+        return line + String.format("%n");
+    }
+}
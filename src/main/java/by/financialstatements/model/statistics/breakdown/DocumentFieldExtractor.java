@@ -0,0 +1,130 @@
+package by.financialstatements.model.statistics.breakdown;
+
+import by.financialstatements.model.classifier.DocumentType;
+
+/**
+ * The DocumentFieldExtractor class extracts the date and the counterparty from the beginning of a document.
+ * Only the beginning of the document is looked at (DocumentStreamReader.HEAD_SIZE bytes, read together with
+ * the last line), since the header of every supported document fits into it, so the cost does not grow with
+ * the number of line items. The rules are:
+ * - Date: the first date of the form dd/mm/yyyy or dd.mm.yyyy (for example "Invoice Date 01/01/2023"
+ *   or "Date: 15.01.2023").
+ * - Counterparty: the value of a "From:" line if there is one, otherwise the first non-empty line
+ *   that is not just the document type (for example "East Repair Inc." after "INVOICE").
+ */
+public class DocumentFieldExtractor {
+    private static final int MAX_COUNTERPARTY_LENGTH = 64;
+    private static final String FROM_LABEL = "from:";
+    /**
+     * The extract method extracts the fields from the beginning of a document that has already been read.
+     *
+     * @param head The first bytes of the document, one character per byte.
+     * @param type Document type of the document, used to skip a heading that only repeats the type.
+     * @return The fields of the document; missing fields are set to their unknown values.
+     */
+    public DocumentFields extract(CharSequence head, DocumentType type) {
+        return new DocumentFields(findDate(head), findCounterparty(head, type));
+    }
+    /**
+     * The findDate method finds the first date in the text.
+     *
+     * @param text Beginning of the document.
+     * @return The date as yyyymmdd, or UNKNOWN_DATE if there is no valid date.
+     */
+    static int findDate(CharSequence text) {
+        for (int i = 0; i + 10 <= text.length(); i++) {
+            char separator = text.charAt(i + 2);
+            if ((separator == '/' || separator == '.') && text.charAt(i + 5) == separator
+                    && (i == 0 || !isDigit(text.charAt(i - 1)))) {
+                int day = digits(text, i, 2);
+                int month = digits(text, i + 3, 2);
+                int year = digits(text, i + 6, 4);
+                if (day >= 1 && day <= 31 && month >= 1 && month <= 12 && year > 0) {
+                    return (year * 100 + month) * 100 + day;
+                }
+            }
+        }
+        return DocumentFields.UNKNOWN_DATE;
+    }
+    /**
+     * The findCounterparty method finds the counterparty in the text.
+     *
+     * @param text Beginning of the document.
+     * @param type Document type of the file.
+     * @return The name of the counterparty, or UNKNOWN_COUNTERPARTY.
+     */
+    static String findCounterparty(CharSequence text, DocumentType type) {
+        String firstLine = null;
+        int start = 0;
+        while (start < text.length()) {
+            int end = start;
+            while (end < text.length() && text.charAt(end) != '\n') {
+                end++;
+            }
+            String line = text.subSequence(start, end).toString().trim();
+            if (line.regionMatches(true, 0, FROM_LABEL, 0, FROM_LABEL.length())) {
+                String value = line.substring(FROM_LABEL.length()).trim();
+                if (!value.isEmpty()) {
+                    return limit(value);
+                }
+            } else if (firstLine == null && !line.isEmpty() && !isTypeHeading(line, type)) {
+                firstLine = line;
+            }
+            start = end + 1;
+        }
+        return firstLine == null ? DocumentFields.UNKNOWN_COUNTERPARTY : limit(firstLine);
+    }
+    /**
+     * The isTypeHeading method checks whether a line only repeats the name or a keyword of the document type.
+     *
+     * @param line Trimmed line.
+     * @param type Document type of the file.
+     * @return true if the line is a heading such as "INVOICE".
+     */
+    private static boolean isTypeHeading(String line, DocumentType type) {
+        if (line.equalsIgnoreCase(type.getName())) {
+            return true;
+        }
+        for (String keyword : type.getKeywords()) {
+            if (line.equalsIgnoreCase(keyword)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    /**
+     * The limit method shortens a counterparty name to MAX_COUNTERPARTY_LENGTH characters.
+     *
+     * @param name Counterparty name.
+     * @return The shortened name.
+     */
+    private static String limit(String name) {
+        return name.length() <= MAX_COUNTERPARTY_LENGTH ? name : name.substring(0, MAX_COUNTERPARTY_LENGTH);
+    }
+    /**
+     * The digits method parses a fixed number of decimal digits.
+     *
+     * @param text The text.
+     * @param start Position of the first digit.
+     * @param count Number of digits.
+     * @return The parsed number, or -1 if one of the characters is not a digit.
+     */
+    private static int digits(CharSequence text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+    /**
+     * @param c Character.
+     * @return true if the character is an ASCII digit.
+     */
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
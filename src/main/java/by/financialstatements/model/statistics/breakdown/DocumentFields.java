@@ -0,0 +1,50 @@
+package by.financialstatements.model.statistics.breakdown;
+/**
+ * The DocumentFields class holds the fields of a document used for breakdowns besides its category and amount:
+ * the document date and the counterparty (supplier or customer).
+ */
+public class DocumentFields {
+    /**
+     * Date value used when a document has no recognizable date.
+     */
+    public static final int UNKNOWN_DATE = 0;
+    /**
+     * Month value used when a document has no recognizable date.
+     */
+    public static final int UNKNOWN_MONTH = 0;
+    /**
+     * Counterparty used when a document does not name one.
+     */
+    public static final String UNKNOWN_COUNTERPARTY = "unknown";
+
+    private final int date;
+    private final String counterparty;
+    /**
+     * DocumentFields constructor.
+     *
+     * @param date Document date as yyyymmdd (for example 20230115), or UNKNOWN_DATE.
+     * @param counterparty Name of the counterparty, or UNKNOWN_COUNTERPARTY.
+     */
+    public DocumentFields(int date, String counterparty) {
+        this.date = date;
+        this.counterparty = counterparty;
+    }
+    /**
+     * @return Document date as yyyymmdd, or UNKNOWN_DATE.
+     */
+    public int getDate() {
+        return date;
+    }
+    /**
+     * @return Month of the document date as yyyymm, or UNKNOWN_MONTH.
+     */
+    public int getMonth() {
+        return date / 100;
+    }
+    /**
+     * @return Name of the counterparty, or UNKNOWN_COUNTERPARTY.
+     */
+    public String getCounterparty() {
+        return counterparty;
+    }
+}
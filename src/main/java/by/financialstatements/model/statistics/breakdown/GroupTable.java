@@ -0,0 +1,442 @@
+package by.financialstatements.model.statistics.breakdown;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+/**
+ * The GroupTable class is a group-by rollup: for every group it keeps the number of documents, the sum,
+ * the smallest and the largest amount. Groups are identified by a long key and stored in an open-addressing
+ * hash table of primitive arrays, so adding an amount does not allocate. A key may be a hash of the label
+ * (for example of a counterparty name, see HyperLogLog.hash), so a group matches only if its label is equal
+ * as well, ignoring case like the hash: two labels whose hashes collide are kept as separate groups instead
+ * of being added together.
+ *
+ * The number of groups is limited, so memory stays bounded however many distinct values appear.
+ * Once the limit is reached, one of two things happens to a new group:
+ * - by default its amounts are counted in a single overflow group;
+ * - in an evicting table (used where only the largest groups matter, like the top counterparties), the smaller
+ *   half of the groups, by sum, is moved to the overflow group to make room. This is the Space-Saving scheme with
+ *   evictions done in batches, so the cost per amount stays logarithmic. A group created after an eviction may
+ *   have had amounts that were evicted before; its error is an upper bound of that missing sum (the largest sum
+ *   evicted so far), and its sum plus the error is an upper bound of its true sum. A group is evicted only
+ *   if at least half of the groups have a sum plus error at least as large.
+ * Groups and the overflow group always add up to the totals of all documents.
+ * Tables built from different documents can be merged; groups beyond the limit of the merged table
+ * go to its overflow group or are evicted. The table is not thread-safe.
+ */
+public class GroupTable {
+    private final int maxGroups;
+    private final boolean evicting;
+    private final int mask;
+    private final long[] keys;
+    private final boolean[] used;
+    private final String[] labels;
+    private final int[] categories;
+    private final long[] counts;
+    private final long[] sums;
+    private final long[] mins;
+    private final long[] maxs;
+    private final long[] errors;
+    private int size;
+    private long overflowCount;
+    private long overflowSum;
+    private long evictedSum;
+    /**
+     * GroupTable constructor. Amounts of new groups beyond the limit go to the overflow group.
+     *
+     * @param maxGroups Maximum number of groups kept.
+     */
+    public GroupTable(int maxGroups) {
+        this(maxGroups, false);
+    }
+    /**
+     * GroupTable constructor.
+     *
+     * @param maxGroups Maximum number of groups kept.
+     * @param evicting true to evict the smaller groups when the limit is reached, false to count
+     * the amounts of new groups in the overflow group.
+     */
+    public GroupTable(int maxGroups, boolean evicting) {
+        this.maxGroups = Math.max(1, maxGroups);
+        this.evicting = evicting;
+        // At most half of the slots are used, which keeps probe sequences short
+        int capacity = Integer.highestOneBit(Math.max(2, maxGroups) * 2 - 1) << 1;
+        this.mask = capacity - 1;
+        this.keys = new long[capacity];
+        this.used = new boolean[capacity];
+        this.labels = new String[capacity];
+        this.categories = new int[capacity];
+        this.counts = new long[capacity];
+        this.sums = new long[capacity];
+        this.mins = new long[capacity];
+        this.maxs = new long[capacity];
+        this.errors = new long[capacity];
+    }
+    /**
+     * The add method adds an amount to a group, creating the group if needed.
+     *
+     * @param key Key of the group.
+     * @param label Printable name of the group, or null; part of the identity of the group together with the key.
+     * @param category Number of the statistics category of the group.
+     * @param amount Amount in minor units.
+     * @return false if the group limit was reached and the amount went to the overflow group.
+     */
+    public boolean add(long key, String label, int category, long amount) {
+        return add(key, label, category, 1, amount, amount, amount, 0);
+    }
+    /**
+     * The merge method adds every group of another table, and its overflow group, to this table.
+     * A group missing from one of the tables may have been evicted from it, so the errors grow
+     * by the sum the other table evicted.
+     *
+     * @param other The other table.
+     */
+    public void merge(GroupTable other) {
+        if (other.evictedSum != 0) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (used[slot]) {
+                    errors[slot] += other.evictedSum;
+                }
+            }
+        }
+        long ownEvictedSum = evictedSum;
+        for (int slot = 0; slot < other.keys.length; slot++) {
+            if (other.used[slot]) {
+                add(other.keys[slot], other.labels[slot], other.categories[slot], other.counts[slot],
+                        other.sums[slot], other.mins[slot], other.maxs[slot], other.errors[slot]);
+            }
+        }
+        overflowCount += other.overflowCount;
+        overflowSum += other.overflowSum;
+        evictedSum = Math.max(evictedSum, ownEvictedSum + other.evictedSum);
+    }
+    /**
+     * The writeTo method writes the groups and the overflow group.
+     *
+     * @param output Destination of the table.
+     * @throws IOException If the table cannot be written.
+     */
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeInt(size);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) {
+                output.writeLong(keys[slot]);
+                output.writeBoolean(labels[slot] != null);
+                if (labels[slot] != null) {
+                    output.writeUTF(labels[slot]);
+                }
+                output.writeInt(categories[slot]);
+                output.writeLong(counts[slot]);
+                output.writeLong(sums[slot]);
+                output.writeLong(mins[slot]);
+                output.writeLong(maxs[slot]);
+                output.writeLong(errors[slot]);
+            }
+        }
+        output.writeLong(overflowCount);
+        output.writeLong(overflowSum);
+        output.writeLong(evictedSum);
+    }
+    /**
+     * The readFrom method reads a table written by writeTo.
+     *
+     * @param input Source of the table.
+     * @param maxGroups Maximum number of groups kept; groups read beyond it go to the overflow group or are evicted.
+     * @param evicting true to evict the smaller groups when the limit is reached.
+     * @return The table.
+     * @throws IOException If the table cannot be read.
+     */
+    public static GroupTable readFrom(DataInput input, int maxGroups, boolean evicting) throws IOException {
+        GroupTable table = new GroupTable(maxGroups, evicting);
+        int size = input.readInt();
+        for (int i = 0; i < size; i++) {
+            long key = input.readLong();
+            String label = input.readBoolean() ? input.readUTF() : null;
+            table.add(key, label, input.readInt(), input.readLong(), input.readLong(), input.readLong(),
+                    input.readLong(), input.readLong());
+        }
+        table.overflowCount += input.readLong();
+        table.overflowSum += input.readLong();
+        table.evictedSum = Math.max(table.evictedSum, input.readLong());
+        return table;
+    }
+    /**
+     * The add method adds the totals of several documents to a group, creating the group if needed.
+     *
+     * @param key Key of the group.
+     * @param label Printable name of the group, or null; part of the identity of the group together with the key.
+     * @param category Number of the statistics category of the group.
+     * @param count Number of documents.
+     * @param sum Sum of their amounts.
+     * @param min Smallest of their amounts.
+     * @param max Largest of their amounts.
+     * @param error Upper bound of the sum of earlier documents of the group that are not included.
+     * @return false if the group limit was reached and the totals went to the overflow group.
+     */
+    private boolean add(long key, String label, int category, long count, long sum, long min, long max, long error) {
+        int slot = find(key, label);
+        if (!used[slot]) {
+            if (size == maxGroups) {
+                if (!evicting) {
+                    overflowCount += count;
+                    overflowSum += sum;
+                    return false;
+                }
+                evictSmallerHalf();
+                slot = find(key, label);
+            }
+            used[slot] = true;
+            keys[slot] = key;
+            labels[slot] = label;
+            categories[slot] = category;
+            mins[slot] = min;
+            maxs[slot] = max;
+            // The group may have had documents that were evicted before
+            errors[slot] = evictedSum;
+            size++;
+        }
+        counts[slot] += count;
+        sums[slot] += sum;
+        mins[slot] = Math.min(mins[slot], min);
+        maxs[slot] = Math.max(maxs[slot], max);
+        errors[slot] += error;
+        return true;
+    }
+    /**
+     * The find method returns the slot of a group, or the free slot where it would be stored.
+     *
+     * @param key Key of the group.
+     * @param label Label of the group.
+     * @return The slot.
+     */
+    private int find(long key, String label) {
+        int slot = (int) mix(key) & mask;
+        while (used[slot] && (keys[slot] != key || !sameLabel(labels[slot], label))) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+    /**
+     * The evictSmallerHalf method moves the half of the groups with the smallest sum plus error to the overflow
+     * group and stores the remaining groups again. The largest evicted sum plus error becomes the error
+     * of the groups created later.
+     */
+    private void evictSmallerHalf() {
+        long[] weights = new long[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) {
+                weights[count++] = sums[slot] + errors[slot];
+            }
+        }
+        Arrays.sort(weights);
+        int evictCount = Math.max(1, size / 2);
+        long threshold = weights[evictCount - 1];
+        // Groups at the threshold are evicted only as long as the count allows, so exactly evictCount go
+        int atThreshold = evictCount - lowerBound(weights, threshold);
+        evictedSum = Math.max(evictedSum, threshold);
+        boolean[] keep = new boolean[keys.length];
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) {
+                long weight = sums[slot] + errors[slot];
+                if (weight < threshold || weight == threshold && atThreshold-- > 0) {
+                    overflowCount += counts[slot];
+                    overflowSum += sums[slot];
+                } else {
+                    keep[slot] = true;
+                }
+            }
+        }
+        long[] oldKeys = keys.clone();
+        String[] oldLabels = labels.clone();
+        int[] oldCategories = categories.clone();
+        long[] oldCounts = counts.clone();
+        long[] oldSums = sums.clone();
+        long[] oldMins = mins.clone();
+        long[] oldMaxs = maxs.clone();
+        long[] oldErrors = errors.clone();
+        Arrays.fill(used, false);
+        Arrays.fill(labels, null);
+        Arrays.fill(counts, 0);
+        Arrays.fill(sums, 0);
+        Arrays.fill(errors, 0);
+        size = 0;
+        for (int slot = 0; slot < keep.length; slot++) {
+            if (keep[slot]) {
+                int target = find(oldKeys[slot], oldLabels[slot]);
+                used[target] = true;
+                keys[target] = oldKeys[slot];
+                labels[target] = oldLabels[slot];
+                categories[target] = oldCategories[slot];
+                counts[target] = oldCounts[slot];
+                sums[target] = oldSums[slot];
+                mins[target] = oldMins[slot];
+                maxs[target] = oldMaxs[slot];
+                errors[target] = oldErrors[slot];
+                size++;
+            }
+        }
+    }
+    /**
+     * The lowerBound method returns the position of the first value of a sorted array that is not smaller
+     * than the given value.
+     *
+     * @param sorted Sorted values.
+     * @param value Value looked for.
+     * @return The position.
+     */
+    private static int lowerBound(long[] sorted, long value) {
+        int index = Arrays.binarySearch(sorted, value);
+        if (index < 0) {
+            return -index - 1;
+        }
+        while (index > 0 && sorted[index - 1] == value) {
+            index--;
+        }
+        return index;
+    }
+    /**
+     * The getGroups method returns all groups, sorted with the given order.
+     *
+     * @param order Order of the groups.
+     * @return The groups.
+     */
+    public List<Group> getGroups(Comparator<Group> order) {
+        List<Group> groups = new ArrayList<>(size);
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (used[slot]) {
+                groups.add(new Group(keys[slot], labels[slot], categories[slot], counts[slot], sums[slot],
+                        mins[slot], maxs[slot], errors[slot]));
+            }
+        }
+        groups.sort(order);
+        return groups;
+    }
+    /**
+     * @return Number of groups kept.
+     */
+    public int size() {
+        return size;
+    }
+    /**
+     * @return Number of documents counted in the overflow group.
+     */
+    public long getOverflowCount() {
+        return overflowCount;
+    }
+    /**
+     * @return Sum of the amounts counted in the overflow group.
+     */
+    public long getOverflowSum() {
+        return overflowSum;
+    }
+    /**
+     * The sameLabel method checks whether two labels name the same group.
+     *
+     * @param stored Label of a group of the table.
+     * @param label Label of the group looked for.
+     * @return true if both are null or they are equal ignoring case.
+     */
+    private static boolean sameLabel(String stored, String label) {
+        return stored == null ? label == null : stored.equalsIgnoreCase(label);
+    }
+    /**
+     * The mix method spreads the bits of a key over the slot index.
+     *
+     * @param key Group key.
+     * @return The mixed key.
+     */
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return key ^ (key >>> 33);
+    }
+    /**
+     * The Group class is a snapshot of one group of the table.
+     */
+    public static class Group {
+        private final long key;
+        private final String label;
+        private final int category;
+        private final long count;
+        private final long sum;
+        private final long min;
+        private final long max;
+        private final long error;
+        /**
+         * Group constructor.
+         *
+         * @param key Key of the group.
+         * @param label Printable name of the group.
+         * @param category Number of the statistics category.
+         * @param count Number of documents.
+         * @param sum Sum of the amounts.
+         * @param min Smallest amount.
+         * @param max Largest amount.
+         * @param error Upper bound of the sum of documents of the group that are not included.
+         */
+        Group(long key, String label, int category, long count, long sum, long min, long max, long error) {
+            this.key = key;
+            this.label = label;
+            this.category = category;
+            this.count = count;
+            this.sum = sum;
+            this.min = min;
+            this.max = max;
+            this.error = error;
+        }
+        /**
+         * @return Key of the group.
+         */
+        public long getKey() {
+            return key;
+        }
+        /**
+         * @return Printable name of the group.
+         */
+        public String getLabel() {
+            return label;
+        }
+        /**
+         * @return Number of the statistics category.
+         */
+        public int getCategory() {
+            return category;
+        }
+        /**
+         * @return Number of documents.
+         */
+        public long getCount() {
+            return count;
+        }
+        /**
+         * @return Sum of the amounts in minor units.
+         */
+        public long getSum() {
+            return sum;
+        }
+        /**
+         * @return Smallest amount in minor units.
+         */
+        public long getMin() {
+            return min;
+        }
+        /**
+         * @return Largest amount in minor units.
+         */
+        public long getMax() {
+            return max;
+        }
+        /**
+         * @return Upper bound of the sum, in minor units, of documents of the group that were counted
+         * in the overflow group before the group was kept; 0 for a group kept since its first document.
+         */
+        public long getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package by.financialstatements.model.statistics.breakdown;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+/**
+ * The HyperLogLog class estimates the number of distinct values seen, using 4096 one-byte registers
+ * (4 KB) whatever the number of values. The standard error of the estimate is about 1.6%.
+ * Values are added as 64-bit hashes. Two sketches can be merged into the sketch of all their values
+ * without loss. The sketch is not thread-safe.
+ */
+public class HyperLogLog {
+    private static final int PRECISION = 12;
+    private static final int REGISTER_COUNT = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+
+    private final byte[] registers = new byte[REGISTER_COUNT];
+    /**
+     * The add method records a value.
+     *
+     * @param hash Well-mixed 64-bit hash of the value (see hash).
+     */
+    public void add(long hash) {
+        int register = (int) (hash >>> (Long.SIZE - PRECISION));
+        // The marker bit limits the rank when all remaining bits are zero
+        int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+        if (rank > registers[register]) {
+            registers[register] = (byte) rank;
+        }
+    }
+    /**
+     * The merge method adds the values of another sketch, keeping the larger register of each pair.
+     *
+     * @param other The other sketch.
+     */
+    public void merge(HyperLogLog other) {
+        for (int i = 0; i < REGISTER_COUNT; i++) {
+            registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+        }
+    }
+    /**
+     * The writeTo method writes the registers.
+     *
+     * @param output Destination of the sketch.
+     * @throws IOException If the sketch cannot be written.
+     */
+    public void writeTo(DataOutput output) throws IOException {
+        output.write(registers);
+    }
+    /**
+     * The readFrom method reads a sketch written by writeTo.
+     *
+     * @param input Source of the sketch.
+     * @return The sketch.
+     * @throws IOException If the sketch cannot be read.
+     */
+    public static HyperLogLog readFrom(DataInput input) throws IOException {
+        HyperLogLog sketch = new HyperLogLog();
+        input.readFully(sketch.registers);
+        return sketch;
+    }
+    /**
+     * The estimate method estimates the number of distinct values added.
+     *
+     * @return The estimated number of distinct values.
+     */
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+        if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+            // Linear counting is more accurate for small numbers of values
+            estimate = REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros);
+        }
+        return Math.round(estimate);
+    }
+    /**
+     * The hash method calculates a 64-bit hash of a string, ignoring case: FNV-1a over the characters
+     * followed by a finalizer that spreads the bits, as HyperLogLog needs.
+     *
+     * @param value The string.
+     * @return The hash.
+     */
+    public static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= Character.toLowerCase(value.charAt(i));
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,119 @@
+package by.financialstatements.model.statistics.breakdown;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+/**
+ * The QuantileSketch class estimates quantiles of amounts with a relative error of at most 1%,
+ * in the style of DDSketch. Amounts are counted in logarithmic buckets whose bounds grow by a factor of
+ * about 1.02, so a fixed array of about 2200 counters covers every positive long. Memory does not depend
+ * on the number of amounts. Two sketches can be merged into the sketch of all their amounts with the same accuracy.
+ * The sketch is not thread-safe.
+ */
+public class QuantileSketch {
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final int BUCKET_COUNT = (int) Math.ceil(Math.log(Long.MAX_VALUE) / LOG_GAMMA) + 1;
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+    private long zeroCount;
+    private long count;
+    /**
+     * The add method records an amount. Amounts of 0 or less are counted as 0.
+     *
+     * @param amount Amount in minor units.
+     */
+    public void add(long amount) {
+        count++;
+        if (amount <= 0) {
+            zeroCount++;
+            return;
+        }
+        buckets[(int) Math.ceil(Math.log(amount) / LOG_GAMMA)]++;
+    }
+    /**
+     * The merge method adds the amounts of another sketch.
+     *
+     * @param other The other sketch.
+     */
+    public void merge(QuantileSketch other) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] += other.buckets[i];
+        }
+        zeroCount += other.zeroCount;
+        count += other.count;
+    }
+    /**
+     * The writeTo method writes the counters. Only the buckets in use are written, as pairs of index and count.
+     *
+     * @param output Destination of the sketch.
+     * @throws IOException If the sketch cannot be written.
+     */
+    public void writeTo(DataOutput output) throws IOException {
+        output.writeLong(count);
+        output.writeLong(zeroCount);
+        int used = 0;
+        for (long bucket : buckets) {
+            used += bucket == 0 ? 0 : 1;
+        }
+        output.writeInt(used);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (buckets[i] != 0) {
+                output.writeShort(i);
+                output.writeLong(buckets[i]);
+            }
+        }
+    }
+    /**
+     * The readFrom method reads a sketch written by writeTo.
+     *
+     * @param input Source of the sketch.
+     * @return The sketch.
+     * @throws IOException If the sketch cannot be read or is damaged.
+     */
+    public static QuantileSketch readFrom(DataInput input) throws IOException {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.count = input.readLong();
+        sketch.zeroCount = input.readLong();
+        int used = input.readInt();
+        for (int i = 0; i < used; i++) {
+            int bucket = input.readUnsignedShort();
+            if (bucket >= BUCKET_COUNT) {
+                throw new IOException("Invalid quantile sketch bucket " + bucket);
+            }
+            sketch.buckets[bucket] = input.readLong();
+        }
+        return sketch;
+    }
+    /**
+     * The quantile method estimates the amount below which the given share of the recorded amounts lies.
+     *
+     * @param quantile Quantile between 0 and 1, for example 0.99.
+     * @return The estimated amount in minor units, or 0 if nothing was recorded.
+     */
+    public long quantile(double quantile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(1, Math.max(0, quantile)) * count);
+        long seen = zeroCount;
+        if (seen >= rank) {
+            return 0;
+        }
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                // The middle of the bucket is within the relative accuracy of every value in it
+                return Math.round(2 * Math.pow(GAMMA, i) / (GAMMA + 1));
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+    /**
+     * @return Number of recorded amounts.
+     */
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,47 @@
+package by.financialstatements.model.statistics.columnar;
+/**
+ * The ColumnarFormat class describes the layout of the binary statistics file.
+ * All numbers are little-endian and every block starts at a multiple of 8 bytes, so columns can be used
+ * directly as LongBuffer or IntBuffer views of a memory-mapped file.
+ *
+ * Layout:
+ * - Header (HEADER_SIZE bytes): magic, version, row count, category count, then the offsets of the blocks
+ *   in BLOCK_* order.
+ * - Category block: for every category, the length of its name (int) and its UTF-8 bytes.
+ * - Aggregate block: for every category, count, sum, min and max (long each).
+ * - Category column: one byte per row (number of the category).
+ * - Amount column: one long per row (minor units).
+ * - Date column: one int per row (yyyymmdd, 0 if unknown).
+ * - Name offset column: row count + 1 ints, the start of every file name in the name block and the end of the last one.
+ * - Name block: UTF-8 bytes of all file names.
+ */
+final class ColumnarFormat {
+    static final int MAGIC = 0x43545346; // "FSTC"
+    static final int VERSION = 1;
+    static final int BLOCK_CATEGORIES = 0;
+    static final int BLOCK_AGGREGATES = 1;
+    static final int BLOCK_CATEGORY_COLUMN = 2;
+    static final int BLOCK_AMOUNT_COLUMN = 3;
+    static final int BLOCK_DATE_COLUMN = 4;
+    static final int BLOCK_NAME_OFFSET_COLUMN = 5;
+    static final int BLOCK_NAMES = 6;
+    static final int BLOCK_COUNT = 7;
+    static final int AGGREGATE_SIZE = 4 * Long.BYTES;
+    // magic, version, row count (long), category count, padding, block offsets
+    static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES + Integer.BYTES * 2 + BLOCK_COUNT * Long.BYTES;
+    static final int ROW_COUNT_POSITION = Integer.BYTES * 2;
+    static final int CATEGORY_COUNT_POSITION = ROW_COUNT_POSITION + Long.BYTES;
+    static final int BLOCK_OFFSETS_POSITION = CATEGORY_COUNT_POSITION + Integer.BYTES * 2;
+
+    private ColumnarFormat() {
+    }
+    /**
+     * The align method rounds a position up to a multiple of 8.
+     *
+     * @param position File position.
+     * @return The aligned position.
+     */
+    static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+}
@@ -0,0 +1,192 @@
+package by.financialstatements.model.statistics.columnar;
+
+import by.financialstatements.model.statistics.CategoryTotals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+/**
+ * The ColumnarStatisticsReader class reads a file written by ColumnarStatisticsWriter.
+ * The file is memory-mapped and the columns are exposed as views of the mapping, so nothing is copied or
+ * decoded until a value is accessed, and scanning a column runs at memory speed.
+ * A reader is read-only and can be used from several threads. Files of up to 2 GB are supported.
+ */
+public class ColumnarStatisticsReader {
+    private final int rowCount;
+    private final List<String> categories;
+    private final List<CategoryTotals> totals;
+    private final ByteBuffer categoryColumn;
+    private final LongBuffer amountColumn;
+    private final IntBuffer dateColumn;
+    private final IntBuffer nameOffsetColumn;
+    private final ByteBuffer names;
+    /**
+     * ColumnarStatisticsReader constructor.
+     *
+     * @param file Mapped file.
+     * @throws IOException If the file is not a columnar statistics file.
+     */
+    private ColumnarStatisticsReader(ByteBuffer file) throws IOException {
+        if (file.limit() < ColumnarFormat.HEADER_SIZE || file.getInt(0) != ColumnarFormat.MAGIC) {
+            throw new IOException("Not a columnar statistics file");
+        }
+        if (file.getInt(Integer.BYTES) != ColumnarFormat.VERSION) {
+            throw new IOException("Unsupported columnar statistics version: " + file.getInt(Integer.BYTES));
+        }
+        this.rowCount = Math.toIntExact(file.getLong(ColumnarFormat.ROW_COUNT_POSITION));
+        int categoryCount = file.getInt(ColumnarFormat.CATEGORY_COUNT_POSITION);
+        int[] blockOffsets = new int[ColumnarFormat.BLOCK_COUNT];
+        for (int block = 0; block < ColumnarFormat.BLOCK_COUNT; block++) {
+            blockOffsets[block] = Math.toIntExact(file.getLong(ColumnarFormat.BLOCK_OFFSETS_POSITION + block * Long.BYTES));
+        }
+        List<String> categoryNames = new ArrayList<>(categoryCount);
+        int position = blockOffsets[ColumnarFormat.BLOCK_CATEGORIES];
+        for (int category = 0; category < categoryCount; category++) {
+            int length = file.getInt(position);
+            byte[] name = new byte[length];
+            file.get(position + Integer.BYTES, name);
+            categoryNames.add(new String(name, StandardCharsets.UTF_8));
+            position += Integer.BYTES + length;
+        }
+        this.categories = List.copyOf(categoryNames);
+        List<CategoryTotals> categoryTotals = new ArrayList<>(categoryCount);
+        position = blockOffsets[ColumnarFormat.BLOCK_AGGREGATES];
+        for (int category = 0; category < categoryCount; category++) {
+            categoryTotals.add(new CategoryTotals(file.getLong(position), file.getLong(position + Long.BYTES),
+                    file.getLong(position + 2 * Long.BYTES), file.getLong(position + 3 * Long.BYTES)));
+            position += ColumnarFormat.AGGREGATE_SIZE;
+        }
+        this.totals = List.copyOf(categoryTotals);
+        this.categoryColumn = slice(file, blockOffsets[ColumnarFormat.BLOCK_CATEGORY_COLUMN], rowCount);
+        this.amountColumn = slice(file, blockOffsets[ColumnarFormat.BLOCK_AMOUNT_COLUMN], rowCount * Long.BYTES)
+                .asLongBuffer();
+        this.dateColumn = slice(file, blockOffsets[ColumnarFormat.BLOCK_DATE_COLUMN], rowCount * Integer.BYTES)
+                .asIntBuffer();
+        this.nameOffsetColumn = slice(file, blockOffsets[ColumnarFormat.BLOCK_NAME_OFFSET_COLUMN],
+                (rowCount + 1) * Integer.BYTES).asIntBuffer();
+        this.names = slice(file, blockOffsets[ColumnarFormat.BLOCK_NAMES], nameOffsetColumn.get(rowCount));
+    }
+    /**
+     * The open method maps a columnar statistics file. The mapping stays valid after the method returns
+     * and is released when the reader is no longer used.
+     *
+     * @param file Path to the file.
+     * @return The reader.
+     * @throws IOException If the file cannot be read or is not a columnar statistics file.
+     */
+    public static ColumnarStatisticsReader open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ColumnarStatisticsReader(mapping.order(ByteOrder.LITTLE_ENDIAN));
+        }
+    }
+    /**
+     * @return Number of document rows.
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+    /**
+     * @return Names of the categories; the position of a name is the number of the category.
+     */
+    public List<String> getCategories() {
+        return categories;
+    }
+    /**
+     * The getTotals method returns the aggregate of a category.
+     *
+     * @param category Number of the category.
+     * @return Count, sum, minimum and maximum of the category.
+     */
+    public CategoryTotals getTotals(int category) {
+        return totals.get(category);
+    }
+    /**
+     * @param row Row number.
+     * @return Number of the category of the row.
+     */
+    public int getCategory(int row) {
+        return categoryColumn.get(row) & 0xff;
+    }
+    /**
+     * @param row Row number.
+     * @return Amount of the row in minor units.
+     */
+    public long getAmount(int row) {
+        return amountColumn.get(row);
+    }
+    /**
+     * @param row Row number.
+     * @return Document date of the row as yyyymmdd, or 0 if it is unknown.
+     */
+    public int getDate(int row) {
+        return dateColumn.get(row);
+    }
+    /**
+     * @param row Row number.
+     * @return File name of the row.
+     */
+    public String getFileName(int row) {
+        int start = nameOffsetColumn.get(row);
+        byte[] name = new byte[nameOffsetColumn.get(row + 1) - start];
+        names.get(start, name);
+        return new String(name, StandardCharsets.UTF_8);
+    }
+    /**
+     * @return Read-only view of the category column, one byte per row.
+     */
+    public ByteBuffer getCategoryColumn() {
+        return categoryColumn.asReadOnlyBuffer();
+    }
+    /**
+     * @return Read-only view of the amount column, one long per row.
+     */
+    public LongBuffer getAmountColumn() {
+        return amountColumn.asReadOnlyBuffer();
+    }
+    /**
+     * @return Read-only view of the date column, one int per row.
+     */
+    public IntBuffer getDateColumn() {
+        return dateColumn.asReadOnlyBuffer();
+    }
+    /**
+     * The sumAmounts method sums the amounts of a category for documents dated within a range, scanning
+     * only the category, date and amount columns.
+     *
+     * @param category Number of the category.
+     * @param fromDate First date as yyyymmdd (inclusive).
+     * @param toDate Last date as yyyymmdd (inclusive).
+     * @return The sum in minor units.
+     */
+    public long sumAmounts(int category, int fromDate, int toDate) {
+        long sum = 0;
+        for (int row = 0; row < rowCount; row++) {
+            int date = dateColumn.get(row);
+            if ((categoryColumn.get(row) & 0xff) == category && date >= fromDate && date <= toDate) {
+                sum += amountColumn.get(row);
+            }
+        }
+        return sum;
+    }
+    /**
+     * The slice method returns a little-endian view of a block of the file.
+     *
+     * @param file Mapped file.
+     * @param offset Offset of the block.
+     * @param length Length of the block in bytes.
+     * @return The view.
+     */
+    private static ByteBuffer slice(ByteBuffer file, int offset, int length) {
+        return file.slice(offset, length).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
@@ -0,0 +1,220 @@
+package by.financialstatements.model.statistics.columnar;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.PropsHandler;
+import by.financialstatements.model.statistics.CategoryTotals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+/**
+ * The ColumnarStatisticsWriter class writes the statistics in the binary columnar format described in
+ * ColumnarFormat: one row per document and one aggregate per category. The file is written through a FileChannel
+ * from a direct buffer and replaces the previous version atomically. It is written to COLUMNAR_STATISTICS_FILE
+ * and can be read back with ColumnarStatisticsReader.
+ */
+public class ColumnarStatisticsWriter {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * The writeStatisticsToFile method writes the rows and aggregates to COLUMNAR_STATISTICS_FILE and logs the result.
+     * Nothing is written if the property is not set.
+     *
+     * @param rows Rows of the processed documents.
+     * @param statistics A map from category to its totals, in category number order.
+     */
+    public void writeStatisticsToFile(DocumentRows rows, Map<String, CategoryTotals> statistics) {
+        Path file = PropsHandler.getConfig().getPath("COLUMNAR_STATISTICS_FILE");
+        if (file == null) {
+            return;
+        }
+        try {
+            write(file, rows, statistics);
+            CustomLogger.info("Columnar statistics successfully written to file " + file);
+        } catch (IOException e) {
+            CustomLogger.error("Error writing columnar statistics file: " + e.getMessage());
+        }
+    }
+    /**
+     * The write method writes the rows and aggregates to a file, replacing the previous version atomically.
+     *
+     * @param file Path to the file.
+     * @param rows Rows of the processed documents.
+     * @param statistics A map from category to its totals, in category number order.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path file, DocumentRows rows, Map<String, CategoryTotals> statistics) throws IOException {
+        DocumentRows snapshot = rows.copy();
+        int rowCount = snapshot.size();
+        List<byte[]> categoryNames = new ArrayList<>();
+        for (String category : statistics.keySet()) {
+            categoryNames.add(category.getBytes(StandardCharsets.UTF_8));
+        }
+        // Every block size is known up front, so the header can be written first
+        long[] blockSizes = new long[ColumnarFormat.BLOCK_COUNT];
+        for (byte[] name : categoryNames) {
+            blockSizes[ColumnarFormat.BLOCK_CATEGORIES] += Integer.BYTES + name.length;
+        }
+        blockSizes[ColumnarFormat.BLOCK_AGGREGATES] = (long) categoryNames.size() * ColumnarFormat.AGGREGATE_SIZE;
+        blockSizes[ColumnarFormat.BLOCK_CATEGORY_COLUMN] = rowCount;
+        blockSizes[ColumnarFormat.BLOCK_AMOUNT_COLUMN] = (long) rowCount * Long.BYTES;
+        blockSizes[ColumnarFormat.BLOCK_DATE_COLUMN] = (long) rowCount * Integer.BYTES;
+        blockSizes[ColumnarFormat.BLOCK_NAME_OFFSET_COLUMN] = (long) (rowCount + 1) * Integer.BYTES;
+        blockSizes[ColumnarFormat.BLOCK_NAMES] = snapshot.getNameOffsets()[rowCount];
+        long[] blockOffsets = new long[ColumnarFormat.BLOCK_COUNT];
+        long position = ColumnarFormat.HEADER_SIZE;
+        for (int block = 0; block < ColumnarFormat.BLOCK_COUNT; block++) {
+            blockOffsets[block] = position;
+            position = ColumnarFormat.align(position + blockSizes[block]);
+        }
+
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temporaryFile = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+            ChannelOutput output = new ChannelOutput(channel);
+            output.putInt(ColumnarFormat.MAGIC);
+            output.putInt(ColumnarFormat.VERSION);
+            output.putLong(rowCount);
+            output.putInt(categoryNames.size());
+            output.putInt(0);
+            for (long blockOffset : blockOffsets) {
+                output.putLong(blockOffset);
+            }
+            for (byte[] name : categoryNames) {
+                output.putInt(name.length);
+                output.putBytes(name, 0, name.length);
+            }
+            output.padTo(blockOffsets[ColumnarFormat.BLOCK_AGGREGATES]);
+            for (CategoryTotals totals : statistics.values()) {
+                output.putLong(totals.getCount());
+                output.putLong(totals.getSum());
+                output.putLong(totals.getMin());
+                output.putLong(totals.getMax());
+            }
+            output.padTo(blockOffsets[ColumnarFormat.BLOCK_CATEGORY_COLUMN]);
+            output.putBytes(snapshot.getCategories(), 0, rowCount);
+            output.padTo(blockOffsets[ColumnarFormat.BLOCK_AMOUNT_COLUMN]);
+            long[] amounts = snapshot.getAmounts();
+            for (int row = 0; row < rowCount; row++) {
+                output.putLong(amounts[row]);
+            }
+            output.padTo(blockOffsets[ColumnarFormat.BLOCK_DATE_COLUMN]);
+            int[] dates = snapshot.getDates();
+            for (int row = 0; row < rowCount; row++) {
+                output.putInt(dates[row]);
+            }
+            output.padTo(blockOffsets[ColumnarFormat.BLOCK_NAME_OFFSET_COLUMN]);
+            int[] nameOffsets = snapshot.getNameOffsets();
+            for (int row = 0; row <= rowCount; row++) {
+                output.putInt(nameOffsets[row]);
+            }
+            output.padTo(blockOffsets[ColumnarFormat.BLOCK_NAMES]);
+            output.putBytes(snapshot.getNames(), 0, nameOffsets[rowCount]);
+            output.flush();
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    /**
+     * The isEnabled method checks whether COLUMNAR_STATISTICS_FILE is configured.
+     *
+     * @return true if the columnar statistics should be collected and written.
+     */
+    public static boolean isEnabled() {
+        return PropsHandler.getConfig().getPath("COLUMNAR_STATISTICS_FILE") != null;
+    }
+    /**
+     * The ChannelOutput class writes little-endian values to a channel through one direct buffer.
+     */
+    private static class ChannelOutput {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long position;
+        /**
+         * ChannelOutput constructor.
+         *
+         * @param channel Channel positioned at the start of the file.
+         */
+        ChannelOutput(FileChannel channel) {
+            this.channel = channel;
+        }
+        /**
+         * @param value Value to write.
+         * @throws IOException If the channel cannot be written.
+         */
+        void putInt(int value) throws IOException {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+            position += Integer.BYTES;
+        }
+        /**
+         * @param value Value to write.
+         * @throws IOException If the channel cannot be written.
+         */
+        void putLong(long value) throws IOException {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+            position += Long.BYTES;
+        }
+        /**
+         * @param bytes Array with the bytes to write.
+         * @param offset Position of the first byte.
+         * @param length Number of bytes.
+         * @throws IOException If the channel cannot be written.
+         */
+        void putBytes(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                ensureRemaining(1);
+                int chunk = Math.min(length, buffer.remaining());
+                buffer.put(bytes, offset, chunk);
+                offset += chunk;
+                length -= chunk;
+                position += chunk;
+            }
+        }
+        /**
+         * The padTo method writes zero bytes up to the given file position.
+         *
+         * @param target Position of the next block.
+         * @throws IOException If the channel cannot be written.
+         */
+        void padTo(long target) throws IOException {
+            while (position < target) {
+                ensureRemaining(1);
+                buffer.put((byte) 0);
+                position++;
+            }
+        }
+        /**
+         * The flush method writes the buffered bytes to the channel.
+         *
+         * @throws IOException If the channel cannot be written.
+         */
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+        /**
+         * The ensureRemaining method flushes the buffer if it has less than the given number of free bytes.
+         *
+         * @param count Number of bytes about to be written.
+         * @throws IOException If the channel cannot be written.
+         */
+        private void ensureRemaining(int count) throws IOException {
+            if (buffer.remaining() < count) {
+                flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package by.financialstatements.model.statistics.columnar;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+/**
+ * The DocumentRows class collects one row per processed document (file name, category, amount, date)
+ * in growable primitive columns, ready to be written by ColumnarStatisticsWriter.
+ * File names are kept as UTF-8 bytes in one shared array, so a row costs about 20 bytes plus its name.
+ * All methods are thread-safe.
+ */
+public class DocumentRows {
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private byte[] categories = new byte[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    private int[] dates = new int[INITIAL_CAPACITY];
+    private int[] nameOffsets = new int[INITIAL_CAPACITY + 1];
+    private byte[] names = new byte[INITIAL_CAPACITY * 32];
+    private int size;
+    /**
+     * The add method adds the row of a document.
+     *
+     * @param category Number of the statistics category (0 to 255).
+     * @param amount Amount in minor units.
+     * @param date Document date as yyyymmdd, or 0 if it is unknown.
+     * @param fileName Name of the document file.
+     */
+    public synchronized void add(int category, long amount, int date, String fileName) {
+        if (size == amounts.length) {
+            int capacity = size * 2;
+            categories = Arrays.copyOf(categories, capacity);
+            amounts = Arrays.copyOf(amounts, capacity);
+            dates = Arrays.copyOf(dates, capacity);
+            nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+        }
+        byte[] name = fileName.getBytes(StandardCharsets.UTF_8);
+        int nameStart = nameOffsets[size];
+        if (nameStart + name.length > names.length) {
+            names = Arrays.copyOf(names, Math.max(names.length * 2, nameStart + name.length));
+        }
+        System.arraycopy(name, 0, names, nameStart, name.length);
+        categories[size] = (byte) category;
+        amounts[size] = amount;
+        dates[size] = date;
+        nameOffsets[size + 1] = nameStart + name.length;
+        size++;
+    }
+    /**
+     * The copy method returns a copy of the rows added so far, trimmed to size, that is not changed by later adds.
+     *
+     * @return The copy.
+     */
+    public synchronized DocumentRows copy() {
+        DocumentRows copy = new DocumentRows();
+        copy.categories = Arrays.copyOf(categories, size);
+        copy.amounts = Arrays.copyOf(amounts, size);
+        copy.dates = Arrays.copyOf(dates, size);
+        copy.nameOffsets = Arrays.copyOf(nameOffsets, size + 1);
+        copy.names = Arrays.copyOf(names, nameOffsets[size]);
+        copy.size = size;
+        return copy;
+    }
+    /**
+     * @return Number of rows.
+     */
+    public synchronized int size() {
+        return size;
+    }
+    /**
+     * @return Category column; only the first size() values are rows.
+     */
+    byte[] getCategories() {
+        return categories;
+    }
+    /**
+     * @return Amount column; only the first size() values are rows.
+     */
+    long[] getAmounts() {
+        return amounts;
+    }
+    /**
+     * @return Date column; only the first size() values are rows.
+     */
+    int[] getDates() {
+        return dates;
+    }
+    /**
+     * @return Start of every file name in the name bytes, followed by the end of the last name.
+     */
+    int[] getNameOffsets() {
+        return nameOffsets;
+    }
+    /**
+     * @return UTF-8 bytes of all file names.
+     */
+    byte[] getNames() {
+        return names;
+    }
+}
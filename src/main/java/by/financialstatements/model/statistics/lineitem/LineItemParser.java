@@ -0,0 +1,363 @@
+package by.financialstatements.model.statistics.lineitem;
+
+import by.financialstatements.model.statistics.AmountParser;
+import by.financialstatements.model.statistics.DocumentStreamReader;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+/**
+ * The LineItemParser class reads a whole document once and extracts the amounts of its line items together with
+ * its last line (the total line). A line item is a line, other than the last one, that starts with a number
+ * followed by ". ", for example "3. Brake model 37 78$"; its amount is the last number on the line.
+ *
+ * The file is streamed through a reused buffer, and the bytes are scanned eight at a time as long words
+ * (SWAR, SIMD within a register), without creating strings:
+ * - the line terminators of a word are found at once, as a mask with one bit per byte, so a word without
+ *   a terminator costs a load and a few arithmetic operations;
+ * - the number at the start of a line is measured with the digit mask of the word there, and the amount
+ *   is found by stepping back from the end of the line over the few bytes after its last digit.
+ * Only the few bytes of the item number and the amount are looked at one by one, so the cost is close to that
+ * of reading the bytes: a document of a few KB is parsed within about twice the time of reading its last line,
+ * and larger ones in time proportional to their size (see LineItemParserBenchmark).
+ * The last line follows the rules of LastLineReader. An instance is not thread-safe; use one per thread.
+ */
+public class LineItemParser {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOW_BITS = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LINE_FEEDS = ONES * '\n';
+    private static final long CARRIAGE_RETURNS = ONES * '\r';
+    private static final long ZEROS = ONES * '0';
+    // A byte b below 128 is a digit if 127 + ('9' + 1) - b and b + 127 - ('0' - 1) both have their high bit set
+    private static final long DIGIT_UPPER_BOUND = ONES * (127 + '9' + 1);
+    private static final long DIGIT_LOWER_BOUND = ONES * (127 - '0' + 1);
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final long MAX_UNITS = (Long.MAX_VALUE - 100) / 100;
+
+    private byte[] buffer = new byte[BLOCK_SIZE];
+    private long[] amounts = new long[64];
+    private int itemCount;
+    private boolean lastLineIsItem;
+    private int lineStart;
+    private int previousStart;
+    private int previousEnd;
+    private boolean afterCarriageReturn;
+    /**
+     * The parse method reads a document and returns its line items and last line.
+     *
+     * @param file Path to the document.
+     * @param withHead Whether the beginning of the document should be kept as well (for DocumentFieldExtractor).
+     * @param maxSize Size of the largest document to read.
+     * @return The line items, last line and, if requested, beginning of the document, or null if the document
+     * is larger than maxSize, in which case nothing is read.
+     * @throws IOException If the file cannot be read or the last line is not valid UTF-8.
+     */
+    public LineItems parse(Path file, boolean withHead, long maxSize) throws IOException {
+        itemCount = 0;
+        lastLineIsItem = false;
+        lineStart = 0;
+        previousStart = -1;
+        previousEnd = -1;
+        afterCarriageReturn = false;
+        String head = null;
+        long size = 0;
+        int filled = 0;
+        int position = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > maxSize) {
+                return null;
+            }
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                if (filled == buffer.length) {
+                    int dropped = compact(filled);
+                    filled -= dropped;
+                    position -= dropped;
+                }
+                int read = channel.read(ByteBuffer.wrap(buffer, filled, buffer.length - filled));
+                if (read < 0) {
+                    endOfFile = true;
+                } else {
+                    filled += read;
+                    size += read;
+                }
+                // The buffer is only compacted once it holds more than HEAD_SIZE bytes, so the head is still at 0
+                if (withHead && head == null && (size >= DocumentStreamReader.HEAD_SIZE || endOfFile)) {
+                    head = new String(buffer, 0, (int) Math.min(size, DocumentStreamReader.HEAD_SIZE),
+                            StandardCharsets.ISO_8859_1);
+                }
+                position = scanWords(position, filled);
+                if (endOfFile) {
+                    // Fewer than eight bytes are left
+                    for (; position < filled; position++) {
+                        if (buffer[position] == '\n' || buffer[position] == '\r') {
+                            endLine(position);
+                        }
+                    }
+                }
+            }
+            String lastLine;
+            if (size == 0) {
+                lastLine = null;
+            } else if (lineStart < filled || previousStart < 0) {
+                // The document does not end with a terminator: the rest is the last line
+                lastLine = decode(lineStart, filled);
+            } else {
+                // The document ends with a terminator, which does not start a new line
+                if (lastLineIsItem) {
+                    itemCount--;
+                }
+                lastLine = decode(previousStart, previousEnd);
+            }
+            long itemSum = 0;
+            for (int i = 0; i < itemCount; i++) {
+                itemSum += amounts[i];
+            }
+            return new LineItems(Arrays.copyOf(amounts, itemCount), itemSum, lastLine, head, size);
+        }
+    }
+    /**
+     * The scanWords method scans the read bytes a word at a time. For every word, the mask of its line terminators
+     * is calculated once, and the line terminators are then taken from the mask one by one.
+     *
+     * @param position Position of the first byte not scanned yet.
+     * @param filled Number of bytes in the buffer.
+     * @return Position of the first byte not scanned (fewer than eight bytes before filled).
+     */
+    private int scanWords(int position, int filled) {
+        byte[] bytes = buffer;
+        for (; position + Long.BYTES <= filled; position += Long.BYTES) {
+            long word = (long) LONGS.get(bytes, position);
+            long terminators = zeroMask(word ^ LINE_FEEDS) | zeroMask(word ^ CARRIAGE_RETURNS);
+            while (terminators != 0) {
+                endLine(position + (Long.numberOfTrailingZeros(terminators) >>> 3));
+                terminators &= terminators - 1;
+            }
+        }
+        return position;
+    }
+    /**
+     * The compact method makes room in a full buffer by dropping the bytes before the last complete line,
+     * which is the last line of the document if nothing else follows. If there are no such bytes,
+     * the buffer is enlarged instead.
+     *
+     * @param filled Number of bytes in the buffer.
+     * @return The number of bytes dropped.
+     */
+    private int compact(int filled) {
+        int keep = previousStart >= 0 ? previousStart : lineStart;
+        if (keep == 0) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            return 0;
+        }
+        System.arraycopy(buffer, keep, buffer, 0, filled - keep);
+        lineStart -= keep;
+        if (previousStart >= 0) {
+            previousStart -= keep;
+            previousEnd -= keep;
+        }
+        return keep;
+    }
+    /**
+     * The endLine method completes the current line at a line terminator. "\r\n" ends a single line.
+     *
+     * @param lineEnd Position of the line terminator.
+     */
+    private void endLine(int lineEnd) {
+        byte terminator = buffer[lineEnd];
+        if (terminator == '\n' && afterCarriageReturn && lineEnd == lineStart) {
+            // Second byte of "\r\n"
+            afterCarriageReturn = false;
+            lineStart = lineEnd + 1;
+            return;
+        }
+        long amount = parseItem(lineStart, lineEnd);
+        lastLineIsItem = amount != AmountParser.INVALID_AMOUNT;
+        if (lastLineIsItem) {
+            if (itemCount == amounts.length) {
+                amounts = Arrays.copyOf(amounts, amounts.length * 2);
+            }
+            amounts[itemCount++] = amount;
+        }
+        previousStart = lineStart;
+        previousEnd = lineEnd;
+        lineStart = lineEnd + 1;
+        afterCarriageReturn = terminator == '\r';
+    }
+    /**
+     * The parseItem method extracts the amount of a line item, which ends at the last digit of the line.
+     *
+     * @param start Position of the first byte of the line.
+     * @param end Position right after the last byte of the line.
+     * @return The amount in minor units, or INVALID_AMOUNT if the line is not a line item with an amount.
+     */
+    private long parseItem(int start, int end) {
+        while (start < end && (buffer[start] == ' ' || buffer[start] == '\t')) {
+            start++;
+        }
+        int digits = countDigits(start, end);
+        int amountStart = start + digits + 2;
+        if (digits == 0 || amountStart > end || buffer[start + digits] != '.' || buffer[start + digits + 1] != ' ') {
+            return AmountParser.INVALID_AMOUNT;
+        }
+        int lastDigit = end - 1;
+        while (lastDigit >= amountStart && !isDigit(buffer[lastDigit])) {
+            lastDigit--;
+        }
+        if (lastDigit < amountStart) {
+            return AmountParser.INVALID_AMOUNT;
+        }
+        int first = lastDigit - (Long.BYTES - 1);
+        if (first >= amountStart) {
+            // The word ending with the last digit: a whole number of up to seven digits is converted at once
+            long word = (long) LONGS.get(buffer, first);
+            int length = Long.numberOfLeadingZeros(~digitMask(word) & HIGH_BITS) >>> 3;
+            if (length < Long.BYTES && !isSeparator(buffer[lastDigit - length])) {
+                return parseDigits(word, length) * 100;
+            }
+        }
+        first = lastDigit;
+        while (first > amountStart && (isDigit(buffer[first - 1]) || isSeparator(buffer[first - 1]))) {
+            first--;
+        }
+        while (isSeparator(buffer[first])) {
+            first++;
+        }
+        return parseNumber(first, lastDigit + 1);
+    }
+    /**
+     * The countDigits method counts the digits at the given position, a word at a time.
+     *
+     * @param start Position to start at.
+     * @param end Position right after the last byte of the line.
+     * @return The number of consecutive digits.
+     */
+    private int countDigits(int start, int end) {
+        int position = start;
+        while (position < end && position + Long.BYTES <= buffer.length) {
+            // The lowest byte of a little-endian word is the first one, so trailing zeros count leading digits
+            int digits = Long.numberOfTrailingZeros(~digitMask((long) LONGS.get(buffer, position)) & HIGH_BITS) >>> 3;
+            position += digits;
+            if (digits < Long.BYTES) {
+                return Math.min(position, end) - start;
+            }
+        }
+        while (position < end && isDigit(buffer[position])) {
+            position++;
+        }
+        return Math.min(position, end) - start;
+    }
+    /**
+     * The parseDigits method converts the digits in the highest bytes of a word to a number without a loop:
+     * the lower bytes are replaced with '0', then pairs of digits, pairs of pairs and pairs of those are combined
+     * with one multiplication each.
+     *
+     * @param word Eight bytes ending with the digits.
+     * @param length Number of digits, from 1 to 8.
+     * @return The number.
+     */
+    private static long parseDigits(long word, int length) {
+        long digits = -1L << ((Long.BYTES - length) << 3);
+        long value = (word & digits | ZEROS & ~digits) & 0x0F0F0F0F0F0F0F0FL;
+        value = (value * (10 * 256 + 1)) >>> 8 & 0x00FF00FF00FF00FFL;
+        value = (value * (100 * 65536 + 1)) >>> 16 & 0x0000FFFF0000FFFFL;
+        return (value * (10000L << 32) + value) >>> 32;
+    }
+    /**
+     * The parseNumber method parses the amount of a line item. The last ',' or '.' is the decimal separator
+     * and the others are thousands separators, except that a ',' followed by exactly three digits in a number
+     * without '.' is a thousands separator too ("1,228" is 1228, "102,78" is 102.78).
+     *
+     * @param start Position of the first digit.
+     * @param end Position right after the last digit.
+     * @return The amount in minor units, or INVALID_AMOUNT if it is too large.
+     */
+    private long parseNumber(int start, int end) {
+        int decimalSeparator = -1;
+        boolean hasDot = false;
+        for (int i = start; i < end; i++) {
+            if (isSeparator(buffer[i])) {
+                decimalSeparator = i;
+                hasDot |= buffer[i] == '.';
+            }
+        }
+        if (decimalSeparator >= 0 && !hasDot && end - decimalSeparator - 1 == 3) {
+            decimalSeparator = -1;
+        }
+        int integerEnd = decimalSeparator < 0 ? end : decimalSeparator;
+        long units = 0;
+        for (int i = start; i < integerEnd; i++) {
+            if (isDigit(buffer[i])) {
+                int digit = buffer[i] - '0';
+                if (units > (MAX_UNITS - digit) / 10) {
+                    return AmountParser.INVALID_AMOUNT;
+                }
+                units = units * 10 + digit;
+            }
+        }
+        long fraction = 0;
+        int fractionDigits = 0;
+        for (int i = integerEnd + 1; i < end && fractionDigits < 3; i++, fractionDigits++) {
+            int digit = buffer[i] - '0';
+            if (fractionDigits < 2) {
+                fraction = fraction * 10 + digit;
+            } else if (digit >= 5) {
+                // Round half-up to two decimal places, as AmountParser does
+                fraction++;
+            }
+        }
+        return units * 100 + (fractionDigits == 1 ? fraction * 10 : fraction);
+    }
+    /**
+     * The decode method decodes a line as UTF-8.
+     *
+     * @param start Position of the first byte of the line.
+     * @param end Position right after the last byte of the line.
+     * @return The line.
+     * @throws IOException If the line is not valid UTF-8.
+     */
+    private String decode(int start, int end) throws IOException {
+        return StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(buffer, start, end - start)).toString();
+    }
+    /**
+     * The zeroMask method sets the high bit of every zero byte of a word and clears all other bits.
+     *
+     * @param word Eight bytes.
+     * @return The mask of zero bytes.
+     */
+    private static long zeroMask(long word) {
+        return ~(((word & LOW_BITS) + LOW_BITS) | word | LOW_BITS);
+    }
+    /**
+     * The digitMask method sets the high bit of every byte of a word that is an ASCII digit and clears all other bits.
+     * The seven low bits of every byte are compared separately, so no carry crosses into the next byte.
+     *
+     * @param word Eight bytes.
+     * @return The mask of digit bytes.
+     */
+    private static long digitMask(long word) {
+        long low = word & LOW_BITS;
+        return (DIGIT_UPPER_BOUND - low) & ~word & (low + DIGIT_LOWER_BOUND) & HIGH_BITS;
+    }
+    /**
+     * @return true if the byte is an ASCII digit.
+     */
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+    /**
+     * @return true if the byte is ',' or '.'.
+     */
+    private static boolean isSeparator(byte b) {
+        return b == ',' || b == '.';
+    }
+}
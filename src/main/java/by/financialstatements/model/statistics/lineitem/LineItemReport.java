@@ -0,0 +1,143 @@
+package by.financialstatements.model.statistics.lineitem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+/**
+ * The LineItemReport class collects the documents whose line items do not add up to their stated total.
+ * Documents without line items (orders and bills) are not checked, nor are documents too large to be read
+ * whole, which are only counted. At most maxMismatches documents are kept
+ * for the report; further ones are only counted. It is safe to use from several threads.
+ */
+public class LineItemReport {
+    private final int maxMismatches;
+    private final LongAdder checkedDocuments = new LongAdder();
+    private final LongAdder mismatchCount = new LongAdder();
+    private final LongAdder uncheckedDocuments = new LongAdder();
+    private final ConcurrentLinkedQueue<Mismatch> mismatches = new ConcurrentLinkedQueue<>();
+    /**
+     * LineItemReport constructor.
+     *
+     * @param maxMismatches Maximum number of mismatching documents kept for the report.
+     */
+    public LineItemReport(int maxMismatches) {
+        this.maxMismatches = maxMismatches;
+    }
+    /**
+     * The check method compares the sum of the line items of a document with its total.
+     *
+     * @param fileName Name of the document.
+     * @param category Statistics category of the document.
+     * @param lineItems Line items of the document.
+     * @param total Total stated in the document, in minor units.
+     * @return The mismatch, or null if the document has no line items or they add up to the total.
+     */
+    public Mismatch check(String fileName, String category, LineItems lineItems, long total) {
+        if (lineItems.getItemCount() == 0) {
+            return null;
+        }
+        checkedDocuments.increment();
+        if (lineItems.getItemSum() == total) {
+            return null;
+        }
+        Mismatch mismatch = new Mismatch(fileName, category, lineItems.getItemCount(), lineItems.getItemSum(), total);
+        mismatchCount.increment();
+        // The size check is not atomic, so a few more entries than the limit may be kept
+        if (mismatches.size() < maxMismatches) {
+            mismatches.add(mismatch);
+        }
+        return mismatch;
+    }
+    /**
+     * The recordUnchecked method counts a document that was not checked because it is too large to be read whole.
+     */
+    public void recordUnchecked() {
+        uncheckedDocuments.increment();
+    }
+    /**
+     * @return Number of documents with line items that were checked.
+     */
+    public long getCheckedDocuments() {
+        return checkedDocuments.sum();
+    }
+    /**
+     * @return Number of documents not checked because they are too large to be read whole.
+     */
+    public long getUncheckedDocuments() {
+        return uncheckedDocuments.sum();
+    }
+    /**
+     * @return Number of documents whose line items do not add up to their total.
+     */
+    public long getMismatchCount() {
+        return mismatchCount.sum();
+    }
+    /**
+     * The getMismatches method returns the kept mismatching documents sorted by file name.
+     *
+     * @return The mismatches.
+     */
+    public List<Mismatch> getMismatches() {
+        List<Mismatch> sorted = new ArrayList<>(mismatches);
+        sorted.sort(Comparator.comparing(Mismatch::getFileName));
+        return sorted;
+    }
+    /**
+     * A document whose line items do not add up to its total.
+     */
+    public static class Mismatch {
+        private final String fileName;
+        private final String category;
+        private final int itemCount;
+        private final long itemSum;
+        private final long total;
+        /**
+         * Mismatch constructor.
+         *
+         * @param fileName Name of the document.
+         * @param category Statistics category of the document.
+         * @param itemCount Number of line items.
+         * @param itemSum Sum of the line items in minor units.
+         * @param total Total stated in the document, in minor units.
+         */
+        public Mismatch(String fileName, String category, int itemCount, long itemSum, long total) {
+            this.fileName = fileName;
+            this.category = category;
+            this.itemCount = itemCount;
+            this.itemSum = itemSum;
+            this.total = total;
+        }
+        /**
+         * @return Name of the document.
+         */
+        public String getFileName() {
+            return fileName;
+        }
+        /**
+         * @return Statistics category of the document.
+         */
+        public String getCategory() {
+            return category;
+        }
+        /**
+         * @return Number of line items.
+         */
+        public int getItemCount() {
+            return itemCount;
+        }
+        /**
+         * @return Sum of the line items in minor units.
+         */
+        public long getItemSum() {
+            return itemSum;
+        }
+        /**
+         * @return Total stated in the document, in minor units.
+         */
+        public long getTotal() {
+            return total;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package by.financialstatements.model.statistics.lineitem;
+
+import by.financialstatements.model.log.CustomLogger;
+import by.financialstatements.model.login_service.service.PropsHandler;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+/**
+ * The LineItemReportWriter class writes the documents whose line items do not add up to their total
+ * to the file set in LINE_ITEM_REPORT_FILE. The path is read on every write, so it can be changed
+ * while the application is running.
+ */
+public class LineItemReportWriter {
+    /**
+     * The writeReportToFile method writes the number of checked, mismatching and unchecked documents, followed by
+     * one line per kept mismatch. Nothing is written if LINE_ITEM_REPORT_FILE is not set.
+     *
+     * @param report The report to write.
+     */
+    public void writeReportToFile(LineItemReport report) {
+        Path reportFile = PropsHandler.getConfig().getPath("LINE_ITEM_REPORT_FILE");
+        if (reportFile == null) {
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("Line items checked: %d documents, %d do not add up to their total, "
+                        + "%d larger than LINE_ITEM_MAX_BYTES not checked%n",
+                report.getCheckedDocuments(), report.getMismatchCount(), report.getUncheckedDocuments()));
+        for (LineItemReport.Mismatch mismatch : report.getMismatches()) {
+            text.append(String.format("  - %s (%s): %d items, sum %.2f, total %.2f, difference %.2f%n",
+                    mismatch.getFileName(), mismatch.getCategory(), mismatch.getItemCount(),
+                    BigDecimal.valueOf(mismatch.getItemSum(), 2), BigDecimal.valueOf(mismatch.getTotal(), 2),
+                    BigDecimal.valueOf(mismatch.getTotal() - mismatch.getItemSum(), 2)));
+        }
+        try {
+            Files.writeString(reportFile, text);
+            CustomLogger.info("Line item report successfully written to file " + reportFile);
+        } catch (IOException e) {
+            CustomLogger.error("Error writing line item report file: " + e.getMessage());
+        }
+    }
+}
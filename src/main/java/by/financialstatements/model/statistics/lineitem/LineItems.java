@@ -0,0 +1,67 @@
+package by.financialstatements.model.statistics.lineitem;
+/**
+ * The LineItems class is the result of reading a whole document with LineItemParser:
+ * the amounts of its line items, in document order, and its last line.
+ */
+public class LineItems {
+    private final long[] amounts;
+    private final long itemSum;
+    private final String lastLine;
+    private final String head;
+    private final long size;
+    /**
+     * LineItems constructor.
+     *
+     * @param amounts Amounts of the line items in minor units.
+     * @param itemSum Sum of the amounts in minor units.
+     * @param lastLine Last line of the document, or null if it is empty.
+     * @param head Beginning of the document, one character per byte, or null if it was not requested.
+     * @param size Size of the document in bytes.
+     */
+    public LineItems(long[] amounts, long itemSum, String lastLine, String head, long size) {
+        this.amounts = amounts;
+        this.itemSum = itemSum;
+        this.lastLine = lastLine;
+        this.head = head;
+        this.size = size;
+    }
+    /**
+     * @return Number of line items.
+     */
+    public int getItemCount() {
+        return amounts.length;
+    }
+    /**
+     * The getItemAmount method returns the amount of a line item.
+     *
+     * @param index Number of the line item, from 0.
+     * @return The amount in minor units.
+     */
+    public long getItemAmount(int index) {
+        return amounts[index];
+    }
+    /**
+     * @return Sum of the line item amounts in minor units.
+     */
+    public long getItemSum() {
+        return itemSum;
+    }
+    /**
+     * @return Last line of the document, or null if it is empty.
+     */
+    public String getLastLine() {
+        return lastLine;
+    }
+    /**
+     * @return Beginning of the document, one character per byte, or null if it was not requested.
+     */
+    public String getHead() {
+        return head;
+    }
+    /**
+     * @return Size of the document in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+}